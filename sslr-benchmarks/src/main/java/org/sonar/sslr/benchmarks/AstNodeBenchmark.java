@@ -0,0 +1,111 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.test.minic.MiniCGrammar;
+import com.sonar.sslr.test.minic.MiniCParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Navigation in AST, as done by checks.
+ * Allocation rate should be measured with "-prof gc".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class AstNodeBenchmark {
+
+  private static final String FUNCTION = ""
+    + "int fibonacci(int n)\n"
+    + "{\n"
+    + "  int f2 = 0;\n"
+    + "  int f1 = 1;\n"
+    + "  int i;\n"
+    + "  i = 0;\n"
+    + "  while (i++ < n)\n"
+    + "  {\n"
+    + "    int oldF2 = f2;\n"
+    + "    f2 = f1;\n"
+    + "    f1 = oldF2 + f1;\n"
+    + "  }\n"
+    + "  if (n <= 1) return n;\n"
+    + "  return f2;\n"
+    + "}\n";
+
+  private AstNode root;
+  private final List<AstNode> nodes = new ArrayList<>();
+  private final List<Token> tokens = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 1);
+    root = MiniCParser.create().parse(Strings.repeat(FUNCTION, n));
+  }
+
+  @Benchmark
+  public List<AstNode> getDescendants() {
+    return root.getDescendants(MiniCGrammar.BIN_VARIABLE_REFERENCE);
+  }
+
+  /**
+   * List reused between invocations.
+   */
+  @Benchmark
+  public int getDescendantsIntoList() {
+    nodes.clear();
+    root.getDescendants(nodes, MiniCGrammar.BIN_VARIABLE_REFERENCE);
+    return nodes.size();
+  }
+
+  @Benchmark
+  public int descendants() {
+    int result = 0;
+    for (AstNode node : root.descendants(MiniCGrammar.BIN_VARIABLE_REFERENCE)) {
+      result += node.getFromIndex();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public List<Token> getTokens() {
+    return root.getTokens();
+  }
+
+  /**
+   * List reused between invocations.
+   */
+  @Benchmark
+  public int getTokensIntoList() {
+    tokens.clear();
+    root.getTokens(tokens);
+    return tokens.size();
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.AstVisitor;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.ThreadSafeVisitor;
+import com.sonar.sslr.impl.ast.AstWalker;
+import com.sonar.sslr.test.minic.MiniCParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+/**
+ * Walk of MiniC file by many independent checks, where each invocation of benchmark represents one file.
+ * Number of threads for concurrent walk can be changed with "-Dthreads".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class AstWalkerBenchmark {
+
+  private static final String FUNCTION = ""
+    + "int fibonacci(int n)\n"
+    + "{\n"
+    + "  int f2 = 0;\n"
+    + "  int f1 = 1;\n"
+    + "  int i;\n"
+    + "  i = 0;\n"
+    + "  while (i++ < n)\n"
+    + "  {\n"
+    + "    int oldF2 = f2;\n"
+    + "    f2 = f1;\n"
+    + "    f1 = oldF2 + f1;\n"
+    + "  }\n"
+    + "  if (n <= 1) return n;\n"
+    + "  return f2;\n"
+    + "}\n";
+
+  private AstNode ast;
+  private List<NamingCheck> checks;
+  private AstWalker walker;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setup() {
+    ast = MiniCParser.create().parse(Strings.repeat(FUNCTION, Integer.getInteger("n", 10)));
+    checks = new ArrayList<NamingCheck>();
+    for (int i = 0; i < Integer.getInteger("checks", 64); i++) {
+      checks.add(new NamingCheck());
+    }
+    walker = new AstWalker(checks);
+    pool = new ForkJoinPool(Integer.getInteger("threads", Runtime.getRuntime().availableProcessors()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * All checks in a single pass on a single thread.
+   */
+  @Benchmark
+  public int walk() {
+    walker.walkAndVisit(ast);
+    return checks.get(0).issues;
+  }
+
+  /**
+   * Checks partitioned into groups, which walk the tree concurrently.
+   */
+  @Benchmark
+  public int walkConcurrently() {
+    walker.walkAndVisit(ast, pool);
+    return checks.get(0).issues;
+  }
+
+  @ThreadSafeVisitor
+  static class NamingCheck implements AstVisitor {
+
+    private final Pattern pattern = Pattern.compile("[a-z][a-zA-Z]*+");
+    private int issues;
+
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return Collections.<AstNodeType>singletonList(GenericTokenType.IDENTIFIER);
+    }
+
+    @Override
+    public void visitFile(AstNode ast) {
+      issues = 0;
+    }
+
+    @Override
+    public void leaveFile(AstNode ast) {
+      // nop
+    }
+
+    @Override
+    public void visitNode(AstNode ast) {
+      if (!pattern.matcher(ast.getTokenValue()).matches()) {
+        issues++;
+      }
+    }
+
+    @Override
+    public void leaveNode(AstNode ast) {
+      // nop
+    }
+
+  }
+
+}
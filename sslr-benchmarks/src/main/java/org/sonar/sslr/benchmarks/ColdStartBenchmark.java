@@ -0,0 +1,162 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import com.sonar.sslr.api.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.ParseRunner;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Time from start of JVM to the end of first parse, when grammar is compiled
+ * and when it is loaded from binary form written by {@link ParseRunner#writeCompiledGrammar(java.io.OutputStream)}.
+ * Each measurement is done in a fresh JVM, and binary form is produced by a separate JVM,
+ * so that classes used for compilation are not loaded in advance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+
+  private static final int KEYWORDS = 100;
+  private static final int PRECEDENCE_LEVELS = 20;
+
+  private char[] input;
+  private byte[] compiledGrammar;
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    input = "kw0 foo #0# 42 #19# (bar #7# 1);\nkw99 baz;\nqux #3# kw1x;\n".toCharArray();
+    Process process = new ProcessBuilder(
+        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+        "-cp", System.getProperty("java.class.path"),
+        ColdStartBenchmark.class.getName())
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    compiledGrammar = ByteStreams.toByteArray(process.getInputStream());
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException("Unable to write compiled grammar");
+    }
+  }
+
+  /**
+   * Writes compiled grammar to standard output.
+   */
+  public static void main(String[] args) throws IOException {
+    new ParseRunner(createGrammar()).writeCompiledGrammar(System.out);
+  }
+
+  @Benchmark
+  public ParsingResult compile() {
+    return new ParseRunner(createGrammar()).parse(input);
+  }
+
+  @Benchmark
+  public ParsingResult load() throws IOException {
+    return new ParseRunner(createGrammar(), new ByteArrayInputStream(compiledGrammar)).parse(input);
+  }
+
+  /**
+   * Grammar of a language with many keywords and binary operators, whose size is close to the size of grammars of real languages.
+   */
+  private static Rule createGrammar() {
+    GrammarRuleKey root = new Key("root");
+    GrammarRuleKey spacing = new Key("spacing");
+    GrammarRuleKey identifier = new Key("identifier");
+    GrammarRuleKey number = new Key("number");
+    GrammarRuleKey keyword = new Key("keyword");
+    GrammarRuleKey primary = new Key("primary");
+    GrammarRuleKey statement = new Key("statement");
+
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(spacing).is(b.regexp("\\s*+"));
+    b.rule(identifier).is(b.nextNot(keyword), b.regexp("[a-z][a-z0-9]*+"), spacing);
+    b.rule(number).is(b.regexp("[0-9]++"), spacing);
+
+    GrammarRuleKey[] keywords = new GrammarRuleKey[KEYWORDS];
+    for (int i = 0; i < KEYWORDS; i++) {
+      keywords[i] = new Key("kw" + i);
+      b.rule(keywords[i]).is("kw" + i, b.nextNot(b.regexp("[a-z0-9]")), spacing);
+    }
+    b.rule(keyword).is(b.firstOf(keywords[0], keywords[1], (Object[]) rest(keywords)));
+
+    GrammarRuleKey[] levels = new GrammarRuleKey[PRECEDENCE_LEVELS];
+    for (int i = 0; i < PRECEDENCE_LEVELS; i++) {
+      levels[i] = new Key("level" + i);
+    }
+    for (int i = 0; i < PRECEDENCE_LEVELS; i++) {
+      Object operand = i == PRECEDENCE_LEVELS - 1 ? primary : levels[i + 1];
+      b.rule(levels[i]).is(operand, b.zeroOrMore("#" + i + "#", spacing, operand));
+    }
+    b.rule(primary).is(b.firstOf(number, identifier, b.sequence("(", spacing, levels[0], ")", spacing)));
+
+    GrammarRuleKey[] statements = new GrammarRuleKey[KEYWORDS + 1];
+    for (int i = 0; i < KEYWORDS; i++) {
+      statements[i] = new Key("statement" + i);
+      b.rule(statements[i]).is(keywords[i], b.optional(levels[0]), ";", spacing);
+    }
+    statements[KEYWORDS] = new Key("expressionStatement");
+    b.rule(statements[KEYWORDS]).is(levels[0], ";", spacing);
+    b.rule(statement).is(b.firstOf(statements[0], statements[1], (Object[]) rest(statements)));
+
+    b.rule(root).is(spacing, b.zeroOrMore(statement), b.endOfInput());
+    return b.build().rule(root);
+  }
+
+  private static GrammarRuleKey[] rest(GrammarRuleKey[] keys) {
+    GrammarRuleKey[] result = new GrammarRuleKey[keys.length - 2];
+    System.arraycopy(keys, 2, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * Name of key must be the same in all JVMs, because it affects fingerprint of compiled grammar.
+   */
+  private static class Key implements GrammarRuleKey {
+    private final String name;
+
+    Key(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+}
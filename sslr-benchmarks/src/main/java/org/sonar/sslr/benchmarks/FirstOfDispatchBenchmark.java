@@ -0,0 +1,97 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.ParseRunner;
+
+import java.util.Arrays;
+
+/**
+ * Rule "statement" has k alternatives, each of which is a rule starting by a keyword.
+ * In variant "distinctFirstChars" keywords start by different characters, so that dispatch by first character
+ * goes directly to the matching alternative, whereas in variant "sameFirstChar" all alternatives have to be tried.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class FirstOfDispatchBenchmark {
+
+  private ParseRunner distinctFirstChars, sameFirstChar;
+  private char[] distinctFirstCharsInput, sameFirstCharInput;
+
+  @Setup
+  public void setup() {
+    int k = Integer.getInteger("k", 50);
+    int n = Integer.getInteger("n", 10);
+
+    String[] distinctKeywords = new String[k];
+    String[] sameKeywords = new String[k];
+    for (int i = 0; i < k; i++) {
+      distinctKeywords[i] = (char) ('A' + i) + "kw";
+      sameKeywords[i] = "kw" + (char) ('A' + i);
+    }
+
+    distinctFirstChars = newParseRunner(distinctKeywords);
+    distinctFirstCharsInput = Strings.repeat(distinctKeywords[k - 1] + "; ", n).toCharArray();
+    sameFirstChar = newParseRunner(sameKeywords);
+    sameFirstCharInput = Strings.repeat(sameKeywords[k - 1] + "; ", n).toCharArray();
+  }
+
+  private static ParseRunner newParseRunner(String[] keywords) {
+    GrammarRuleKey root = newRuleKey();
+    GrammarRuleKey spacing = newRuleKey();
+    GrammarRuleKey[] statements = new GrammarRuleKey[keywords.length];
+    for (int i = 0; i < keywords.length; i++) {
+      statements[i] = newRuleKey();
+    }
+
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(root).is(b.zeroOrMore(b.firstOf(statements[0], statements[1], Arrays.copyOfRange(statements, 2, statements.length))), b.endOfInput());
+    b.rule(spacing).is(b.regexp("\\s*+"));
+    for (int i = 0; i < keywords.length; i++) {
+      b.rule(statements[i]).is(keywords[i], spacing, ";", spacing);
+    }
+    return new ParseRunner(b.build().rule(root));
+  }
+
+  @Benchmark
+  public boolean distinctFirstChars() {
+    return distinctFirstChars.parse(distinctFirstCharsInput).isMatched();
+  }
+
+  @Benchmark
+  public boolean sameFirstChar() {
+    return sameFirstChar.parse(sameFirstCharInput).isMatched();
+  }
+
+  private static GrammarRuleKey newRuleKey() {
+    return new GrammarRuleKey() {
+    };
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenStore;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import com.sonar.sslr.test.minic.MiniCParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.util.List;
+
+/**
+ * Parsing of small MiniC files, where each invocation of benchmark represents one file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class LexerfulParserBenchmark {
+
+  private static final String FUNCTION = ""
+    + "int fibonacci(int n)\n"
+    + "{\n"
+    + "  int f2 = 0;\n"
+    + "  int f1 = 1;\n"
+    + "  int i;\n"
+    + "  i = 0;\n"
+    + "  while (i++ < n)\n"
+    + "  {\n"
+    + "    int oldF2 = f2;\n"
+    + "    f2 = f1;\n"
+    + "    f1 = oldF2 + f1;\n"
+    + "  }\n"
+    + "  if (n <= 1) return n;\n"
+    + "  return f2;\n"
+    + "}\n";
+
+  private Parser<Grammar> parser;
+  private List<Token> tokens;
+  private TokenStore tokenStore;
+  private Machine machine;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 1);
+    String source = Strings.repeat(FUNCTION, n);
+    tokens = MiniCLexer.create().lex(source);
+    tokenStore = MiniCLexer.create().lexToStore(source);
+    parser = MiniCParser.create();
+    machine = new Machine(MutableGrammarCompiler.compile(parser.getRootRule()));
+  }
+
+  /**
+   * Grammar compiled once per {@link Parser}.
+   */
+  @Benchmark
+  public AstNode parse() {
+    return parser.parse(tokens);
+  }
+
+  /**
+   * AST created from intermediate parse tree, as it was done by {@link Parser} before version 1.21.
+   */
+  @Benchmark
+  public AstNode parseWithParseTree() {
+    return LexerfulAstCreator.create(machine.parse(tokens), tokens);
+  }
+
+  /**
+   * Tokens parsed directly from compact storage.
+   */
+  @Benchmark
+  public AstNode parseFromStore() {
+    return parser.parse(tokenStore);
+  }
+
+  /**
+   * Grammar compiled for each file.
+   */
+  @Benchmark
+  public AstNode compileAndParse() {
+    CompiledGrammar compiledGrammar = MutableGrammarCompiler.compile(parser.getRootRule());
+    return LexerfulAstCreator.create(Machine.parse(tokens, compiledGrammar), tokens);
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.LexerlessGrammar;
+import org.sonar.sslr.parser.ParserAdapter;
+
+/**
+ * Creation of AST by {@link ParserAdapter}, where each invocation of benchmark represents one file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class LexerlessParserBenchmark {
+
+  private final GrammarRuleKey identifier = newRuleKey();
+
+  private ParserAdapter<LexerlessGrammar> parser;
+  private ParserAdapter<LexerlessGrammar> lazyParser;
+  private String input;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 100);
+    input = Strings.repeat("// assignment\nfoo = bar + 42;\n", n);
+
+    GrammarRuleKey root = newRuleKey();
+    GrammarRuleKey statement = newRuleKey();
+    GrammarRuleKey expression = newRuleKey();
+    GrammarRuleKey number = newRuleKey();
+    GrammarRuleKey spacing = newRuleKey();
+
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(root).is(spacing, b.zeroOrMore(statement), b.endOfInput());
+    b.rule(statement).is(identifier, "=", spacing, expression, ";", spacing);
+    b.rule(expression).is(b.firstOf(identifier, number), b.zeroOrMore("+", spacing, b.firstOf(identifier, number)));
+    b.rule(identifier).is(b.token(GenericTokenType.IDENTIFIER, b.regexp("[a-z]++")), spacing);
+    b.rule(number).is(b.token(GenericTokenType.CONSTANT, b.regexp("[0-9]++")), spacing);
+    b.rule(spacing).is(b.skippedTrivia(b.regexp("\\s*+")), b.zeroOrMore(b.commentTrivia(b.regexp("//[^\\n]*+")), b.skippedTrivia(b.regexp("\\s*+"))));
+    b.setRootRule(root);
+    LexerlessGrammar grammar = b.build();
+
+    parser = new ParserAdapter<>(Charsets.UTF_8, grammar);
+    lazyParser = new ParserAdapter<>(Charsets.UTF_8, grammar);
+    lazyParser.setLazyTokens(true);
+  }
+
+  /**
+   * Value and position computed for each token.
+   */
+  @Benchmark
+  public AstNode parse() {
+    return parser.parse(input);
+  }
+
+  /**
+   * Value and position computed only on demand.
+   */
+  @Benchmark
+  public AstNode parseWithLazyTokens() {
+    return lazyParser.parse(input);
+  }
+
+  /**
+   * Value and position computed only for tokens inspected by a check, which looks at identifiers.
+   */
+  @Benchmark
+  public int parseWithLazyTokensAndCheck() {
+    int result = 0;
+    for (AstNode node : lazyParser.parse(input).descendants(identifier)) {
+      result += node.getTokenValue().length() + node.getTokenLine();
+    }
+    return result;
+  }
+
+  private static GrammarRuleKey newRuleKey() {
+    return new GrammarRuleKey() {
+    };
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.ParseRunner;
+import org.sonar.sslr.parser.ParseSession;
+import org.sonar.sslr.parser.ParsingResult;
+
+/**
+ * Parsing of many small inputs, where each invocation of benchmark represents one input.
+ * Allocation rate should be measured with "-prof gc".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class ParseSessionBenchmark {
+
+  private ParseRunner runner;
+  private ParseSession session;
+  private ParseSession compactSession;
+  private char[] input;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 100);
+    input = Strings.repeat("foo = bar + 42;\n", n).toCharArray();
+
+    GrammarRuleKey root = newRuleKey();
+    GrammarRuleKey statement = newRuleKey();
+    GrammarRuleKey expression = newRuleKey();
+    GrammarRuleKey identifier = newRuleKey();
+    GrammarRuleKey number = newRuleKey();
+    GrammarRuleKey spacing = newRuleKey();
+
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(root).is(b.zeroOrMore(statement), b.endOfInput());
+    b.rule(statement).is(identifier, "=", spacing, expression, ";", spacing);
+    b.rule(expression).is(b.firstOf(identifier, number), b.zeroOrMore("+", spacing, b.firstOf(identifier, number)));
+    b.rule(identifier).is(b.regexp("[a-z]++"), spacing);
+    b.rule(number).is(b.regexp("[0-9]++"), spacing);
+    b.rule(spacing).is(b.regexp("\\s*+"));
+    runner = new ParseRunner(b.build().rule(root));
+    session = runner.newSession();
+    compactSession = runner.newCompactSession();
+  }
+
+  /**
+   * New machine for each input.
+   */
+  @Benchmark
+  public ParsingResult parseRunner() {
+    return runner.parse(input);
+  }
+
+  /**
+   * Machine reused between inputs.
+   */
+  @Benchmark
+  public ParsingResult parseSession() {
+    return session.parse(input);
+  }
+
+  /**
+   * Machine and storage of parse tree reused between inputs.
+   */
+  @Benchmark
+  public ParsingResult parseCompactSession() {
+    return compactSession.parse(input);
+  }
+
+  private static GrammarRuleKey newRuleKey() {
+    return new GrammarRuleKey() {
+    };
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.CursorPreprocessor;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.PreprocessorCursor;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Expansion of macros by chain of preprocessors, which are implemented using {@link PreprocessorAction}s and using {@link PreprocessorCursor}.
+ * Each character of input is a token, so that cost of lexing is negligible: "m" is a macro, which expands into three tokens,
+ * "c" is a comment, and other characters are identifiers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class PreprocessorBenchmark {
+
+  private static final URI TESTS_URI = URI.create("tests://unittest");
+
+  private String input;
+  private Lexer actionsLexer;
+  private Lexer cursorLexer;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 1000);
+    input = Strings.repeat("amb cm mbc am", n);
+
+    List<Token> expansion = ImmutableList.of(token("x"), token("y"), token("z"));
+    actionsLexer = Lexer.builder()
+        .withChannel(new CharacterChannel())
+        .withPreprocessor(new ActionsPreprocessor(expansion))
+        .withPreprocessor(new ActionsPreprocessor(expansion))
+        .build();
+    cursorLexer = Lexer.builder()
+        .withChannel(new CharacterChannel())
+        .withPreprocessor(new MacroCursorPreprocessor(expansion))
+        .withPreprocessor(new MacroCursorPreprocessor(expansion))
+        .build();
+  }
+
+  @Benchmark
+  public List<Token> actions() {
+    return actionsLexer.lex(input);
+  }
+
+  @Benchmark
+  public List<Token> cursor() {
+    return cursorLexer.lex(input);
+  }
+
+  private static Token token(String value) {
+    return Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value)
+        .setURI(TESTS_URI)
+        .setLine(1)
+        .setColumn(0)
+        .build();
+  }
+
+  private static boolean isMacro(Token token) {
+    return "m".equals(token.getValue());
+  }
+
+  private static class CharacterChannel extends Channel<Lexer> {
+
+    private final Token[] tokens = new Token[128];
+    private final Trivia comment = Trivia.createComment(Token.builder(token("c")).setType(GenericTokenType.COMMENT).build());
+
+    @Override
+    public boolean consume(CodeReader code, Lexer lexer) {
+      char c = (char) code.pop();
+      if (c == 'c') {
+        lexer.addTrivia(comment);
+        return true;
+      }
+      if (tokens[c] == null) {
+        tokens[c] = token(String.valueOf(c));
+      }
+      lexer.addToken(tokens[c]);
+      return true;
+    }
+
+  }
+
+  private static class ActionsPreprocessor extends Preprocessor {
+
+    private final List<Token> expansion;
+
+    public ActionsPreprocessor(List<Token> expansion) {
+      this.expansion = expansion;
+    }
+
+    @Override
+    public PreprocessorAction process(List<Token> tokens) {
+      if (isMacro(tokens.get(0))) {
+        return new PreprocessorAction(1, ImmutableList.<Trivia>of(), expansion);
+      }
+      return PreprocessorAction.NO_OPERATION;
+    }
+
+  }
+
+  private static class MacroCursorPreprocessor extends CursorPreprocessor {
+
+    private final List<Token> expansion;
+
+    public MacroCursorPreprocessor(List<Token> expansion) {
+      this.expansion = expansion;
+    }
+
+    @Override
+    public void process(PreprocessorCursor cursor) {
+      int n = 0;
+      while (n < cursor.remaining() && !isMacro(cursor.peek(n))) {
+        n++;
+      }
+      if (n > 0) {
+        cursor.keep(n);
+      } else {
+        cursor.consume(1);
+        cursor.inject(expansion);
+      }
+    }
+
+  }
+
+}
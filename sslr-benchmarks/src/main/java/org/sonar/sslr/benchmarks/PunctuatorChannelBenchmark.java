@@ -0,0 +1,110 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.List;
+
+/**
+ * Lexing of punctuators of C++ and attempts to consume non-punctuator by {@link PunctuatorChannel}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class PunctuatorChannelBenchmark {
+
+  private static final String[] PUNCTUATORS = {
+    "{", "}", "[", "]", "#", "##", "(", ")", "<:", ":>", "<%", "%>", "%:", "%:%:", ";", ":", "...",
+    "?", "::", ".", ".*", "+", "-", "*", "/", "%", "^", "&", "|", "~", "!", "=", "<", ">",
+    "+=", "-=", "*=", "/=", "%=", "^=", "&=", "|=", "<<", ">>", ">>=", "<<=", "==", "!=",
+    "<=", ">=", "<=>", "&&", "||", "++", "--", ",", "->*", "->"};
+
+  private Lexer lexer;
+  private PunctuatorChannel channel;
+  private String input;
+  private CodeReader identifier;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 10);
+    input = Strings.repeat(Joiner.on(' ').join(PUNCTUATORS) + "\n", n);
+    identifier = new CodeReader("identifier");
+
+    TokenType[] punctuators = new TokenType[PUNCTUATORS.length];
+    for (int i = 0; i < PUNCTUATORS.length; i++) {
+      punctuators[i] = new Punctuator(PUNCTUATORS[i]);
+    }
+    channel = new PunctuatorChannel(punctuators);
+    lexer = Lexer.builder()
+      .withChannel(new BlackHoleChannel("\\s++"))
+      .withChannel(channel)
+      .build();
+  }
+
+  @Benchmark
+  public List<Token> lex() {
+    return lexer.lex(input);
+  }
+
+  @Benchmark
+  public boolean mismatch() {
+    return channel.consume(identifier, lexer);
+  }
+
+  private static class Punctuator implements TokenType {
+
+    private final String value;
+
+    public Punctuator(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String getName() {
+      return value;
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+
+  }
+
+}
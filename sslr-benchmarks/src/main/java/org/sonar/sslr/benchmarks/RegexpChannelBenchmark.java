@@ -0,0 +1,105 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.dfaCommentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.dfaRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+
+/**
+ * Lexing by channels based on regular expressions: {@link java.util.regex.Pattern} versus deterministic automaton
+ * and versus single deterministic automaton for all channels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class RegexpChannelBenchmark {
+
+  private static final String COMMENT = "//[^\\n\\r]*+";
+  private static final String BLOCK_COMMENT = "(?s)/\\*.*?\\*/";
+  private static final String STRING = "\"([^\"\\\\\\n]|\\\\.)*+\"";
+  private static final String NUMBER = "[0-9]++(\\.[0-9]*+)?+([eE][+-]?+[0-9]++)?+";
+  private static final String IDENTIFIER = "[a-zA-Z_][a-zA-Z_0-9]*+";
+  private static final String PUNCTUATOR = "[=+;]";
+
+  private Lexer javaLexer;
+  private Lexer dfaLexer;
+  private Lexer fusedLexer;
+  private String input;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 10);
+    input = Strings.repeat("/* block\n comment */ foo = \"bar \\\" baz\" + 12.5e3; // comment\n", n);
+
+    javaLexer = javaLexerBuilder().build();
+    dfaLexer = Lexer.builder()
+      .withChannel(new BlackHoleChannel("\\s++"))
+      .withChannel(dfaCommentRegexp(COMMENT))
+      .withChannel(dfaCommentRegexp(BLOCK_COMMENT))
+      .withChannel(dfaRegexp(GenericTokenType.LITERAL, STRING))
+      .withChannel(dfaRegexp(GenericTokenType.CONSTANT, NUMBER))
+      .withChannel(dfaRegexp(GenericTokenType.IDENTIFIER, IDENTIFIER))
+      .withChannel(dfaRegexp(GenericTokenType.LITERAL, PUNCTUATOR))
+      .build();
+    fusedLexer = javaLexerBuilder().withFusedChannels(true).build();
+  }
+
+  private static Lexer.Builder javaLexerBuilder() {
+    return Lexer.builder()
+      .withChannel(new BlackHoleChannel("\\s++"))
+      .withChannel(commentRegexp(COMMENT))
+      .withChannel(commentRegexp(BLOCK_COMMENT))
+      .withChannel(regexp(GenericTokenType.LITERAL, STRING))
+      .withChannel(regexp(GenericTokenType.CONSTANT, NUMBER))
+      .withChannel(regexp(GenericTokenType.IDENTIFIER, IDENTIFIER))
+      .withChannel(regexp(GenericTokenType.LITERAL, PUNCTUATOR));
+  }
+
+  @Benchmark
+  public List<Token> java() {
+    return javaLexer.lex(input);
+  }
+
+  @Benchmark
+  public List<Token> dfa() {
+    return dfaLexer.lex(input);
+  }
+
+  @Benchmark
+  public List<Token> fused() {
+    return fusedLexer.lex(input);
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AstNodeBenchmarkTest {
+
+  @Test
+  public void test() {
+    AstNodeBenchmark benchmark = new AstNodeBenchmark();
+    benchmark.setup();
+
+    int descendants = benchmark.getDescendants().size();
+    assertThat(descendants).isEqualTo(12);
+    assertThat(benchmark.getDescendantsIntoList()).isEqualTo(descendants);
+    assertThat(benchmark.getDescendantsIntoList()).isEqualTo(descendants);
+    assertThat(benchmark.descendants()).isGreaterThan(0);
+
+    int tokens = benchmark.getTokens().size();
+    assertThat(tokens).isEqualTo(62);
+    assertThat(benchmark.getTokensIntoList()).isEqualTo(tokens);
+    assertThat(benchmark.getTokensIntoList()).isEqualTo(tokens);
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PreprocessorBenchmarkTest {
+
+  @Test
+  public void test() {
+    PreprocessorBenchmark benchmark = new PreprocessorBenchmark();
+    benchmark.setup();
+
+    List<Token> expected = benchmark.actions();
+    List<Token> actual = benchmark.cursor();
+    // 1000 times 7 identifiers and 4 macros, which expand into 3 tokens each, and EOF
+    assertThat(actual).hasSize(1000 * (7 + 4 * 3) + 1);
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).getValue()).isEqualTo(expected.get(i).getValue());
+      assertThat(actual.get(i).getTrivia()).hasSize(expected.get(i).getTrivia().size());
+    }
+  }
+
+}
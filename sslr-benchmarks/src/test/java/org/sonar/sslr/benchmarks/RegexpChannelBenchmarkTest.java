@@ -0,0 +1,44 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RegexpChannelBenchmarkTest {
+
+  @Test
+  public void test() {
+    RegexpChannelBenchmark benchmark = new RegexpChannelBenchmark();
+    benchmark.setup();
+
+    // 10 lines of 6 tokens and EOF
+    List<Token> tokens = benchmark.dfa();
+    assertThat(tokens).hasSize(10 * 6 + 1);
+    assertThat(tokens.get(0).getTrivia()).hasSize(1);
+    assertThat(benchmark.java()).hasSize(10 * 6 + 1);
+    assertThat(benchmark.fused()).hasSize(10 * 6 + 1);
+  }
+
+}
@@ -27,8 +27,11 @@ import org.sonar.sslr.internal.grammar.MutableParsingRule;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * the parser is in charge to construct an abstract syntax tree (AST) which is a tree representation of the abstract syntactic structure of
@@ -67,9 +70,6 @@ public class AstNode {
 
   public void addChild(AstNode child) {
     if (child != null) {
-      if (children.isEmpty()) {
-        children = new ArrayList<>();
-      }
       if (child.hasToBeSkippedFromAst()) {
         if (child.hasChildren()) {
           for (AstNode subChild : child.children) {
@@ -83,6 +83,10 @@ public class AstNode {
   }
 
   private void addChildToList(AstNode child) {
+    if (children.isEmpty()) {
+      // most of nodes have one or two children, and array for two elements occupies the same memory as for one
+      children = new ArrayList<>(2);
+    }
     children.add(child);
     child.childIndex = children.size() - 1;
     child.parent = this;
@@ -436,7 +440,7 @@ public class AstNode {
   @Deprecated
   public List<AstNode> findChildren(AstNodeType... nodeTypes) {
     List<AstNode> result = new ArrayList<>();
-    getDescendants(result, nodeTypes);
+    collectDescendants(result, nodeTypes);
     return result;
   }
 
@@ -459,27 +463,50 @@ public class AstNode {
    */
   public List<AstNode> getDescendants(AstNodeType... nodeTypes) {
     List<AstNode> result = new ArrayList<>();
-    if (hasChildren()) {
-      for (AstNode child : children) {
-        child.getDescendants(result, nodeTypes);
-      }
-    }
+    getDescendants(result, nodeTypes);
     return result;
   }
 
-  private void getDescendants(List<AstNode> result, AstNodeType... nodeTypes) {
+  /**
+   * Same as {@link #getDescendants(AstNodeType...)}, but adds descendants to the given collection,
+   * so that it can be reused between invocations without allocation of new lists.
+   *
+   * @since 1.21
+   */
+  public void getDescendants(Collection<AstNode> result, AstNodeType... nodeTypes) {
+    for (int i = 0; i < children.size(); i++) {
+      children.get(i).collectDescendants(result, nodeTypes);
+    }
+  }
+
+  private void collectDescendants(Collection<AstNode> result, AstNodeType... nodeTypes) {
     for (AstNodeType nodeType : nodeTypes) {
-      if (is(nodeType)) {
+      // Don't use "is(nodeType)", because under the hood it will create an array of types
+      if (type == nodeType) {
         result.add(this);
       }
     }
-    if (hasChildren()) {
-      for (AstNode child : children) {
-        child.getDescendants(result, nodeTypes);
-      }
+    for (int i = 0; i < children.size(); i++) {
+      children.get(i).collectDescendants(result, nodeTypes);
     }
   }
 
+  /**
+   * Returns descendants of specified types in the same order as {@link #getDescendants(AstNodeType...)},
+   * but lazily, so that neither list of result, nor stack is allocated.
+   * Tree shouldn't be modified during iteration.
+   *
+   * @since 1.21
+   */
+  public Iterable<AstNode> descendants(final AstNodeType... nodeTypes) {
+    return new Iterable<AstNode>() {
+      @Override
+      public Iterator<AstNode> iterator() {
+        return new DescendantsIterator(AstNode.this, nodeTypes);
+      }
+    };
+  }
+
   /**
    * Returns the last child of this node.
    *
@@ -587,13 +614,15 @@ public class AstNode {
    * @since 1.17
    */
   public AstNode getFirstAncestor(AstNodeType nodeType) {
-    if (parent == null) {
-      return null;
-    } else if (parent.is(nodeType)) {
-      return parent;
-    } else {
-      return parent.getFirstAncestor(nodeType);
+    AstNode result = parent;
+    while (result != null) {
+      // Don't use "is(nodeType)", because under the hood it will create an array of types
+      if (result.type == nodeType) {
+        return result;
+      }
+      result = result.parent;
     }
+    return null;
   }
 
   /**
@@ -628,7 +657,13 @@ public class AstNode {
     return tokens;
   }
 
-  private void getTokens(List<Token> tokens) {
+  /**
+   * Same as {@link #getTokens()}, but adds tokens to the given collection,
+   * so that it can be reused between invocations without allocation of new lists.
+   *
+   * @since 1.21
+   */
+  public void getTokens(Collection<Token> tokens) {
     if (!hasChildren()) {
       if (token != null) {
         tokens.add(token);
@@ -677,4 +712,76 @@ public class AstNode {
     return AstSelectFactory.select(this);
   }
 
+  /**
+   * Traverses subtree in pre-order using links to parent and indexes of children instead of stack.
+   */
+  private static final class DescendantsIterator implements Iterator<AstNode> {
+
+    private final AstNode root;
+    private final AstNodeType[] nodeTypes;
+    private AstNode current;
+    private AstNode next;
+
+    DescendantsIterator(AstNode root, AstNodeType[] nodeTypes) {
+      this.root = root;
+      this.nodeTypes = nodeTypes;
+      this.current = root;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && current != null) {
+        current = following(current);
+        if (current != null && matches(current.type)) {
+          next = current;
+        }
+      }
+      return next != null;
+    }
+
+    private boolean matches(AstNodeType type) {
+      for (AstNodeType nodeType : nodeTypes) {
+        if (type == nodeType) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public AstNode next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      AstNode result = next;
+      next = null;
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return next node in pre-order within subtree of root, or null
+     */
+    private AstNode following(AstNode node) {
+      if (!node.children.isEmpty()) {
+        return node.children.get(0);
+      }
+      AstNode result = node;
+      while (result != root) {
+        List<AstNode> siblings = result.parent.children;
+        int nextIndex = result.childIndex + 1;
+        if (nextIndex < siblings.size()) {
+          return siblings.get(nextIndex);
+        }
+        result = result.parent;
+      }
+      return null;
+    }
+
+  }
+
 }
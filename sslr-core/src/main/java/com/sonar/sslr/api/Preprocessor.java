@@ -21,6 +21,8 @@ package com.sonar.sslr.api;
 
 import java.util.List;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * <p>
  * A preprocessor is a component which can alter the stream of Token and Trivia.<br />
@@ -110,4 +112,31 @@ public abstract class Preprocessor {
    */
   public abstract PreprocessorAction process(List<Token> tokens);
 
+  /**
+   * <p>
+   * Cursor-based alternative to {@link #process(List)}, which is called while there are remaining tokens, and each invocation must keep
+   * or consume at least one of them.
+   * Unlike {@link #process(List)}, single invocation can pass through or delete any number of tokens and inject any number of tokens,
+   * so that the whole stream can be processed in a single pass without creation of intermediate objects.
+   * </p>
+   *
+   * <p>
+   * Default implementation applies the {@link PreprocessorAction} returned by {@link #process(List)} for the current token.
+   * Preprocessors, which implement only this method, should extend {@link CursorPreprocessor}.
+   * </p>
+   *
+   * @since 1.21
+   */
+  public void process(PreprocessorCursor cursor) {
+    PreprocessorAction action = process(cursor.remainingTokens());
+    checkNotNull(action, "A preprocessor cannot return a null PreprocessorAction");
+
+    cursor.injectTrivia(action.getTriviaToInject());
+    cursor.consume(action.getNumberOfConsumedTokens());
+    cursor.inject(action.getTokensToInject());
+    if (action.getNumberOfConsumedTokens() == 0) {
+      cursor.keep(1);
+    }
+  }
+
 }
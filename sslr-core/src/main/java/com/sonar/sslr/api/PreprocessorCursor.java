@@ -0,0 +1,78 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.api;
+
+import java.util.List;
+
+/**
+ * Position of {@link Preprocessor} in the stream of tokens, see {@link Preprocessor#process(PreprocessorCursor)}.
+ * <p>
+ * Tokens before the cursor were already processed, tokens after the cursor are remaining.
+ * Each remaining token must be either kept or consumed, and any number of trivia and tokens can be injected in between.
+ * Trivia of consumed tokens and injected trivia are pending until the next token is kept or injected.
+ * </p>
+ *
+ * @since 1.21
+ */
+public interface PreprocessorCursor {
+
+  /**
+   * @return number of remaining tokens
+   */
+  int remaining();
+
+  /**
+   * Returns remaining token at given offset from the cursor without moving it.
+   *
+   * @throws IndexOutOfBoundsException if offset is not less than {@link #remaining()}
+   */
+  Token peek(int offset);
+
+  /**
+   * @return unmodifiable view of remaining tokens, which is valid until the cursor is moved
+   */
+  List<Token> remainingTokens();
+
+  /**
+   * Passes given number of remaining tokens unchanged. Pending trivia are added before the trivia of the first of them.
+   *
+   * @throws IllegalArgumentException if number is greater than {@link #remaining()}
+   */
+  void keep(int numberOfTokens);
+
+  /**
+   * Deletes given number of remaining tokens. Their trivia become pending.
+   *
+   * @throws IllegalArgumentException if number is greater than {@link #remaining()}
+   */
+  void consume(int numberOfTokens);
+
+  /**
+   * Adds given trivia to the pending ones.
+   */
+  void injectTrivia(List<Trivia> trivia);
+
+  /**
+   * Injects given tokens before the cursor, so that they are not seen by the preprocessor.
+   * Pending trivia, if any, are attached to the first of them instead of its own trivia, others are injected without trivia.
+   */
+  void inject(List<Token> tokens);
+
+}
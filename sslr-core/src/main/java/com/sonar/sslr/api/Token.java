@@ -61,6 +61,28 @@ public class Token {
     this.copyBookOriginalFileName = builder.copyBookOriginalFileName;
   }
 
+  /**
+   * Constructor for subclasses, which compute value and position of token on demand,
+   * and so must override all corresponding getters.
+   *
+   * <p>For internal use only.</p>
+   *
+   * @since 1.21
+   */
+  protected Token(TokenType type, List<Trivia> trivia) {
+    this.type = checkNotNull(type, "type cannot be null");
+    this.value = null;
+    this.originalValue = null;
+    this.line = 0;
+    this.column = -1;
+    this.uri = null;
+    this.generatedCode = false;
+    this.trivia = ImmutableList.copyOf(trivia);
+    this.copyBook = false;
+    this.copyBookOriginalLine = -1;
+    this.copyBookOriginalFileName = "";
+  }
+
   public TokenType getType() {
     return type;
   }
@@ -167,17 +189,17 @@ public class Token {
     }
 
     private Builder(Token token) {
-      type = token.type;
-      value = token.value;
-      originalValue = token.originalValue;
-      uri = token.uri;
-      line = token.line;
-      column = token.column;
-      trivia = token.trivia;
-      generatedCode = token.generatedCode;
-      copyBook = token.copyBook;
-      copyBookOriginalLine = token.copyBookOriginalLine;
-      copyBookOriginalFileName = token.copyBookOriginalFileName;
+      type = token.getType();
+      value = token.getValue();
+      originalValue = token.getOriginalValue();
+      uri = token.getURI();
+      line = token.getLine();
+      column = token.getColumn();
+      trivia = token.getTrivia();
+      generatedCode = token.isGeneratedCode();
+      copyBook = token.isCopyBook();
+      copyBookOriginalLine = token.getCopyBookOriginalLine();
+      copyBookOriginalFileName = token.getCopyBookOriginalFileName();
     }
 
     public Builder setType(TokenType type) {
@@ -0,0 +1,339 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.api;
+
+import java.net.URI;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compact storage of tokens of a single file.
+ * Instead of keeping {@link Token} objects, tokens are kept in parallel arrays of type identifier, start offset, length, line and column,
+ * so that values are sliced from the source code on demand and {@link URI} is shared by all tokens.
+ * Tokens, which can't be represented by a slice of source code (e.g. generated by preprocessors), are kept as is.
+ * <p>
+ * Parser can work directly on this storage, see {@link com.sonar.sslr.impl.Parser#parse(TokenStore)}.
+ * Views as {@link Token} are created only when requested by {@link #get(int)}, and then cached, so that the same instance is returned for same index.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see com.sonar.sslr.impl.Lexer#lexToStore(java.io.File)
+ * @since 1.21
+ */
+public final class TokenStore extends AbstractList<Token> implements TokenSink, RandomAccess {
+
+  private static final byte SLICE = 0;
+  private static final byte UPPER_CASE_SLICE = 1;
+  private static final byte OTHER = 2;
+
+  private final URI uri;
+  private final char[] source;
+  private final int[] lineStarts;
+
+  private final Map<TokenType, Integer> typeIds = new IdentityHashMap<TokenType, Integer>();
+  private TokenType[] typesById = new TokenType[16];
+
+  private int size;
+  private int[] types;
+  private int[] offsets;
+  private int[] lengths;
+  private int[] lines;
+  private int[] columns;
+  private byte[] kinds;
+
+  private final Map<Integer, List<Trivia>> trivia = new HashMap<Integer, List<Trivia>>();
+  private final Map<Integer, Token> others = new HashMap<Integer, Token>();
+
+  /**
+   * Tokens, which were already requested by {@link #get(int)}. Allocated on first request.
+   */
+  private Token[] materialized;
+
+  public TokenStore(URI uri, char[] source) {
+    checkNotNull(uri, "uri cannot be null");
+    checkNotNull(source, "source cannot be null");
+    this.uri = uri;
+    this.source = source;
+    this.lineStarts = computeLineStarts(source);
+    // roughly estimated number of tokens
+    int capacity = Math.max(16, source.length / 8);
+    types = new int[capacity];
+    offsets = new int[capacity];
+    lengths = new int[capacity];
+    lines = new int[capacity];
+    columns = new int[capacity];
+    kinds = new byte[capacity];
+  }
+
+  /**
+   * Lines are terminated in the same way as in {@link org.sonar.sslr.channel.CodeReader}.
+   */
+  private static int[] computeLineStarts(char[] source) {
+    int[] result = new int[16];
+    int count = 1;
+    for (int i = 0; i < source.length; i++) {
+      char c = source[i];
+      if (c == '\n' || c == '\r' && (i + 1 == source.length || source[i + 1] != '\n')) {
+        if (count == result.length) {
+          result = Arrays.copyOf(result, count * 2);
+        }
+        result[count] = i + 1;
+        count++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  @Override
+  public void accept(Token token) {
+    checkNotNull(token, "token cannot be null");
+    ensureCapacity(size + 1);
+
+    int index = size;
+    types[index] = typeId(token.getType());
+    lines[index] = token.getLine();
+    columns[index] = token.getColumn();
+
+    String originalValue = token.getOriginalValue();
+    int offset = offsetOf(token.getLine(), token.getColumn());
+    if (offset >= 0 && isRegular(token) && isSlice(originalValue, offset)) {
+      offsets[index] = offset;
+      lengths[index] = originalValue.length();
+      kinds[index] = kindOf(token.getValue(), originalValue);
+    } else {
+      offsets[index] = -1;
+      lengths[index] = token.getValue().length();
+      kinds[index] = OTHER;
+    }
+
+    if (kinds[index] == OTHER) {
+      others.put(index, token);
+    } else if (token.hasTrivia()) {
+      trivia.put(index, token.getTrivia());
+    }
+    size++;
+  }
+
+  private boolean isRegular(Token token) {
+    return !token.isGeneratedCode() && !token.isCopyBook() && (token.getURI() == uri || uri.equals(token.getURI()));
+  }
+
+  private int offsetOf(int line, int column) {
+    if (line < 1 || line > lineStarts.length || column < 0) {
+      return -1;
+    }
+    return lineStarts[line - 1] + column;
+  }
+
+  private boolean isSlice(String value, int offset) {
+    int length = value.length();
+    if (offset + length > source.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (source[offset + i] != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte kindOf(String value, String originalValue) {
+    if (value.equals(originalValue)) {
+      return SLICE;
+    }
+    if (value.length() != originalValue.length()) {
+      return OTHER;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != Character.toUpperCase(originalValue.charAt(i))) {
+        return OTHER;
+      }
+    }
+    return UPPER_CASE_SLICE;
+  }
+
+  private int typeId(TokenType type) {
+    Integer id = typeIds.get(type);
+    if (id == null) {
+      id = typeIds.size();
+      typeIds.put(type, id);
+      if (id == typesById.length) {
+        typesById = Arrays.copyOf(typesById, id * 2);
+      }
+      typesById[id] = type;
+    }
+    return id;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > types.length) {
+      int newCapacity = Math.max(capacity, types.length * 3 / 2 + 1);
+      types = Arrays.copyOf(types, newCapacity);
+      offsets = Arrays.copyOf(offsets, newCapacity);
+      lengths = Arrays.copyOf(lengths, newCapacity);
+      lines = Arrays.copyOf(lines, newCapacity);
+      columns = Arrays.copyOf(columns, newCapacity);
+      kinds = Arrays.copyOf(kinds, newCapacity);
+      if (materialized != null) {
+        materialized = Arrays.copyOf(materialized, newCapacity);
+      }
+    }
+  }
+
+  /**
+   * Releases unused capacity of arrays, e.g. after end of lexing.
+   */
+  public void trimToSize() {
+    types = Arrays.copyOf(types, size);
+    offsets = Arrays.copyOf(offsets, size);
+    lengths = Arrays.copyOf(lengths, size);
+    lines = Arrays.copyOf(lines, size);
+    columns = Arrays.copyOf(columns, size);
+    kinds = Arrays.copyOf(kinds, size);
+    if (materialized != null) {
+      materialized = Arrays.copyOf(materialized, size);
+    }
+  }
+
+  public URI getURI() {
+    return uri;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns view of token at given index, which is created on first request.
+   */
+  @Override
+  public Token get(int index) {
+    checkIndex(index);
+    if (materialized == null) {
+      materialized = new Token[types.length];
+    }
+    Token token = materialized[index];
+    if (token == null) {
+      token = materialize(index);
+      materialized[index] = token;
+    }
+    return token;
+  }
+
+  private Token materialize(int index) {
+    if (kinds[index] == OTHER) {
+      return others.get(index);
+    }
+    String originalValue = new String(source, offsets[index], lengths[index]);
+    String value = kinds[index] == UPPER_CASE_SLICE ? upperCase(originalValue) : originalValue;
+    Token.Builder builder = Token.builder()
+        .setType(typesById[types[index]])
+        .setValueAndOriginalValue(value, originalValue)
+        .setURI(uri)
+        .setLine(lines[index])
+        .setColumn(columns[index]);
+    List<Trivia> tokenTrivia = trivia.get(index);
+    if (tokenTrivia != null) {
+      builder.setTrivia(tokenTrivia);
+    }
+    return builder.build();
+  }
+
+  private static String upperCase(String value) {
+    char[] chars = new char[value.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toUpperCase(value.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  public TokenType getType(int index) {
+    checkIndex(index);
+    return typesById[types[index]];
+  }
+
+  /**
+   * Returns value of token at given index without creation of {@link Token}.
+   * Value is sliced from the source code, so new string is created on each call.
+   */
+  public String getValue(int index) {
+    checkIndex(index);
+    switch (kinds[index]) {
+      case SLICE:
+        return new String(source, offsets[index], lengths[index]);
+      case UPPER_CASE_SLICE:
+        return upperCase(new String(source, offsets[index], lengths[index]));
+      default:
+        return others.get(index).getValue();
+    }
+  }
+
+  /**
+   * Compares value of token at given index with given value without creation of strings.
+   */
+  public boolean valueEquals(int index, String value) {
+    checkIndex(index);
+    int length = lengths[index];
+    if (length != value.length()) {
+      return false;
+    }
+    byte kind = kinds[index];
+    if (kind == OTHER) {
+      return value.equals(others.get(index).getValue());
+    }
+    int offset = offsets[index];
+    for (int i = 0; i < length; i++) {
+      char c = source[offset + i];
+      if (kind == UPPER_CASE_SLICE) {
+        c = Character.toUpperCase(c);
+      }
+      if (c != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int getLine(int index) {
+    checkIndex(index);
+    return lines[index];
+  }
+
+  public int getColumn(int index) {
+    checkIndex(index);
+    return columns[index];
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+}
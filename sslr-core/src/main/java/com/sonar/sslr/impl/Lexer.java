@@ -20,17 +20,21 @@
 package com.sonar.sslr.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.sonar.sslr.api.Preprocessor;
-import com.sonar.sslr.api.PreprocessorAction;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenSink;
+import com.sonar.sslr.api.TokenStore;
 import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.channel.FusedChannel;
 import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.ChannelDispatcher;
 import org.sonar.sslr.channel.CodeReader;
 import org.sonar.sslr.channel.CodeReaderConfiguration;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
@@ -38,6 +42,8 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,11 +53,13 @@ import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 
 public class Lexer {
 
   private final Charset charset;
+  private final long memoryMappingThreshold;
   private final CodeReaderConfiguration configuration;
   private final ChannelDispatcher<Lexer> channelDispatcher;
   private final Preprocessor[] preprocessors;
@@ -59,15 +67,32 @@ public class Lexer {
   private URI uri;
   private final List<Trivia> trivia = new LinkedList<Trivia>();
   private List<Token> tokens = new ArrayList<Token>();
+  private TokenSink sink;
 
   private Lexer(Builder builder) {
     this.charset = builder.charset;
+    this.memoryMappingThreshold = builder.memoryMappingThreshold;
     this.preprocessors = builder.preprocessors.toArray(new Preprocessor[builder.preprocessors.size()]);
     this.configuration = builder.configuration;
     this.channelDispatcher = builder.getChannelDispatcher();
+    this.uri = defaultUri();
+  }
 
+  /**
+   * Creates lexer, which uses own copy of given dispatcher and so own copies of channels.
+   */
+  Lexer(Charset charset, CodeReaderConfiguration configuration, ChannelDispatcher<Lexer> channelDispatcher, long memoryMappingThreshold) {
+    this.charset = charset;
+    this.memoryMappingThreshold = memoryMappingThreshold;
+    this.preprocessors = new Preprocessor[0];
+    this.configuration = configuration;
+    this.channelDispatcher = channelDispatcher.copy();
+    this.uri = defaultUri();
+  }
+
+  private static URI defaultUri() {
     try {
-      this.uri = new URI("tests://unittest");
+      return new URI("tests://unittest");
     } catch (URISyntaxException e) {
       // Can't happen
       throw new IllegalStateException(e);
@@ -78,10 +103,26 @@ public class Lexer {
     checkNotNull(file, "file cannot be null");
     checkArgument(file.isFile(), "file \"%s\" must be a file", file.getAbsolutePath());
 
+    if (file.length() < memoryMappingThreshold) {
+      try {
+        return lex(file.toURI().toURL());
+      } catch (MalformedURLException e) {
+        throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
+      }
+    }
+
+    FileInputStream inputStream = null;
     try {
-      return lex(file.toURI().toURL());
-    } catch (MalformedURLException e) {
+      this.uri = file.toURI();
+
+      inputStream = new FileInputStream(file);
+      FileChannel channel = inputStream.getChannel();
+      // code is decoded directly from mapped memory, without intermediate copies
+      return lex(new CodeReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), charset, configuration));
+    } catch (Exception e) {
       throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(inputStream);
     }
   }
 
@@ -119,20 +160,15 @@ public class Lexer {
   }
 
   private List<Token> lex(Reader reader) {
+    return lex(new CodeReader(reader, configuration));
+  }
+
+  private List<Token> lex(CodeReader code) {
     tokens = new ArrayList<>();
 
     initPreprocessors();
-    CodeReader code = new CodeReader(reader, configuration);
     try {
-      channelDispatcher.consume(code, this);
-
-      addToken(Token.builder()
-        .setType(EOF)
-        .setValueAndOriginalValue("EOF")
-        .setURI(uri)
-        .setLine(code.getLinePosition())
-        .setColumn(code.getColumnPosition())
-        .build());
+      consume(code);
 
       preprocess();
 
@@ -143,40 +179,147 @@ public class Lexer {
     }
   }
 
-  private void preprocess() {
-    for (Preprocessor preprocessor : preprocessors) {
-      preprocess(preprocessor);
+  /**
+   * Lexes file into compact {@link TokenStore}, so that values of tokens are not retained as strings,
+   * but sliced from the source code on demand.
+   *
+   * @since 1.21
+   */
+  public TokenStore lexToStore(File file) {
+    checkNotNull(file, "file cannot be null");
+    checkArgument(file.isFile(), "file \"%s\" must be a file", file.getAbsolutePath());
+
+    FileInputStream inputStream = null;
+    try {
+      this.uri = file.toURI();
+
+      inputStream = new FileInputStream(file);
+      FileChannel channel = inputStream.getChannel();
+      ByteBuffer code = channel.size() < memoryMappingThreshold
+        ? ByteBuffer.wrap(ByteStreams.toByteArray(inputStream))
+        : channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      // code is decoded directly into array of characters, which is shared with store
+      return lexToStore(new CodeReader(code, charset, configuration));
+    } catch (Exception e) {
+      throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(inputStream);
     }
   }
 
-  private void preprocess(Preprocessor preprocessor) {
-    List<Token> remainingTokens = Collections.unmodifiableList(new ArrayList<Token>(tokens));
-    tokens.clear();
-
-    int i = 0;
-    while (i < remainingTokens.size()) {
-      PreprocessorAction action = preprocessor.process(remainingTokens.subList(i, remainingTokens.size()));
-      checkNotNull(action, "A preprocessor cannot return a null PreprocessorAction");
+  /**
+   * Do not use this method, it is intended for internal unit testing only
+   *
+   * @since 1.21
+   */
+  @VisibleForTesting
+  public TokenStore lexToStore(String sourceCode) {
+    checkNotNull(sourceCode, "sourceCode cannot be null");
 
-      addTrivia(action.getTriviaToInject());
+    try {
+      return lexToStore(new CodeReader(sourceCode, configuration));
+    } catch (Exception e) {
+      throw new LexerException("Unable to lex string source code \"" + sourceCode + "\"", e);
+    }
+  }
 
-      for (int j = 0; j < action.getNumberOfConsumedTokens(); j++) {
-        Token removedToken = remainingTokens.get(i);
-        i++;
-        addTrivia(removedToken.getTrivia());
+  private TokenStore lexToStore(CodeReader code) {
+    TokenStore store = new TokenStore(uri, code.getCode());
+    if (preprocessors.length > 0) {
+      // preprocessors operate on list of tokens
+      for (Token token : lex(code)) {
+        store.accept(token);
       }
-
-      for (Token tokenToInject : action.getTokensToInject()) {
-        addToken(tokenToInject);
+    } else {
+      tokens = new ArrayList<>();
+      this.sink = store;
+      try {
+        consume(code);
+      } catch (Exception e) {
+        throw new LexerException("Unable to lex source code at line : " + code.getLinePosition() + " and column : "
+          + code.getColumnPosition() + " in file : " + uri, e);
+      } finally {
+        this.sink = null;
       }
+    }
+    store.trimToSize();
+    return store;
+  }
 
-      if (action.getNumberOfConsumedTokens() == 0) {
-        Token removedToken = remainingTokens.get(i);
-        i++;
-        addTrivia(removedToken.getTrivia());
-        addToken(removedToken);
-      }
+  /**
+   * Lexes file in streaming mode, see {@link #lex(Reader, TokenSink)}.
+   *
+   * @since 1.21
+   */
+  public void lex(File file, TokenSink sink) {
+    checkNotNull(file, "file cannot be null");
+    checkArgument(file.isFile(), "file \"%s\" must be a file", file.getAbsolutePath());
+
+    InputStreamReader reader = null;
+    try {
+      this.uri = file.toURI();
+
+      reader = new InputStreamReader(new FileInputStream(file), charset);
+      lex(reader, sink);
+    } catch (Exception e) {
+      throw new LexerException("Unable to lex file: " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Lexes code in streaming mode: code is read by chunks and tokens are passed to sink as soon as they are produced,
+   * so that neither whole code, nor list of tokens are kept in memory.
+   * Regular expressions of channels see at most {@link CodeReaderConfiguration#getLookahead()} characters.
+   * Preprocessors are not supported in this mode, because they operate on list of tokens.
+   *
+   * @since 1.21
+   */
+  public void lex(Reader reader, TokenSink sink) {
+    checkNotNull(reader, "reader cannot be null");
+    checkNotNull(sink, "sink cannot be null");
+    checkState(preprocessors.length == 0, "Preprocessors are not supported in streaming mode");
+
+    tokens = new ArrayList<>();
+    this.sink = sink;
+    CodeReader code = CodeReader.streaming(reader, configuration);
+    try {
+      consume(code);
+    } catch (Exception e) {
+      throw new LexerException("Unable to lex source code at line : " + code.getLinePosition() + " and column : "
+        + code.getColumnPosition() + " in file : " + uri, e);
+    } finally {
+      this.sink = null;
+    }
+  }
+
+  private void consume(CodeReader code) {
+    channelDispatcher.consume(code, this);
+
+    addToken(Token.builder()
+      .setType(EOF)
+      .setValueAndOriginalValue("EOF")
+      .setURI(uri)
+      .setLine(code.getLinePosition())
+      .setColumn(code.getColumnPosition())
+      .build());
+  }
+
+  private void preprocess() {
+    for (Preprocessor preprocessor : preprocessors) {
+      preprocess(preprocessor);
+    }
+  }
+
+  private void preprocess(Preprocessor preprocessor) {
+    TokenCursor cursor = new TokenCursor(tokens, trivia);
+    while (cursor.remaining() > 0) {
+      int remaining = cursor.remaining();
+      preprocessor.process(cursor);
+      checkState(cursor.remaining() < remaining, "A preprocessor must keep or consume at least one token");
     }
+    tokens = cursor.getOutput();
   }
 
   private void initPreprocessors() {
@@ -209,6 +352,14 @@ public class Lexer {
       trivia.clear();
     }
 
+    if (sink != null) {
+      sink.accept(firstTokenWithTrivia);
+      for (int i = 1; i < tokens.length; i++) {
+        sink.accept(tokens[i]);
+      }
+      return;
+    }
+
     this.tokens.add(firstTokenWithTrivia);
     if (tokens.length > 1) {
       this.tokens.addAll(Arrays.asList(tokens).subList(1, tokens.length));
@@ -223,6 +374,11 @@ public class Lexer {
     return uri;
   }
 
+  @VisibleForTesting
+  long getMemoryMappingThreshold() {
+    return memoryMappingThreshold;
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -230,10 +386,13 @@ public class Lexer {
   public static final class Builder {
 
     private Charset charset = Charset.defaultCharset();
+    private long memoryMappingThreshold = Long.MAX_VALUE;
     private final List<Preprocessor> preprocessors = new ArrayList<Preprocessor>();
     private final CodeReaderConfiguration configuration = new CodeReaderConfiguration();
     private final List<Channel<Lexer>> channels = new ArrayList<Channel<Lexer>>();
     private boolean failIfNoChannelToConsumeOneCharacter = false;
+    private boolean fusedChannels = false;
+    private boolean dispatchByFirstCharacter = false;
 
     private Builder() {
     }
@@ -242,11 +401,47 @@ public class Lexer {
       return new Lexer(this);
     }
 
+    /**
+     * Builds immutable definition of lexer, which can be shared between threads.
+     * Channels must support {@link Channel#copy()}, because each lexer created from definition uses its own copies of them.
+     *
+     * @throws IllegalStateException if preprocessors were added, because they have mutable state,
+     * or if {@link Channel#copy()} of some channel doesn't return new instance of its class
+     * @since 1.21
+     */
+    public LexerDefinition buildDefinition() {
+      checkState(preprocessors.isEmpty(), "Preprocessors are not supported by lexer definition");
+      for (Channel<Lexer> channel : channels) {
+        checkCopy(channel);
+      }
+      return new LexerDefinition(charset, configuration.cloneWithoutCodeReaderFilters(), getChannelDispatcher(), memoryMappingThreshold);
+    }
+
+    private static void checkCopy(Channel<Lexer> channel) {
+      Channel<Lexer> copy = channel.copy();
+      checkState(copy != null && copy.getClass() == channel.getClass(),
+        "Copy of channel must be an instance of " + channel.getClass().getName() + ", so copy() must be overridden");
+      checkState(copy != channel,
+        "Copy of channel " + channel.getClass().getName() + " must be a new instance, so copy() must be overridden");
+    }
+
     public Builder withCharset(Charset charset) {
       this.charset = charset;
       return this;
     }
 
+    /**
+     * Files, which are not smaller than given number of bytes, are memory-mapped by {@link Lexer#lex(File)}
+     * and decoded directly from mapped memory. By default files are never mapped.
+     *
+     * @since 1.21
+     */
+    public Builder withMemoryMappingThreshold(long memoryMappingThreshold) {
+      checkArgument(memoryMappingThreshold >= 0, "memoryMappingThreshold must be non-negative");
+      this.memoryMappingThreshold = memoryMappingThreshold;
+      return this;
+    }
+
     public Builder withPreprocessor(Preprocessor preprocessor) {
       preprocessors.add(preprocessor);
       return this;
@@ -257,18 +452,56 @@ public class Lexer {
       return this;
     }
 
+    /**
+     * @see CodeReaderConfiguration#setLookahead(int)
+     * @since 1.21
+     */
+    public Builder withLookahead(int lookahead) {
+      configuration.setLookahead(lookahead);
+      return this;
+    }
+
     public Builder withFailIfNoChannelToConsumeOneCharacter(boolean failIfNoChannelToConsumeOneCharacter) {
       this.failIfNoChannelToConsumeOneCharacter = failIfNoChannelToConsumeOneCharacter;
       return this;
     }
 
+    /**
+     * If this option is activated, then consecutive channels based on regular expressions, punctuators and keywords
+     * are fused into single deterministic automaton, which tries them all in one pass over characters,
+     * while preserving priority of channels. Channels, which can't be fused, are tried one by one as usual.
+     *
+     * @see FusedChannel
+     * @since 1.21
+     */
+    public Builder withFusedChannels(boolean fusedChannels) {
+      this.fusedChannels = fusedChannels;
+      return this;
+    }
+
+    /**
+     * If this option is activated, then channels, which can't consume next character, are not tried.
+     * Should be activated only when all channels are consistent in this regard, which is the case for channels provided by SSLR.
+     *
+     * @see ChannelDispatcher.Builder#dispatchByFirstCharacter()
+     * @since 1.21
+     */
+    public Builder withDispatchByFirstCharacter(boolean dispatchByFirstCharacter) {
+      this.dispatchByFirstCharacter = dispatchByFirstCharacter;
+      return this;
+    }
+
     private ChannelDispatcher<Lexer> getChannelDispatcher() {
+      List<Channel<Lexer>> dispatchedChannels = fusedChannels ? FusedChannel.fuse(channels) : channels;
       ChannelDispatcher.Builder builder = ChannelDispatcher.builder()
-        .addChannels(channels.toArray(new Channel[channels.size()]));
+        .addChannels(dispatchedChannels.toArray(new Channel[dispatchedChannels.size()]));
 
       if (failIfNoChannelToConsumeOneCharacter) {
         builder.failIfNoChannelToConsumeOneCharacter();
       }
+      if (dispatchByFirstCharacter) {
+        builder.dispatchByFirstCharacter();
+      }
 
       return builder.build();
     }
@@ -0,0 +1,127 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.Token;
+import org.sonar.sslr.channel.ChannelDispatcher;
+import org.sonar.sslr.channel.CodeReaderConfiguration;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Immutable and thread-safe definition of lexer: charset, configuration, channels and threshold of memory-mapping.
+ * Unlike {@link Lexer}, which holds state of lexing, definition can be shared between threads,
+ * and each thread lexes with its own {@link Lexer} created by {@link #newLexer()}, which is cheap,
+ * because compiled regular expressions, automatons and tables of keywords are shared by copies of channels.
+ *
+ * @see Lexer.Builder#buildDefinition()
+ * @since 1.21
+ */
+public final class LexerDefinition {
+
+  private final Charset charset;
+  private final CodeReaderConfiguration configuration;
+  private final ChannelDispatcher<Lexer> channelDispatcher;
+  private final long memoryMappingThreshold;
+
+  LexerDefinition(Charset charset, CodeReaderConfiguration configuration, ChannelDispatcher<Lexer> channelDispatcher, long memoryMappingThreshold) {
+    this.charset = charset;
+    this.configuration = configuration;
+    this.channelDispatcher = channelDispatcher;
+    this.memoryMappingThreshold = memoryMappingThreshold;
+  }
+
+  /**
+   * Creates new lexer, which must not be used by several threads at the same time.
+   */
+  public Lexer newLexer() {
+    return new Lexer(charset, configuration, channelDispatcher, memoryMappingThreshold);
+  }
+
+  /**
+   * Lexes given file by new lexer.
+   *
+   * @see Lexer#lex(File)
+   */
+  public List<Token> lex(File file) {
+    return newLexer().lex(file);
+  }
+
+  /**
+   * Lexes given files concurrently by tasks submitted to given executor, each file by new lexer.
+   * If lexing of some file fails, then lexing of others is cancelled and exception is rethrown.
+   *
+   * @return tokens of each file in iteration order of given collection
+   * @throws LexerException if lexing of some file fails or current thread is interrupted
+   */
+  public Map<File, List<Token>> lexAll(Collection<File> files, Executor executor) {
+    checkNotNull(files, "files cannot be null");
+    checkNotNull(executor, "executor cannot be null");
+
+    Map<File, FutureTask<List<Token>>> tasks = Maps.newLinkedHashMap();
+    for (final File file : files) {
+      if (tasks.containsKey(file)) {
+        continue;
+      }
+      FutureTask<List<Token>> task = new FutureTask<List<Token>>(new Callable<List<Token>>() {
+        @Override
+        public List<Token> call() {
+          return lex(file);
+        }
+      });
+      tasks.put(file, task);
+      executor.execute(task);
+    }
+
+    Map<File, List<Token>> result = Maps.newLinkedHashMap();
+    try {
+      for (Map.Entry<File, FutureTask<List<Token>>> task : tasks.entrySet()) {
+        result.put(task.getKey(), task.getValue().get());
+      }
+    } catch (InterruptedException e) {
+      cancel(tasks.values());
+      Thread.currentThread().interrupt();
+      throw new LexerException("Interrupted while lexing files", e);
+    } catch (ExecutionException e) {
+      cancel(tasks.values());
+      throw Throwables.propagate(e.getCause());
+    }
+    return result;
+  }
+
+  private static void cancel(Collection<FutureTask<List<Token>>> tasks) {
+    for (FutureTask<List<Token>> task : tasks) {
+      task.cancel(true);
+    }
+  }
+
+}
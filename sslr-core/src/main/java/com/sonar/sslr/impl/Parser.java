@@ -19,23 +19,32 @@
  */
 package com.sonar.sslr.impl;
 
+import com.google.common.base.Preconditions;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.RecognitionExceptionListener;
 import com.sonar.sslr.api.Rule;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenStore;
 import com.sonar.sslr.impl.events.ExtendedStackTrace;
 import com.sonar.sslr.impl.events.ParsingEventListener;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.grammar.MemoizationProfile;
 import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
-import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.CompiledGrammarSerializer;
 import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MemoTable;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
 import org.sonar.sslr.parser.ParserAdapter;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -49,6 +58,11 @@ public class Parser<G extends Grammar> {
   private final Lexer lexer;
   private final G grammar;
 
+  private CompiledGrammar compiledGrammar;
+  private Machine machine;
+  private MemoizationProfile memoizationProfile;
+  private int memoSlots = MemoTable.DEFAULT_SLOTS;
+
   /**
    * @since 1.16
    */
@@ -82,9 +96,89 @@ public class Parser<G extends Grammar> {
   }
 
   public AstNode parse(List<Token> tokens) {
-    // TODO can be compiled only once
-    CompiledGrammar g = MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule);
-    return LexerfulAstCreator.create(Machine.parse(tokens, g), tokens);
+    return LexerfulAstCreator.getAstNode(getMachine().parse(tokens, LexerfulAstCreator.nodeFactory(tokens)));
+  }
+
+  /**
+   * Parses tokens directly from compact store, see {@link Lexer#lexToStore(File)}.
+   *
+   * @since 1.21
+   */
+  public AstNode parse(TokenStore tokens) {
+    return LexerfulAstCreator.getAstNode(getMachine().parse(tokens, LexerfulAstCreator.nodeFactory(tokens)));
+  }
+
+  /**
+   * Grammar is compiled only once and recompiled only if root rule was changed
+   * or if grammar was overridden after compilation.
+   * Machine is reused between parses of the same compiled grammar.
+   */
+  private Machine getMachine() {
+    CompiledGrammar grammar = getCompiledGrammar();
+    if (machine == null) {
+      machine = new Machine(grammar, memoSlots, memoizationProfile);
+    }
+    return machine;
+  }
+
+  private CompiledGrammar getCompiledGrammar() {
+    if (compiledGrammar == null || compiledGrammar.isOutdated()) {
+      compiledGrammar = MutableGrammarCompiler.compile(rootRule);
+      machine = null;
+    }
+    return compiledGrammar;
+  }
+
+  /**
+   * Loads grammar of current root rule, which was compiled in advance and written by {@link #writeCompiledGrammar(OutputStream)},
+   * what is faster than compilation. Grammar is compiled as usual, if given input was written for another version of grammar.
+   *
+   * @throws IOException if input can't be read or is malformed
+   * @since 1.21
+   * @see org.sonar.sslr.parser.ParseRunner#ParseRunner(Rule, InputStream)
+   */
+  public void loadCompiledGrammar(InputStream input) throws IOException {
+    CompiledGrammar loaded = CompiledGrammarSerializer.read(rootRule, Preconditions.checkNotNull(input, "input"));
+    if (loaded != null) {
+      compiledGrammar = loaded;
+      machine = null;
+    }
+  }
+
+  /**
+   * Writes compiled grammar of current root rule, so that it can be loaded by {@link #loadCompiledGrammar(InputStream)}.
+   * Usually should be done during build of a language plugin.
+   *
+   * @since 1.21
+   */
+  public void writeCompiledGrammar(OutputStream output) throws IOException {
+    CompiledGrammarSerializer.write(getCompiledGrammar(), output);
+  }
+
+  /**
+   * Enables recording of statistics of memoization into given profile during subsequent parses,
+   * or disables it if profile is null.
+   * While enabled, results of all rules are memoized.
+   *
+   * @since 1.21
+   * @see org.sonar.sslr.grammar.LexerfulGrammarBuilder#buildWithMemoizationProfile(MemoizationProfile)
+   */
+  public void setMemoizationProfile(@Nullable MemoizationProfile memoizationProfile) {
+    this.memoizationProfile = memoizationProfile;
+    this.machine = null;
+  }
+
+  /**
+   * Sets maximal number of memoized results of rules per token, which is 1 by default.
+   * Grammars, where several memoized rules often start at the same token, may benefit from more slots,
+   * but memory consumed by memoization grows proportionally.
+   *
+   * @since 1.21
+   */
+  public void setMemoSlots(int memoSlots) {
+    Preconditions.checkArgument(memoSlots > 0, "Number of slots must be positive: %s", memoSlots);
+    this.memoSlots = memoSlots;
+    this.machine = null;
   }
 
   public G getGrammar() {
@@ -97,6 +191,7 @@ public class Parser<G extends Grammar> {
 
   public void setRootRule(Rule rootRule) {
     this.rootRule = (RuleDefinition) rootRule;
+    this.compiledGrammar = null;
   }
 
   public static <G extends Grammar> Builder<G> builder(G grammar) {
@@ -0,0 +1,129 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.PreprocessorCursor;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Single pass of preprocessor over list of tokens: kept and injected tokens are appended to the output,
+ * so that neither input is copied, nor tokens are rebuilt unless there are pending trivia.
+ */
+final class TokenCursor implements PreprocessorCursor {
+
+  private final List<Token> input;
+  private final List<Token> unmodifiableInput;
+  private final List<Token> output;
+  private final List<Trivia> pendingTrivia;
+  private int index = 0;
+
+  /**
+   * @param pendingTrivia list of pending trivia, which is modified by this cursor
+   */
+  TokenCursor(List<Token> input, List<Trivia> pendingTrivia) {
+    this.input = input;
+    this.unmodifiableInput = Collections.unmodifiableList(input);
+    this.output = new ArrayList<Token>(input.size());
+    this.pendingTrivia = pendingTrivia;
+  }
+
+  List<Token> getOutput() {
+    return output;
+  }
+
+  @Override
+  public int remaining() {
+    return input.size() - index;
+  }
+
+  @Override
+  public Token peek(int offset) {
+    if (offset < 0 || offset >= remaining()) {
+      throw new IndexOutOfBoundsException("Offset: " + offset + ", Remaining: " + remaining());
+    }
+    return input.get(index + offset);
+  }
+
+  @Override
+  public List<Token> remainingTokens() {
+    return unmodifiableInput.subList(index, input.size());
+  }
+
+  @Override
+  public void keep(int numberOfTokens) {
+    checkNumberOfTokens(numberOfTokens);
+    if (numberOfTokens == 0) {
+      return;
+    }
+
+    Token first = input.get(index);
+    if (pendingTrivia.isEmpty()) {
+      output.add(first);
+    } else {
+      pendingTrivia.addAll(first.getTrivia());
+      output.add(Token.builder(first).setTrivia(pendingTrivia).build());
+      pendingTrivia.clear();
+    }
+    output.addAll(input.subList(index + 1, index + numberOfTokens));
+    index += numberOfTokens;
+  }
+
+  @Override
+  public void consume(int numberOfTokens) {
+    checkNumberOfTokens(numberOfTokens);
+    for (int i = index; i < index + numberOfTokens; i++) {
+      pendingTrivia.addAll(input.get(i).getTrivia());
+    }
+    index += numberOfTokens;
+  }
+
+  @Override
+  public void injectTrivia(List<Trivia> trivia) {
+    checkNotNull(trivia, "trivia cannot be null");
+    pendingTrivia.addAll(trivia);
+  }
+
+  @Override
+  public void inject(List<Token> tokens) {
+    checkNotNull(tokens, "tokens cannot be null");
+    for (Token token : tokens) {
+      if (pendingTrivia.isEmpty() && !token.hasTrivia()) {
+        output.add(token);
+      } else {
+        output.add(Token.builder(token).setTrivia(pendingTrivia).build());
+        pendingTrivia.clear();
+      }
+    }
+  }
+
+  private void checkNumberOfTokens(int numberOfTokens) {
+    checkArgument(numberOfTokens >= 0 && numberOfTokens <= remaining(),
+        "numberOfTokens(%s) must be between 0 and number of remaining tokens(%s)", numberOfTokens, remaining());
+  }
+
+}
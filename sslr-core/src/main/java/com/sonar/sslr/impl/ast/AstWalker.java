@@ -23,13 +23,17 @@ import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
 import com.sonar.sslr.api.AstVisitor;
+import com.sonar.sslr.api.ThreadSafeVisitor;
 import com.sonar.sslr.api.Token;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public final class AstWalker {
 
@@ -37,6 +41,8 @@ public final class AstWalker {
   private final List<AstVisitor> visitors = new ArrayList<AstVisitor>();
   private AstAndTokenVisitor[] astAndTokenVisitors = new AstAndTokenVisitor[0];
   private Token lastVisitedToken = null;
+  private List<AstWalker> groups = null;
+  private int groupsParallelism;
 
   public AstWalker(AstVisitor... visitors) {
     this(Arrays.asList(visitors));
@@ -50,6 +56,7 @@ public final class AstWalker {
 
   public void addVisitor(AstVisitor visitor) {
     visitors.add(visitor);
+    groups = null;
     for (AstNodeType type : visitor.getAstNodeTypesToVisit()) {
       List<AstVisitor> visitorsByType = getAstVisitors(type);
       visitorsByType.add(visitor);
@@ -72,6 +79,78 @@ public final class AstWalker {
     }
   }
 
+  /**
+   * Same as {@link #walkAndVisit(AstNode)}, but visitors annotated with {@link ThreadSafeVisitor} are partitioned
+   * into as many groups as the parallelism level of given pool, and each group walks the tree in a separate task of this pool.
+   * All other visitors walk the tree together in one more task, in the order of their registration.
+   * Order of calls between visitors of different groups is not defined, and tree must not be modified by visitors.
+   *
+   * @since 1.21
+   */
+  public void walkAndVisit(AstNode ast, ForkJoinPool pool) {
+    List<AstWalker> walkers = getGroups(pool.getParallelism());
+    if (walkers.size() <= 1) {
+      walkAndVisit(ast);
+    } else {
+      pool.invoke(new WalkTask(walkers, ast));
+    }
+  }
+
+  private List<AstWalker> getGroups(int parallelism) {
+    if (groups == null || groupsParallelism != parallelism) {
+      List<AstVisitor> sequentialVisitors = new ArrayList<AstVisitor>();
+      List<List<AstVisitor>> concurrentVisitors = new ArrayList<List<AstVisitor>>();
+      int concurrent = 0;
+      for (AstVisitor visitor : visitors) {
+        if (visitor.getClass().isAnnotationPresent(ThreadSafeVisitor.class)) {
+          if (concurrent < parallelism) {
+            concurrentVisitors.add(new ArrayList<AstVisitor>());
+          }
+          concurrentVisitors.get(concurrent % parallelism).add(visitor);
+          concurrent++;
+        } else {
+          sequentialVisitors.add(visitor);
+        }
+      }
+      groups = new ArrayList<AstWalker>();
+      if (!sequentialVisitors.isEmpty()) {
+        groups.add(new AstWalker(sequentialVisitors));
+      }
+      for (List<AstVisitor> group : concurrentVisitors) {
+        groups.add(new AstWalker(group));
+      }
+      groupsParallelism = parallelism;
+    }
+    return groups;
+  }
+
+  private static final class WalkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<AstWalker> walkers;
+    private final transient AstNode ast;
+
+    WalkTask(List<AstWalker> walkers, AstNode ast) {
+      this.walkers = walkers;
+      this.ast = ast;
+    }
+
+    @Override
+    protected void compute() {
+      if (walkers.size() == 1) {
+        walkers.get(0).walkAndVisit(ast);
+      } else {
+        List<WalkTask> tasks = new ArrayList<WalkTask>(walkers.size());
+        for (AstWalker walker : walkers) {
+          tasks.add(new WalkTask(Collections.singletonList(walker), ast));
+        }
+        invokeAll(tasks);
+      }
+    }
+
+  }
+
   /**
    * @deprecated in 1.18, use {@link #walkAndVisit(AstNode)} instead
    */
@@ -47,11 +47,39 @@ public class BlackHoleChannel extends Channel<Lexer> {
     matcher = Pattern.compile(regexp).matcher("");
   }
 
+  private BlackHoleChannel(BlackHoleChannel prototype) {
+    matcher = prototype.matcher.pattern().matcher("");
+  }
+
+  /**
+   * @since 1.21
+   */
+  @Override
+  public BlackHoleChannel copy() {
+    return new BlackHoleChannel(this);
+  }
+
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return canStartMatch(matcher.pattern(), firstChar);
+  }
+
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     return code.popTo(matcher, EmptyAppendable.INSTANCE) != -1;
   }
 
+  /**
+   * Consumes given number of characters, which are known to match regular expression.
+   */
+  void consume(CodeReader code, Lexer lexer, int length) {
+    code.pop(length, EmptyAppendable.INSTANCE);
+  }
+
+  String getRegexp() {
+    return matcher.pattern().pattern();
+  }
+
   private static class EmptyAppendable implements Appendable {
 
     private static final Appendable INSTANCE = new EmptyAppendable();
@@ -33,6 +33,11 @@ public class BomCharacterChannel extends Channel<Lexer> {
 
   public static final int BOM_CHAR = '\uFEFF';
 
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return firstChar == BOM_CHAR;
+  }
+
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     if (code.peek() == BOM_CHAR) {
@@ -42,4 +47,12 @@ public class BomCharacterChannel extends Channel<Lexer> {
     return false;
   }
 
+  /**
+   * @since 1.21
+   */
+  @Override
+  public BomCharacterChannel copy() {
+    return new BomCharacterChannel();
+  }
+
 }
@@ -0,0 +1,208 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableMap;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.Arrays;
+
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+
+/**
+ * Creates identifiers and keywords from characters, first of which matches identifierStart and others match identifierPart.
+ * Unlike {@link IdentifierAndKeywordChannel} does not use regular expression, looks up keywords without creation of Strings
+ * and reuses Strings of identifiers, which were already seen.
+ *
+ * @since 1.21
+ */
+public class CharMatcherIdentifierAndKeywordChannel extends Channel<Lexer> {
+
+  private static final int INITIAL_BUFFER_SIZE = 64;
+
+  private final CharMatcher identifierStart;
+  private final CharMatcher identifierPart;
+  private final boolean caseSensitive;
+  /**
+   * Whether {@link String#toUpperCase()} in default locale maps ASCII letters to ASCII letters.
+   */
+  private final boolean asciiUpperCase;
+  private final KeywordTable keywords;
+  private final StringTable strings = new StringTable();
+  private final Token.Builder tokenBuilder = Token.builder();
+  private char[] chars = new char[INITIAL_BUFFER_SIZE];
+  private char[] upperCaseChars = new char[INITIAL_BUFFER_SIZE];
+
+  public CharMatcherIdentifierAndKeywordChannel(CharMatcher identifierStart, CharMatcher identifierPart, boolean caseSensitive,
+    TokenType[]... keywordSets) {
+    ImmutableMap.Builder<String, TokenType> keywordsMapBuilder = ImmutableMap.builder();
+    for (TokenType[] keywords : keywordSets) {
+      for (TokenType keyword : keywords) {
+        String keywordValue = caseSensitive ? keyword.getValue() : keyword.getValue().toUpperCase();
+        keywordsMapBuilder.put(keywordValue, keyword);
+      }
+    }
+    this.keywords = new KeywordTable(keywordsMapBuilder.build());
+    this.identifierStart = identifierStart.precomputed();
+    this.identifierPart = identifierPart.precomputed();
+    this.caseSensitive = caseSensitive;
+    this.asciiUpperCase = "abcdefghijklmnopqrstuvwxyz".toUpperCase().equals("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+  }
+
+  private CharMatcherIdentifierAndKeywordChannel(CharMatcherIdentifierAndKeywordChannel prototype) {
+    this.keywords = prototype.keywords;
+    this.identifierStart = prototype.identifierStart;
+    this.identifierPart = prototype.identifierPart;
+    this.caseSensitive = prototype.caseSensitive;
+    this.asciiUpperCase = prototype.asciiUpperCase;
+  }
+
+  /**
+   * Creates channel, which shares keywords with this one, but not Strings of identifiers.
+   *
+   * @since 1.21
+   */
+  @Override
+  public CharMatcherIdentifierAndKeywordChannel copy() {
+    return new CharMatcherIdentifierAndKeywordChannel(this);
+  }
+
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return identifierStart.matches(firstChar);
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    int available = code.length();
+    if (available == 0 || !identifierStart.matches(code.charAt(0))) {
+      return false;
+    }
+
+    int length = 0;
+    int hash = 0;
+    boolean ascii = true;
+    char c = code.charAt(0);
+    do {
+      if (length == chars.length) {
+        chars = Arrays.copyOf(chars, length * 2);
+      }
+      chars[length] = c;
+      length++;
+      hash = 31 * hash + c;
+      ascii &= c < 128;
+    } while (length < available && identifierPart.matches(c = code.charAt(length)));
+    addToken(code, lexer, length, hash, ascii);
+    return true;
+  }
+
+  /**
+   * Consumes given number of characters, which are known to form identifier or keyword.
+   */
+  void consume(CodeReader code, Lexer lexer, int length) {
+    if (chars.length < length) {
+      chars = new char[Math.max(length, chars.length * 2)];
+    }
+    int hash = 0;
+    boolean ascii = true;
+    for (int i = 0; i < length; i++) {
+      char c = code.charAt(i);
+      chars[i] = c;
+      hash = 31 * hash + c;
+      ascii &= c < 128;
+    }
+    addToken(code, lexer, length, hash, ascii);
+  }
+
+  CharMatcher getIdentifierStart() {
+    return identifierStart;
+  }
+
+  CharMatcher getIdentifierPart() {
+    return identifierPart;
+  }
+
+  /**
+   * Creates token from first given number of characters of {@link #chars} and consumes them.
+   */
+  private void addToken(CodeReader code, Lexer lexer, int length, int hash, boolean ascii) {
+    String originalValue;
+    String value;
+    TokenType type;
+    if (caseSensitive) {
+      int index = keywords.indexOf(chars, length, hash);
+      value = index == -1 ? strings.get(chars, length, hash) : keywords.getKey(index);
+      originalValue = value;
+      type = index == -1 ? IDENTIFIER : keywords.getType(index);
+    } else {
+      originalValue = strings.get(chars, length, hash);
+      if (ascii && asciiUpperCase) {
+        int upperCaseHash = toUpperCase(length);
+        int index = keywords.indexOf(upperCaseChars, length, upperCaseHash);
+        value = index == -1 ? strings.get(upperCaseChars, length, upperCaseHash) : keywords.getKey(index);
+        type = index == -1 ? IDENTIFIER : keywords.getType(index);
+      } else {
+        value = originalValue.toUpperCase();
+        char[] upperCase = value.toCharArray();
+        int index = keywords.indexOf(upperCase, upperCase.length, value.hashCode());
+        type = index == -1 ? IDENTIFIER : keywords.getType(index);
+      }
+    }
+
+    Token token = tokenBuilder
+        .setType(type)
+        .setValueAndOriginalValue(value, originalValue)
+        .setURI(lexer.getURI())
+        .setLine(code.getLinePosition())
+        .setColumn(code.getColumnPosition())
+        .build();
+    lexer.addToken(token);
+    for (int i = 0; i < length; i++) {
+      code.pop();
+    }
+  }
+
+  /**
+   * Converts ASCII characters from {@link #chars} to upper case into {@link #upperCaseChars}.
+   *
+   * @return hash of converted characters
+   */
+  private int toUpperCase(int length) {
+    if (upperCaseChars.length < length) {
+      upperCaseChars = new char[chars.length];
+    }
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      char c = chars[i];
+      if (c >= 'a' && c <= 'z') {
+        c = (char) (c - ('a' - 'A'));
+      }
+      upperCaseChars[i] = c;
+      hash = 31 * hash + c;
+    }
+    return hash;
+  }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+import org.sonar.sslr.internal.regex.DfaScanner;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Channel, which replaces sequence of channels, so that instead of trying them one by one,
+ * single deterministic automaton recognizes in one pass which of them consumes characters and how many.
+ * Priority of channels is preserved - result is the same as for original sequence of channels.
+ * <p>
+ * Following channels can be fused, when their regular expressions are supported by {@link DfaScanner}:
+ * {@link BlackHoleChannel}, {@link RegexpChannel}, {@link CommentRegexpChannel}, {@link IdentifierAndKeywordChannel},
+ * {@link CharMatcherIdentifierAndKeywordChannel} and {@link PunctuatorChannel}.
+ * </p>
+ *
+ * @see Lexer.Builder#withFusedChannels(boolean)
+ * @since 1.21
+ */
+public final class FusedChannel extends Channel<Lexer> {
+
+  private final DfaScanner scanner;
+  private final List<Channel<Lexer>> channels;
+  private final Rule[] rules;
+
+  private FusedChannel(List<Channel<Lexer>> channels) {
+    List<Rule> allRules = rules(channels);
+    List<String> regexps = Lists.newArrayList();
+    for (Rule rule : allRules) {
+      regexps.add(rule.regexp);
+    }
+    this.scanner = DfaScanner.compile(regexps);
+    this.channels = ImmutableList.copyOf(channels);
+    this.rules = allRules.toArray(new Rule[allRules.size()]);
+  }
+
+  private FusedChannel(FusedChannel prototype) {
+    ImmutableList.Builder<Channel<Lexer>> copies = ImmutableList.builder();
+    for (Channel<Lexer> channel : prototype.channels) {
+      copies.add(channel.copy());
+    }
+    this.scanner = prototype.scanner;
+    this.channels = copies.build();
+    List<Rule> allRules = rules(channels);
+    this.rules = allRules.toArray(new Rule[allRules.size()]);
+  }
+
+  /**
+   * Replaces each sequence of channels, which can be fused, by {@link FusedChannel}, other channels are kept as is.
+   */
+  public static List<Channel<Lexer>> fuse(List<Channel<Lexer>> channels) {
+    List<Channel<Lexer>> result = Lists.newArrayList();
+    List<Channel<Lexer>> group = Lists.newArrayList();
+    for (Channel<Lexer> channel : channels) {
+      if (canBeFused(channel)) {
+        group.add(channel);
+      } else {
+        flush(group, result);
+        result.add(channel);
+      }
+    }
+    flush(group, result);
+    return result;
+  }
+
+  private static void flush(List<Channel<Lexer>> group, List<Channel<Lexer>> result) {
+    if (group.isEmpty()) {
+      return;
+    }
+    try {
+      result.add(new FusedChannel(group));
+    } catch (IllegalArgumentException e) {
+      // automaton is too large
+      result.addAll(group);
+    }
+    group.clear();
+  }
+
+  private static boolean canBeFused(Channel<Lexer> channel) {
+    if (rules(channel).isEmpty()) {
+      return false;
+    }
+    try {
+      new FusedChannel(Collections.singletonList(channel));
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static List<Rule> rules(List<Channel<Lexer>> channels) {
+    List<Rule> result = Lists.newArrayList();
+    for (Channel<Lexer> channel : channels) {
+      result.addAll(rules(channel));
+    }
+    return result;
+  }
+
+  /**
+   * @return rules of given channel in order of priority or empty list if channel can't be fused,
+   * subclasses are never fused, because they might override {@link Channel#consume(CodeReader, Object)}
+   */
+  private static List<Rule> rules(Channel<Lexer> channel) {
+    List<Rule> rules = Lists.newArrayList();
+    if (channel.getClass() == BlackHoleChannel.class) {
+      final BlackHoleChannel blackHoleChannel = (BlackHoleChannel) channel;
+      rules.add(new Rule(blackHoleChannel.getRegexp()) {
+        @Override
+        void consume(CodeReader code, Lexer lexer, int length) {
+          blackHoleChannel.consume(code, lexer, length);
+        }
+      });
+    } else if (channel.getClass() == RegexpChannel.class) {
+      final RegexpChannel regexpChannel = (RegexpChannel) channel;
+      rules.add(new Rule(regexpChannel.getRegexp()) {
+        @Override
+        void consume(CodeReader code, Lexer lexer, int length) {
+          regexpChannel.consume(code, lexer, length);
+        }
+      });
+    } else if (channel.getClass() == CommentRegexpChannel.class) {
+      final CommentRegexpChannel commentChannel = (CommentRegexpChannel) channel;
+      rules.add(new Rule(commentChannel.getRegexp()) {
+        @Override
+        void consume(CodeReader code, Lexer lexer, int length) {
+          commentChannel.consume(code, lexer, length);
+        }
+      });
+    } else if (channel.getClass() == IdentifierAndKeywordChannel.class) {
+      final IdentifierAndKeywordChannel identifierChannel = (IdentifierAndKeywordChannel) channel;
+      rules.add(new Rule(identifierChannel.getRegexp()) {
+        @Override
+        void consume(CodeReader code, Lexer lexer, int length) {
+          identifierChannel.consume(code, lexer, length);
+        }
+      });
+    } else if (channel.getClass() == CharMatcherIdentifierAndKeywordChannel.class) {
+      final CharMatcherIdentifierAndKeywordChannel identifierChannel = (CharMatcherIdentifierAndKeywordChannel) channel;
+      String start = toCharacterClass(identifierChannel.getIdentifierStart());
+      String part = toCharacterClass(identifierChannel.getIdentifierPart());
+      if (start != null) {
+        rules.add(new Rule(part == null ? start : start + part + "*+") {
+          @Override
+          void consume(CodeReader code, Lexer lexer, int length) {
+            identifierChannel.consume(code, lexer, length);
+          }
+        });
+      }
+    } else if (channel.getClass() == PunctuatorChannel.class) {
+      addPunctuatorRules((PunctuatorChannel) channel, rules);
+    }
+    return rules;
+  }
+
+  /**
+   * Longest punctuator wins, and first one among punctuators with same value.
+   */
+  private static void addPunctuatorRules(final PunctuatorChannel channel, List<Rule> rules) {
+    List<TokenType> punctuators = Lists.newArrayList();
+    Set<String> values = Sets.newHashSet();
+    for (TokenType punctuator : channel.getPunctuators()) {
+      if (values.add(punctuator.getValue())) {
+        punctuators.add(punctuator);
+      }
+    }
+    Collections.sort(punctuators, new Comparator<TokenType>() {
+      @Override
+      public int compare(TokenType o1, TokenType o2) {
+        return o2.getValue().length() - o1.getValue().length();
+      }
+    });
+    for (final TokenType punctuator : punctuators) {
+      rules.add(new Rule(Pattern.quote(punctuator.getValue())) {
+        @Override
+        void consume(CodeReader code, Lexer lexer, int length) {
+          channel.consume(code, lexer, punctuator);
+        }
+      });
+    }
+  }
+
+  /**
+   * @return character class, which matches the same characters as given matcher, or null if matcher doesn't match any character
+   */
+  private static String toCharacterClass(CharMatcher matcher) {
+    StringBuilder result = new StringBuilder("[");
+    int c = Character.MIN_VALUE;
+    while (c <= Character.MAX_VALUE) {
+      if (matcher.matches((char) c)) {
+        int last = c;
+        while (last < Character.MAX_VALUE && matcher.matches((char) (last + 1))) {
+          last++;
+        }
+        appendEscaped(result, c);
+        if (last > c) {
+          result.append('-');
+          appendEscaped(result, last);
+        }
+        c = last + 1;
+      } else {
+        c++;
+      }
+    }
+    return result.length() == 1 ? null : result.append(']').toString();
+  }
+
+  private static void appendEscaped(StringBuilder result, int c) {
+    result.append(String.format("\\u%04X", c));
+  }
+
+  /**
+   * Creates channel, which shares automaton with this one, but uses copies of fused channels.
+   */
+  @Override
+  public FusedChannel copy() {
+    return new FusedChannel(this);
+  }
+
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return scanner.canStartWith(firstChar);
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    long match = scanner.match(code);
+    if (match == -1) {
+      return false;
+    }
+    rules[DfaScanner.rule(match)].consume(code, lexer, DfaScanner.length(match));
+    return true;
+  }
+
+  /**
+   * Regular expression of a channel and action, which consumes characters matched by it.
+   */
+  private abstract static class Rule {
+
+    private final String regexp;
+
+    Rule(String regexp) {
+      this.regexp = regexp;
+    }
+
+    abstract void consume(CodeReader code, Lexer lexer, int length);
+
+  }
+
+}
@@ -57,30 +57,65 @@ public class IdentifierAndKeywordChannel extends Channel<Lexer> {
     matcher = Pattern.compile(regexp).matcher("");
   }
 
+  private IdentifierAndKeywordChannel(IdentifierAndKeywordChannel prototype) {
+    this.keywordsMap = prototype.keywordsMap;
+    this.caseSensitive = prototype.caseSensitive;
+    this.matcher = prototype.matcher.pattern().matcher("");
+  }
+
+  /**
+   * @since 1.21
+   */
+  @Override
+  public IdentifierAndKeywordChannel copy() {
+    return new IdentifierAndKeywordChannel(this);
+  }
+
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return canStartMatch(matcher.pattern(), firstChar);
+  }
+
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     if (code.popTo(matcher, tmpBuilder) > 0) {
-      String word = tmpBuilder.toString();
-      String wordOriginal = word;
-      if (!caseSensitive) {
-        word = word.toUpperCase();
-      }
+      addToken(code, lexer);
+      return true;
+    }
+    return false;
+  }
 
-      TokenType keywordType = keywordsMap.get(word);
-      Token token = tokenBuilder
-          .setType(keywordType == null ? IDENTIFIER : keywordType)
-          .setValueAndOriginalValue(word, wordOriginal)
-          .setURI(lexer.getURI())
-          .setLine(code.getPreviousCursor().getLine())
-          .setColumn(code.getPreviousCursor().getColumn())
-          .build();
+  /**
+   * Consumes given number of characters, which are known to match regular expression.
+   */
+  void consume(CodeReader code, Lexer lexer, int length) {
+    code.pop(length, tmpBuilder);
+    addToken(code, lexer);
+  }
 
-      lexer.addToken(token);
+  String getRegexp() {
+    return matcher.pattern().pattern();
+  }
 
-      tmpBuilder.delete(0, tmpBuilder.length());
-      return true;
+  private void addToken(CodeReader code, Lexer lexer) {
+    String word = tmpBuilder.toString();
+    String wordOriginal = word;
+    if (!caseSensitive) {
+      word = word.toUpperCase();
     }
-    return false;
+
+    TokenType keywordType = keywordsMap.get(word);
+    Token token = tokenBuilder
+        .setType(keywordType == null ? IDENTIFIER : keywordType)
+        .setValueAndOriginalValue(word, wordOriginal)
+        .setURI(lexer.getURI())
+        .setLine(code.getPreviousCursor().getLine())
+        .setColumn(code.getPreviousCursor().getColumn())
+        .build();
+
+    lexer.addToken(token);
+
+    tmpBuilder.delete(0, tmpBuilder.length());
   }
 
 }
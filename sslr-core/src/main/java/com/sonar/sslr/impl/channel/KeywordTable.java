@@ -0,0 +1,115 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.sonar.sslr.api.TokenType;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Hash table of keywords, which allows to look up keyword by range of characters without creation of String.
+ * Multiplier of hash function is chosen so that there are no collisions between keywords (perfect hashing),
+ * unless keywords have equal {@link String#hashCode()}, in which case collisions are resolved by linear probing.
+ */
+final class KeywordTable {
+
+  private static final int MAX_ATTEMPTS = 1000;
+
+  private final int multiplier;
+  private final int shift;
+  private final int mask;
+  private final int[] hashes;
+  private final String[] keys;
+  private final TokenType[] types;
+
+  KeywordTable(Map<String, TokenType> keywords) {
+    int bits = 2;
+    while (1 << bits < 4 * keywords.size()) {
+      bits++;
+    }
+    this.shift = 32 - bits;
+    this.mask = (1 << bits) - 1;
+    this.hashes = new int[1 << bits];
+    this.keys = new String[1 << bits];
+    this.types = new TokenType[1 << bits];
+
+    // fixed seed for reproducibility
+    Random random = new Random(0);
+    int m = 0x9E3779B9;
+    for (int attempt = 0; attempt < MAX_ATTEMPTS && !isPerfect(keywords, m); attempt++) {
+      m = random.nextInt() | 1;
+    }
+    this.multiplier = m;
+
+    for (Map.Entry<String, TokenType> keyword : keywords.entrySet()) {
+      String key = keyword.getKey();
+      int hash = key.hashCode();
+      int index = index(hash);
+      while (keys[index] != null) {
+        index = (index + 1) & mask;
+      }
+      hashes[index] = hash;
+      keys[index] = key;
+      types[index] = keyword.getValue();
+    }
+  }
+
+  private boolean isPerfect(Map<String, TokenType> keywords, int m) {
+    boolean[] used = new boolean[keys.length];
+    for (String key : keywords.keySet()) {
+      int index = (key.hashCode() * m) >>> shift;
+      if (used[index]) {
+        return false;
+      }
+      used[index] = true;
+    }
+    return true;
+  }
+
+  private int index(int hash) {
+    return (hash * multiplier) >>> shift;
+  }
+
+  /**
+   * @param hash hash of characters computed as {@link String#hashCode()}
+   * @return index of keyword, which equals to given characters, or -1
+   */
+  int indexOf(char[] chars, int length, int hash) {
+    int index = index(hash);
+    String key;
+    while ((key = keys[index]) != null) {
+      if (hashes[index] == hash && StringTable.equals(key, chars, length)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  String getKey(int index) {
+    return keys[index];
+  }
+
+  TokenType getType(int index) {
+    return types[index];
+  }
+
+}
@@ -25,80 +25,131 @@ import com.sonar.sslr.impl.Lexer;
 import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
 
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class PunctuatorChannel extends Channel<Lexer> {
 
-  private final int lookahead;
-  private final TokenType[] sortedPunctuators;
-  private final char[][] sortedPunctuatorsChars;
+  /**
+   * Trie of punctuators, which allows to find longest punctuator in O(length of punctuator) without allocations.
+   */
+  private final Node root;
+  private final TokenType[] punctuators;
   private final Token.Builder tokenBuilder = Token.builder();
 
-  private static class PunctuatorComparator implements Comparator<TokenType> {
+  /**
+   * Node of trie with transitions stored in array indexed by character minus smallest character.
+   */
+  private static final class Node {
+
+    /**
+     * Punctuator, which ends at this node, or null.
+     */
+    private TokenType punctuator;
+    private char firstChar;
+    private Node[] next = new Node[0];
+
+    private Node next(char c) {
+      int index = c - firstChar;
+      return index >= 0 && index < next.length ? next[index] : null;
+    }
+
+  }
 
-    @Override
-    public int compare(TokenType a, TokenType b) {
-      if (a.getValue().length() == b.getValue().length()) {
-        return 0;
+  public PunctuatorChannel(TokenType... punctuators) {
+    this.punctuators = punctuators.clone();
+    TrieBuilder rootBuilder = new TrieBuilder();
+    for (TokenType punctuator : punctuators) {
+      TrieBuilder builder = rootBuilder;
+      for (char c : punctuator.getValue().toCharArray()) {
+        TrieBuilder child = builder.children.get(c);
+        if (child == null) {
+          child = new TrieBuilder();
+          builder.children.put(c, child);
+        }
+        builder = child;
+      }
+      // first one wins among punctuators with same value
+      if (builder.node.punctuator == null) {
+        builder.node.punctuator = punctuator;
       }
-      return a.getValue().length() > b.getValue().length() ? -1 : 1;
     }
+    this.root = rootBuilder.build();
+  }
 
+  private PunctuatorChannel(PunctuatorChannel prototype) {
+    this.root = prototype.root;
+    this.punctuators = prototype.punctuators;
   }
 
-  public PunctuatorChannel(TokenType... punctuators) {
-    sortedPunctuators = punctuators;
-    Arrays.sort(sortedPunctuators, new PunctuatorComparator());
+  /**
+   * @since 1.21
+   */
+  @Override
+  public PunctuatorChannel copy() {
+    return new PunctuatorChannel(this);
+  }
+
+  private static final class TrieBuilder {
 
-    sortedPunctuatorsChars = new char[sortedPunctuators.length][];
+    private final Node node = new Node();
+    private final TreeMap<Character, TrieBuilder> children = new TreeMap<Character, TrieBuilder>();
 
-    int maxLength = 0;
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      sortedPunctuatorsChars[i] = sortedPunctuators[i].getValue().toCharArray();
-      maxLength = Math.max(maxLength, sortedPunctuatorsChars[i].length);
+    private Node build() {
+      if (!children.isEmpty()) {
+        node.firstChar = children.firstKey();
+        node.next = new Node[children.lastKey() - node.firstChar + 1];
+        for (Map.Entry<Character, TrieBuilder> entry : children.entrySet()) {
+          node.next[entry.getKey() - node.firstChar] = entry.getValue().build();
+        }
+      }
+      return node;
     }
-    this.lookahead = maxLength;
+
   }
 
   @Override
-  public boolean consume(CodeReader code, Lexer lexer) {
-    char[] next = code.peek(lookahead);
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      if (arraysEquals(next, sortedPunctuatorsChars[i])) {
-        Token token = tokenBuilder
-          .setType(sortedPunctuators[i])
-          .setValueAndOriginalValue(sortedPunctuators[i].getValue())
-          .setURI(lexer.getURI())
-          .setLine(code.getLinePosition())
-          .setColumn(code.getColumnPosition())
-          .build();
-
-        lexer.addToken(token);
-
-        /* Advance the CodeReader stream by the length of the punctuator */
-        for (int j = 0; j < sortedPunctuatorsChars[i].length; j++) {
-          code.pop();
-        }
+  protected boolean canConsume(char firstChar) {
+    return root.punctuator != null || root.next(firstChar) != null;
+  }
 
-        return true;
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    TokenType punctuator = root.punctuator;
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      if (node.punctuator != null) {
+        punctuator = node.punctuator;
       }
+      node = i < code.length() ? node.next(code.charAt(i)) : null;
     }
+    if (punctuator == null) {
+      return false;
+    }
+    consume(code, lexer, punctuator);
+    return true;
+  }
 
-    return false;
+  TokenType[] getPunctuators() {
+    return punctuators.clone();
   }
 
   /**
-   * Expected that length of second array can be less than length of first.
+   * Consumes given punctuator, which is known to be present in the input.
    */
-  private static boolean arraysEquals(char[] a, char[] a2) {
-    int length = a2.length;
-    for (int i = 0; i < length; i++) {
-      if (a[i] != a2[i]) {
-        return false;
-      }
+  void consume(CodeReader code, Lexer lexer, TokenType punctuator) {
+    Token token = tokenBuilder
+      .setType(punctuator)
+      .setValueAndOriginalValue(punctuator.getValue())
+      .setURI(lexer.getURI())
+      .setLine(code.getLinePosition())
+      .setColumn(code.getColumnPosition())
+      .build();
+    lexer.addToken(token);
+    /* Advance the CodeReader stream by the length of the punctuator */
+    for (int j = 0; j < punctuator.getValue().length(); j++) {
+      code.pop();
     }
-    return true;
   }
 
 }
@@ -21,6 +21,7 @@ package com.sonar.sslr.impl.channel;
 
 import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
+import org.sonar.sslr.internal.regex.DfaPattern;
 
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
@@ -40,6 +41,7 @@ public class RegexpChannel extends Channel<Lexer> {
   private final StringBuilder tmpBuilder = new StringBuilder();
   private final TokenType type;
   private final Matcher matcher;
+  private final DfaPattern dfa;
   private final String regexp;
   private final Token.Builder tokenBuilder = Token.builder();
 
@@ -47,28 +49,50 @@ public class RegexpChannel extends Channel<Lexer> {
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public RegexpChannel(TokenType type, String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    this(type, regexp, false);
+  }
+
+  /**
+   * @param dfa whether to match using {@link DfaPattern} instead of {@link Matcher}
+   * @throws IllegalArgumentException if dfa is true and the expression is not supported by {@link DfaPattern}
+   */
+  RegexpChannel(TokenType type, String regexp, boolean dfa) {
+    if (dfa) {
+      this.dfa = DfaPattern.compile(regexp);
+      this.matcher = null;
+    } else {
+      this.dfa = null;
+      this.matcher = Pattern.compile(regexp).matcher("");
+    }
     this.type = type;
     this.regexp = regexp;
   }
 
-  @Override
-  public boolean consume(CodeReader code, Lexer lexer) {
-    try {
-      if (code.popTo(matcher, tmpBuilder) > 0) {
-        String value = tmpBuilder.toString();
+  private RegexpChannel(RegexpChannel prototype) {
+    this.dfa = prototype.dfa;
+    this.matcher = prototype.matcher == null ? null : prototype.matcher.pattern().matcher("");
+    this.type = prototype.type;
+    this.regexp = prototype.regexp;
+  }
 
-        Token token = tokenBuilder
-            .setType(type)
-            .setValueAndOriginalValue(value)
-            .setURI(lexer.getURI())
-            .setLine(code.getPreviousCursor().getLine())
-            .setColumn(code.getPreviousCursor().getColumn())
-            .build();
+  /**
+   * @since 1.21
+   */
+  @Override
+  public RegexpChannel copy() {
+    return new RegexpChannel(this);
+  }
 
-        lexer.addToken(token);
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return dfa != null ? dfa.canStartWith(firstChar) : canStartMatch(matcher.pattern(), firstChar);
+  }
 
-        tmpBuilder.delete(0, tmpBuilder.length());
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    try {
+      if (popTo(code) > 0) {
+        addToken(code, lexer);
         return true;
       }
       return false;
@@ -81,4 +105,43 @@ public class RegexpChannel extends Channel<Lexer> {
           e);
     }
   }
+
+  /**
+   * Consumes given number of characters, which are known to match regular expression.
+   */
+  void consume(CodeReader code, Lexer lexer, int length) {
+    code.pop(length, tmpBuilder);
+    addToken(code, lexer);
+  }
+
+  String getRegexp() {
+    return regexp;
+  }
+
+  private void addToken(CodeReader code, Lexer lexer) {
+    String value = tmpBuilder.toString();
+
+    Token token = tokenBuilder
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(lexer.getURI())
+        .setLine(code.getPreviousCursor().getLine())
+        .setColumn(code.getPreviousCursor().getColumn())
+        .build();
+
+    lexer.addToken(token);
+
+    tmpBuilder.delete(0, tmpBuilder.length());
+  }
+
+  private int popTo(CodeReader code) {
+    if (dfa == null) {
+      return code.popTo(matcher, tmpBuilder);
+    }
+    int length = dfa.match(code);
+    if (length > 0) {
+      code.pop(length, tmpBuilder);
+    }
+    return length;
+  }
 }
@@ -39,6 +39,30 @@ public final class RegexpChannelBuilder {
     return new CommentRegexpChannel(merge(regexpPiece));
   }
 
+  /**
+   * Same as {@link #regexp(TokenType, String...)}, but the expression is compiled into deterministic automaton,
+   * which matches in linear time and can't lead to stack overflow. Only a subset of regular expressions is supported:
+   * no backreferences, no boundary matchers, no lookbehinds, lookaheads of single character only,
+   * possessive quantifiers of subexpressions only when they are equivalent to greedy ones.
+   *
+   * @throws IllegalArgumentException if the expression is not supported
+   * @since 1.21
+   */
+  public static RegexpChannel dfaRegexp(TokenType type, String... regexpPiece) {
+    return new RegexpChannel(type, merge(regexpPiece), true);
+  }
+
+  /**
+   * Same as {@link #commentRegexp(String...)}, but the expression is compiled into deterministic automaton -
+   * see {@link #dfaRegexp(TokenType, String...)}.
+   *
+   * @throws IllegalArgumentException if the expression is not supported
+   * @since 1.21
+   */
+  public static CommentRegexpChannel dfaCommentRegexp(String... regexpPiece) {
+    return new CommentRegexpChannel(merge(regexpPiece), true);
+  }
+
   public static String opt(String regexpPiece) {
     return regexpPiece + "?+";
   }
@@ -0,0 +1,101 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+/**
+ * Table of Strings, which allows to obtain String for range of characters, so that new String is created only for
+ * characters, which were not seen before. Table is cleared, when it reaches {@link #MAX_SIZE}, to limit memory consumption.
+ */
+final class StringTable {
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int MAX_SIZE = 1 << 16;
+
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private String[] strings = new String[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * @param hash hash of characters computed as {@link String#hashCode()}
+   */
+  String get(char[] chars, int length, int hash) {
+    int mask = strings.length - 1;
+    int index = spread(hash) & mask;
+    String string;
+    while ((string = strings[index]) != null) {
+      if (hashes[index] == hash && equals(string, chars, length)) {
+        return string;
+      }
+      index = (index + 1) & mask;
+    }
+
+    string = new String(chars, 0, length);
+    if (size == MAX_SIZE) {
+      hashes = new int[INITIAL_CAPACITY];
+      strings = new String[INITIAL_CAPACITY];
+      size = 0;
+    }
+    put(string, hash);
+    size++;
+    if (2 * size > strings.length) {
+      resize();
+    }
+    return string;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private void resize() {
+    String[] oldStrings = strings;
+    int[] oldHashes = hashes;
+    hashes = new int[oldStrings.length * 2];
+    strings = new String[oldStrings.length * 2];
+    for (int i = 0; i < oldStrings.length; i++) {
+      if (oldStrings[i] != null) {
+        put(oldStrings[i], oldHashes[i]);
+      }
+    }
+  }
+
+  private void put(String string, int hash) {
+    int mask = strings.length - 1;
+    int index = spread(hash) & mask;
+    while (strings[index] != null) {
+      index = (index + 1) & mask;
+    }
+    hashes[index] = hash;
+    strings[index] = string;
+  }
+
+  static boolean equals(String string, char[] chars, int length) {
+    if (string.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (string.charAt(i) != chars[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
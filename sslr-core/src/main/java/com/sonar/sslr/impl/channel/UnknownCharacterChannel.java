@@ -46,6 +46,14 @@ public class UnknownCharacterChannel extends Channel<Lexer> {
   public UnknownCharacterChannel(boolean shouldLogWarning) {
   }
 
+  /**
+   * @since 1.21
+   */
+  @Override
+  public UnknownCharacterChannel copy() {
+    return new UnknownCharacterChannel();
+  }
+
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     if (code.peek() != -1) {
@@ -160,4 +160,9 @@ public class RuleDefinition implements Rule, AstNodeSkippingPolicy, GrammarRuleK
     memoize = true;
   }
 
+  @Override
+  public void setMemoization(boolean memoize) {
+    this.memoize = memoize;
+  }
+
 }
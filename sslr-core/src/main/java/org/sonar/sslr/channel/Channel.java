@@ -19,6 +19,9 @@
  */
 package org.sonar.sslr.channel;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public abstract class Channel<O> {
 
   /**
@@ -32,4 +35,41 @@ public abstract class Channel<O> {
    * @return false if the Channel doesn't want to consume the character stream, true otherwise.
    */
   public abstract boolean consume(CodeReader code, O output);
+
+  /**
+   * Tells whether this Channel might consume the character stream, which starts with the given character.
+   * {@link ChannelDispatcher} built with {@link ChannelDispatcher.Builder#dispatchByFirstCharacter()} uses this method to build a table of plausible Channels for each ASCII character, so that Channels,
+   * which are known to fail, are not tried. Implementation must return true in case of doubt and must be consistent with
+   * {@link #consume(CodeReader, Object)}, so subclasses overriding one of those methods should take care of the other.
+   * Default implementation returns true for any character.
+   *
+   * @since 1.21
+   */
+  protected boolean canConsume(char firstChar) {
+    return true;
+  }
+
+  /**
+   * Creates channel with the same behavior, which can be used independently of this one, in particular by another thread.
+   * Default implementation returns this channel, which is correct only for channels without mutable state,
+   * so other channels should override this method. Channels provided by SSLR create instances of their own class,
+   * so their subclasses should override this method too. {@link com.sonar.sslr.impl.Lexer.Builder#buildDefinition()}
+   * requires a new instance of the same class as this channel.
+   *
+   * @since 1.21
+   */
+  public Channel<O> copy() {
+    return this;
+  }
+
+  /**
+   * Tells whether the given regular expression might match the character stream, which starts with the given character.
+   * Match is possible if expression matches this character or if more characters are needed to decide.
+   *
+   * @since 1.21
+   */
+  protected static boolean canStartMatch(Pattern pattern, char firstChar) {
+    Matcher matcher = pattern.matcher(String.valueOf(firstChar));
+    return matcher.lookingAt() || matcher.hitEnd();
+  }
 }
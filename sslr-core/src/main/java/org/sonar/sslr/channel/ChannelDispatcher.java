@@ -20,17 +20,76 @@
 package org.sonar.sslr.channel;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ChannelDispatcher<O> extends Channel<O> {
 
+  private static final int ASCII_TABLE_SIZE = 128;
+
   private final boolean failIfNoChannelToConsumeOneCharacter;
 
   private final Channel<O>[] channels;
 
+  /**
+   * Channels, which might consume character stream starting with given ASCII character, all channels are tried for other characters.
+   * Null, if dispatch by first character is not activated.
+   */
+  private final Channel<O>[][] channelsByFirstChar;
+
   private ChannelDispatcher(Builder builder) {
     this.channels = builder.channels.toArray(new Channel[builder.channels.size()]);
     this.failIfNoChannelToConsumeOneCharacter = builder.failIfNoChannelToConsumeOneCharacter;
+
+    if (!builder.dispatchByFirstCharacter) {
+      this.channelsByFirstChar = null;
+      return;
+    }
+    this.channelsByFirstChar = new Channel[ASCII_TABLE_SIZE][];
+    for (char c = 0; c < ASCII_TABLE_SIZE; c++) {
+      List<Channel<O>> plausibleChannels = new ArrayList<Channel<O>>();
+      for (Channel<O> channel : channels) {
+        if (channel.canConsume(c)) {
+          plausibleChannels.add(channel);
+        }
+      }
+      channelsByFirstChar[c] = plausibleChannels.toArray(new Channel[plausibleChannels.size()]);
+    }
+  }
+
+  private ChannelDispatcher(ChannelDispatcher<O> prototype) {
+    this.failIfNoChannelToConsumeOneCharacter = prototype.failIfNoChannelToConsumeOneCharacter;
+
+    Map<Channel<O>, Channel<O>> copies = new IdentityHashMap<Channel<O>, Channel<O>>();
+    this.channels = new Channel[prototype.channels.length];
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = prototype.channels[i].copy();
+      copies.put(prototype.channels[i], channels[i]);
+    }
+
+    if (prototype.channelsByFirstChar == null) {
+      this.channelsByFirstChar = null;
+      return;
+    }
+    this.channelsByFirstChar = new Channel[ASCII_TABLE_SIZE][];
+    for (int c = 0; c < ASCII_TABLE_SIZE; c++) {
+      Channel<O>[] plausibleChannels = prototype.channelsByFirstChar[c].clone();
+      for (int i = 0; i < plausibleChannels.length; i++) {
+        plausibleChannels[i] = copies.get(plausibleChannels[i]);
+      }
+      channelsByFirstChar[c] = plausibleChannels;
+    }
+  }
+
+  /**
+   * Creates dispatcher with copies of channels, see {@link Channel#copy()}.
+   *
+   * @since 1.21
+   */
+  @Override
+  public ChannelDispatcher<O> copy() {
+    return new ChannelDispatcher<O>(this);
   }
 
   @Override
@@ -38,7 +97,7 @@ public class ChannelDispatcher<O> extends Channel<O> {
     int nextChar = code.peek();
     while (nextChar != -1) {
       boolean characterConsumed = false;
-      for (Channel<O> channel : channels) {
+      for (Channel<O> channel : channelsByFirstChar != null && nextChar < ASCII_TABLE_SIZE ? channelsByFirstChar[nextChar] : channels) {
         if (channel.consume(code, output)) {
           characterConsumed = true;
           break;
@@ -72,6 +131,7 @@ public class ChannelDispatcher<O> extends Channel<O> {
 
     private final List<Channel> channels = new ArrayList<Channel>();
     private boolean failIfNoChannelToConsumeOneCharacter = false;
+    private boolean dispatchByFirstCharacter = false;
 
     private Builder() {
     }
@@ -96,6 +156,18 @@ public class ChannelDispatcher<O> extends Channel<O> {
       return this;
     }
 
+    /**
+     * If this option is activated, then for each ASCII character only channels, which declare that they can consume it
+     * (see {@link Channel#canConsume(char)}), are tried. Should be activated only when all channels implement this method
+     * consistently with {@link Channel#consume(CodeReader, Object)}.
+     *
+     * @since 1.21
+     */
+    public Builder dispatchByFirstCharacter() {
+      dispatchByFirstCharacter = true;
+      return this;
+    }
+
     public <O> ChannelDispatcher<O> build() {
       return new ChannelDispatcher<O>(this);
     }
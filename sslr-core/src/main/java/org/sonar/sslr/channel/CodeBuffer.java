@@ -19,14 +19,26 @@
  */
 package org.sonar.sslr.channel;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
-import com.google.common.io.CharStreams;
 import com.google.common.io.Closeables;
 
+import java.io.CharArrayReader;
 import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkState;
 
 /**
  * The CodeBuffer class provides all the basic features required to manipulate a source code character stream. Those features are :
@@ -43,9 +55,16 @@ public class CodeBuffer implements CharSequence {
   private int lastChar = -1;
   private Cursor cursor;
   private char[] buffer;
+  private int bufferLength;
   private int bufferPosition = 0;
+  /**
+   * Source of code in streaming mode, null when whole code is in buffer.
+   */
+  private Reader source;
+  private int lookahead = Integer.MAX_VALUE;
   private static final char LF = '\n';
   private static final char CR = '\r';
+  private static final int DEFAULT_CHUNK_SIZE = 8192;
   private int tabWidth;
 
   private boolean recordingMode = false;
@@ -59,20 +78,69 @@ public class CodeBuffer implements CharSequence {
    * Note that this constructor will read everything from reader and will close it.
    */
   protected CodeBuffer(Reader initialCodeReader, CodeReaderConfiguration configuration) {
-    Reader reader = null;
+    this(initialCodeReader, configuration, false);
+  }
 
+  /**
+   * Decodes given bytes directly into the buffer, so that there are no intermediate copies of code.
+   * Bytes might be read from a memory-mapped file.
+   */
+  protected CodeBuffer(ByteBuffer code, Charset charset, CodeReaderConfiguration configuration) {
+    lastChar = -1;
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
     try {
-      lastChar = -1;
-      cursor = new Cursor();
-      tabWidth = configuration.getTabWidth();
+      decode(code, charset);
+    } catch (CharacterCodingException e) {
+      throw new ChannelException(e.getMessage(), e);
+    }
+    if (configuration.getCodeReaderFilters().length > 0) {
+      // filters can be applied only to Reader
+      read(new CharArrayReader(buffer, 0, bufferLength), configuration);
+    }
+  }
 
+  /**
+   * Creates buffer in streaming mode: code is read from reader by chunks into a window, which is refilled as cursor moves forward.
+   * Window keeps at least {@link CodeReaderConfiguration#getLookahead()} characters after the cursor, if available.
+   */
+  protected CodeBuffer(Reader initialCodeReader, CodeReaderConfiguration configuration, boolean streaming) {
+    lastChar = -1;
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
+    if (streaming) {
+      source = filter(initialCodeReader, configuration);
+      lookahead = configuration.getLookahead();
+      buffer = new char[lookahead > Integer.MAX_VALUE / 2 ? lookahead : Math.max(DEFAULT_CHUNK_SIZE, 2 * lookahead)];
+    } else {
+      read(initialCodeReader, configuration);
+    }
+  }
+
+  private static Reader filter(Reader reader, CodeReaderConfiguration configuration) {
+    Reader result = reader;
+    for (CodeReaderFilter<?> codeReaderFilter : configuration.getCodeReaderFilters()) {
+      result = new Filter(result, codeReaderFilter, configuration);
+    }
+    return result;
+  }
+
+  private void read(Reader initialCodeReader, CodeReaderConfiguration configuration) {
+    Reader reader = null;
+
+    try {
       /* Setup the filters on the reader */
-      reader = initialCodeReader;
-      for (CodeReaderFilter<?> codeReaderFilter : configuration.getCodeReaderFilters()) {
-        reader = new Filter(reader, codeReaderFilter, configuration);
+      reader = filter(initialCodeReader, configuration);
+
+      buffer = new char[DEFAULT_CHUNK_SIZE];
+      bufferLength = 0;
+      int read;
+      while ((read = reader.read(buffer, bufferLength, buffer.length - bufferLength)) != -1) {
+        bufferLength += read;
+        if (bufferLength == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
       }
-
-      buffer = CharStreams.toString(reader).toCharArray();
     } catch (IOException e) {
       throw new ChannelException(e.getMessage(), e);
     } finally {
@@ -80,13 +148,99 @@ public class CodeBuffer implements CharSequence {
     }
   }
 
+  /**
+   * Bytes are decoded in the same way as by {@link java.io.InputStreamReader}, i.e. malformed input is replaced.
+   * Characters of ISO-8859-1 and runs of ASCII characters in US-ASCII and UTF-8 are decoded without {@link CharsetDecoder}.
+   */
+  private void decode(ByteBuffer code, Charset charset) throws CharacterCodingException {
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    buffer = new char[(int) Math.ceil(code.remaining() * (double) decoder.maxCharsPerByte())];
+    bufferLength = 0;
+
+    if (Charsets.ISO_8859_1.equals(charset)) {
+      while (code.hasRemaining()) {
+        buffer[bufferLength++] = (char) (code.get() & 0xFF);
+      }
+      return;
+    }
+
+    if (!Charsets.US_ASCII.equals(charset) && !Charsets.UTF_8.equals(charset)) {
+      decode(decoder, code);
+      return;
+    }
+
+    // ASCII byte never appears inside of a multibyte sequence, so code can be decoded by parts between such bytes
+    while (code.hasRemaining()) {
+      byte b = code.get(code.position());
+      if (b >= 0) {
+        buffer[bufferLength++] = (char) b;
+        // methods of Buffer are used on purpose - covariant overrides in ByteBuffer don't exist prior to Java 9
+        ((Buffer) code).position(code.position() + 1);
+      } else {
+        int end = code.position() + 1;
+        while (end < code.limit() && code.get(end) < 0) {
+          end++;
+        }
+        int limit = code.limit();
+        ((Buffer) code).limit(end);
+        decode(decoder.reset(), code);
+        ((Buffer) code).limit(limit);
+      }
+    }
+  }
+
+  private void decode(CharsetDecoder decoder, ByteBuffer code) throws CharacterCodingException {
+    CharBuffer out = CharBuffer.wrap(buffer, bufferLength, buffer.length - bufferLength);
+    CoderResult result = decoder.decode(code, out, true);
+    if (!result.isUnderflow()) {
+      result.throwException();
+    }
+    result = decoder.flush(out);
+    if (!result.isUnderflow()) {
+      result.throwException();
+    }
+    bufferLength = out.position();
+  }
+
+  /**
+   * Ensures that at least given number of characters after the cursor are in window, unless end of stream is reached.
+   *
+   * @return true if required number of characters is available
+   */
+  private boolean fill(int required) {
+    int available = bufferLength - bufferPosition;
+    if (buffer.length - bufferPosition < required) {
+      char[] target = buffer.length < required ? new char[Math.max(required, 2 * buffer.length)] : buffer;
+      System.arraycopy(buffer, bufferPosition, target, 0, available);
+      buffer = target;
+      bufferPosition = 0;
+      bufferLength = available;
+    }
+    try {
+      while (bufferLength - bufferPosition < required) {
+        int read = source.read(buffer, bufferLength, buffer.length - bufferLength);
+        if (read == -1) {
+          source.close();
+          source = null;
+          return false;
+        }
+        bufferLength += read;
+      }
+    } catch (IOException e) {
+      throw new ChannelException(e.getMessage(), e);
+    }
+    return true;
+  }
+
   /**
    * Read and consume the next character
    *
    * @return the next character or -1 if the end of the stream is reached
    */
   public final int pop() {
-    if (bufferPosition >= buffer.length) {
+    if (bufferPosition >= bufferLength && (source == null || !fill(1))) {
       return -1;
     }
     int character = buffer[bufferPosition];
@@ -187,18 +341,37 @@ public class CodeBuffer implements CharSequence {
   }
 
   protected final int intAt(int index) {
-    if (bufferPosition + index >= buffer.length) {
+    if (bufferPosition + index >= bufferLength && (source == null || !fill(index + 1))) {
       return -1;
     }
     return buffer[bufferPosition + index];
   }
 
   /**
-   * Returns the relative length of the string (i.e. excluding the popped chars)
+   * Returns the relative length of the string (i.e. excluding the popped chars).
+   * In streaming mode it is bounded by {@link CodeReaderConfiguration#getLookahead()}.
    */
   @Override
   public final int length() {
-    return buffer.length - bufferPosition;
+    if (source != null && bufferLength - bufferPosition < lookahead) {
+      fill(lookahead);
+    }
+    return Math.min(bufferLength - bufferPosition, lookahead);
+  }
+
+  /**
+   * Returns whole code held by this buffer. Array is not copied, when it has exactly length of code,
+   * so it must not be modified.
+   *
+   * @throws IllegalStateException in streaming mode
+   * @since 1.21
+   */
+  public final char[] getCode() {
+    checkState(source == null, "Whole code is not available in streaming mode");
+    if (buffer.length != bufferLength) {
+      buffer = Arrays.copyOf(buffer, bufferLength);
+    }
+    return buffer;
   }
 
   @Override
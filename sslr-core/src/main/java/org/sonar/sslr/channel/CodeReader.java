@@ -21,6 +21,8 @@ package org.sonar.sslr.channel;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 
 /**
@@ -70,6 +72,43 @@ public class CodeReader extends CodeBuffer {
     super(code, configuration);
   }
 
+  /**
+   * Creates a code reader with specific configuration parameters.
+   * Note that this constructor will decode all remaining bytes from buffer, which for example might be a memory-mapped file,
+   * and so avoids intermediate copies of code.
+   *
+   * @param code
+   *          the bytes to decode code from
+   * @param charset
+   *          the charset of code
+   * @param configuration
+   *          the configuration parameters
+   * @since 1.21
+   */
+  public CodeReader(ByteBuffer code, Charset charset, CodeReaderConfiguration configuration) {
+    super(code, charset, configuration);
+  }
+
+  private CodeReader(Reader code, CodeReaderConfiguration configuration, boolean streaming) {
+    super(code, configuration, streaming);
+  }
+
+  /**
+   * Creates a code reader in streaming mode, which reads code from reader by chunks, so that only a window of code is kept in memory.
+   * Regular expressions see at most {@link CodeReaderConfiguration#getLookahead()} characters after the cursor,
+   * whereas {@link #peek(int)} and {@link #charAt(int)} can look further at the cost of a larger window.
+   * Note that reader will be closed when end of stream is reached.
+   *
+   * @param code
+   *          the Reader to read code from
+   * @param configuration
+   *          the configuration parameters
+   * @since 1.21
+   */
+  public static CodeReader streaming(Reader code, CodeReaderConfiguration configuration) {
+    return new CodeReader(code, configuration, true);
+  }
+
   /**
    * Read and consume the next character
    *
@@ -84,6 +123,26 @@ public class CodeReader extends CodeBuffer {
     }
   }
 
+  /**
+   * Read and consume the next characters
+   *
+   * @param length
+   *          number of characters to consume
+   * @param appendable
+   *          the consumed characters are appended to appendable
+   * @since 1.21
+   */
+  public final void pop(int length, Appendable appendable) {
+    previousCursor = getCursor().clone();
+    try {
+      for (int i = 0; i < length; i++) {
+        appendable.append((char) pop());
+      }
+    } catch (IOException e) {
+      throw new ChannelException(e.getMessage(), e);
+    }
+  }
+
   /**
    * Read without consuming the next characters
    *
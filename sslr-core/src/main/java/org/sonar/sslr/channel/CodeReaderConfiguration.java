@@ -19,6 +19,8 @@
  */
 package org.sonar.sslr.channel;
 
+import com.google.common.base.Preconditions;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,8 +32,15 @@ public class CodeReaderConfiguration {
 
   public static final int DEFAULT_TAB_WIDTH = 1;
 
+  /**
+   * @since 1.21
+   */
+  public static final int DEFAULT_LOOKAHEAD = 64 * 1024;
+
   private int tabWidth = DEFAULT_TAB_WIDTH;
 
+  private int lookahead = DEFAULT_LOOKAHEAD;
+
   private List<CodeReaderFilter<?>> codeReaderFilters = new ArrayList<CodeReaderFilter<?>>();
 
   /**
@@ -49,6 +58,25 @@ public class CodeReaderConfiguration {
     this.tabWidth = tabWidth;
   }
 
+  /**
+   * @return the number of characters after the cursor, which are visible to regular expressions in streaming mode
+   * @see CodeReader#streaming(java.io.Reader, CodeReaderConfiguration)
+   * @since 1.21
+   */
+  public int getLookahead() {
+    return lookahead;
+  }
+
+  /**
+   * @param lookahead
+   *          the number of characters after the cursor, which are visible to regular expressions in streaming mode
+   * @since 1.21
+   */
+  public void setLookahead(int lookahead) {
+    Preconditions.checkArgument(lookahead > 0, "lookahead must be greater than zero");
+    this.lookahead = lookahead;
+  }
+
   /**
    * @return the codeReaderFilters
    */
@@ -78,6 +106,7 @@ public class CodeReaderConfiguration {
   public CodeReaderConfiguration cloneWithoutCodeReaderFilters() {
     CodeReaderConfiguration clone = new CodeReaderConfiguration();
     clone.setTabWidth(tabWidth);
+    clone.setLookahead(lookahead);
     return clone;
   }
 
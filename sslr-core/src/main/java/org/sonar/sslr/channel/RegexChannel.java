@@ -50,6 +50,11 @@ public abstract class RegexChannel<O> extends Channel<O> {
     return false;
   }
 
+  @Override
+  protected boolean canConsume(char firstChar) {
+    return canStartMatch(matcher.pattern(), firstChar);
+  }
+
   /**
    * The consume method is called each time the regular expression used to create the RegexChannel object matches the next characters in the
    * character streams.
@@ -266,6 +266,15 @@ abstract class GrammarBuilder {
     return result;
   }
 
+  static void applyMemoizationProfile(Iterable<? extends CompilableGrammarRule> rules, MemoizationProfile profile) {
+    for (CompilableGrammarRule rule : rules) {
+      Boolean memoize = profile.shouldMemoize(rule.getRuleKey().toString());
+      if (memoize != null) {
+        rule.setMemoization(memoize);
+      }
+    }
+  }
+
   /**
    * Adapts {@link CompilableGrammarRule} to be used as {@link GrammarRuleBuilder}.
    */
@@ -314,6 +323,12 @@ abstract class GrammarBuilder {
       delegate.skipIfOneChild();
     }
 
+    @Override
+    public GrammarRuleBuilder memoize(boolean memoize) {
+      delegate.setMemoization(memoize);
+      return this;
+    }
+
     @Override
     public void recoveryRule() {
       throw new UnsupportedOperationException();
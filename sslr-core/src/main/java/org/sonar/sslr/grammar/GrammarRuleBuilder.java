@@ -86,6 +86,21 @@ public interface GrammarRuleBuilder {
    */
   void skipIfOneChild();
 
+  /**
+   * Allows to enable or disable memoization of results of grammar rule.
+   * Memoization prevents parsing of the same input by the same rule more than once during backtracking,
+   * but has a cost, which is not worth paying for rules, whose results are never reused.
+   * <p>
+   * By default memoization is enabled for all rules of {@link LexerlessGrammarBuilder}
+   * and disabled for all rules of {@link LexerfulGrammarBuilder}.
+   *
+   * @param memoize  whether results of this rule should be memoized
+   * @return this (for method chaining)
+   * @since 1.21
+   * @see MemoizationProfile
+   */
+  GrammarRuleBuilder memoize(boolean memoize);
+
   /**
    * @deprecated in 1.19, no difference between usual grammar rule and "recovery rule" - both will be presented in AST and so can be handled via AST visitor.
    * @throws UnsupportedOperationException always
@@ -127,6 +127,20 @@ public class LexerfulGrammarBuilder extends GrammarBuilder {
     return build();
   }
 
+  /**
+   * Constructs grammar with memoization enabled only for rules, whose memoized results were reused according to given profile.
+   * Memoization of rules, which are not present in profile, stays unchanged.
+   *
+   * @throws GrammarException if some of rules were used, but not defined
+   * @return grammar
+   * @since 1.21
+   * @see #build()
+   */
+  public Grammar buildWithMemoizationProfile(MemoizationProfile profile) {
+    applyMemoizationProfile(definitions.values(), profile);
+    return build();
+  }
+
   /**
    * Creates parsing expression - "adjacent".
    * During execution of this expression parser will execute sub-expression only if there is no space between next and previous tokens.
@@ -104,6 +104,20 @@ public class LexerlessGrammarBuilder extends GrammarBuilder {
     return new MutableGrammar(definitions, rootRuleKey);
   }
 
+  /**
+   * Constructs grammar with memoization enabled only for rules, whose memoized results were reused according to given profile.
+   * Memoization of rules, which are not present in profile, stays unchanged.
+   *
+   * @throws GrammarException if some of rules were used, but not defined
+   * @return grammar
+   * @since 1.21
+   * @see #build()
+   */
+  public LexerlessGrammar buildWithMemoizationProfile(MemoizationProfile profile) {
+    applyMemoizationProfile(definitions.values(), profile);
+    return build();
+  }
+
   /**
    * Creates parsing expression based on regular expression.
    *
@@ -114,6 +128,21 @@ public class LexerlessGrammarBuilder extends GrammarBuilder {
     return new PatternExpression(regexp);
   }
 
+  /**
+   * Creates parsing expression based on regular expression, which is compiled into deterministic automaton:
+   * unlike {@link #regexp(String)} matching takes linear time and can't lead to stack overflow,
+   * but only a subset of regular expressions is supported: no backreferences, no boundary matchers, no lookbehinds,
+   * lookaheads of single character only, possessive quantifiers of subexpressions only when they are equivalent to greedy ones.
+   *
+   * @param regexp  regular expression
+   * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
+   * @throws IllegalArgumentException if the expression is not supported
+   * @since 1.21
+   */
+  public Object dfaRegexp(String regexp) {
+    return new PatternExpression(regexp, true);
+  }
+
   /**
    * Creates parsing expression - "end of input".
    * This expression succeeds only if parser reached end of input.
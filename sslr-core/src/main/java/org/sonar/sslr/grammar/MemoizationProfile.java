@@ -0,0 +1,163 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.grammar;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of memoization of grammar rules, which can be collected during parsing
+ * and then used to enable memoization only for rules, whose memoized results are reused.
+ *
+ * <p>For each rule following values are recorded: number of memoized results, number of reuses of memoized results,
+ * total length of reused results, i.e. length of input, which wasn't parsed again thanks to memoization,
+ * and number of reuses of memoized mismatches.</p>
+ *
+ * <p>Profile can be saved to and loaded from a simple text format - one line per rule,
+ * which contains name of rule and recorded values separated by tabulation.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @see org.sonar.sslr.parser.ParseRunner#newSession(MemoizationProfile)
+ * @see LexerlessGrammarBuilder#buildWithMemoizationProfile(MemoizationProfile)
+ * @see LexerfulGrammarBuilder#buildWithMemoizationProfile(MemoizationProfile)
+ * @since 1.21
+ */
+public class MemoizationProfile {
+
+  private static final char SEPARATOR = '\t';
+  private static final int VALUES = 4;
+
+  private final Map<String, long[]> statistics = new TreeMap<>();
+
+  /**
+   * Records that result of given rule has been memoized.
+   */
+  public void recordMemo(String ruleName) {
+    get(ruleName)[0]++;
+  }
+
+  /**
+   * Records that memoized result of given rule with given length has been reused.
+   */
+  public void recordHit(String ruleName, int length) {
+    long[] values = get(ruleName);
+    values[1]++;
+    values[2] += length;
+  }
+
+  /**
+   * Records that memoized mismatch of given rule has been reused.
+   */
+  public void recordMismatchHit(String ruleName) {
+    get(ruleName)[3]++;
+  }
+
+  private long[] get(String ruleName) {
+    long[] values = statistics.get(ruleName);
+    if (values == null) {
+      values = new long[VALUES];
+      statistics.put(ruleName, values);
+    }
+    return values;
+  }
+
+  public long getMemos(String ruleName) {
+    return getValue(ruleName, 0);
+  }
+
+  public long getHits(String ruleName) {
+    return getValue(ruleName, 1);
+  }
+
+  public long getReusedLength(String ruleName) {
+    return getValue(ruleName, 2);
+  }
+
+  public long getMismatchHits(String ruleName) {
+    return getValue(ruleName, 3);
+  }
+
+  private long getValue(String ruleName, int i) {
+    long[] values = statistics.get(ruleName);
+    return values == null ? 0 : values[i];
+  }
+
+  /**
+   * @return true, if memoized results or mismatches of given rule have been reused,
+   * false, if they have not been reused, and null, if there is no information about given rule
+   */
+  @Nullable
+  public Boolean shouldMemoize(String ruleName) {
+    long[] values = statistics.get(ruleName);
+    if (values == null) {
+      return null;
+    }
+    return values[1] > 0 || values[3] > 0;
+  }
+
+  public void save(Writer writer) throws IOException {
+    for (Map.Entry<String, long[]> entry : statistics.entrySet()) {
+      long[] values = entry.getValue();
+      writer.append(entry.getKey())
+          .append(SEPARATOR).append(Long.toString(values[0]))
+          .append(SEPARATOR).append(Long.toString(values[1]))
+          .append(SEPARATOR).append(Long.toString(values[2]))
+          .append(SEPARATOR).append(Long.toString(values[3]))
+          .append('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * @throws IllegalArgumentException if format of profile is incorrect
+   */
+  public static MemoizationProfile load(Reader reader) throws IOException {
+    MemoizationProfile profile = new MemoizationProfile();
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      Iterator<String> parts = Splitter.on(SEPARATOR).split(line).iterator();
+      String ruleName = parts.next();
+      long[] values = new long[VALUES];
+      for (int i = 0; i < values.length; i++) {
+        Preconditions.checkArgument(parts.hasNext(), "Incorrect line in memoization profile: %s", line);
+        values[i] = Long.parseLong(parts.next());
+      }
+      Preconditions.checkArgument(!parts.hasNext(), "Incorrect line in memoization profile: %s", line);
+      profile.statistics.put(ruleName, values);
+    }
+    return profile;
+  }
+
+}
@@ -147,7 +147,7 @@ public class ListAstSelect implements AstSelect {
   public AstSelect descendants(AstNodeType type) {
     List<AstNode> result = new ArrayList<>();
     for (AstNode node : list) {
-      result.addAll(node.getDescendants(type));
+      node.getDescendants(result, type);
     }
     return AstSelectFactory.create(result);
   }
@@ -156,7 +156,7 @@ public class ListAstSelect implements AstSelect {
   public AstSelect descendants(AstNodeType... types) {
     List<AstNode> result = new ArrayList<>();
     for (AstNode node : list) {
-      result.addAll(node.getDescendants(types));
+      node.getDescendants(result, types);
     }
     return AstSelectFactory.create(result);
   }
@@ -48,6 +48,7 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
   private final String name;
   private ParsingExpression expression;
   private AstNodeSkippingPolicy astNodeSkippingPolicy = NeverSkipFromAst.INSTANCE;
+  private boolean memoize = true;
 
   public MutableParsingRule(String name) {
     this.ruleKey = this;
@@ -143,7 +144,12 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
 
   @Override
   public boolean shouldMemoize() {
-    return true;
+    return memoize;
+  }
+
+  @Override
+  public void setMemoization(boolean memoize) {
+    this.memoize = memoize;
   }
 
 }
@@ -27,6 +27,7 @@ import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.api.Trivia.TriviaKind;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.text.AbstractText;
 import org.sonar.sslr.internal.text.CompositeText.CompositeTextCharSequence;
 import org.sonar.sslr.internal.vm.TokenExpression;
 import org.sonar.sslr.internal.vm.TriviaExpression;
@@ -43,7 +44,7 @@ import java.util.List;
 
 public final class AstCreator {
 
-  private static final URI FAKE_URI;
+  static final URI FAKE_URI;
 
   static {
     try {
@@ -55,18 +56,32 @@ public final class AstCreator {
   }
 
   private final TextCharSequence input;
+  private final char[] chars;
+  private final boolean lazyTokens;
   private final Token.Builder tokenBuilder = Token.builder();
   private final List<Trivia> trivias = new ArrayList<>();
 
   public static AstNode create(ParsingResult parsingResult, Text input) {
-    AstNode astNode = new AstCreator(input).visit(parsingResult.getParseTreeRoot());
+    // This cast is safe, even if not checked - AbstractText is a base implementation of interface Text
+    return create(parsingResult, input, ((AbstractText) input).toChars(), false);
+  }
+
+  /**
+   * @param chars characters of given input, which were passed to the parser
+   * @param lazyTokens if {@code true}, then values and positions of tokens are computed only on demand
+   * @since 1.21
+   */
+  public static AstNode create(ParsingResult parsingResult, Text input, char[] chars, boolean lazyTokens) {
+    AstNode astNode = new AstCreator(input, chars, lazyTokens).visit(parsingResult.getParseTreeRoot());
     // Unwrap AstNodeType for root node:
     astNode.hasToBeSkippedFromAst();
     return astNode;
   }
 
-  private AstCreator(Text input) {
+  private AstCreator(Text input, char[] chars, boolean lazyTokens) {
     this.input = input.sequence();
+    this.chars = chars;
+    this.lazyTokens = lazyTokens;
   }
 
   private AstNode visit(ParseNode node) {
@@ -78,33 +93,28 @@ public final class AstCreator {
   }
 
   private AstNode visitTerminal(ParseNode node) {
+    TokenType type;
     if (node.getMatcher() instanceof TriviaExpression) {
       TriviaExpression ruleMatcher = (TriviaExpression) node.getMatcher();
       if (ruleMatcher.getTriviaKind() == TriviaKind.SKIPPED_TEXT) {
         return null;
       } else if (ruleMatcher.getTriviaKind() == TriviaKind.COMMENT) {
-        updateTokenPositionAndValue(node);
-        tokenBuilder.setTrivia(Collections.<Trivia>emptyList());
-        tokenBuilder.setType(GenericTokenType.COMMENT);
-        trivias.add(Trivia.createComment(tokenBuilder.build()));
+        trivias.add(Trivia.createComment(createToken(node, GenericTokenType.COMMENT, Collections.<Trivia>emptyList())));
         return null;
       } else {
         throw new IllegalStateException("Unexpected trivia kind: " + ruleMatcher.getTriviaKind());
       }
     } else if (node.getMatcher() instanceof TokenExpression) {
-      updateTokenPositionAndValue(node);
       TokenExpression ruleMatcher = (TokenExpression) node.getMatcher();
-      tokenBuilder.setType(ruleMatcher.getTokenType());
-      if (ruleMatcher.getTokenType() == GenericTokenType.COMMENT) {
-        tokenBuilder.setTrivia(Collections.<Trivia>emptyList());
-        trivias.add(Trivia.createComment(tokenBuilder.build()));
+      type = ruleMatcher.getTokenType();
+      if (type == GenericTokenType.COMMENT) {
+        trivias.add(Trivia.createComment(createToken(node, type, Collections.<Trivia>emptyList())));
         return null;
       }
     } else {
-      updateTokenPositionAndValue(node);
-      tokenBuilder.setType(UNDEFINED_TOKEN_TYPE);
+      type = UNDEFINED_TOKEN_TYPE;
     }
-    Token token = tokenBuilder.setTrivia(trivias).build();
+    Token token = createToken(node, type, trivias);
     trivias.clear();
     AstNode astNode = new AstNode(token);
     astNode.setFromIndex(node.getStartIndex());
@@ -112,6 +122,14 @@ public final class AstCreator {
     return astNode;
   }
 
+  private Token createToken(ParseNode node, TokenType type, List<Trivia> trivia) {
+    if (lazyTokens) {
+      return new LazyToken(type, trivia, input, chars, node.getStartIndex(), node.getEndIndex());
+    }
+    updateTokenPositionAndValue(node);
+    return tokenBuilder.setType(type).setTrivia(trivia).build();
+  }
+
   private void updateTokenPositionAndValue(ParseNode node) {
     TextLocation location = input.getLocation(node.getStartIndex());
     if (location == null) {
@@ -172,11 +190,8 @@ public final class AstCreator {
   }
 
   private String getValue(ParseNode node) {
-    StringBuilder result = new StringBuilder();
-    for (int i = node.getStartIndex(); i < Math.min(node.getEndIndex(), input.length()); i++) {
-      result.append(input.charAt(i));
-    }
-    return result.toString();
+    int startIndex = node.getStartIndex();
+    return new String(chars, startIndex, Math.min(node.getEndIndex(), chars.length) - startIndex);
   }
 
   @VisibleForTesting
@@ -0,0 +1,155 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import org.sonar.sslr.internal.text.CompositeText.CompositeTextCharSequence;
+import org.sonar.sslr.text.TextCharSequence;
+import org.sonar.sslr.text.TextLocation;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Token, value and position of which are computed from the input only on demand.
+ *
+ * @since 1.21
+ */
+final class LazyToken extends Token {
+
+  private final TextCharSequence input;
+  private final char[] chars;
+  private final int startIndex;
+  private final int endIndex;
+
+  private String value;
+  private Location location;
+
+  LazyToken(TokenType type, List<Trivia> trivia, TextCharSequence input, char[] chars, int startIndex, int endIndex) {
+    super(type, trivia);
+    this.input = input;
+    this.chars = chars;
+    this.startIndex = startIndex;
+    this.endIndex = endIndex;
+  }
+
+  @Override
+  public String getValue() {
+    String result = value;
+    if (result == null) {
+      result = new String(chars, startIndex, Math.min(endIndex, chars.length) - startIndex);
+      value = result;
+    }
+    return result;
+  }
+
+  @Override
+  public String getOriginalValue() {
+    return getValue();
+  }
+
+  @Override
+  public int getLine() {
+    return getLocation().line;
+  }
+
+  @Override
+  public int getColumn() {
+    return getLocation().column;
+  }
+
+  @Override
+  public URI getURI() {
+    return getLocation().uri;
+  }
+
+  @Override
+  public boolean isGeneratedCode() {
+    return getLocation().generatedCode;
+  }
+
+  @Override
+  public boolean isCopyBook() {
+    return getLocation().copyBookOriginalFileName != null;
+  }
+
+  @Override
+  public int getCopyBookOriginalLine() {
+    return isCopyBook() ? getLocation().copyBookOriginalLine : -1;
+  }
+
+  @Override
+  public String getCopyBookOriginalFileName() {
+    return isCopyBook() ? getLocation().copyBookOriginalFileName : "";
+  }
+
+  private Location getLocation() {
+    Location result = location;
+    if (result == null) {
+      // cursor of CompositeTextCharSequence is not thread-safe
+      synchronized (input) {
+        result = new Location(input, startIndex);
+      }
+      location = result;
+    }
+    return result;
+  }
+
+  /**
+   * All fields are final, so that instance can be safely shared between threads without synchronization.
+   */
+  private static final class Location {
+
+    private final boolean generatedCode;
+    private final int line;
+    private final int column;
+    private final URI uri;
+    private final String copyBookOriginalFileName;
+    private final int copyBookOriginalLine;
+
+    Location(TextCharSequence input, int index) {
+      TextLocation location = input.getLocation(index);
+      if (location == null) {
+        // line, column and uri has no value for generated code
+        generatedCode = true;
+        line = 1;
+        column = 0;
+        uri = AstCreator.FAKE_URI;
+        copyBookOriginalFileName = null;
+        copyBookOriginalLine = -1;
+      } else {
+        generatedCode = false;
+        line = location.getLine();
+        column = location.getColumn() - 1;
+        uri = location.getFileURI() == null ? AstCreator.FAKE_URI : location.getFileURI();
+
+        TextLocation copyLocation = input instanceof CompositeTextCharSequence
+            ? ((CompositeTextCharSequence) input).getCopyLocation(index)
+            : null;
+        copyBookOriginalFileName = copyLocation == null ? null : copyLocation.getFile().getAbsolutePath();
+        copyBookOriginalLine = copyLocation == null ? -1 : copyLocation.getLine();
+      }
+    }
+
+  }
+
+}
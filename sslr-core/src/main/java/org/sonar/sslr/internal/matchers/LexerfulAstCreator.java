@@ -21,25 +21,73 @@ package org.sonar.sslr.internal.matchers;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenStore;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.internal.vm.ParseNodeFactory;
 import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
 
-import java.util.ArrayList;
+import javax.annotation.Nullable;
+
 import java.util.List;
 
-public class LexerfulAstCreator {
+import static com.google.common.base.Preconditions.checkArgument;
+
+public class LexerfulAstCreator implements ParseNodeFactory {
 
   public static AstNode create(ParseNode node, List<Token> tokens) {
-    AstNode astNode = new LexerfulAstCreator(tokens).visit(node);
+    return create(new LexerfulAstCreator(tokens, null), node);
+  }
+
+  /**
+   * Creates AST directly from given store, so that {@link Token}s are created only for tokens, which are not skipped from AST.
+   *
+   * @since 1.21
+   */
+  public static AstNode create(ParseNode node, TokenStore tokens) {
+    return create(new LexerfulAstCreator(tokens, tokens), node);
+  }
+
+  private static AstNode create(LexerfulAstCreator astCreator, ParseNode node) {
+    AstNode astNode = astCreator.visit(node);
     // Unwrap AstNodeType for root node:
     astNode.hasToBeSkippedFromAst();
     return astNode;
   }
 
+  /**
+   * Returns factory for {@link org.sonar.sslr.internal.vm.Machine}, which creates AST nodes as soon as rules are matched,
+   * so that parse tree is not built. Use {@link #getAstNode(ParseNode)} to obtain AST from the root node.
+   *
+   * @since 1.21
+   */
+  public static ParseNodeFactory nodeFactory(List<Token> tokens) {
+    return new LexerfulAstCreator(tokens, null);
+  }
+
+  /**
+   * @see #nodeFactory(List)
+   * @since 1.21
+   */
+  public static ParseNodeFactory nodeFactory(TokenStore tokens) {
+    return new LexerfulAstCreator(tokens, tokens);
+  }
+
+  /**
+   * @param node root node, which was created by {@link #nodeFactory(List)}
+   * @since 1.21
+   */
+  public static AstNode getAstNode(ParseNode node) {
+    checkArgument(node instanceof AstParseNode, "Node must be created by LexerfulAstCreator");
+    return ((AstParseNode) node).astNode;
+  }
+
   private final List<Token> tokens;
+  private final TokenStore tokenStore;
 
-  private LexerfulAstCreator(List<Token> tokens) {
+  private LexerfulAstCreator(List<Token> tokens, @Nullable TokenStore tokenStore) {
     this.tokens = tokens;
+    this.tokenStore = tokenStore;
   }
 
   private AstNode visit(ParseNode node) {
@@ -51,41 +99,115 @@ public class LexerfulAstCreator {
   }
 
   private AstNode visitNonTerminal(ParseNode node) {
-    List<AstNode> astNodes = new ArrayList<>();
+    AstNode astNode = createNonTerminal(node.getStartIndex(), node.getEndIndex(), (RuleDefinition) node.getMatcher());
     for (ParseNode child : node.getChildren()) {
-      AstNode astNode = visit(child);
-      if (astNode == null) {
+      AstNode childAstNode = visit(child);
+      if (childAstNode == null) {
         // skip
-      } else if (astNode.hasToBeSkippedFromAst()) {
-        astNodes.addAll(astNode.getChildren());
+      } else if (childAstNode.hasToBeSkippedFromAst()) {
+        for (AstNode grandChild : childAstNode.getChildren()) {
+          astNode.addChild(grandChild);
+        }
       } else {
-        astNodes.add(astNode);
+        astNode.addChild(childAstNode);
       }
     }
+    return astNode;
+  }
 
-    RuleDefinition ruleMatcher = (RuleDefinition) node.getMatcher();
-
-    Token token = node.getStartIndex() < tokens.size() ? tokens.get(node.getStartIndex()) : null;
+  private AstNode createNonTerminal(int startIndex, int endIndex, RuleDefinition ruleMatcher) {
+    Token token = startIndex < tokens.size() ? tokens.get(startIndex) : null;
     AstNode astNode = new AstNode(ruleMatcher, ruleMatcher.getName(), token);
-    for (AstNode child : astNodes) {
-      astNode.addChild(child);
-    }
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
-
+    astNode.setFromIndex(startIndex);
+    astNode.setToIndex(endIndex);
     return astNode;
   }
 
   private AstNode visitTerminal(ParseNode node) {
-    Token token = tokens.get(node.getStartIndex());
+    return createTerminal(node.getStartIndex(), node.getEndIndex(), node.getMatcher());
+  }
+
+  @Nullable
+  private AstNode createTerminal(int startIndex, int endIndex, Matcher matcher) {
     // For compatibility with SSLR < 1.19, TokenType should be checked only for TokenTypeExpression:
-    if ((node.getMatcher() instanceof TokenTypeExpression) && token.getType().hasToBeSkippedFromAst(null)) {
+    if ((matcher instanceof TokenTypeExpression) && typeAt(startIndex).hasToBeSkippedFromAst(null)) {
       return null;
     }
-    AstNode astNode = new AstNode(token);
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
+    AstNode astNode = new AstNode(tokens.get(startIndex));
+    astNode.setFromIndex(startIndex);
+    astNode.setToIndex(endIndex);
     return astNode;
   }
 
+  private TokenType typeAt(int index) {
+    return tokenStore != null ? tokenStore.getType(index) : tokens.get(index).getType();
+  }
+
+  @Override
+  public ParseNode createNode(int startIndex, int endIndex, List<ParseNode> children, Matcher matcher) {
+    if (!(matcher instanceof RuleDefinition)) {
+      return createLeafNode(startIndex, endIndex, matcher);
+    }
+    AstNode astNode = createNonTerminal(startIndex, endIndex, (RuleDefinition) matcher);
+    for (ParseNode child : children) {
+      AstParseNode node = (AstParseNode) child;
+      if (node.astNode == null) {
+        // skip
+      } else if (node.skipped) {
+        for (AstNode grandChild : node.astNode.getChildren()) {
+          astNode.addChild(reusable(grandChild, node.astNode));
+        }
+      } else {
+        astNode.addChild(reusable(node.astNode, null));
+      }
+    }
+    return new AstParseNode(startIndex, endIndex, matcher, astNode, astNode.hasToBeSkippedFromAst());
+  }
+
+  @Override
+  public ParseNode createLeafNode(int startIndex, int endIndex, Matcher matcher) {
+    return new AstParseNode(startIndex, endIndex, matcher, createTerminal(startIndex, endIndex, matcher), false);
+  }
+
+  /**
+   * Node might be already attached to a parent, if it was memoized and then reused by machine.
+   * It is unknown which of parents will be part of the final tree, so node must be copied.
+   *
+   * @param owner node, which is allowed to be a parent of given node - children of skipped node are attached to it until inlined
+   */
+  private static AstNode reusable(AstNode astNode, @Nullable AstNode owner) {
+    if (astNode.getParent() == null || astNode.getParent() == owner) {
+      return astNode;
+    }
+    AstNode copy = new AstNode(astNode.getType(), astNode.getName(), astNode.getToken());
+    for (AstNode child : astNode.getChildren()) {
+      copy.addChild(reusable(child, null));
+    }
+    copy.setFromIndex(astNode.getFromIndex());
+    copy.setToIndex(astNode.getToIndex());
+    return copy;
+  }
+
+  /**
+   * Holds AST node instead of children, so that parse tree is not built.
+   */
+  private static final class AstParseNode extends ParseNode {
+
+    @Nullable
+    private final AstNode astNode;
+
+    /**
+     * Whether {@link #astNode} must be replaced by its children, as was decided by {@link AstNode#hasToBeSkippedFromAst()},
+     * which can't be invoked again, because it changes type of node.
+     */
+    private final boolean skipped;
+
+    AstParseNode(int startIndex, int endIndex, Matcher matcher, @Nullable AstNode astNode, boolean skipped) {
+      super(startIndex, endIndex, matcher);
+      this.astNode = astNode;
+      this.skipped = skipped;
+    }
+
+  }
+
 }
@@ -0,0 +1,323 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Subset construction, where subset of states of {@link Nfa} is ordered by priority and truncated after state {@link Nfa#MATCH},
+ * so that automaton finds the same match as backtracking {@link java.util.regex.Pattern}.
+ * Automaton is represented by table of classes of characters and by flat table of transitions.
+ */
+final class DfaCompiler {
+
+  /**
+   * Offset of state, which never matches.
+   */
+  static final int DEAD = 0;
+
+  private static final int MAX_STATES = 10000;
+  private static final int BLOCK_SIZE = 256;
+
+  private final String regex;
+  private final Nfa nfa;
+
+  private final int[] classOf = new int[Character.MAX_VALUE + 1];
+  private int numberOfClasses;
+  private boolean[][] membership;
+  private boolean hasLookaheads;
+
+  private final Map<StateKey, Integer> states = Maps.newHashMap();
+  private final List<int[]> kernels = Lists.newArrayList();
+
+  private final int[] marks;
+  private int mark;
+  private final int[] stack;
+  private final int[] closure;
+  /**
+   * State {@link Nfa#MATCH}, which was reached by last computation of closure.
+   */
+  private int matched;
+
+  private int[][] classes;
+  private int stride;
+  private int[] transitions;
+  private int[] rules;
+
+  /**
+   * @throws IllegalArgumentException if automaton is too large
+   */
+  DfaCompiler(String regex, Nfa nfa) {
+    this.regex = regex;
+    this.nfa = nfa;
+    this.marks = new int[nfa.size()];
+    this.stack = new int[nfa.size() * 3];
+    this.closure = new int[nfa.size()];
+    compile();
+  }
+
+  /**
+   * Class of character c is {@code classes()[c >>> 8][c & 0xFF]}, characters of a same class are indistinguishable for automaton.
+   */
+  int[][] classes() {
+    return classes;
+  }
+
+  /**
+   * Number of elements in row of {@link #transitions()}: one for each class of characters and one for end of input.
+   */
+  int stride() {
+    return stride;
+  }
+
+  /**
+   * Transition from state (offset of its row) for class of next character: offset of row of next state shifted left by one,
+   * least significant bit is set when input matches before this character. Start state is at offset {@link #stride()}.
+   */
+  int[] transitions() {
+    return transitions;
+  }
+
+  /**
+   * For each element of {@link #transitions()}, which has least significant bit set, the rule of matched state,
+   * see {@link Nfa#rule(int)}, and -1 for others.
+   */
+  int[] rules() {
+    return rules;
+  }
+
+  private void compile() {
+    computeClasses();
+    stride = numberOfClasses + 1;
+
+    state(new int[0]);
+    state(new int[] {nfa.start()});
+    List<int[]> rows = Lists.newArrayList();
+    List<int[]> ruleRows = Lists.newArrayList();
+    int[] deadRules = new int[stride];
+    Arrays.fill(deadRules, -1);
+    rows.add(new int[stride]);
+    ruleRows.add(deadRules);
+    int[] next = new int[nfa.size()];
+    for (int s = 1; s < kernels.size(); s++) {
+      int[] kernel = kernels.get(s);
+      int[] row = new int[stride];
+      int[] ruleRow = new int[stride];
+      int length = -1;
+      for (int c = 0; c < stride; c++) {
+        if (c == 0 || hasLookaheads) {
+          length = closure(kernel, c);
+        }
+        boolean matches = length < 0;
+        int size = matches ? ~length : length;
+        ruleRow[c] = matches ? nfa.rule(matched) : -1;
+        if (c == numberOfClasses) {
+          row[c] = matches ? 1 : 0;
+          continue;
+        }
+        mark++;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+          int state = closure[i];
+          int target = nfa.next(state);
+          if (membership[state][c] && marks[target] != mark) {
+            marks[target] = mark;
+            next[count++] = target;
+          }
+        }
+        row[c] = (state(Arrays.copyOf(next, count)) * stride) << 1 | (matches ? 1 : 0);
+      }
+      rows.add(row);
+      ruleRows.add(ruleRow);
+    }
+
+    transitions = new int[rows.size() * stride];
+    rules = new int[rows.size() * stride];
+    for (int s = 0; s < rows.size(); s++) {
+      System.arraycopy(rows.get(s), 0, transitions, s * stride, stride);
+      System.arraycopy(ruleRows.get(s), 0, rules, s * stride, stride);
+    }
+    classes = blocks();
+  }
+
+  /**
+   * Partitions characters into classes, such that each set of characters used in automaton is union of classes:
+   * characters of each interval between boundaries of sets belong to a same class.
+   */
+  private void computeClasses() {
+    membership = new boolean[nfa.size()][];
+    List<BitSet> sets = Lists.newArrayList();
+    for (int state = 0; state < nfa.size(); state++) {
+      BitSet chars = nfa.chars(state);
+      if (chars != null && !sets.contains(chars)) {
+        sets.add(chars);
+      }
+      hasLookaheads |= nfa.type(state) == Nfa.LOOKAHEAD || nfa.type(state) == Nfa.NEGATIVE_LOOKAHEAD;
+    }
+    SortedSet<Integer> boundaries = Sets.newTreeSet();
+    boundaries.add(0);
+    for (BitSet set : sets) {
+      for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i)) {
+        boundaries.add(i);
+        i = set.nextClearBit(i);
+        boundaries.add(i);
+      }
+    }
+    boundaries.add(Character.MAX_VALUE + 1);
+    Map<BitSet, Integer> signatures = Maps.newHashMap();
+    Integer[] intervals = boundaries.toArray(new Integer[boundaries.size()]);
+    for (int i = 0; i < intervals.length - 1; i++) {
+      BitSet signature = new BitSet(sets.size());
+      for (int j = 0; j < sets.size(); j++) {
+        signature.set(j, sets.get(j).get(intervals[i]));
+      }
+      Integer c = signatures.get(signature);
+      if (c == null) {
+        c = signatures.size();
+        signatures.put(signature, c);
+      }
+      Arrays.fill(classOf, intervals[i], intervals[i + 1], c);
+    }
+    numberOfClasses = signatures.size();
+    int[] representatives = new int[numberOfClasses];
+    for (int c = Character.MAX_VALUE; c >= 0; c--) {
+      representatives[classOf[c]] = c;
+    }
+    for (int state = 0; state < nfa.size(); state++) {
+      BitSet chars = nfa.chars(state);
+      if (chars != null) {
+        membership[state] = new boolean[numberOfClasses];
+        for (int c = 0; c < numberOfClasses; c++) {
+          membership[state][c] = chars.get(representatives[c]);
+        }
+      }
+    }
+  }
+
+  private int[][] blocks() {
+    int[][] blocks = new int[(Character.MAX_VALUE + 1) / BLOCK_SIZE][];
+    List<int[]> distinct = Lists.newArrayList();
+    for (int i = 0; i < blocks.length; i++) {
+      int[] block = Arrays.copyOfRange(classOf, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE);
+      for (int[] existing : distinct) {
+        if (Arrays.equals(existing, block)) {
+          block = existing;
+          break;
+        }
+      }
+      if (!distinct.contains(block)) {
+        distinct.add(block);
+      }
+      blocks[i] = block;
+    }
+    return blocks;
+  }
+
+  private int state(int[] kernel) {
+    StateKey key = new StateKey(kernel);
+    Integer result = states.get(key);
+    if (result == null) {
+      if (kernels.size() == MAX_STATES) {
+        throw new IllegalArgumentException("Regular expression leads to too large automaton: " + regex);
+      }
+      result = kernels.size();
+      states.put(key, result);
+      kernels.add(kernel);
+    }
+    return result;
+  }
+
+  /**
+   * Computes states of {@link #nfa}, which consume characters and reachable from given states by epsilon transitions,
+   * in order of priority, lookaheads are evaluated for given class of next character.
+   *
+   * @return number of computed states or its bitwise complement if state {@link Nfa#MATCH} is reachable
+   */
+  private int closure(int[] kernel, int c) {
+    mark++;
+    int top = 0;
+    for (int i = kernel.length - 1; i >= 0; i--) {
+      stack[top++] = kernel[i];
+    }
+    int count = 0;
+    while (top > 0) {
+      int state = stack[--top];
+      if (marks[state] == mark) {
+        continue;
+      }
+      marks[state] = mark;
+      switch (nfa.type(state)) {
+        case Nfa.CHARS:
+          closure[count++] = state;
+          break;
+        case Nfa.SPLIT:
+          stack[top++] = nfa.alternative(state);
+          stack[top++] = nfa.next(state);
+          break;
+        case Nfa.JUMP:
+          stack[top++] = nfa.next(state);
+          break;
+        case Nfa.LOOKAHEAD:
+        case Nfa.NEGATIVE_LOOKAHEAD:
+          boolean present = c != numberOfClasses && membership[state][c];
+          if (present == (nfa.type(state) == Nfa.LOOKAHEAD)) {
+            stack[top++] = nfa.next(state);
+          }
+          break;
+        default:
+          // Alternatives with lower priority than match are never used
+          matched = state;
+          return ~count;
+      }
+    }
+    return count;
+  }
+
+  private static final class StateKey {
+
+    private final int[] kernel;
+    private final int hashCode;
+
+    StateKey(int[] kernel) {
+      this.kernel = kernel;
+      this.hashCode = Arrays.hashCode(kernel);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof StateKey && Arrays.equals(kernel, ((StateKey) obj).kernel);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import java.util.regex.Pattern;
+
+/**
+ * Alternative to {@link Pattern} for the subset of regular expressions, which can be compiled into deterministic automaton:
+ * matching takes linear time and constant stack, so that neither catastrophic backtracking nor stack overflow are possible.
+ * <p>
+ * Supported constructs: characters, character classes, predefined character classes, dot, alternations, groups,
+ * greedy and reluctant quantifiers, inline flags (except {@link Pattern#COMMENTS}) and lookaheads of single character.
+ * Possessive quantifiers are supported for single characters (e.g. {@code [a-z]++}), but for subexpressions possessive quantifiers
+ * and atomic groups are supported only when they are equivalent to greedy quantifiers (e.g. {@code "([^"\\]|\\.)*+"}).
+ * Not supported: backreferences, boundary matchers, lookbehinds, repetition of subexpressions, which can match empty input.
+ * </p>
+ * <p>
+ * Results are the same as for {@link java.util.regex.Matcher#lookingAt()} with the exception of supplementary characters:
+ * automaton works with chars, so that a character class never matches surrogate pair as a whole.
+ * </p>
+ * <p>
+ * This class is immutable and thread-safe.
+ * </p>
+ */
+public final class DfaPattern {
+
+  private final String regex;
+
+  /**
+   * Class of character c is {@code classes[c >>> 8][c & 0xFF]}, characters of a same class are indistinguishable for automaton.
+   */
+  private final int[][] classes;
+
+  /**
+   * Number of elements in row of {@link #transitions}: one for each class of characters and one for end of input.
+   */
+  private final int stride;
+
+  /**
+   * Transition from state (offset of its row) for class of next character: offset of row of next state shifted left by one,
+   * least significant bit is set when input matches before this character.
+   */
+  private final int[] transitions;
+
+  private DfaPattern(String regex, int[][] classes, int stride, int[] transitions) {
+    this.regex = regex;
+    this.classes = classes;
+    this.stride = stride;
+    this.transitions = transitions;
+  }
+
+  /**
+   * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
+   * @throws IllegalArgumentException if the expression is not supported
+   */
+  public static DfaPattern compile(String regex) {
+    Pattern.compile(regex);
+    DfaCompiler compiler = new DfaCompiler(regex, Nfa.build(regex, RegexParser.parse(regex)));
+    return new DfaPattern(regex, compiler.classes(), compiler.stride(), compiler.transitions());
+  }
+
+  public String pattern() {
+    return regex;
+  }
+
+  /**
+   * Attempts to match the input sequence, starting at the beginning, against the pattern.
+   *
+   * @return length of matched prefix of input or -1 if there is no match
+   * @see java.util.regex.Matcher#lookingAt()
+   */
+  public int match(CharSequence input) {
+    int length = input.length();
+    int result = -1;
+    int state = stride;
+    for (int i = 0; i < length; i++) {
+      char c = input.charAt(i);
+      int transition = transitions[state + classes[c >>> 8][c & 0xFF]];
+      if ((transition & 1) != 0) {
+        result = i;
+      }
+      state = transition >>> 1;
+      if (state == DfaCompiler.DEAD) {
+        return result;
+      }
+    }
+    if ((transitions[state + stride - 1] & 1) != 0) {
+      result = length;
+    }
+    return result;
+  }
+
+  /**
+   * @return false if pattern certainly does not match input, which starts with given character
+   */
+  public boolean canStartWith(char c) {
+    return transitions[stride + classes[c >>> 8][c & 0xFF]] != DfaCompiler.DEAD;
+  }
+
+  @Override
+  public String toString() {
+    return regex;
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Deterministic automaton, which recognizes one of several regular expressions (rules) in a single pass over input,
+ * in the same way as scanners generated by flex. But unlike flex, which prefers longest match, it gives priority to rules
+ * in order of declaration: result is the same as for {@link java.util.regex.Matcher#lookingAt()} with alternation of rules,
+ * i.e. match of first rule, which matches input, otherwise match of second one and so on.
+ * <p>
+ * Rules must be supported by {@link DfaPattern} and must not match empty input.
+ * </p>
+ * <p>
+ * This class is immutable and thread-safe.
+ * </p>
+ */
+public final class DfaScanner {
+
+  private final List<String> rules;
+  private final int[][] classes;
+  private final int stride;
+  private final int[] transitions;
+  private final int[] matchedRules;
+
+  private DfaScanner(List<String> rules, DfaCompiler compiler) {
+    this.rules = rules;
+    this.classes = compiler.classes();
+    this.stride = compiler.stride();
+    this.transitions = compiler.transitions();
+    this.matchedRules = compiler.rules();
+  }
+
+  /**
+   * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
+   * @throws IllegalArgumentException if one of expressions is not supported or can match empty input
+   */
+  public static DfaScanner compile(List<String> rules) {
+    checkArgument(!rules.isEmpty(), "At least one regular expression must be given");
+    List<RegexNode> nodes = Lists.newArrayList();
+    for (String rule : rules) {
+      Pattern.compile(rule);
+      RegexNode node = RegexParser.parse(rule);
+      if (node.isNullable()) {
+        throw new IllegalArgumentException("Unsupported regular expression, which can match empty input: " + rule);
+      }
+      nodes.add(node);
+    }
+    String description = Joiner.on(", ").join(rules);
+    return new DfaScanner(ImmutableList.copyOf(rules), new DfaCompiler(description, Nfa.build(description, nodes)));
+  }
+
+  public List<String> rules() {
+    return rules;
+  }
+
+  /**
+   * Attempts to match the input sequence, starting at the beginning, against rules.
+   *
+   * @return -1 if there is no match, otherwise length of matched prefix of input shifted left by 32 bits
+   *         combined with index of matched rule, see {@link #length(long)} and {@link #rule(long)}
+   */
+  public long match(CharSequence input) {
+    int length = input.length();
+    long result = -1;
+    int state = stride;
+    for (int i = 0; i < length; i++) {
+      char c = input.charAt(i);
+      int offset = state + classes[c >>> 8][c & 0xFF];
+      int transition = transitions[offset];
+      if ((transition & 1) != 0) {
+        result = (long) i << 32 | matchedRules[offset];
+      }
+      state = transition >>> 1;
+      if (state == DfaCompiler.DEAD) {
+        return result;
+      }
+    }
+    int offset = state + stride - 1;
+    if ((transitions[offset] & 1) != 0) {
+      result = (long) length << 32 | matchedRules[offset];
+    }
+    return result;
+  }
+
+  /**
+   * @return length of match from result of {@link #match(CharSequence)}
+   */
+  public static int length(long match) {
+    return (int) (match >>> 32);
+  }
+
+  /**
+   * @return index of matched rule from result of {@link #match(CharSequence)}
+   */
+  public static int rule(long match) {
+    return (int) match;
+  }
+
+  /**
+   * @return false if none of rules can match input, which starts with given character
+   */
+  public boolean canStartWith(char c) {
+    return transitions[stride + classes[c >>> 8][c & 0xFF]] != DfaCompiler.DEAD;
+  }
+
+  @Override
+  public String toString() {
+    return rules.toString();
+  }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thompson's nondeterministic automaton, where epsilon transitions are ordered by priority in the same way
+ * as alternatives are tried by backtracking {@link java.util.regex.Pattern}.
+ */
+final class Nfa {
+
+  static final int CHARS = 0;
+  /**
+   * Epsilon transitions to {@link #next(int)} and with lower priority to {@link #alternative(int)}.
+   */
+  static final int SPLIT = 1;
+  static final int JUMP = 2;
+  static final int LOOKAHEAD = 3;
+  static final int NEGATIVE_LOOKAHEAD = 4;
+  /**
+   * Final state, see {@link #rule(int)}.
+   */
+  static final int MATCH = 5;
+
+  private static final int MAX_STATES = 10000;
+
+  private final String regex;
+  private int[] types = new int[16];
+  private int[] nexts = new int[16];
+  private int[] alternatives = new int[16];
+  private BitSet[] chars = new BitSet[16];
+  private int size;
+  private final int start;
+  private final List<int[]> possessives = Lists.newArrayList();
+
+  /**
+   * @throws IllegalArgumentException if expression is too large or contains possessive quantifier,
+   *         which can't be replaced by greedy one
+   */
+  static Nfa build(String regex, RegexNode node) {
+    return new Nfa(regex, Collections.singletonList(node));
+  }
+
+  /**
+   * Builds automaton for alternation of given rules, each of which has its own final state,
+   * so that it is possible to determine which one has matched.
+   *
+   * @param description description of rules to use in error messages
+   */
+  static Nfa build(String description, List<RegexNode> rules) {
+    return new Nfa(description, rules);
+  }
+
+  private Nfa(String regex, List<RegexNode> rules) {
+    this.regex = regex;
+    int last = rules.size() - 1;
+    int entry = build(rules.get(last), newState(MATCH, -1, last, null));
+    for (int i = last - 1; i >= 0; i--) {
+      entry = newState(SPLIT, build(rules.get(i), newState(MATCH, -1, i, null)), entry, null);
+    }
+    start = entry;
+    for (int[] possessive : possessives) {
+      checkPossessive(possessive[0], possessive[1], possessive[2], possessive[3]);
+    }
+  }
+
+  int start() {
+    return start;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int type(int state) {
+    return types[state];
+  }
+
+  int next(int state) {
+    return nexts[state];
+  }
+
+  int alternative(int state) {
+    return alternatives[state];
+  }
+
+  BitSet chars(int state) {
+    return chars[state];
+  }
+
+  /**
+   * @return index of rule, which is matched in given state {@link #MATCH}
+   */
+  int rule(int state) {
+    return alternatives[state];
+  }
+
+  private int newState(int type, int next, int alternative, BitSet chars) {
+    if (size == MAX_STATES) {
+      throw new IllegalArgumentException("Regular expression is too large: " + regex);
+    }
+    if (size == types.length) {
+      int capacity = size * 2;
+      types = Arrays.copyOf(types, capacity);
+      nexts = Arrays.copyOf(nexts, capacity);
+      alternatives = Arrays.copyOf(alternatives, capacity);
+      this.chars = Arrays.copyOf(this.chars, capacity);
+    }
+    types[size] = type;
+    nexts[size] = next;
+    alternatives[size] = alternative;
+    this.chars[size] = chars;
+    return size++;
+  }
+
+  /**
+   * @param next state, which follows given node
+   * @return entry state of given node
+   */
+  private int build(RegexNode node, int next) {
+    switch (node.kind) {
+      case CHARS:
+        return newState(CHARS, next, -1, node.chars);
+      case LOOKAHEAD:
+        return newState(node.negative ? NEGATIVE_LOOKAHEAD : LOOKAHEAD, next, -1, node.chars);
+      case SEQUENCE:
+        int entry = next;
+        for (int i = node.children.size() - 1; i >= 0; i--) {
+          entry = build(node.children.get(i), entry);
+        }
+        return entry;
+      case ALTERNATION:
+        int last = node.children.size() - 1;
+        int result = build(node.children.get(last), next);
+        for (int i = last - 1; i >= 0; i--) {
+          result = newState(SPLIT, build(node.children.get(i), next), result, null);
+        }
+        return result;
+      default:
+        if (node.quantifier == RegexNode.Quantifier.POSSESSIVE) {
+          return possessive(node, next);
+        }
+        return repetition(node, next);
+    }
+  }
+
+  private int repetition(RegexNode node, int next) {
+    RegexNode child = node.children.get(0);
+    boolean greedy = node.quantifier != RegexNode.Quantifier.RELUCTANT;
+    int entry;
+    if (node.max == RegexNode.UNBOUNDED) {
+      int loop = newState(SPLIT, -1, -1, null);
+      int body = build(child, loop);
+      nexts[loop] = greedy ? body : next;
+      alternatives[loop] = greedy ? next : body;
+      entry = loop;
+    } else {
+      entry = next;
+      for (int i = node.min; i < node.max; i++) {
+        int body = build(child, entry);
+        entry = greedy ? newState(SPLIT, body, next, null) : newState(SPLIT, next, body, null);
+      }
+    }
+    for (int i = 0; i < node.min; i++) {
+      entry = build(child, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Automaton can't express atomic groups in general, so possessive quantifier (and atomic group) of subexpression is replaced by greedy one,
+   * when this doesn't change result. {@link java.util.regex.Pattern} matches each repetition atomically and never gives back repetitions,
+   * so it is required that repetition is deterministic - at most one alternative can consume next character, and continuation of repetition
+   * has priority over exit from it. And either what follows can match empty input, so that backtracking into repetition never happens,
+   * or what follows can't start with a character, which might continue repetition, so that backtracking into repetition always fails.
+   * Verification is done after construction of whole automaton, because it depends on what follows.
+   */
+  private int possessive(RegexNode node, int next) {
+    RegexNode child = node.children.get(0);
+    if (child.kind == RegexNode.Kind.CHARS) {
+      return possessiveChars(node, next);
+    }
+    int exit = newState(JUMP, next, -1, null);
+    int first = size;
+    int entry = repetition(node, exit);
+    possessives.add(new int[] {entry, exit, first, size});
+    return entry;
+  }
+
+  /**
+   * Possessive repetition of single character from a set consumes as many such characters as possible,
+   * so exit from it before maximal number of repetitions is allowed only if next character doesn't belong to the set.
+   */
+  private int possessiveChars(RegexNode node, int next) {
+    BitSet chars = node.children.get(0).chars;
+    int exit = newState(NEGATIVE_LOOKAHEAD, next, -1, chars);
+    int entry;
+    if (node.max == RegexNode.UNBOUNDED) {
+      int loop = newState(SPLIT, -1, exit, null);
+      int body = newState(CHARS, loop, -1, chars);
+      nexts[loop] = body;
+      entry = loop;
+    } else {
+      entry = next;
+      for (int i = node.min; i < node.max; i++) {
+        entry = newState(SPLIT, newState(CHARS, entry, -1, chars), exit, null);
+      }
+    }
+    for (int i = 0; i < node.min; i++) {
+      entry = newState(CHARS, entry, -1, chars);
+    }
+    return entry;
+  }
+
+  private void checkPossessive(int entry, int exit, int first, int end) {
+    BitSet follow = new BitSet();
+    if (canMatchEmpty(exit, follow)) {
+      follow.clear();
+    }
+    checkDeterministic(entry, exit, follow);
+    for (int state = first; state < end; state++) {
+      if (types[state] == CHARS) {
+        checkDeterministic(nexts[state], exit, follow);
+      }
+    }
+  }
+
+  /**
+   * Conservative analysis of what follows given state: reports that it can match empty input only if it is certainly so,
+   * and otherwise collects characters, on which it might start.
+   */
+  private boolean canMatchEmpty(int from, BitSet follow) {
+    Set<Long> visited = Sets.newHashSet();
+    long[] stack = new long[16];
+    int top = 0;
+    stack[top++] = pack(from, -1);
+    while (top > 0) {
+      long item = stack[--top];
+      if (!visited.add(item)) {
+        continue;
+      }
+      int state = (int) (item >> 32);
+      int lookahead = (int) item;
+      if (top + 2 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      switch (types[state]) {
+        case CHARS:
+          follow.or(chars[state]);
+          break;
+        case SPLIT:
+          stack[top++] = pack(alternatives[state], lookahead);
+          stack[top++] = pack(nexts[state], lookahead);
+          break;
+        case JUMP:
+          stack[top++] = pack(nexts[state], lookahead);
+          break;
+        case LOOKAHEAD:
+        case NEGATIVE_LOOKAHEAD:
+          stack[top++] = pack(nexts[state], state);
+          break;
+        default:
+          if (lookahead == -1) {
+            return true;
+          } else if (types[lookahead] == LOOKAHEAD) {
+            follow.or(chars[lookahead]);
+          } else {
+            BitSet passing = (BitSet) chars[lookahead].clone();
+            passing.flip(0, Character.MAX_VALUE + 1);
+            follow.or(passing);
+          }
+          break;
+      }
+    }
+    return false;
+  }
+
+  private static long pack(int state, int lookahead) {
+    return ((long) state << 32) | (lookahead & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Verifies that from given state at most one alternative within repetition can consume next character,
+   * and that exit from repetition has lower priority than continuation of repetition and can't be followed by such character.
+   */
+  private void checkDeterministic(int from, int exit, BitSet follow) {
+    BitSet visited = new BitSet(size);
+    BitSet consumed = new BitSet();
+    boolean exitReached = false;
+    int[] stack = new int[16];
+    int top = 0;
+    stack[top++] = from;
+    while (top > 0) {
+      int state = stack[--top];
+      if (visited.get(state)) {
+        continue;
+      }
+      visited.set(state);
+      if (top + 2 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      if (state == exit) {
+        exitReached = true;
+      } else if (types[state] == CHARS) {
+        if (exitReached || consumed.intersects(chars[state])) {
+          throw possessiveNotSupported();
+        }
+        consumed.or(chars[state]);
+      } else if (types[state] == SPLIT) {
+        stack[top++] = alternatives[state];
+        stack[top++] = nexts[state];
+      } else {
+        stack[top++] = nexts[state];
+      }
+    }
+    if (exitReached && consumed.intersects(follow)) {
+      throw possessiveNotSupported();
+    }
+  }
+
+  private IllegalArgumentException possessiveNotSupported() {
+    return new IllegalArgumentException("Unsupported construct (possessive quantifier or atomic group, which requires backtracking"
+      + " to be equivalent to greedy quantifier) in regular expression: " + regex);
+  }
+
+}
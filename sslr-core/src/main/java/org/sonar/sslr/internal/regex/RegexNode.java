@@ -0,0 +1,118 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Node of abstract syntax tree of regular expression, which is supported by {@link DfaPattern}.
+ */
+final class RegexNode {
+
+  static final int UNBOUNDED = -1;
+
+  enum Kind {
+    /**
+     * Single character from a set.
+     */
+    CHARS,
+    SEQUENCE,
+    ALTERNATION,
+    REPETITION,
+    /**
+     * Positive or negative lookahead of single character from a set.
+     */
+    LOOKAHEAD
+  }
+
+  enum Quantifier {
+    GREEDY, RELUCTANT, POSSESSIVE
+  }
+
+  final Kind kind;
+  final BitSet chars;
+  final List<RegexNode> children;
+  final int min;
+  final int max;
+  final Quantifier quantifier;
+  final boolean negative;
+
+  private RegexNode(Kind kind, BitSet chars, List<RegexNode> children, int min, int max, Quantifier quantifier, boolean negative) {
+    this.kind = kind;
+    this.chars = chars;
+    this.children = children;
+    this.min = min;
+    this.max = max;
+    this.quantifier = quantifier;
+    this.negative = negative;
+  }
+
+  static RegexNode chars(BitSet chars) {
+    return new RegexNode(Kind.CHARS, chars, ImmutableList.<RegexNode>of(), 1, 1, null, false);
+  }
+
+  static RegexNode sequence(List<RegexNode> children) {
+    return children.size() == 1 ? children.get(0) : new RegexNode(Kind.SEQUENCE, null, ImmutableList.copyOf(children), 1, 1, null, false);
+  }
+
+  static RegexNode alternation(List<RegexNode> children) {
+    return children.size() == 1 ? children.get(0) : new RegexNode(Kind.ALTERNATION, null, ImmutableList.copyOf(children), 1, 1, null, false);
+  }
+
+  static RegexNode repetition(RegexNode child, int min, int max, Quantifier quantifier) {
+    return new RegexNode(Kind.REPETITION, null, ImmutableList.of(child), min, max, quantifier, false);
+  }
+
+  static RegexNode lookahead(BitSet chars, boolean negative) {
+    return new RegexNode(Kind.LOOKAHEAD, chars, ImmutableList.<RegexNode>of(), 0, 0, null, negative);
+  }
+
+  /**
+   * @return true if this node can match empty input
+   */
+  boolean isNullable() {
+    switch (kind) {
+      case CHARS:
+        return false;
+      case SEQUENCE:
+        for (RegexNode child : children) {
+          if (!child.isNullable()) {
+            return false;
+          }
+        }
+        return true;
+      case ALTERNATION:
+        for (RegexNode child : children) {
+          if (child.isNullable()) {
+            return true;
+          }
+        }
+        return false;
+      case REPETITION:
+        return min == 0 || children.get(0).isNullable();
+      default:
+        return true;
+    }
+  }
+
+}
@@ -0,0 +1,552 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.sslr.internal.regex.RegexNode.Quantifier;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of the subset of {@link Pattern} syntax, which is supported by {@link DfaPattern}.
+ * Expression must be valid {@link Pattern}, this parser only rejects unsupported constructs.
+ * <p>
+ * Sets of characters (character classes, predefined classes, dot, case insensitive literals) are computed
+ * by probing {@link Pattern} with each single character, so they have exactly the same meaning as in {@link Pattern}.
+ * </p>
+ */
+final class RegexParser {
+
+  private static final int MAX_REPETITION = 1000;
+  private static final int LATIN1_MAX = 0xFF;
+  private static final char[] LINE_SEPARATORS = {'\u2028', '\u2029'};
+
+  private final String regex;
+  private final Map<String, BitSet> probes = Maps.newHashMap();
+  private final ProbeSequence probeSequence = new ProbeSequence();
+  private int pos;
+  private int flags;
+
+  private RegexParser(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * @throws IllegalArgumentException if expression contains unsupported constructs
+   */
+  static RegexNode parse(String regex) {
+    RegexParser parser = new RegexParser(removeQuotation(regex));
+    RegexNode result = parser.alternation();
+    if (parser.pos != parser.regex.length()) {
+      throw parser.unsupported("unbalanced parenthesis");
+    }
+    return result;
+  }
+
+  /**
+   * Replaces quotations (\Q...\E) by escaped characters in the same way as {@link Pattern}.
+   */
+  private static String removeQuotation(String regex) {
+    if (!regex.contains("\\Q")) {
+      return regex;
+    }
+    StringBuilder result = new StringBuilder();
+    boolean quotation = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (quotation) {
+        if (regex.startsWith("\\E", i)) {
+          quotation = false;
+          i++;
+        } else if (c >= '0' && c <= '9') {
+          result.append("\\x3").append(c);
+        } else if (c < 128 && !Character.isLetter(c)) {
+          result.append('\\').append(c);
+        } else {
+          result.append(c);
+        }
+      } else if (regex.startsWith("\\Q", i)) {
+        quotation = true;
+        i++;
+      } else {
+        result.append(c);
+        if (c == '\\' && i + 1 < regex.length()) {
+          i++;
+          result.append(regex.charAt(i));
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  private RegexNode alternation() {
+    List<RegexNode> alternatives = Lists.newArrayList();
+    alternatives.add(sequence());
+    while (pos < regex.length() && regex.charAt(pos) == '|') {
+      pos++;
+      alternatives.add(sequence());
+    }
+    return RegexNode.alternation(alternatives);
+  }
+
+  private RegexNode sequence() {
+    List<RegexNode> elements = Lists.newArrayList();
+    while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+      RegexNode atom = atom();
+      if (atom != null) {
+        elements.add(quantified(atom));
+      } else if (pos < regex.length() && "?*+{".indexOf(regex.charAt(pos)) != -1) {
+        throw unsupported("quantifier after inline flags");
+      }
+    }
+    return RegexNode.sequence(elements);
+  }
+
+  private RegexNode quantified(RegexNode atom) {
+    if (pos == regex.length()) {
+      return atom;
+    }
+    int start = pos;
+    int min;
+    int max;
+    switch (regex.charAt(pos)) {
+      case '?':
+        min = 0;
+        max = 1;
+        pos++;
+        break;
+      case '*':
+        min = 0;
+        max = RegexNode.UNBOUNDED;
+        pos++;
+        break;
+      case '+':
+        min = 1;
+        max = RegexNode.UNBOUNDED;
+        pos++;
+        break;
+      case '{':
+        pos++;
+        min = number();
+        max = min;
+        if (regex.charAt(pos) == ',') {
+          pos++;
+          max = regex.charAt(pos) == '}' ? RegexNode.UNBOUNDED : number();
+        }
+        pos++;
+        break;
+      default:
+        return atom;
+    }
+    Quantifier quantifier = Quantifier.GREEDY;
+    if (pos < regex.length() && regex.charAt(pos) == '?') {
+      quantifier = Quantifier.RELUCTANT;
+      pos++;
+    } else if (pos < regex.length() && regex.charAt(pos) == '+') {
+      quantifier = Quantifier.POSSESSIVE;
+      pos++;
+    }
+    if (atom.kind == RegexNode.Kind.LOOKAHEAD) {
+      throw unsupported("quantified lookahead", start);
+    }
+    if (min > MAX_REPETITION || max > MAX_REPETITION) {
+      throw unsupported("too large number of repetitions", start);
+    }
+    if (max != 1 && atom.isNullable()) {
+      throw unsupported("repetition of subexpression, which can match empty input", start);
+    }
+    return RegexNode.repetition(atom, min, max, quantifier);
+  }
+
+  private int number() {
+    int start = pos;
+    while (Character.isDigit(regex.charAt(pos))) {
+      pos++;
+    }
+    try {
+      return Integer.parseInt(regex.substring(start, pos));
+    } catch (NumberFormatException e) {
+      throw unsupported("too large number of repetitions", start);
+    }
+  }
+
+  /**
+   * @return null for groups, which only change flags
+   */
+  private RegexNode atom() {
+    int start = pos;
+    char c = regex.charAt(pos);
+    switch (c) {
+      case '(':
+        return group();
+      case '[':
+        pos = classEnd(pos);
+        return RegexNode.chars(probe(regex.substring(start, pos)));
+      case '.':
+        pos++;
+        return RegexNode.chars(probe("."));
+      case '\\':
+        return escape();
+      case '^':
+      case '$':
+        throw unsupported("boundary matcher");
+      default:
+        pos++;
+        return literal(c);
+    }
+  }
+
+  private RegexNode group() {
+    int start = pos;
+    pos++;
+    if (regex.charAt(pos) != '?') {
+      return groupBody();
+    }
+    pos++;
+    char c = regex.charAt(pos);
+    switch (c) {
+      case ':':
+        pos++;
+        return groupBody();
+      case '>':
+        pos++;
+        return RegexNode.repetition(groupBody(), 1, 1, Quantifier.POSSESSIVE);
+      case '=':
+      case '!':
+        pos++;
+        RegexNode body = groupBody();
+        if (body.kind != RegexNode.Kind.CHARS) {
+          throw unsupported("lookahead of more than one character", start);
+        }
+        return RegexNode.lookahead(body.chars, c == '!');
+      case '<':
+        if (regex.charAt(pos + 1) == '=' || regex.charAt(pos + 1) == '!') {
+          throw unsupported("lookbehind", start);
+        }
+        pos = regex.indexOf('>', pos) + 1;
+        return groupBody();
+      default:
+        int savedFlags = flags;
+        flags();
+        if (regex.charAt(pos) == ')') {
+          pos++;
+          return null;
+        }
+        pos++;
+        RegexNode result = groupBody();
+        flags = savedFlags;
+        return result;
+    }
+  }
+
+  private RegexNode groupBody() {
+    int savedFlags = flags;
+    RegexNode result = alternation();
+    pos++;
+    flags = savedFlags;
+    return result;
+  }
+
+  private void flags() {
+    boolean on = true;
+    while (regex.charAt(pos) != ')' && regex.charAt(pos) != ':') {
+      int flag;
+      switch (regex.charAt(pos)) {
+        case '-':
+          on = false;
+          pos++;
+          continue;
+        case 'i':
+          flag = Pattern.CASE_INSENSITIVE;
+          break;
+        case 'd':
+          flag = Pattern.UNIX_LINES;
+          break;
+        case 'm':
+          flag = Pattern.MULTILINE;
+          break;
+        case 's':
+          flag = Pattern.DOTALL;
+          break;
+        case 'u':
+          flag = Pattern.UNICODE_CASE;
+          break;
+        case 'U':
+          flag = Pattern.UNICODE_CHARACTER_CLASS;
+          break;
+        default:
+          throw unsupported("flag '" + regex.charAt(pos) + "'");
+      }
+      flags = on ? flags | flag : flags & ~flag;
+      pos++;
+    }
+  }
+
+  private RegexNode escape() {
+    int start = pos;
+    char c = regex.charAt(pos + 1);
+    pos += 2;
+    switch (c) {
+      case 'Q':
+        int end = regex.indexOf("\\E", pos);
+        if (end == -1) {
+          end = regex.length();
+        }
+        List<RegexNode> literals = Lists.newArrayList();
+        for (int i = pos; i < end; i++) {
+          literals.add(literal(regex.charAt(i)));
+        }
+        pos = Math.min(end + 2, regex.length());
+        return RegexNode.sequence(literals);
+      case 'd':
+      case 'D':
+      case 's':
+      case 'S':
+      case 'w':
+      case 'W':
+      case 'h':
+      case 'H':
+      case 'v':
+      case 'V':
+        return RegexNode.chars(probe(regex.substring(start, pos)));
+      case 'p':
+      case 'P':
+        if (regex.charAt(pos) == '{') {
+          pos = regex.indexOf('}', pos);
+        }
+        pos++;
+        return RegexNode.chars(probe(regex.substring(start, pos)));
+      case 'x':
+        int codePoint;
+        if (regex.charAt(pos) == '{') {
+          int close = regex.indexOf('}', pos);
+          codePoint = Integer.parseInt(regex.substring(pos + 1, close), 16);
+          pos = close + 1;
+        } else {
+          codePoint = Integer.parseInt(regex.substring(pos, pos + 2), 16);
+          pos += 2;
+        }
+        if (codePoint > Character.MAX_VALUE) {
+          throw unsupported("supplementary character", start);
+        }
+        return literal((char) codePoint);
+      case 'u':
+        pos += 4;
+        return literal((char) Integer.parseInt(regex.substring(start + 2, pos), 16));
+      case '0':
+        return literal(octal());
+      case 'c':
+        pos++;
+        return literal((char) (regex.charAt(pos - 1) ^ 64));
+      case 't':
+        return literal('\t');
+      case 'n':
+        return literal('\n');
+      case 'r':
+        return literal('\r');
+      case 'f':
+        return literal('\f');
+      case 'a':
+        return literal('\u0007');
+      case 'e':
+        return literal('\u001B');
+      default:
+        if (Character.isLetterOrDigit(c)) {
+          throw unsupported("escape sequence '\\" + c + "'", start);
+        }
+        return literal(c);
+    }
+  }
+
+  /**
+   * Same rules as in {@link Pattern}: up to three octal digits, first of which not greater than 3 if there are three of them.
+   */
+  private char octal() {
+    int result = 0;
+    for (int i = 0; i < 3 && pos < regex.length() && isOctalDigit(regex.charAt(pos)); i++) {
+      if (i == 2 && result > 3 * 8 + 7) {
+        break;
+      }
+      result = result * 8 + regex.charAt(pos) - '0';
+      pos++;
+    }
+    return (char) result;
+  }
+
+  private static boolean isOctalDigit(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  /**
+   * @return index immediately after the character class, which starts at given index
+   */
+  private int classEnd(int start) {
+    int i = start + 1;
+    if (regex.charAt(i) == '^') {
+      i++;
+    }
+    boolean first = true;
+    while (true) {
+      char c = regex.charAt(i);
+      if (c == ']' && !first) {
+        return i + 1;
+      }
+      first = false;
+      if (c == '[') {
+        i = classEnd(i);
+      } else if (c == '\\') {
+        char escaped = regex.charAt(i + 1);
+        i += 2;
+        if ((escaped == 'p' || escaped == 'P' || escaped == 'x') && regex.charAt(i) == '{') {
+          i = regex.indexOf('}', i) + 1;
+        }
+      } else if (Character.isSurrogate(c)) {
+        throw unsupported("supplementary character in character class", i);
+      } else {
+        i++;
+      }
+    }
+  }
+
+  private RegexNode literal(char c) {
+    BitSet result = new BitSet(Character.MAX_VALUE + 1);
+    result.set(c);
+    if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+      if ((flags & Pattern.UNICODE_CASE) != 0) {
+        if (Character.isSurrogate(c)) {
+          throw unsupported("case insensitive supplementary character");
+        }
+        return RegexNode.chars(probe(Pattern.quote(String.valueOf(c))));
+      }
+      // Same as Pattern: without UNICODE_CASE only US-ASCII characters are case insensitive
+      if (c < 128 && Character.isLetter(c)) {
+        result.set(Character.toLowerCase(c));
+        result.set(Character.toUpperCase(c));
+      }
+    }
+    return RegexNode.chars(result);
+  }
+
+  /**
+   * Computes set of characters, which are matched by given expression with current flags.
+   */
+  private BitSet probe(String expression) {
+    String key = flags + ":" + expression;
+    BitSet result = probes.get(key);
+    if (result == null) {
+      result = new BitSet(Character.MAX_VALUE + 1);
+      Matcher matcher = Pattern.compile(expression, flags).matcher("");
+      if (isUniformBeyondLatin1(expression)) {
+        for (int c = 0; c <= LATIN1_MAX; c++) {
+          probe(matcher, (char) c, result);
+        }
+        for (char c : LINE_SEPARATORS) {
+          probe(matcher, c, result);
+        }
+        if (probe(matcher, (char) (LATIN1_MAX + 1), result)) {
+          result.set(LATIN1_MAX + 1, Character.MAX_VALUE + 1);
+          for (char c : LINE_SEPARATORS) {
+            result.clear(c);
+            probe(matcher, c, result);
+          }
+        }
+      } else {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+          probe(matcher, (char) c, result);
+        }
+      }
+      probes.put(key, result);
+    }
+    return result;
+  }
+
+  private boolean probe(Matcher matcher, char c, BitSet result) {
+    probeSequence.c = c;
+    boolean matches = matcher.reset(probeSequence).matches();
+    if (matches) {
+      result.set(c);
+    }
+    return matches;
+  }
+
+  /**
+   * Without {@link Pattern#UNICODE_CASE} and {@link Pattern#UNICODE_CHARACTER_CLASS} expression, which consists only of
+   * US-ASCII characters, ranges of such characters and predefined classes {@code \d}, {@code \s} and {@code \w}, matches
+   * characters outside of Latin-1 in the same way, except of line separators, which are treated specially by dot.
+   */
+  private boolean isUniformBeyondLatin1(String expression) {
+    if ((flags & (Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS)) != 0) {
+      return false;
+    }
+    for (int i = 0; i < expression.length(); i++) {
+      char c = expression.charAt(i);
+      if (c >= 128) {
+        return false;
+      }
+      if (c == '\\') {
+        i++;
+        if (i < expression.length() && Character.isLetterOrDigit(expression.charAt(i)) && "dDsSwWtnrfae".indexOf(expression.charAt(i)) == -1) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private IllegalArgumentException unsupported(String construct) {
+    return unsupported(construct, pos);
+  }
+
+  private IllegalArgumentException unsupported(String construct, int index) {
+    return new IllegalArgumentException("Unsupported construct (" + construct + ") near index " + index + " in regular expression: " + regex);
+  }
+
+  private static final class ProbeSequence implements CharSequence {
+
+    private char c;
+
+    @Override
+    public int length() {
+      return 1;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return c;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(c);
+    }
+
+  }
+
+}
@@ -34,4 +34,6 @@ public interface CompilableGrammarRule extends Matcher, Rule, ParsingExpression
 
   ParsingExpression getExpression();
 
+  void setMemoization(boolean memoize);
+
 }
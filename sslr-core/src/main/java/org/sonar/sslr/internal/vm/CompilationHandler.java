@@ -21,8 +21,14 @@ package org.sonar.sslr.internal.vm;
 
 public class CompilationHandler {
 
+  private final FirstSetAnalyzer firstSetAnalyzer = new FirstSetAnalyzer();
+
   public Instruction[] compile(ParsingExpression expression) {
     return expression.compile(this);
   }
 
+  public FirstSet firstSet(ParsingExpression expression) {
+    return firstSetAnalyzer.firstSet(expression);
+  }
+
 }
@@ -24,6 +24,11 @@ import org.sonar.sslr.internal.matchers.Matcher;
 
 import java.util.Map;
 
+/**
+ * Result of compilation of a grammar.
+ * Instructions are stateless, all the state of parsing is kept by {@link Machine},
+ * so compiled grammar can be shared between machines executed concurrently.
+ */
 public class CompiledGrammar {
 
   private final Map<GrammarRuleKey, CompilableGrammarRule> rules;
@@ -31,11 +36,22 @@ public class CompiledGrammar {
   private final GrammarRuleKey rootRuleKey;
   private final int rootRuleOffset;
 
+  /**
+   * Expressions of rules at the time of compilation, in the order of {@link #rules} iteration.
+   */
+  private final ParsingExpression[] expressions;
+
   public CompiledGrammar(Instruction[] instructions, Map<GrammarRuleKey, CompilableGrammarRule> rules, GrammarRuleKey rootRuleKey, int rootRuleOffset) {
     this.instructions = instructions;
     this.rules = rules;
     this.rootRuleKey = rootRuleKey;
     this.rootRuleOffset = rootRuleOffset;
+
+    this.expressions = new ParsingExpression[rules.size()];
+    int i = 0;
+    for (CompilableGrammarRule rule : rules.values()) {
+      expressions[i++] = rule.getExpression();
+    }
   }
 
   public Instruction[] getInstructions() {
@@ -54,4 +70,18 @@ public class CompiledGrammar {
     return rootRuleOffset;
   }
 
+  /**
+   * @return true, if expression of at least one of the compiled rules has been changed after compilation,
+   * for example by {@link com.sonar.sslr.api.Rule#override(Object...)}, and so this grammar must be recompiled
+   */
+  public boolean isOutdated() {
+    int i = 0;
+    for (CompilableGrammarRule rule : rules.values()) {
+      if (rule.getExpression() != expressions[i++]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
@@ -0,0 +1,492 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.TokenType;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.DispatchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.Opcode;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.StringsInstruction;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypesExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokensBridgeExpression;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary form of {@link CompiledGrammar}, which allows to skip compilation of grammar at startup.
+ *
+ * <p>Instructions refer to rules and expressions of grammar, which define matching of input and construction of AST,
+ * so they can't be restored without grammar. Thus grammar must be created as usual, then all expressions reachable from
+ * its root rule are enumerated in a deterministic order, and instructions refer to them by index in this pool.
+ * Pool is also used to compute a fingerprint, which allows to detect that grammar has been changed after serialization.</p>
+ */
+public final class CompiledGrammarSerializer {
+
+  private static final int MAGIC = 0x53534C52;
+
+  /**
+   * Must be incremented on any change of format or of semantics of instructions.
+   */
+  private static final int VERSION = 1;
+
+  private CompiledGrammarSerializer() {
+  }
+
+  public static void write(CompiledGrammar grammar, OutputStream output) throws IOException {
+    Pool pool = new Pool((CompilableGrammarRule) grammar.getMatcher(grammar.getRootRuleKey()));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(pool.fingerprint());
+    out.writeInt(grammar.getRootRuleOffset());
+    Instruction[] instructions = grammar.getInstructions();
+    out.writeInt(instructions.length);
+    Map<int[], Integer> dispatchGroups = new IdentityHashMap<>();
+    for (Instruction instruction : instructions) {
+      out.writeByte(instruction.opcode);
+      switch (instruction.opcode) {
+        case Opcode.NATIVE:
+          out.writeInt(pool.indexOf(instruction));
+          break;
+        case Opcode.JUMP:
+          out.writeInt(((JumpInstruction) instruction).getOffset());
+          break;
+        case Opcode.CALL:
+          out.writeInt(((CallInstruction) instruction).getOffset());
+          out.writeInt(pool.indexOf(((CallInstruction) instruction).getMatcher()));
+          break;
+        case Opcode.CHOICE:
+          out.writeInt(((ChoiceInstruction) instruction).getOffset());
+          break;
+        case Opcode.PREDICATE_CHOICE:
+          out.writeInt(((PredicateChoiceInstruction) instruction).getOffset());
+          break;
+        case Opcode.COMMIT:
+          out.writeInt(((CommitInstruction) instruction).getOffset());
+          break;
+        case Opcode.COMMIT_VERIFY:
+          out.writeInt(((CommitVerifyInstruction) instruction).getOffset());
+          break;
+        case Opcode.PARTIAL_COMMIT:
+          out.writeInt(((PartialCommitInstruction) instruction).getOffset());
+          break;
+        case Opcode.BACK_COMMIT:
+          out.writeInt(((BackCommitInstruction) instruction).getOffset());
+          break;
+        case Opcode.STRINGS:
+          StringExpression[] strings = ((StringsInstruction) instruction).getStrings();
+          out.writeInt(strings.length);
+          for (StringExpression string : strings) {
+            out.writeInt(pool.indexOf(string));
+          }
+          break;
+        case Opcode.DISPATCH:
+          writeDispatch((DispatchInstruction) instruction, dispatchGroups, pool, out);
+          break;
+        default:
+          // instruction without operands
+          break;
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Alternatives of {@link FirstOfExpression} share offsets and first sets, so they are written only once per group.
+   */
+  private static void writeDispatch(DispatchInstruction instruction, Map<int[], Integer> dispatchGroups, Pool pool, DataOutputStream out) throws IOException {
+    out.writeInt(instruction.getAlternative());
+    Integer group = dispatchGroups.get(instruction.getOffsets());
+    if (group != null) {
+      out.writeInt(group);
+      return;
+    }
+    group = dispatchGroups.size();
+    dispatchGroups.put(instruction.getOffsets(), group);
+    out.writeInt(group);
+    out.writeInt(instruction.getOffsets().length);
+    for (int i = 0; i < instruction.getOffsets().length; i++) {
+      out.writeInt(instruction.getOffsets()[i]);
+      writeFirstSet(instruction.getFirstSets()[i], pool, out);
+    }
+  }
+
+  private static void writeFirstSet(FirstSet firstSet, Pool pool, DataOutputStream out) throws IOException {
+    out.writeBoolean(firstSet.isAny());
+    if (firstSet.isAny()) {
+      return;
+    }
+    out.writeBoolean(firstSet.isNullable());
+    out.writeBoolean(firstSet.reportsErrors());
+    // characters are written as ranges, because first sets of patterns usually contain all non-ASCII characters
+    BitSet chars = firstSet.getChars();
+    out.writeInt(countRanges(chars));
+    for (int start = chars.nextSetBit(0); start >= 0; start = chars.nextSetBit(chars.nextClearBit(start))) {
+      out.writeChar(start);
+      out.writeChar(chars.nextClearBit(start) - 1);
+    }
+    out.writeInt(firstSet.getTokenTypes().size());
+    for (TokenType tokenType : firstSet.getTokenTypes()) {
+      out.writeInt(pool.indexOf(tokenType));
+    }
+    out.writeInt(firstSet.getTokenValues().size());
+    for (String tokenValue : firstSet.getTokenValues()) {
+      out.writeUTF(tokenValue);
+    }
+  }
+
+  private static int countRanges(BitSet chars) {
+    int result = 0;
+    for (int start = chars.nextSetBit(0); start >= 0; start = chars.nextSetBit(chars.nextClearBit(start))) {
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * Offsets of instructions and references to expressions are validated, so that malformed input
+   * is detected here rather than during parsing.
+   *
+   * @return compiled grammar, or null if it was written for another version of grammar or by another version of this class
+   * @throws IOException if input can't be read or is malformed
+   */
+  @Nullable
+  public static CompiledGrammar read(CompilableGrammarRule rule, InputStream input) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a compiled grammar");
+    }
+    if (in.readInt() != VERSION) {
+      return null;
+    }
+    Pool pool = new Pool(rule);
+    if (in.readLong() != pool.fingerprint()) {
+      return null;
+    }
+    int rootRuleOffset = in.readInt();
+    int count = in.readInt();
+    if (count <= 0) {
+      throw new IOException("Invalid number of instructions " + count);
+    }
+    checkTarget(0, rootRuleOffset, count);
+    // array is not allocated in advance, because count might be corrupted
+    List<Instruction> instructions = new ArrayList<>();
+    List<DispatchGroup> dispatchGroups = new ArrayList<>();
+    for (int address = 0; address < count; address++) {
+      instructions.add(readInstruction(in, new Offsets(address, count), pool, dispatchGroups));
+    }
+
+    Map<GrammarRuleKey, CompilableGrammarRule> rules = new HashMap<>();
+    for (ParsingExpression expression : pool.expressions) {
+      if (expression instanceof CompilableGrammarRule) {
+        rules.put(((CompilableGrammarRule) expression).getRuleKey(), (CompilableGrammarRule) expression);
+      }
+    }
+    return new CompiledGrammar(instructions.toArray(new Instruction[count]), rules, rule.getRuleKey(), rootRuleOffset);
+  }
+
+  private static void checkTarget(int address, int offset, int count) throws IOException {
+    long target = (long) address + offset;
+    if (target < 0 || target >= count) {
+      throw new IOException("Invalid offset " + offset + " of instruction " + address);
+    }
+  }
+
+  private static int checkSize(int size) throws IOException {
+    if (size < 0) {
+      throw new IOException("Invalid size " + size);
+    }
+    return size;
+  }
+
+  /**
+   * Reads offsets of instruction at given address and checks that they point to instructions.
+   */
+  private static class Offsets {
+    private final int address;
+    private final int count;
+
+    Offsets(int address, int count) {
+      this.address = address;
+      this.count = count;
+    }
+
+    int read(DataInputStream in) throws IOException {
+      int offset = in.readInt();
+      check(offset);
+      return offset;
+    }
+
+    void check(int offset) throws IOException {
+      checkTarget(address, offset, count);
+    }
+  }
+
+  private static Instruction readInstruction(DataInputStream in, Offsets offsets, Pool pool, List<DispatchGroup> dispatchGroups) throws IOException {
+    int opcode = in.readByte();
+    switch (opcode) {
+      case Opcode.NATIVE:
+        return pool.get(in.readInt(), NativeExpression.class);
+      case Opcode.JUMP:
+        return Instruction.jump(offsets.read(in));
+      case Opcode.CALL:
+        // return address
+        offsets.check(1);
+        int offset = offsets.read(in);
+        return Instruction.call(offset, pool.get(in.readInt(), Matcher.class));
+      case Opcode.CHOICE:
+        return Instruction.choice(offsets.read(in));
+      case Opcode.IGNORE_ERRORS:
+        return Instruction.ignoreErrors();
+      case Opcode.PREDICATE_CHOICE:
+        return Instruction.predicateChoice(offsets.read(in));
+      case Opcode.DISPATCH:
+        return readDispatch(in, offsets, pool, dispatchGroups);
+      case Opcode.COMMIT:
+        return Instruction.commit(offsets.read(in));
+      case Opcode.COMMIT_VERIFY:
+        return Instruction.commitVerify(offsets.read(in));
+      case Opcode.PARTIAL_COMMIT:
+        return Instruction.partialCommit(offsets.read(in));
+      case Opcode.STRINGS:
+        StringExpression[] strings = new StringExpression[checkSize(in.readInt())];
+        for (int i = 0; i < strings.length; i++) {
+          strings[i] = pool.get(in.readInt(), StringExpression.class);
+        }
+        return Instruction.strings(strings);
+      case Opcode.RET:
+        return Instruction.ret();
+      case Opcode.BACKTRACK:
+        return Instruction.backtrack();
+      case Opcode.END:
+        return Instruction.end();
+      case Opcode.FAIL_TWICE:
+        return Instruction.failTwice();
+      case Opcode.BACK_COMMIT:
+        return Instruction.backCommit(offsets.read(in));
+      default:
+        throw new IOException("Unknown opcode " + opcode);
+    }
+  }
+
+  private static class DispatchGroup {
+    private final FirstSet[] firstSets;
+    private final int[] offsets;
+
+    DispatchGroup(int size) {
+      firstSets = new FirstSet[size];
+      offsets = new int[size];
+    }
+  }
+
+  private static Instruction readDispatch(DataInputStream in, Offsets offsets, Pool pool, List<DispatchGroup> dispatchGroups) throws IOException {
+    int alternative = in.readInt();
+    int group = in.readInt();
+    if (group == dispatchGroups.size()) {
+      DispatchGroup dispatchGroup = new DispatchGroup(checkSize(in.readInt()));
+      for (int i = 0; i < dispatchGroup.offsets.length; i++) {
+        dispatchGroup.offsets[i] = in.readInt();
+        dispatchGroup.firstSets[i] = readFirstSet(in, pool);
+      }
+      dispatchGroups.add(dispatchGroup);
+    } else if (group < 0 || group > dispatchGroups.size()) {
+      throw new IOException("Unknown group of alternatives " + group);
+    }
+    DispatchGroup dispatchGroup = dispatchGroups.get(group);
+    if (alternative < 0 || alternative >= dispatchGroup.offsets.length) {
+      throw new IOException("Unknown alternative " + alternative);
+    }
+    // see Instruction.DispatchInstruction
+    for (int i = alternative; i < dispatchGroup.offsets.length; i++) {
+      offsets.check(dispatchGroup.offsets[i] - dispatchGroup.offsets[alternative]);
+      offsets.check(dispatchGroup.offsets[i] - dispatchGroup.offsets[alternative] + 1);
+    }
+    return Instruction.dispatch(dispatchGroup.firstSets, dispatchGroup.offsets, alternative);
+  }
+
+  private static FirstSet readFirstSet(DataInputStream in, Pool pool) throws IOException {
+    if (in.readBoolean()) {
+      return FirstSet.ANY;
+    }
+    boolean nullable = in.readBoolean();
+    boolean reportsErrors = in.readBoolean();
+    BitSet chars = new BitSet();
+    int ranges = in.readInt();
+    for (int i = 0; i < ranges; i++) {
+      char start = in.readChar();
+      chars.set(start, in.readChar() + 1);
+    }
+    FirstSet result = FirstSet.chars(chars, nullable);
+    int tokenTypes = in.readInt();
+    for (int i = 0; i < tokenTypes; i++) {
+      result = result.union(FirstSet.tokenTypes(Collections.singleton(pool.getTokenType(in.readInt()))));
+    }
+    int tokenValues = in.readInt();
+    for (int i = 0; i < tokenValues; i++) {
+      result = result.union(FirstSet.tokenValue(in.readUTF()));
+    }
+    return reportsErrors ? result.withErrorReports() : result;
+  }
+
+  /**
+   * Expressions and token types, which are reachable from root rule, in order of breadth-first traversal.
+   */
+  private static class Pool {
+    private final List<ParsingExpression> expressions = new ArrayList<>();
+    private final Map<Object, Integer> indexes = new IdentityHashMap<>();
+    private final List<TokenType> tokenTypes = new ArrayList<>();
+    private final Map<TokenType, Integer> tokenTypeIndexes = new HashMap<>();
+    private final CRC32 fingerprint = new CRC32();
+
+    Pool(CompilableGrammarRule rule) {
+      add(rule);
+      for (int i = 0; i < expressions.size(); i++) {
+        ParsingExpression expression = expressions.get(i);
+        StringBuilder sb = new StringBuilder(expression.getClass().getName());
+        if (expression instanceof CompilableGrammarRule || expression instanceof NativeExpression) {
+          sb.append(' ').append(expression);
+        }
+        for (ParsingExpression subExpression : subExpressions(expression)) {
+          sb.append(' ').append(add(subExpression));
+        }
+        for (TokenType tokenType : tokenTypes(expression)) {
+          if (!tokenTypeIndexes.containsKey(tokenType)) {
+            tokenTypeIndexes.put(tokenType, tokenTypes.size());
+            tokenTypes.add(tokenType);
+          }
+        }
+        sb.append('\n');
+        fingerprint.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    private int add(ParsingExpression expression) {
+      Integer index = indexes.get(expression);
+      if (index == null) {
+        index = expressions.size();
+        indexes.put(expression, index);
+        expressions.add(expression);
+      }
+      return index;
+    }
+
+    private static List<ParsingExpression> subExpressions(ParsingExpression expression) {
+      if (expression instanceof CompilableGrammarRule) {
+        ParsingExpression ruleExpression = ((CompilableGrammarRule) expression).getExpression();
+        return ruleExpression == null ? Collections.<ParsingExpression>emptyList() : Collections.singletonList(ruleExpression);
+      } else if (expression instanceof SequenceExpression) {
+        return Arrays.asList(((SequenceExpression) expression).getSubExpressions());
+      } else if (expression instanceof FirstOfExpression) {
+        return Arrays.asList(((FirstOfExpression) expression).getSubExpressions());
+      } else if (expression instanceof OptionalExpression) {
+        return Collections.singletonList(((OptionalExpression) expression).getSubExpression());
+      } else if (expression instanceof ZeroOrMoreExpression) {
+        return Collections.singletonList(((ZeroOrMoreExpression) expression).getSubExpression());
+      } else if (expression instanceof OneOrMoreExpression) {
+        return Collections.singletonList(((OneOrMoreExpression) expression).getSubExpression());
+      } else if (expression instanceof NextExpression) {
+        return Collections.singletonList(((NextExpression) expression).getSubExpression());
+      } else if (expression instanceof NextNotExpression) {
+        return Collections.singletonList(((NextNotExpression) expression).getSubExpression());
+      } else if (expression instanceof TokenExpression) {
+        return Collections.singletonList(((TokenExpression) expression).getSubExpression());
+      } else if (expression instanceof TriviaExpression) {
+        return Collections.singletonList(((TriviaExpression) expression).getSubExpression());
+      } else if (expression instanceof NativeExpression) {
+        return Collections.emptyList();
+      }
+      throw new IllegalArgumentException("Unsupported expression: " + expression.getClass().getName());
+    }
+
+    private static Iterable<TokenType> tokenTypes(ParsingExpression expression) {
+      if (expression instanceof TokenTypeExpression) {
+        return Collections.singletonList(((TokenTypeExpression) expression).getType());
+      } else if (expression instanceof TokenTypesExpression) {
+        return ((TokenTypesExpression) expression).getTypes();
+      } else if (expression instanceof TokensBridgeExpression) {
+        return Collections.singletonList(((TokensBridgeExpression) expression).getFrom());
+      }
+      return Collections.emptyList();
+    }
+
+    long fingerprint() {
+      return fingerprint.getValue();
+    }
+
+    int indexOf(Object expression) {
+      Integer index = indexes.get(expression);
+      if (index == null) {
+        throw new IllegalStateException("Expression is not reachable from root rule: " + expression);
+      }
+      return index;
+    }
+
+    int indexOf(TokenType tokenType) {
+      Integer index = tokenTypeIndexes.get(tokenType);
+      if (index == null) {
+        throw new IllegalStateException("Token type is not reachable from root rule: " + tokenType);
+      }
+      return index;
+    }
+
+    <T> T get(int index, Class<T> type) throws IOException {
+      if (index < 0 || index >= expressions.size() || !type.isInstance(expressions.get(index))) {
+        throw new IOException("Invalid reference to expression " + index);
+      }
+      return type.cast(expressions.get(index));
+    }
+
+    TokenType getTokenType(int index) throws IOException {
+      if (index < 0 || index >= tokenTypes.size()) {
+        throw new IOException("Invalid reference to token type " + index);
+      }
+      return tokenTypes.get(index);
+    }
+  }
+
+}
@@ -34,4 +34,8 @@ public class ErrorLocatingHandler implements MachineHandler {
     return errorIndex;
   }
 
+  public void reset() {
+    errorIndex = -1;
+  }
+
 }
@@ -29,6 +29,10 @@ public class FirstOfExpression implements ParsingExpression {
     this.subExpressions = subExpressions;
   }
 
+  public ParsingExpression[] getSubExpressions() {
+    return subExpressions;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -44,14 +48,35 @@ public class FirstOfExpression implements ParsingExpression {
    * L3: subExpression[3]
    * E: ...
    * </pre>
+   *
+   * If {@link FirstSet} of some subexpression shows that it can't match at some positions,
+   * then instead of "Choice" uses "Dispatch", which jumps directly to the first alternative able to match:
+   * <pre>
+   * L0: Dispatch 0
+   * subExpression[0]
+   * Commit E
+   * L1: Dispatch 1
+   * subExpression[1]
+   * Commit E
+   * L2: Dispatch 2
+   * subExpression[2]
+   * E: ...
+   * </pre>
    */
   @Override
   public Instruction[] compile(CompilationHandler compiler) {
     int index = 0;
     Instruction[][] sub = new Instruction[subExpressions.length][];
+    FirstSet[] firstSets = new FirstSet[subExpressions.length];
+    boolean dispatch = false;
     for (int i = 0; i < subExpressions.length; i++) {
       sub[i] = compiler.compile(subExpressions[i]);
       index += sub[i].length;
+      firstSets[i] = compiler.firstSet(subExpressions[i]);
+      dispatch |= !firstSets[i].isNullable();
+    }
+    if (dispatch) {
+      return compileDispatch(sub, firstSets, index);
     }
     Instruction[] result = new Instruction[index + (subExpressions.length - 1) * 2];
 
@@ -68,6 +93,25 @@ public class FirstOfExpression implements ParsingExpression {
     return result;
   }
 
+  private static Instruction[] compileDispatch(Instruction[][] sub, FirstSet[] firstSets, int length) {
+    Instruction[] result = new Instruction[length + sub.length * 2 - 1];
+    int[] offsets = new int[sub.length];
+
+    int index = 0;
+    for (int i = 0; i < sub.length; i++) {
+      offsets[i] = index;
+      result[index] = Instruction.dispatch(firstSets, offsets, i);
+      System.arraycopy(sub[i], 0, result, index + 1, sub[i].length);
+      index += sub[i].length + 1;
+      if (i < sub.length - 1) {
+        result[index] = Instruction.commit(result.length - index);
+        index++;
+      }
+    }
+
+    return result;
+  }
+
   @Override
   public String toString() {
     return "FirstOf" + Arrays.toString(subExpressions);
@@ -0,0 +1,208 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Characters (for lexerless grammars) or tokens (for lexerful grammars), which can start a match of an expression.
+ * Computed by {@link FirstSetAnalyzer} and used by {@link Instruction.DispatchInstruction}
+ * to skip alternatives of {@link FirstOfExpression}, which can't match at current position.
+ */
+public final class FirstSet {
+
+  /**
+   * First set of an expression, which wasn't analyzed, so can start with anything.
+   */
+  public static final FirstSet ANY = new FirstSet(true, true, false, new BitSet(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  /**
+   * First set of an expression, which never consumes input, but might succeed.
+   */
+  public static final FirstSet EMPTY = new FirstSet(false, true, false, new BitSet(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  /**
+   * First set of an expression, which never succeeds.
+   */
+  public static final FirstSet NONE = new FirstSet(false, false, false, new BitSet(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  private final boolean any;
+  private final boolean nullable;
+  private final boolean reportsErrors;
+  private final BitSet chars;
+  private final Set<TokenType> tokenTypes;
+  private final Set<String> tokenValues;
+
+  private FirstSet(boolean any, boolean nullable, boolean reportsErrors, BitSet chars, Set<TokenType> tokenTypes, Set<String> tokenValues) {
+    this.any = any;
+    this.nullable = nullable;
+    this.reportsErrors = reportsErrors;
+    this.chars = chars;
+    this.tokenTypes = tokenTypes;
+    this.tokenValues = tokenValues;
+  }
+
+  public static FirstSet chars(BitSet chars, boolean nullable) {
+    return new FirstSet(false, nullable, false, (BitSet) chars.clone(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+  }
+
+  public static FirstSet tokenTypes(Set<TokenType> tokenTypes) {
+    return new FirstSet(false, false, false, new BitSet(), ImmutableSet.copyOf(tokenTypes), ImmutableSet.<String>of());
+  }
+
+  public static FirstSet tokenValue(String tokenValue) {
+    return new FirstSet(false, false, false, new BitSet(), ImmutableSet.<TokenType>of(), ImmutableSet.of(tokenValue));
+  }
+
+  BitSet getChars() {
+    return (BitSet) chars.clone();
+  }
+
+  Set<TokenType> getTokenTypes() {
+    return tokenTypes;
+  }
+
+  Set<String> getTokenValues() {
+    return tokenValues;
+  }
+
+  /**
+   * @return true, if nothing is known about this first set
+   */
+  public boolean isAny() {
+    return any;
+  }
+
+  /**
+   * @return true, if corresponding expression might succeed without consumption of input
+   */
+  public boolean isNullable() {
+    return nullable;
+  }
+
+  /**
+   * @return true, if unsuccessful attempt to match corresponding expression leads to a report of error,
+   * i.e. expression invokes a rule or token before consumption of input
+   */
+  public boolean reportsErrors() {
+    return reportsErrors;
+  }
+
+  /**
+   * @return copy of this first set, which reports errors
+   */
+  public FirstSet withErrorReports() {
+    return any || reportsErrors ? this : new FirstSet(false, nullable, true, chars, tokenTypes, tokenValues);
+  }
+
+  /**
+   * @return copy of this first set, which might succeed without consumption of input
+   */
+  public FirstSet withNullable() {
+    return any || nullable ? this : new FirstSet(false, true, reportsErrors, chars, tokenTypes, tokenValues);
+  }
+
+  /**
+   * Predicate doesn't consume input, but executes its subexpression, which might consume input and so report errors
+   * or detect problems in grammar beyond current position - in this case predicate must not be skipped.
+   *
+   * @return first set of predicate with subexpression, whose first set is this one
+   */
+  public FirstSet asPredicate(boolean reportsErrors) {
+    return any ? this : new FirstSet(false, true, reportsErrors && this.reportsErrors, chars, tokenTypes, tokenValues);
+  }
+
+  /**
+   * @return first set of alternation of two expressions
+   */
+  public FirstSet union(FirstSet other) {
+    if (any || other.any) {
+      return ANY;
+    }
+    BitSet unionChars = (BitSet) chars.clone();
+    unionChars.or(other.chars);
+    return new FirstSet(
+        false,
+        nullable || other.nullable,
+        reportsErrors || other.reportsErrors,
+        unionChars,
+        ImmutableSet.<TokenType>builder().addAll(tokenTypes).addAll(other.tokenTypes).build(),
+        ImmutableSet.<String>builder().addAll(tokenValues).addAll(other.tokenValues).build());
+  }
+
+  /**
+   * @return first set of sequence of two expressions
+   */
+  public FirstSet then(FirstSet next) {
+    if (any || !nullable) {
+      return this;
+    }
+    FirstSet result = union(next);
+    if (result.any) {
+      return ANY;
+    }
+    return new FirstSet(false, next.nullable, result.reportsErrors, result.chars, result.tokenTypes, result.tokenValues);
+  }
+
+  /**
+   * @return true, if corresponding expression might match at current position of given machine
+   */
+  public boolean canStartWith(Machine machine) {
+    if (nullable) {
+      return true;
+    }
+    if (machine.length() == 0) {
+      return false;
+    }
+    if (!chars.isEmpty()) {
+      return chars.get(machine.charAt(0));
+    }
+    if (tokenTypes.isEmpty() && tokenValues.isEmpty()) {
+      return false;
+    }
+    return tokenTypes.contains(machine.tokenTypeAt(0)) || !tokenValues.isEmpty() && tokenValues.contains(machine.tokenValueAt(0));
+  }
+
+  @Override
+  public String toString() {
+    if (any) {
+      return "Any";
+    }
+    StringBuilder sb = new StringBuilder("FirstSet");
+    if (nullable) {
+      sb.append(" nullable");
+    }
+    if (!chars.isEmpty()) {
+      sb.append(" chars ").append(chars);
+    }
+    if (!tokenTypes.isEmpty()) {
+      sb.append(" types ").append(tokenTypes);
+    }
+    if (!tokenValues.isEmpty()) {
+      sb.append(" values ").append(tokenValues);
+    }
+    return sb.toString();
+  }
+
+}
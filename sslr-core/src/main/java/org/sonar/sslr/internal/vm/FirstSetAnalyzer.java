@@ -0,0 +1,172 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.sonar.sslr.internal.vm.lexerful.AdjacentExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypesExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokensBridgeExpression;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes {@link FirstSet}s of expressions.
+ * Expressions, which are unknown for this analyzer, as well as left recursive rules, are considered as {@link FirstSet#ANY}.
+ */
+public class FirstSetAnalyzer {
+
+  /**
+   * Characters starting from this one are not probed for regular expressions and always considered as possible first characters.
+   */
+  private static final int PROBED_CHARS = 128;
+
+  private final Map<ParsingExpression, FirstSet> firstSets = new IdentityHashMap<>();
+  private final Set<ParsingExpression> inProgress = Sets.newIdentityHashSet();
+
+  public FirstSet firstSet(ParsingExpression expression) {
+    FirstSet result = firstSets.get(expression);
+    if (result == null) {
+      if (!inProgress.add(expression)) {
+        // left recursion
+        return FirstSet.ANY;
+      }
+      result = compute(expression);
+      inProgress.remove(expression);
+      firstSets.put(expression, result);
+    }
+    return result;
+  }
+
+  private FirstSet compute(ParsingExpression expression) {
+    if (expression instanceof CompilableGrammarRule) {
+      ParsingExpression ruleExpression = ((CompilableGrammarRule) expression).getExpression();
+      return ruleExpression == null ? FirstSet.ANY : firstSet(ruleExpression).withErrorReports();
+    } else if (expression instanceof TokenExpression) {
+      return firstSet(((TokenExpression) expression).getSubExpression()).withErrorReports();
+    } else if (expression instanceof TriviaExpression) {
+      return firstSet(((TriviaExpression) expression).getSubExpression()).withErrorReports();
+    } else if (expression instanceof SequenceExpression) {
+      return sequence(((SequenceExpression) expression).getSubExpressions());
+    } else if (expression instanceof FirstOfExpression) {
+      return firstOf(((FirstOfExpression) expression).getSubExpressions());
+    } else if (expression instanceof OptionalExpression) {
+      return firstSet(((OptionalExpression) expression).getSubExpression()).withNullable();
+    } else if (expression instanceof ZeroOrMoreExpression) {
+      return loop(((ZeroOrMoreExpression) expression).getSubExpression()).withNullable();
+    } else if (expression instanceof OneOrMoreExpression) {
+      return loop(((OneOrMoreExpression) expression).getSubExpression());
+    } else if (expression instanceof NextExpression) {
+      return predicate(((NextExpression) expression).getSubExpression(), true);
+    } else if (expression instanceof NextNotExpression) {
+      return predicate(((NextNotExpression) expression).getSubExpression(), false);
+    } else if (expression == EndOfInputExpression.INSTANCE || expression == AdjacentExpression.INSTANCE) {
+      return FirstSet.EMPTY;
+    } else if (expression == NothingExpression.INSTANCE) {
+      return FirstSet.NONE;
+    } else if (expression instanceof StringExpression) {
+      return string(((StringExpression) expression).getString());
+    } else if (expression instanceof PatternExpression) {
+      return pattern(((PatternExpression) expression).getPattern());
+    } else if (expression instanceof TokenTypeExpression) {
+      return FirstSet.tokenTypes(ImmutableSet.of(((TokenTypeExpression) expression).getType()));
+    } else if (expression instanceof TokenTypesExpression) {
+      return FirstSet.tokenTypes(((TokenTypesExpression) expression).getTypes());
+    } else if (expression instanceof TokensBridgeExpression) {
+      return FirstSet.tokenTypes(ImmutableSet.of(((TokensBridgeExpression) expression).getFrom()));
+    } else if (expression instanceof TokenValueExpression) {
+      return FirstSet.tokenValue(((TokenValueExpression) expression).getValue());
+    }
+    return FirstSet.ANY;
+  }
+
+  /**
+   * Loop with subexpression, which might match empty input, must fail at runtime, so should not be skipped.
+   */
+  private FirstSet loop(ParsingExpression subExpression) {
+    FirstSet result = firstSet(subExpression);
+    return result.isNullable() ? FirstSet.ANY : result;
+  }
+
+  /**
+   * Errors are reported from subexpression of positive predicate.
+   */
+  private FirstSet predicate(ParsingExpression subExpression, boolean reportsErrors) {
+    return firstSet(subExpression).asPredicate(reportsErrors);
+  }
+
+  private FirstSet sequence(ParsingExpression[] subExpressions) {
+    FirstSet result = FirstSet.EMPTY;
+    for (ParsingExpression subExpression : subExpressions) {
+      if (result.isAny() || !result.isNullable()) {
+        break;
+      }
+      result = result.then(firstSet(subExpression));
+    }
+    return result;
+  }
+
+  private FirstSet firstOf(ParsingExpression[] subExpressions) {
+    FirstSet result = FirstSet.NONE;
+    for (ParsingExpression subExpression : subExpressions) {
+      result = result.union(firstSet(subExpression));
+    }
+    return result;
+  }
+
+  private static FirstSet string(String string) {
+    if (string.isEmpty()) {
+      return FirstSet.EMPTY;
+    }
+    BitSet chars = new BitSet();
+    chars.set(string.charAt(0));
+    return FirstSet.chars(chars, false);
+  }
+
+  /**
+   * Probes regular expression on each of first {@link #PROBED_CHARS} characters:
+   * character can start a match, if regular expression matches it or requires more input to decide.
+   */
+  private static FirstSet pattern(Pattern pattern) {
+    Matcher matcher = pattern.matcher("");
+    try {
+      boolean nullable = matcher.lookingAt();
+      BitSet chars = new BitSet();
+      for (char c = 0; c < PROBED_CHARS; c++) {
+        matcher.reset(String.valueOf(c));
+        if (matcher.lookingAt() || matcher.hitEnd()) {
+          chars.set(c);
+        }
+      }
+      chars.set(PROBED_CHARS, Character.MAX_VALUE + 1);
+      return FirstSet.chars(chars, nullable);
+    } catch (StackOverflowError e) {
+      return FirstSet.ANY;
+    }
+  }
+
+}
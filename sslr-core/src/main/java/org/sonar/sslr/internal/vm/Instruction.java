@@ -23,6 +23,7 @@ import com.google.common.base.Objects;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
 
+import java.util.Arrays;
 import java.util.List;
 
 public abstract class Instruction {
@@ -33,6 +34,42 @@ public abstract class Instruction {
   private static final Instruction FAIL_TWICE = new FailTwiceInstruction();
   private static final Instruction IGNORE_ERRORS = new IgnoreErrorsInstruction();
 
+  /**
+   * Opcodes of instructions, which are known to {@link Machine}.
+   * They identify instructions in binary form of compiled grammar, see {@link CompiledGrammarSerializer}.
+   */
+  static final class Opcode {
+    static final int NATIVE = 0;
+    static final int JUMP = 1;
+    static final int CALL = 2;
+    static final int CHOICE = 3;
+    static final int IGNORE_ERRORS = 4;
+    static final int PREDICATE_CHOICE = 5;
+    static final int DISPATCH = 6;
+    static final int COMMIT = 7;
+    static final int COMMIT_VERIFY = 8;
+    static final int PARTIAL_COMMIT = 9;
+    static final int STRINGS = 10;
+    static final int RET = 11;
+    static final int BACKTRACK = 12;
+    static final int END = 13;
+    static final int FAIL_TWICE = 14;
+    static final int BACK_COMMIT = 15;
+
+    private Opcode() {
+    }
+  }
+
+  final int opcode;
+
+  protected Instruction() {
+    this(Opcode.NATIVE);
+  }
+
+  private Instruction(int opcode) {
+    this.opcode = opcode;
+  }
+
   public static void addAll(List<Instruction> list, Instruction[] array) {
     for (Instruction i : array) {
       list.add(i);
@@ -83,10 +120,22 @@ public abstract class Instruction {
     return new BackCommitInstruction(offset);
   }
 
+  public static Instruction partialCommit(int offset) {
+    return new PartialCommitInstruction(offset);
+  }
+
+  public static Instruction strings(StringExpression[] strings) {
+    return new StringsInstruction(strings);
+  }
+
   public static Instruction ignoreErrors() {
     return IGNORE_ERRORS;
   }
 
+  public static Instruction dispatch(FirstSet[] firstSets, int[] offsets, int alternative) {
+    return new DispatchInstruction(firstSets, offsets, alternative);
+  }
+
   /**
    * Executes this instruction.
    */
@@ -96,9 +145,14 @@ public abstract class Instruction {
     private final int offset;
 
     public JumpInstruction(int offset) {
+      super(Opcode.JUMP);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.jump(offset);
@@ -125,10 +179,19 @@ public abstract class Instruction {
     private final Matcher matcher;
 
     public CallInstruction(int offset, Matcher matcher) {
+      super(Opcode.CALL);
       this.offset = offset;
       this.matcher = matcher;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushReturn(1, matcher, offset);
@@ -159,9 +222,14 @@ public abstract class Instruction {
     private final int offset;
 
     public ChoiceInstruction(int offset) {
+      super(Opcode.CHOICE);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushBacktrack(offset);
@@ -185,6 +253,10 @@ public abstract class Instruction {
   }
 
   public static final class IgnoreErrorsInstruction extends Instruction {
+    public IgnoreErrorsInstruction() {
+      super(Opcode.IGNORE_ERRORS);
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.setIgnoreErrors(true);
@@ -205,9 +277,14 @@ public abstract class Instruction {
     private final int offset;
 
     public PredicateChoiceInstruction(int offset) {
+      super(Opcode.PREDICATE_CHOICE);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushBacktrack(offset);
@@ -231,13 +308,86 @@ public abstract class Instruction {
     }
   }
 
+  /**
+   * Instruction dedicated for {@link FirstOfExpression}.
+   * Skips alternatives starting from given one, which can't match at current position according to their {@link FirstSet}s,
+   * and then behaves as {@link ChoiceInstruction} for the first viable alternative,
+   * or as {@link BacktrackInstruction} if there is no such alternative.
+   * Offsets of all alternatives are shared between instructions of one {@link FirstOfExpression}
+   * and relative to the instruction of its first alternative.
+   */
+  public static final class DispatchInstruction extends Instruction {
+    private final FirstSet[] firstSets;
+    private final int[] offsets;
+    private final int alternative;
+
+    public DispatchInstruction(FirstSet[] firstSets, int[] offsets, int alternative) {
+      super(Opcode.DISPATCH);
+      this.firstSets = firstSets;
+      this.offsets = offsets;
+      this.alternative = alternative;
+    }
+
+    public FirstSet[] getFirstSets() {
+      return firstSets;
+    }
+
+    public int[] getOffsets() {
+      return offsets;
+    }
+
+    public int getAlternative() {
+      return alternative;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (firstSets[alternative].canStartWith(machine)) {
+        choose(machine, alternative);
+        return;
+      }
+      boolean reportsErrors = firstSets[alternative].reportsErrors();
+      int i = alternative + 1;
+      while (i < firstSets.length && !firstSets[i].canStartWith(machine)) {
+        reportsErrors |= firstSets[i].reportsErrors();
+        i++;
+      }
+      if (reportsErrors) {
+        // skipped alternatives would report errors at current position
+        machine.reportMismatch();
+      }
+      if (i == firstSets.length) {
+        machine.backtrack();
+      } else {
+        choose(machine, i);
+      }
+    }
+
+    private void choose(Machine machine, int i) {
+      if (i < firstSets.length - 1) {
+        machine.pushBacktrack(offsets[i + 1] - offsets[alternative]);
+      }
+      machine.jump(offsets[i] - offsets[alternative] + 1);
+    }
+
+    @Override
+    public String toString() {
+      return "Dispatch " + alternative;
+    }
+  }
+
   public static final class CommitInstruction extends Instruction {
     private final int offset;
 
     public CommitInstruction(int offset) {
+      super(Opcode.COMMIT);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       // add all nodes to parent
@@ -267,9 +417,14 @@ public abstract class Instruction {
     private final int offset;
 
     public CommitVerifyInstruction(int offset) {
+      super(Opcode.COMMIT_VERIFY);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       if (machine.getIndex() == machine.peek().index()) {
@@ -299,7 +454,91 @@ public abstract class Instruction {
     }
   }
 
+  /**
+   * Instruction dedicated for loops.
+   * Behaves as {@link CommitVerifyInstruction} followed by {@link ChoiceInstruction} with the same alternative,
+   * but instead of removal and creation of entry on the stack just updates existing one.
+   */
+  public static final class PartialCommitInstruction extends Instruction {
+    private final int offset;
+
+    public PartialCommitInstruction(int offset) {
+      super(Opcode.PARTIAL_COMMIT);
+      this.offset = offset;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      MachineStack stack = machine.peek();
+      if (machine.getIndex() == stack.index()) {
+        throw new GrammarException("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+      }
+      // add all nodes to parent
+      stack.parent().subNodes().addAll(stack.subNodes());
+      stack.subNodes().clear();
+
+      stack.setIndex(machine.getIndex());
+      machine.jump(offset);
+    }
+
+    @Override
+    public String toString() {
+      return "PartialCommit " + offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof PartialCommitInstruction) && (this.offset == ((PartialCommitInstruction) obj).offset);
+    }
+
+    @Override
+    public int hashCode() {
+      return offset;
+    }
+  }
+
+  /**
+   * Result of fusion of consecutive {@link StringExpression}s, see {@link PeepholeOptimizer}.
+   * Behaves exactly as sequence of them, but executed as a single instruction.
+   */
+  public static final class StringsInstruction extends Instruction {
+    private final StringExpression[] strings;
+
+    public StringsInstruction(StringExpression[] strings) {
+      super(Opcode.STRINGS);
+      this.strings = strings;
+    }
+
+    public StringExpression[] getStrings() {
+      return strings;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      for (StringExpression string : strings) {
+        if (!string.match(machine)) {
+          machine.backtrack();
+          return;
+        }
+      }
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return "Strings " + Arrays.toString(strings);
+    }
+  }
+
   public static final class RetInstruction extends Instruction {
+    public RetInstruction() {
+      super(Opcode.RET);
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.createNode();
@@ -316,6 +555,10 @@ public abstract class Instruction {
   }
 
   public static final class BacktrackInstruction extends Instruction {
+    public BacktrackInstruction() {
+      super(Opcode.BACKTRACK);
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.backtrack();
@@ -328,6 +571,10 @@ public abstract class Instruction {
   }
 
   public static final class EndInstruction extends Instruction {
+    public EndInstruction() {
+      super(Opcode.END);
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.setAddress(-1);
@@ -340,6 +587,10 @@ public abstract class Instruction {
   }
 
   public static final class FailTwiceInstruction extends Instruction {
+    public FailTwiceInstruction() {
+      super(Opcode.FAIL_TWICE);
+    }
+
     @Override
     public void execute(Machine machine) {
       // restore state of machine to correctly report error during backtrack
@@ -361,9 +612,14 @@ public abstract class Instruction {
     private final int offset;
 
     public BackCommitInstruction(int offset) {
+      super(Opcode.BACK_COMMIT);
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       MachineStack stack = machine.peek();
@@ -22,7 +22,10 @@ package org.sonar.sslr.internal.vm;
 import com.google.common.annotations.VisibleForTesting;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenStore;
+import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.grammar.MemoizationProfile;
 import org.sonar.sslr.internal.matchers.ImmutableInputBuffer;
 import org.sonar.sslr.internal.matchers.InputBuffer;
 import org.sonar.sslr.internal.matchers.Matcher;
@@ -31,38 +34,146 @@ import org.sonar.sslr.internal.vm.lexerful.LexerfulParseErrorFormatter;
 import org.sonar.sslr.parser.ParseError;
 import org.sonar.sslr.parser.ParsingResult;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class Machine implements CharSequence {
 
-  private final char[] input;
-  private final Token[] tokens;
-  private final int inputLength;
+  private char[] input;
+  private Token[] tokens;
+  private TokenStore tokenStore;
+  private ParseNodeFactory nodeFactory = ParseNodeFactory.PARSE_TREE;
+  private int inputLength;
 
+  private final MachineStack root;
   private MachineStack stack;
   private int index;
   private int address;
   private boolean matched = true;
 
-  private final ParseNode[] memos;
+  private final MemoTable memos;
 
   // Number of instructions in grammar for Java is about 2000.
   private final int[] calls;
 
+  // Last index of input at which rule has failed, indexed by address of rule
+  private final int[] mismatches;
+
+  // Rule, which has failed at index from array {@link #mismatches}, indexed by address of rule
+  private final Matcher[] mismatchMatchers;
+
+  /**
+   * Set to true, when execution was interrupted by exception, so that array {@link #calls} might be not restored.
+   */
+  private boolean interrupted = false;
+
+  // Matchers for instructions of PatternExpression, indexed by address of instruction
+  private final java.util.regex.Matcher[] patternMatchers;
+
   private final MachineHandler handler;
 
   private boolean ignoreErrors = false;
 
+  private final CompiledGrammar grammar;
+  private final MemoizationProfile profile;
+  private final ErrorLocatingHandler errorLocatingHandler;
+
   public static ParseNode parse(List<Token> tokens, CompiledGrammar grammar) {
+    return new Machine(grammar).parse(tokens);
+  }
+
+  /**
+   * @since 1.21
+   */
+  public static ParseNode parse(TokenStore tokens, CompiledGrammar grammar) {
+    return new Machine(grammar).parse(tokens);
+  }
+
+  public static ParsingResult parse(char[] input, CompiledGrammar grammar) {
+    return new Machine(grammar).parse(input);
+  }
+
+  /**
+   * Creates machine, which can be reused for several parses of given grammar,
+   * so that arrays of memos and calls and chain of {@link MachineStack} are allocated only once and grown on demand.
+   * Machine is stateful, so can't be used concurrently.
+   */
+  public Machine(CompiledGrammar grammar) {
+    this(grammar, MemoTable.DEFAULT_SLOTS);
+  }
+
+  /**
+   * @param memoSlots maximal number of memoized nodes per position of input
+   */
+  public Machine(CompiledGrammar grammar, int memoSlots) {
+    this(grammar, new ErrorLocatingHandler(), memoSlots, null);
+  }
+
+  /**
+   * @param memoSlots maximal number of memoized nodes per position of input
+   * @param profile if not null, then results of all rules are memoized and statistics of memoization are recorded into it
+   */
+  public Machine(CompiledGrammar grammar, int memoSlots, @Nullable MemoizationProfile profile) {
+    this(grammar, new ErrorLocatingHandler(), memoSlots, profile);
+  }
+
+  /**
+   * Creates machine, which memoizes results of all rules regardless of their settings
+   * and records statistics of memoization into given profile.
+   */
+  public Machine(CompiledGrammar grammar, MemoizationProfile profile) {
+    this(grammar, new ErrorLocatingHandler(), MemoTable.DEFAULT_SLOTS, profile);
+  }
+
+  private Machine(CompiledGrammar grammar, ErrorLocatingHandler errorLocatingHandler, int memoSlots, @Nullable MemoizationProfile profile) {
+    this(grammar, grammar.getInstructions(), errorLocatingHandler, errorLocatingHandler, memoSlots, profile);
+  }
+
+  public ParseNode parse(List<Token> tokens) {
+    return parse(tokens, ParseNodeFactory.PARSE_TREE);
+  }
+
+  /**
+   * Parses tokens and creates nodes using given factory, e.g. to build result directly without intermediate parse tree.
+   *
+   * @return root node created by given factory
+   * @since 1.21
+   */
+  public ParseNode parse(List<Token> tokens, ParseNodeFactory nodeFactory) {
     Token[] inputTokens = tokens.toArray(new Token[tokens.size()]);
+    reset(null, inputTokens, null);
+    this.nodeFactory = nodeFactory;
+    return parseTokens(tokens);
+  }
 
-    ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(null, inputTokens, grammar.getInstructions(), errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
+  /**
+   * Parses tokens directly from given store, so that {@link Token}s are created only on demand, e.g. for error reporting.
+   *
+   * @since 1.21
+   */
+  public ParseNode parse(TokenStore tokens) {
+    return parse(tokens, ParseNodeFactory.PARSE_TREE);
+  }
 
-    if (machine.matched) {
-      return machine.stack.subNodes().get(0);
+  /**
+   * @see #parse(List, ParseNodeFactory)
+   * @since 1.21
+   */
+  public ParseNode parse(TokenStore tokens, ParseNodeFactory nodeFactory) {
+    reset(null, null, tokens);
+    this.nodeFactory = nodeFactory;
+    return parseTokens(tokens);
+  }
+
+  private ParseNode parseTokens(List<Token> tokens) {
+    errorLocatingHandler.reset();
+    execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
+
+    if (matched) {
+      return stack.subNodes().get(0);
     } else {
       if (tokens.isEmpty()) {
         // Godin: weird situation - I expect that list of tokens contains at least EOF, but this is not the case in C Parser
@@ -76,24 +187,31 @@ public class Machine implements CharSequence {
     }
   }
 
-  public static ParsingResult parse(char[] input, CompiledGrammar grammar) {
-    Instruction[] instructions = grammar.getInstructions();
+  public ParsingResult parse(char[] input) {
+    return parse(input, ParseNodeFactory.PARSE_TREE);
+  }
 
-    ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(input, null, instructions, errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), instructions);
+  /**
+   * @see #parse(List, ParseNodeFactory)
+   * @since 1.21
+   */
+  public ParsingResult parse(char[] input, ParseNodeFactory nodeFactory) {
+    reset(input, null, null);
+    this.nodeFactory = nodeFactory;
+    errorLocatingHandler.reset();
+    execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
 
-    if (machine.matched) {
+    if (matched) {
       return new ParsingResult(
-          new ImmutableInputBuffer(machine.input),
-          machine.matched,
+          new ImmutableInputBuffer(input),
+          matched,
           // TODO what if there is no nodes, or more than one?
-          machine.stack.subNodes().get(0),
+          stack.subNodes().get(0),
           null);
     } else {
-      InputBuffer inputBuffer = new ImmutableInputBuffer(machine.input);
+      InputBuffer inputBuffer = new ImmutableInputBuffer(input);
       ParseError parseError = new ParseError(inputBuffer, errorLocatingHandler.getErrorIndex());
-      return new ParsingResult(inputBuffer, machine.matched, null, parseError);
+      return new ParsingResult(inputBuffer, matched, null, parseError);
     }
   }
 
@@ -102,8 +220,14 @@ public class Machine implements CharSequence {
     push(-1);
     stack.setMatcher(matcher);
     jump(offset);
+    stack.setCalledAddress(address);
+    stack.setLeftRecursion(-1);
 
+    interrupted = true;
     execute(instructions);
+    interrupted = false;
+    // memoized nodes are not needed anymore, so they shouldn't be retained by machine until next parse
+    memos.clear();
   }
 
   @VisibleForTesting
@@ -117,7 +241,8 @@ public class Machine implements CharSequence {
 
   @VisibleForTesting
   public static boolean execute(Instruction[] instructions, Token... input) {
-    Machine machine = new Machine(null, input, instructions, NOP_HANDLER);
+    Machine machine = new Machine(null, instructions, NOP_HANDLER, null, MemoTable.DEFAULT_SLOTS, null);
+    machine.reset(null, input, null);
     while (machine.address != -1 && machine.address < instructions.length) {
       instructions[machine.address].execute(machine);
     }
@@ -125,25 +250,61 @@ public class Machine implements CharSequence {
   }
 
   public Machine(String input, Instruction[] instructions, MachineHandler handler) {
-    this(input.toCharArray(), null, instructions, handler);
+    this(null, instructions, handler, null, MemoTable.DEFAULT_SLOTS, null);
+    reset(input.toCharArray(), null, null);
+  }
+
+  private Machine(@Nullable CompiledGrammar grammar, Instruction[] instructions, MachineHandler handler, @Nullable ErrorLocatingHandler errorLocatingHandler,
+      int memoSlots, @Nullable MemoizationProfile profile) {
+    this.grammar = grammar;
+    this.profile = profile;
+    this.memos = new MemoTable(memoSlots);
+    this.handler = handler;
+    this.errorLocatingHandler = errorLocatingHandler;
+    this.root = new MachineStack();
+    calls = new int[instructions.length];
+    Arrays.fill(calls, -1);
+    mismatches = new int[instructions.length];
+    Arrays.fill(mismatches, -1);
+    mismatchMatchers = new Matcher[instructions.length];
+    patternMatchers = new java.util.regex.Matcher[instructions.length];
   }
 
-  private Machine(char[] input, Token[] tokens, Instruction[] instructions, MachineHandler handler) {
+  /**
+   * Prepares this machine for execution on a new input.
+   * Only parts of arrays, which were touched by previous execution, are cleared.
+   */
+  private void reset(@Nullable char[] input, @Nullable Token[] tokens, @Nullable TokenStore tokenStore) {
     this.input = input;
     this.tokens = tokens;
+    this.tokenStore = tokenStore;
     if (input != null) {
       this.inputLength = input.length;
-    } else {
+    } else if (tokens != null) {
       this.inputLength = tokens.length;
+    } else {
+      this.inputLength = tokenStore.size();
     }
 
-    this.handler = handler;
-    this.memos = new ParseNode[inputLength + 1];
-    this.stack = new MachineStack();
-    stack = stack.getOrCreateChild();
+    memos.reset(inputLength);
+    Arrays.fill(mismatches, -1);
+    if (interrupted) {
+      // execution was interrupted by exception, so state of calls wasn't restored by popReturn
+      Arrays.fill(calls, -1);
+      interrupted = false;
+    }
+
+    // release nodes of previous execution
+    for (MachineStack s = root.child(); s != null; s = s.child()) {
+      s.subNodes().clear();
+    }
+    stack = root.getOrCreateChild();
     stack.setIndex(-1);
-    calls = new int[instructions.length];
-    Arrays.fill(calls, -1);
+
+    index = 0;
+    address = 0;
+    matched = true;
+    ignoreErrors = false;
   }
 
   private static final MachineHandler NOP_HANDLER = new MachineHandler() {
@@ -158,6 +319,12 @@ public class Machine implements CharSequence {
     this(input, instructions, NOP_HANDLER);
   }
 
+  @VisibleForTesting
+  Machine(String input, Instruction[] instructions, int memoSlots) {
+    this(null, instructions, NOP_HANDLER, null, memoSlots, null);
+    reset(input.toCharArray(), null, null);
+  }
+
   private void execute(Instruction[] instructions) {
     while (address != -1) {
       instructions[address].execute(this);
@@ -190,11 +357,20 @@ public class Machine implements CharSequence {
   }
 
   public void pushReturn(int returnOffset, Matcher matcher, int callOffset) {
-    ParseNode memo = memos[index];
-    if (memo != null && memo.getMatcher() == matcher) {
+    ParseNode memo = memos.get(index, matcher);
+    if (memo != null) {
+      if (profile != null) {
+        profile.recordHit(matcher.toString(), memo.getEndIndex() - memo.getStartIndex());
+      }
       stack.subNodes().add(memo);
       index = memo.getEndIndex();
       address += returnOffset;
+    } else if (mismatches[address + callOffset] == index && mismatchMatchers[address + callOffset] == matcher) {
+      // this rule has already failed at this index
+      if (profile != null) {
+        profile.recordMismatchHit(matcher.toString());
+      }
+      backtrack();
     } else {
       push(address + returnOffset);
       stack.setMatcher(matcher);
@@ -227,6 +403,16 @@ public class Machine implements CharSequence {
     this.ignoreErrors = ignoreErrors;
   }
 
+  /**
+   * Reports mismatch at current position, which was detected without execution of instructions,
+   * see {@link Instruction.DispatchInstruction}.
+   */
+  public void reportMismatch() {
+    if (!ignoreErrors) {
+      handler.onBacktrack(this);
+    }
+  }
+
   public void backtrack() {
     // pop any return addresses from the top of the stack
     while (stack.isReturn()) {
@@ -235,6 +421,11 @@ public class Machine implements CharSequence {
       ignoreErrors = stack.isIgnoreErrors();
       if (!ignoreErrors) {
         handler.onBacktrack(this);
+        // errors of this mismatch have been reported, so it can be skipped next time
+        if (shouldMemoize(stack.matcher())) {
+          mismatches[stack.calledAddress()] = stack.index();
+          mismatchMatchers[stack.calledAddress()] = stack.matcher();
+        }
       }
 
       popReturn();
@@ -254,15 +445,26 @@ public class Machine implements CharSequence {
   }
 
   public void createNode() {
-    ParseNode node = new ParseNode(stack.index(), index, stack.subNodes(), stack.matcher());
+    ParseNode node = nodeFactory.createNode(stack.index(), index, stack.subNodes(), stack.matcher());
     stack.parent().subNodes().add(node);
-    if (stack.matcher() instanceof MemoParsingExpression && ((MemoParsingExpression) stack.matcher()).shouldMemoize()) {
-      memos[stack.index()] = node;
+    if (shouldMemoize(stack.matcher())) {
+      memos.put(stack.index(), node);
+      if (profile != null) {
+        profile.recordMemo(stack.matcher().toString());
+      }
+    }
+  }
+
+  private boolean shouldMemoize(Matcher matcher) {
+    if (profile != null) {
+      // all rules are memoized in order to collect statistics
+      return matcher instanceof MemoParsingExpression;
     }
+    return matcher instanceof MemoParsingExpression && ((MemoParsingExpression) matcher).shouldMemoize();
   }
 
   public void createLeafNode(Matcher matcher, int offset) {
-    ParseNode node = new ParseNode(index, index + offset, matcher);
+    ParseNode node = nodeFactory.createLeafNode(index, index + offset, matcher);
     stack.subNodes().add(node);
     index += offset;
   }
@@ -299,8 +501,47 @@ public class Machine implements CharSequence {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns matcher for given pattern, which belongs to the instruction at current address.
+   * Matcher is created only once per instruction and then reused by this machine,
+   * so that compiled grammar can be shared between machines, which are executed concurrently.
+   */
+  public java.util.regex.Matcher getPatternMatcher(Pattern pattern) {
+    java.util.regex.Matcher matcher = patternMatchers[address];
+    if (matcher == null) {
+      matcher = pattern.matcher("");
+      patternMatchers[address] = matcher;
+    }
+    return matcher;
+  }
+
   public Token tokenAt(int offset) {
-    return tokens[index + offset];
+    return tokens != null ? tokens[index + offset] : tokenStore.get(index + offset);
+  }
+
+  /**
+   * Unlike {@link #tokenAt(int)} doesn't require creation of {@link Token}, when parsing from {@link TokenStore}.
+   */
+  public TokenType tokenTypeAt(int offset) {
+    return tokens != null ? tokens[index + offset].getType() : tokenStore.getType(index + offset);
+  }
+
+  /**
+   * Unlike {@link #tokenAt(int)} doesn't require creation of {@link Token}, when parsing from {@link TokenStore}.
+   */
+  public String tokenValueAt(int offset) {
+    return tokens != null ? tokens[index + offset].getValue() : tokenStore.getValue(index + offset);
+  }
+
+  /**
+   * Unlike {@link #tokenValueAt(int)} doesn't require creation of string, when parsing from {@link TokenStore}.
+   */
+  public boolean tokenValueEquals(int offset, String value) {
+    if (tokens != null) {
+      String tokenValue = tokens[index + offset].getValue();
+      return value.hashCode() == tokenValue.hashCode() && value.equals(tokenValue);
+    }
+    return tokenStore.valueEquals(index + offset, value);
   }
 
 }
@@ -56,6 +56,11 @@ public class MachineStack {
     return parent;
   }
 
+  @Nullable
+  public MachineStack child() {
+    return child;
+  }
+
   public MachineStack getOrCreateChild() {
     if (child == null) {
       child = new MachineStack(this);
@@ -0,0 +1,107 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Packrat memoization table, which keeps up to a fixed number of nodes per position of input,
+ * so that several rules starting at the same position don't evict each other.
+ * When all slots of a position are occupied, the least recently stored node is evicted.
+ */
+public class MemoTable {
+
+  /**
+   * Single slot per position, so that memory consumption is the same as without this table.
+   * Grammars, which benefit from more slots, should opt into them explicitly.
+   */
+  public static final int DEFAULT_SLOTS = 1;
+
+  private final int slots;
+  private ParseNode[] nodes = new ParseNode[0];
+  private int length;
+
+  public MemoTable(int slots) {
+    if (slots < 1) {
+      throw new IllegalArgumentException("Number of slots must be positive: " + slots);
+    }
+    this.slots = slots;
+  }
+
+  /**
+   * Prepares this table for input of given length.
+   * Only part of table, which was touched by previous input, is cleared.
+   */
+  public void reset(int inputLength) {
+    int required = (inputLength + 1) * slots;
+    if (nodes.length < required) {
+      nodes = new ParseNode[Math.max(required, nodes.length * 2)];
+    } else {
+      Arrays.fill(nodes, 0, length, null);
+    }
+    length = required;
+  }
+
+  /**
+   * Releases memoized nodes, so that they can be garbage collected before next {@link #reset(int)}.
+   *
+   * @since 1.21
+   */
+  public void clear() {
+    Arrays.fill(nodes, 0, length, null);
+    length = 0;
+  }
+
+  @Nullable
+  public ParseNode get(int index, Matcher matcher) {
+    int offset = index * slots;
+    for (int i = offset; i < offset + slots; i++) {
+      ParseNode node = nodes[i];
+      if (node == null) {
+        return null;
+      }
+      if (node.getMatcher() == matcher) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  public void put(int index, ParseNode node) {
+    int offset = index * slots;
+    int last = offset + slots - 1;
+    for (int i = offset; i < last; i++) {
+      ParseNode existing = nodes[i];
+      if (existing == null || existing.getMatcher() == node.getMatcher()) {
+        last = i;
+        break;
+      }
+    }
+    // most recently stored node is kept in first slot
+    System.arraycopy(nodes, offset, nodes, offset + 1, last - offset);
+    nodes[offset] = node;
+  }
+
+}
@@ -31,13 +31,31 @@ import java.util.Queue;
 public class MutableGrammarCompiler extends CompilationHandler {
 
   public static CompiledGrammar compile(CompilableGrammarRule rule) {
-    return new MutableGrammarCompiler().doCompile(rule);
+    return new MutableGrammarCompiler(true).doCompile(rule);
   }
 
+  /**
+   * @return listings of instructions of given grammar before and after optimization by {@link PeepholeOptimizer}
+   */
+  public static String dumpOptimization(CompilableGrammarRule rule) {
+    Instruction[] before = new MutableGrammarCompiler(false).doCompile(rule).getInstructions();
+    Instruction[] after = compile(rule).getInstructions();
+    return "Before optimization (" + before.length + " instructions):\n"
+      + PeepholeOptimizer.dump(before)
+      + "\nAfter optimization (" + after.length + " instructions):\n"
+      + PeepholeOptimizer.dump(after);
+  }
+
+  private final boolean optimize;
+
   private final Queue<CompilableGrammarRule> compilationQueue = new ArrayDeque<>();
   private final Map<GrammarRuleKey, CompilableGrammarRule> matchers = new HashMap<>();
   private final Map<GrammarRuleKey, Integer> offsets = new HashMap<>();
 
+  private MutableGrammarCompiler(boolean optimize) {
+    this.optimize = optimize;
+  }
+
   private CompiledGrammar doCompile(CompilableGrammarRule start) {
     List<Instruction> instructions = new ArrayList<>();
 
@@ -68,6 +86,16 @@ public class MutableGrammarCompiler extends CompilationHandler {
       }
     }
 
+    // Optimize
+
+    if (optimize) {
+      PeepholeOptimizer optimizer = new PeepholeOptimizer(result, offsets.values());
+      result = optimizer.optimize();
+      for (Map.Entry<GrammarRuleKey, Integer> entry : offsets.entrySet()) {
+        entry.setValue(optimizer.relocate(entry.getValue()));
+      }
+    }
+
     return new CompiledGrammar(result, matchers, start.getRuleKey(), offsets.get(start.getRuleKey()));
   }
 
@@ -0,0 +1,58 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.util.List;
+
+/**
+ * Creates nodes for {@link Machine}, when rules and terminals are matched.
+ * Nodes created in alternatives, which fail later, are simply dropped by machine,
+ * whereas memoized nodes might be passed as children of several nodes, when machine backtracks and reuses them.
+ *
+ * @since 1.21
+ */
+public interface ParseNodeFactory {
+
+  /**
+   * Creates nodes of parse tree.
+   */
+  ParseNodeFactory PARSE_TREE = new ParseNodeFactory() {
+    @Override
+    public ParseNode createNode(int startIndex, int endIndex, List<ParseNode> children, Matcher matcher) {
+      return new ParseNode(startIndex, endIndex, children, matcher);
+    }
+
+    @Override
+    public ParseNode createLeafNode(int startIndex, int endIndex, Matcher matcher) {
+      return new ParseNode(startIndex, endIndex, matcher);
+    }
+  };
+
+  /**
+   * @param children list, which is reused by machine after this call
+   */
+  ParseNode createNode(int startIndex, int endIndex, List<ParseNode> children, Matcher matcher);
+
+  ParseNode createLeafNode(int startIndex, int endIndex, Matcher matcher);
+
+}
@@ -0,0 +1,197 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableList;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Stores parse tree in a compact form - in arrays indexed by identifier of node, which are allocated only once and grown on demand,
+ * so that there is no object per node. Children of node are linked through {@link #getFirstChild(int)} and {@link #getNextSibling(int)}.
+ * Nodes returned by machine are lightweight views on this storage.
+ *
+ * <p>Nodes of failed alternatives are not removed, they are kept until {@link #reset()},
+ * which invalidates all previously created views. So storage might contain more nodes than the parse tree,
+ * and a view is still allocated for each node, see {@link org.sonar.sslr.parser.ParseRunner#newCompactSession()}.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @since 1.21
+ */
+public final class ParseTreeArena implements ParseNodeFactory {
+
+  public static final int NONE = -1;
+
+  /**
+   * Value of next sibling for node, which is not yet a child of another node.
+   */
+  private static final int UNLINKED = -2;
+
+  /**
+   * Fields of a node are stored together, so that creation of node touches as few cache lines as possible.
+   */
+  private static final int START_INDEX = 0;
+  private static final int END_INDEX = 1;
+  private static final int FIRST_CHILD = 2;
+  private static final int NEXT_SIBLING = 3;
+  private static final int FIELDS = 4;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private int size;
+  private int[] nodes = new int[INITIAL_CAPACITY * FIELDS];
+  private Matcher[] matchers = new Matcher[INITIAL_CAPACITY];
+
+  private int generation;
+
+  /**
+   * Removes all nodes, so that storage can be reused for another parse tree.
+   */
+  public void reset() {
+    size = 0;
+    generation++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getStartIndex(int node) {
+    return nodes[node * FIELDS + START_INDEX];
+  }
+
+  public int getEndIndex(int node) {
+    return nodes[node * FIELDS + END_INDEX];
+  }
+
+  public Matcher getMatcher(int node) {
+    return matchers[node];
+  }
+
+  /**
+   * @return identifier of first child of given node, or {@link #NONE} if node has no children
+   */
+  public int getFirstChild(int node) {
+    return nodes[node * FIELDS + FIRST_CHILD];
+  }
+
+  /**
+   * @return identifier of next sibling of given node, or {@link #NONE} if node is the last child or not a child
+   */
+  public int getNextSibling(int node) {
+    int nextSibling = nodes[node * FIELDS + NEXT_SIBLING];
+    return nextSibling == UNLINKED ? NONE : nextSibling;
+  }
+
+  /**
+   * @return view on given node
+   */
+  public ParseNode getNode(int node) {
+    checkArgument(node >= 0 && node < size, "Node %s doesn't exist", node);
+    return new Node(this, node, getStartIndex(node), getEndIndex(node), matchers[node]);
+  }
+
+  /**
+   * @param node view, which was returned by machine or by {@link #getNode(int)}
+   * @return identifier of given node
+   */
+  public int getId(ParseNode node) {
+    checkArgument(node instanceof Node && ((Node) node).arena == this, "Node doesn't belong to this arena");
+    return ((Node) node).checkValid().id;
+  }
+
+  @Override
+  public ParseNode createNode(int startIndex, int endIndex, List<ParseNode> children, Matcher matcher) {
+    int firstChild = NONE;
+    int previousChild = NONE;
+    for (int i = 0; i < children.size(); i++) {
+      int child = ((Node) children.get(i)).id;
+      if (nodes[child * FIELDS + NEXT_SIBLING] != UNLINKED) {
+        // memoized node was reused by machine, so it might already be a child of another node
+        child = add(getStartIndex(child), getEndIndex(child), matchers[child], getFirstChild(child));
+      }
+      if (previousChild == NONE) {
+        firstChild = child;
+      } else {
+        nodes[previousChild * FIELDS + NEXT_SIBLING] = child;
+      }
+      nodes[child * FIELDS + NEXT_SIBLING] = NONE;
+      previousChild = child;
+    }
+    return new Node(this, add(startIndex, endIndex, matcher, firstChild), startIndex, endIndex, matcher);
+  }
+
+  @Override
+  public ParseNode createLeafNode(int startIndex, int endIndex, Matcher matcher) {
+    return new Node(this, add(startIndex, endIndex, matcher, NONE), startIndex, endIndex, matcher);
+  }
+
+  private int add(int startIndex, int endIndex, Matcher matcher, int firstChild) {
+    if (size == matchers.length) {
+      nodes = Arrays.copyOf(nodes, nodes.length * 2);
+      matchers = Arrays.copyOf(matchers, matchers.length * 2);
+    }
+    int offset = size * FIELDS;
+    nodes[offset + START_INDEX] = startIndex;
+    nodes[offset + END_INDEX] = endIndex;
+    nodes[offset + FIRST_CHILD] = firstChild;
+    nodes[offset + NEXT_SIBLING] = UNLINKED;
+    matchers[size] = matcher;
+    return size++;
+  }
+
+  private static final class Node extends ParseNode {
+
+    private final ParseTreeArena arena;
+    private final int id;
+    private final int generation;
+
+    Node(ParseTreeArena arena, int id, int startIndex, int endIndex, Matcher matcher) {
+      super(startIndex, endIndex, matcher);
+      this.arena = arena;
+      this.id = id;
+      this.generation = arena.generation;
+    }
+
+    @Override
+    public List<ParseNode> getChildren() {
+      checkValid();
+      ImmutableList.Builder<ParseNode> builder = ImmutableList.builder();
+      for (int child = arena.getFirstChild(id); child != NONE; child = arena.getNextSibling(child)) {
+        builder.add(arena.getNode(child));
+      }
+      return builder.build();
+    }
+
+    private Node checkValid() {
+      checkState(generation == arena.generation, "Arena was reset after creation of this node");
+      return this;
+    }
+
+  }
+
+}
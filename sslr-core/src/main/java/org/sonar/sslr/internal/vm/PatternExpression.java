@@ -20,19 +20,35 @@
 package org.sonar.sslr.internal.vm;
 
 import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.internal.regex.DfaPattern;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PatternExpression extends NativeExpression implements org.sonar.sslr.internal.matchers.Matcher {
 
-  private final Matcher matcher;
+  private final Pattern pattern;
+  private final DfaPattern dfa;
 
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public PatternExpression(String regex) {
-    matcher = Pattern.compile(regex).matcher("");
+    this(regex, false);
+  }
+
+  /**
+   * @param dfa whether to match using {@link DfaPattern} instead of {@link Matcher}
+   * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
+   * @throws IllegalArgumentException if dfa is true and the expression is not supported by {@link DfaPattern}
+   */
+  public PatternExpression(String regex, boolean dfa) {
+    pattern = Pattern.compile(regex);
+    this.dfa = dfa ? DfaPattern.compile(regex) : null;
+  }
+
+  public Pattern getPattern() {
+    return pattern;
   }
 
   /**
@@ -40,12 +56,24 @@ public class PatternExpression extends NativeExpression implements org.sonar.ssl
    */
   @Override
   public void execute(Machine machine) {
+    if (dfa != null) {
+      int end = dfa.match(machine);
+      if (end >= 0) {
+        machine.createLeafNode(this, end);
+        machine.jump(1);
+      } else {
+        machine.backtrack();
+      }
+      return;
+    }
+    // Matcher is stateful, so can't be shared between machines
+    Matcher matcher = machine.getPatternMatcher(pattern);
     matcher.reset(machine);
     boolean result;
     try {
       result = matcher.lookingAt();
     } catch (StackOverflowError e) {
-      throw new GrammarException(e, "The regular expression '" + matcher.pattern().pattern() + "' has led to a stack overflow error."
+      throw new GrammarException(e, "The regular expression '" + pattern.pattern() + "' has led to a stack overflow error."
           + " This error is certainly due to an inefficient use of alternations. See http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5050507");
     }
     if (result) {
@@ -59,7 +87,7 @@ public class PatternExpression extends NativeExpression implements org.sonar.ssl
 
   @Override
   public String toString() {
-    return "Pattern " + matcher.pattern().pattern();
+    return "Pattern " + pattern.pattern();
   }
 
 }
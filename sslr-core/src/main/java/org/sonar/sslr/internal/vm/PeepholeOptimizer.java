@@ -0,0 +1,312 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.DispatchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
+import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.StringsInstruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimizes linked instructions of a grammar:
+ * <ul>
+ * <li>jumps to unconditional transfers of control are threaded, i.e. replaced by copies of their targets,
+ * and branches to jumps are redirected to the final destination;</li>
+ * <li>consecutive {@link StringExpression}s are fused into a single instruction;</li>
+ * <li>unreachable instructions and jumps to the next instruction are removed.</li>
+ * </ul>
+ * Addresses of rules are not known to instructions, so all of them must be given as entry points
+ * and then translated by {@link #relocate(int)}.
+ */
+public class PeepholeOptimizer {
+
+  private final Instruction[] instructions;
+  private final int[] entryPoints;
+  private int[] relocation;
+
+  public PeepholeOptimizer(Instruction[] instructions, Collection<Integer> entryPoints) {
+    this.instructions = instructions.clone();
+    this.entryPoints = new int[entryPoints.size()];
+    int i = 0;
+    for (Integer entryPoint : entryPoints) {
+      this.entryPoints[i++] = entryPoint;
+    }
+  }
+
+  public Instruction[] optimize() {
+    boolean[] targets = findTargets();
+    boolean[] removed = new boolean[instructions.length];
+    fuseStrings(targets, removed);
+    threadJumps();
+    boolean[] reachable = findReachable();
+    for (int i = 0; i < instructions.length; i++) {
+      removed[i] |= !reachable[i] || isJumpToNext(i);
+    }
+    return relocate(removed);
+  }
+
+  /**
+   * @return new address of instruction, or of the next retained instruction, if this one was removed
+   */
+  public int relocate(int address) {
+    return relocation[address];
+  }
+
+  private boolean[] findTargets() {
+    boolean[] targets = new boolean[instructions.length + 1];
+    for (int entryPoint : entryPoints) {
+      targets[entryPoint] = true;
+    }
+    for (int i = 0; i < instructions.length; i++) {
+      for (int target : branchTargets(i)) {
+        targets[target] = true;
+      }
+      if (instructions[i] instanceof CallInstruction) {
+        // return address
+        targets[i + 1] = true;
+      }
+    }
+    return targets;
+  }
+
+  private void fuseStrings(boolean[] targets, boolean[] removed) {
+    int i = 0;
+    while (i < instructions.length) {
+      int end = i;
+      while (end < instructions.length && instructions[end] instanceof StringExpression && (end == i || !targets[end])) {
+        end++;
+      }
+      if (end - i > 1) {
+        StringExpression[] strings = new StringExpression[end - i];
+        for (int j = i; j < end; j++) {
+          strings[j - i] = (StringExpression) instructions[j];
+          removed[j] = j > i;
+        }
+        instructions[i] = Instruction.strings(strings);
+      }
+      i = Math.max(end, i + 1);
+    }
+  }
+
+  private void threadJumps() {
+    for (int i = 0; i < instructions.length; i++) {
+      Instruction instruction = instructions[i];
+      Integer offset = getOffset(instruction);
+      if (offset == null || instruction instanceof CallInstruction) {
+        continue;
+      }
+      int target = followJumps(i + offset);
+      if (instruction instanceof JumpInstruction && isTransfer(instructions[target])) {
+        instructions[i] = withOffset(instructions[target], target + getOffset(instructions[target], 0) - i);
+      } else if (target != i + offset) {
+        instructions[i] = withOffset(instruction, target - i);
+      }
+    }
+  }
+
+  private int followJumps(int address) {
+    int result = address;
+    int steps = 0;
+    while (instructions[result] instanceof JumpInstruction && steps < instructions.length) {
+      result += ((JumpInstruction) instructions[result]).getOffset();
+      steps++;
+    }
+    return result;
+  }
+
+  /**
+   * @return true for instructions, which never continue execution with the next instruction,
+   * and whose behaviour doesn't depend on their address, except for relative offset
+   */
+  private static boolean isTransfer(Instruction instruction) {
+    return instruction instanceof JumpInstruction
+      || instruction instanceof CommitInstruction
+      || instruction instanceof CommitVerifyInstruction
+      || instruction instanceof PartialCommitInstruction
+      || instruction instanceof BackCommitInstruction
+      || instruction instanceof RetInstruction
+      || instruction instanceof BacktrackInstruction
+      || instruction instanceof EndInstruction
+      || instruction instanceof FailTwiceInstruction;
+  }
+
+  private boolean isJumpToNext(int i) {
+    return instructions[i] instanceof JumpInstruction && ((JumpInstruction) instructions[i]).getOffset() == 1;
+  }
+
+  private boolean[] findReachable() {
+    boolean[] reachable = new boolean[instructions.length];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int entryPoint : entryPoints) {
+      queue.add(entryPoint);
+    }
+    while (!queue.isEmpty()) {
+      int i = queue.poll();
+      if (i >= instructions.length || reachable[i]) {
+        continue;
+      }
+      reachable[i] = true;
+      queue.addAll(branchTargets(i));
+      if (!isTransfer(instructions[i]) && !(instructions[i] instanceof DispatchInstruction)) {
+        queue.add(i + 1);
+      }
+    }
+    return reachable;
+  }
+
+  private List<Integer> branchTargets(int i) {
+    List<Integer> result = new ArrayList<>();
+    Instruction instruction = instructions[i];
+    if (instruction instanceof DispatchInstruction) {
+      DispatchInstruction dispatch = (DispatchInstruction) instruction;
+      int start = i - dispatch.getOffsets()[dispatch.getAlternative()];
+      for (int offset : dispatch.getOffsets()) {
+        result.add(start + offset);
+        result.add(start + offset + 1);
+      }
+    } else {
+      Integer offset = getOffset(instruction);
+      if (offset != null) {
+        result.add(i + offset);
+      }
+    }
+    return result;
+  }
+
+  private Instruction[] relocate(boolean[] removed) {
+    relocation = new int[instructions.length + 1];
+    int count = 0;
+    for (int i = 0; i < instructions.length; i++) {
+      relocation[i] = count;
+      if (!removed[i]) {
+        count++;
+      }
+    }
+    relocation[instructions.length] = count;
+
+    Map<int[], int[]> dispatchOffsets = new IdentityHashMap<>();
+    Instruction[] result = new Instruction[count];
+    for (int i = 0; i < instructions.length; i++) {
+      if (removed[i]) {
+        continue;
+      }
+      Instruction instruction = instructions[i];
+      if (instruction instanceof DispatchInstruction) {
+        DispatchInstruction dispatch = (DispatchInstruction) instruction;
+        int[] offsets = dispatch.getOffsets();
+        int[] newOffsets = dispatchOffsets.get(offsets);
+        if (newOffsets == null) {
+          int start = i - offsets[dispatch.getAlternative()];
+          newOffsets = new int[offsets.length];
+          for (int j = 0; j < offsets.length; j++) {
+            newOffsets[j] = relocation[start + offsets[j]] - relocation[start];
+          }
+          dispatchOffsets.put(offsets, newOffsets);
+        }
+        instruction = Instruction.dispatch(dispatch.getFirstSets(), newOffsets, dispatch.getAlternative());
+      } else {
+        Integer offset = getOffset(instruction);
+        if (offset != null) {
+          instruction = withOffset(instruction, relocation[i + offset] - relocation[i]);
+        }
+      }
+      result[relocation[i]] = instruction;
+    }
+    return result;
+  }
+
+  private static Integer getOffset(Instruction instruction) {
+    if (instruction instanceof JumpInstruction) {
+      return ((JumpInstruction) instruction).getOffset();
+    } else if (instruction instanceof CallInstruction) {
+      return ((CallInstruction) instruction).getOffset();
+    } else if (instruction instanceof ChoiceInstruction) {
+      return ((ChoiceInstruction) instruction).getOffset();
+    } else if (instruction instanceof PredicateChoiceInstruction) {
+      return ((PredicateChoiceInstruction) instruction).getOffset();
+    } else if (instruction instanceof CommitInstruction) {
+      return ((CommitInstruction) instruction).getOffset();
+    } else if (instruction instanceof CommitVerifyInstruction) {
+      return ((CommitVerifyInstruction) instruction).getOffset();
+    } else if (instruction instanceof PartialCommitInstruction) {
+      return ((PartialCommitInstruction) instruction).getOffset();
+    } else if (instruction instanceof BackCommitInstruction) {
+      return ((BackCommitInstruction) instruction).getOffset();
+    }
+    return null;
+  }
+
+  private static int getOffset(Instruction instruction, int defaultOffset) {
+    Integer offset = getOffset(instruction);
+    return offset == null ? defaultOffset : offset;
+  }
+
+  private static Instruction withOffset(Instruction instruction, int offset) {
+    if (instruction instanceof JumpInstruction) {
+      return Instruction.jump(offset);
+    } else if (instruction instanceof CallInstruction) {
+      return Instruction.call(offset, ((CallInstruction) instruction).getMatcher());
+    } else if (instruction instanceof ChoiceInstruction) {
+      return Instruction.choice(offset);
+    } else if (instruction instanceof PredicateChoiceInstruction) {
+      return Instruction.predicateChoice(offset);
+    } else if (instruction instanceof CommitInstruction) {
+      return Instruction.commit(offset);
+    } else if (instruction instanceof CommitVerifyInstruction) {
+      return Instruction.commitVerify(offset);
+    } else if (instruction instanceof PartialCommitInstruction) {
+      return Instruction.partialCommit(offset);
+    } else if (instruction instanceof BackCommitInstruction) {
+      return Instruction.backCommit(offset);
+    }
+    // instruction without offset
+    return instruction;
+  }
+
+  /**
+   * @return listing of instructions with their addresses
+   */
+  public static String dump(Instruction[] instructions) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < instructions.length; i++) {
+      sb.append(i).append(": ").append(instructions[i]).append('\n');
+    }
+    return sb.toString();
+  }
+
+}
@@ -29,20 +29,33 @@ public class StringExpression extends NativeExpression implements Matcher {
     this.string = string;
   }
 
+  public String getString() {
+    return string;
+  }
+
   @Override
   public void execute(Machine machine) {
-    if (machine.length() < string.length()) {
+    if (match(machine)) {
+      machine.jump(1);
+    } else {
       machine.backtrack();
-      return;
+    }
+  }
+
+  /**
+   * Creates leaf node and advances machine, if input at current position starts with string.
+   */
+  boolean match(Machine machine) {
+    if (machine.length() < string.length()) {
+      return false;
     }
     for (int i = 0; i < string.length(); i++) {
       if (machine.charAt(i) != string.charAt(i)) {
-        machine.backtrack();
-        return;
+        return false;
       }
     }
     machine.createLeafNode(this, string.length());
-    machine.jump(1);
+    return true;
   }
 
   @Override
@@ -32,6 +32,10 @@ public class TokenExpression implements Matcher, ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   public TokenType getTokenType() {
     return tokenType;
   }
@@ -32,6 +32,10 @@ public class TriviaExpression implements Matcher, ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   public TriviaKind getTriviaKind() {
     return triviaKind;
   }
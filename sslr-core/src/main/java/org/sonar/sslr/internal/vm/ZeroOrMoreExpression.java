@@ -27,23 +27,26 @@ public class ZeroOrMoreExpression implements ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
-   * L1: Choice L2
-   * subExpression
-   * CommitVerify L1
+   * Choice L2
+   * L1: subExpression
+   * PartialCommit L1
    * L2: ...
    * </pre>
    */
   @Override
   public Instruction[] compile(CompilationHandler compiler) {
-    // TODO maybe can be optimized by introduction of new instruction PartialCommit
     Instruction[] sub = compiler.compile(subExpression);
     Instruction[] result = new Instruction[sub.length + 2];
     result[0] = Instruction.choice(sub.length + 2);
     System.arraycopy(sub, 0, result, 1, sub.length);
-    result[sub.length + 1] = Instruction.commitVerify(-1 - sub.length);
+    result[sub.length + 1] = Instruction.partialCommit(-sub.length);
     return result;
   }
 
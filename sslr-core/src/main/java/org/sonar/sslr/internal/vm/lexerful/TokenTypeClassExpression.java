@@ -33,7 +33,7 @@ public class TokenTypeClassExpression extends NativeExpression implements Matche
 
   @Override
   public void execute(Machine machine) {
-    if (machine.length() == 0 || typeClass != machine.tokenAt(0).getType().getClass()) {
+    if (machine.length() == 0 || typeClass != machine.tokenTypeAt(0).getClass()) {
       machine.backtrack();
       return;
     }
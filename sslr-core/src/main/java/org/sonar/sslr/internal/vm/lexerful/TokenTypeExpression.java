@@ -32,9 +32,13 @@ public class TokenTypeExpression extends NativeExpression implements Matcher {
     this.type = type;
   }
 
+  public TokenType getType() {
+    return type;
+  }
+
   @Override
   public void execute(Machine machine) {
-    if (machine.length() == 0 || type != machine.tokenAt(0).getType()) {
+    if (machine.length() == 0 || type != machine.tokenTypeAt(0)) {
       machine.backtrack();
       return;
     }
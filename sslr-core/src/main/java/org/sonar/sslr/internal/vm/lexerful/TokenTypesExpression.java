@@ -35,9 +35,13 @@ public class TokenTypesExpression extends NativeExpression implements Matcher {
     this.types = ImmutableSet.copyOf(types);
   }
 
+  public Set<TokenType> getTypes() {
+    return types;
+  }
+
   @Override
   public void execute(Machine machine) {
-    if (machine.length() == 0 || !types.contains(machine.tokenAt(0).getType())) {
+    if (machine.length() == 0 || !types.contains(machine.tokenTypeAt(0))) {
       machine.backtrack();
       return;
     }
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.NativeExpression;
@@ -32,14 +31,17 @@ public class TokenValueExpression extends NativeExpression implements Matcher {
     this.value = value;
   }
 
+  public String getValue() {
+    return value;
+  }
+
   @Override
   public void execute(Machine machine) {
     if (machine.length() == 0) {
       machine.backtrack();
       return;
     }
-    Token token = machine.tokenAt(0);
-    if (value.hashCode() == token.getValue().hashCode() && value.equals(token.getValue())) {
+    if (machine.tokenValueEquals(0, value)) {
       machine.createLeafNode(this, 1);
       machine.jump(1);
     } else {
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.vm.Machine;
@@ -35,26 +34,30 @@ public class TokensBridgeExpression extends NativeExpression implements Matcher
     this.to = to;
   }
 
+  public TokenType getFrom() {
+    return from;
+  }
+
   @Override
   public void execute(Machine machine) {
     int length = machine.length();
-    if (length < 2 || machine.tokenAt(0).getType() != from) {
+    if (length < 2 || machine.tokenTypeAt(0) != from) {
       machine.backtrack();
       return;
     }
     int offset = 0;
     int bridgeLevel = 1;
-    Token token;
+    TokenType type;
     do {
       offset++;
       if (offset >= length) {
         machine.backtrack();
         return;
       }
-      token = machine.tokenAt(offset);
-      if (token.getType() == from) {
+      type = machine.tokenTypeAt(offset);
+      if (type == from) {
         bridgeLevel++;
-      } else if (token.getType() == to) {
+      } else if (type == to) {
         bridgeLevel--;
       } else {
         // nop
@@ -21,14 +21,26 @@ package org.sonar.sslr.parser;
 
 import com.google.common.base.Preconditions;
 import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.grammar.MemoizationProfile;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.CompiledGrammarSerializer;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.internal.vm.ParseTreeArena;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Performs parsing of a given grammar rule on a given input text.
  *
+ * <p>Grammar is compiled only once at construction time, so a single instance of this class
+ * can be shared and used concurrently by several threads.</p>
+ *
  * <p>This class is not intended to be subclassed by clients.</p>
  *
  * @since 1.16
@@ -41,8 +53,78 @@ public class ParseRunner {
     compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule"));
   }
 
+  /**
+   * Loads grammar, which was compiled in advance and written by {@link #writeCompiledGrammar(OutputStream)},
+   * what is faster than compilation. Grammar is compiled, if given input was written for another version of grammar.
+   *
+   * @throws IOException if input can't be read or is malformed
+   * @since 1.21
+   * @see com.sonar.sslr.impl.Parser#loadCompiledGrammar(InputStream) for grammars with lexer
+   */
+  public ParseRunner(Rule rule, InputStream compiledGrammar) throws IOException {
+    CompilableGrammarRule compilableRule = (CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule");
+    CompiledGrammar loaded = CompiledGrammarSerializer.read(compilableRule, Preconditions.checkNotNull(compiledGrammar, "compiledGrammar"));
+    this.compiledGrammar = loaded != null ? loaded : MutableGrammarCompiler.compile(compilableRule);
+  }
+
+  /**
+   * Writes compiled grammar, so that it can be loaded by {@link #ParseRunner(Rule, InputStream)}.
+   * Usually should be done during build of a language plugin.
+   *
+   * @since 1.21
+   */
+  public void writeCompiledGrammar(OutputStream output) throws IOException {
+    CompiledGrammarSerializer.write(compiledGrammar, output);
+  }
+
   public ParsingResult parse(char[] input) {
     return Machine.parse(input, compiledGrammar);
   }
 
+  /**
+   * @return new session, which reuses internal structures between parses, but can't be used concurrently
+   * @since 1.21
+   */
+  public ParseSession newSession() {
+    return new ParseSession(new Machine(compiledGrammar), null);
+  }
+
+  /**
+   * @param memoSlots maximal number of memoized results of rules per position of input, which is 1 by default.
+   * Grammars, where several memoized rules often start at the same position, may benefit from more slots,
+   * but memory consumed by memoization grows proportionally.
+   * @return new session, which reuses internal structures between parses, but can't be used concurrently
+   * @since 1.21
+   */
+  public ParseSession newSession(int memoSlots) {
+    return newSession(memoSlots, null);
+  }
+
+  ParseSession newSession(int memoSlots, @Nullable MemoizationProfile profile) {
+    return new ParseSession(new Machine(compiledGrammar, memoSlots, profile), null);
+  }
+
+  /**
+   * Note that this is a trade-off rather than a pure optimization: machine still creates a lightweight view object per node,
+   * and nodes of failed alternatives are kept in the arrays until next parse, so that the arrays may hold more nodes than
+   * the resulting parse tree, and parsing is about 10% slower than with {@link #newSession()}.
+   * Views are short-lived, because the tree itself is kept only in the arrays, so this session might be preferable
+   * when parse trees of previous parses would otherwise stay reachable, but should be measured for the given grammar.
+   *
+   * @return new session, which stores parse tree in a compact form - in arrays, which are reused between parses,
+   * so that parse tree of result is valid only until next parse
+   * @since 1.21
+   */
+  public ParseSession newCompactSession() {
+    return new ParseSession(new Machine(compiledGrammar), new ParseTreeArena());
+  }
+
+  /**
+   * @return new session, which memoizes results of all rules and records statistics of memoization into given profile
+   * @since 1.21
+   */
+  public ParseSession newSession(MemoizationProfile profile) {
+    return new ParseSession(new Machine(compiledGrammar, Preconditions.checkNotNull(profile, "profile")), null);
+  }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.ParseTreeArena;
+
+import javax.annotation.Nullable;
+
+/**
+ * Performs parsing of a given grammar rule on a sequence of input texts.
+ * Internal structures, such as memoization tables, are allocated only once and reused between invocations,
+ * which reduces allocation rate when many small inputs are parsed.
+ *
+ * <p>Unlike {@link ParseRunner}, instances of this class can't be used concurrently,
+ * however one instance per thread can be created from a single {@link ParseRunner}.</p>
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @see ParseRunner#newSession()
+ * @since 1.21
+ */
+public class ParseSession {
+
+  private final Machine machine;
+  private final ParseTreeArena arena;
+
+  ParseSession(Machine machine, @Nullable ParseTreeArena arena) {
+    this.machine = machine;
+    this.arena = arena;
+  }
+
+  /**
+   * For session created by {@link ParseRunner#newCompactSession()} parse tree of result can't be used after subsequent invocation of this method.
+   */
+  public ParsingResult parse(char[] input) {
+    if (arena == null) {
+      return machine.parse(input);
+    }
+    arena.reset();
+    return machine.parse(input, arena);
+  }
+
+}
@@ -24,12 +24,15 @@ import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenStore;
 import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.sslr.grammar.MemoizationProfile;
 import org.sonar.sslr.internal.matchers.AstCreator;
 import org.sonar.sslr.internal.matchers.InputBuffer;
 import org.sonar.sslr.internal.text.AbstractText;
 import org.sonar.sslr.internal.text.LocatedText;
+import org.sonar.sslr.internal.vm.MemoTable;
 import org.sonar.sslr.text.PreprocessorsChain;
 import org.sonar.sslr.text.Text;
 
@@ -37,6 +40,8 @@ import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.List;
 
@@ -51,7 +56,11 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
 
   private final Charset charset;
   private final ParseRunner parseRunner;
+  private ParseSession parseSession;
+  private MemoizationProfile memoizationProfile;
+  private int memoSlots = MemoTable.DEFAULT_SLOTS;
   private PreprocessorsChain preprocessorsChain;
+  private boolean lazyTokens = false;
 
   public ParserAdapter(Charset charset, G grammar) {
     this(charset, grammar, null);
@@ -64,6 +73,7 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
     super(Preconditions.checkNotNull(grammar, "grammar"));
     this.charset = Preconditions.checkNotNull(charset, "charset");
     this.parseRunner = new ParseRunner(grammar.getRootRule());
+    this.parseSession = parseRunner.newSession();
     this.preprocessorsChain = preprocessorsChain;
   }
 
@@ -103,9 +113,9 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
     // This cast is safe, even if not checked - AbstractText is a base implementation of interface Text
     // TODO Godin: however would be better to get rid of it
     char[] chars = ((AbstractText) input).toChars();
-    ParsingResult result = parseRunner.parse(chars);
+    ParsingResult result = parseSession.parse(chars);
     if (result.isMatched()) {
-      return AstCreator.create(result, input);
+      return AstCreator.create(result, input, chars, lazyTokens);
     } else {
       ParseError parseError = result.getParseError();
       InputBuffer inputBuffer = parseError.getInputBuffer();
@@ -115,11 +125,65 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
     }
   }
 
+  /**
+   * @since 1.21
+   */
+  @Override
+  public void setMemoizationProfile(@Nullable MemoizationProfile memoizationProfile) {
+    this.memoizationProfile = memoizationProfile;
+    parseSession = parseRunner.newSession(memoSlots, memoizationProfile);
+  }
+
+  /**
+   * @since 1.21
+   */
+  @Override
+  public void setMemoSlots(int memoSlots) {
+    Preconditions.checkArgument(memoSlots > 0, "Number of slots must be positive: %s", memoSlots);
+    this.memoSlots = memoSlots;
+    parseSession = parseRunner.newSession(memoSlots, memoizationProfile);
+  }
+
+  /**
+   * When enabled, value and position of each {@link Token} are computed from the source only when requested,
+   * so that construction of AST does not pay for tokens, which are never inspected.
+   * Such tokens keep a reference on the source, which is released together with the AST.
+   *
+   * @since 1.21
+   */
+  public void setLazyTokens(boolean lazyTokens) {
+    this.lazyTokens = lazyTokens;
+  }
+
   @Override
   public AstNode parse(List<Token> tokens) {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * @since 1.21
+   */
+  @Override
+  public AstNode parse(TokenStore tokens) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @see ParseRunner#ParseRunner(com.sonar.sslr.api.Rule, InputStream)
+   */
+  @Override
+  public void loadCompiledGrammar(InputStream input) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @see ParseRunner#writeCompiledGrammar(OutputStream)
+   */
+  @Override
+  public void writeCompiledGrammar(OutputStream output) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public RuleDefinition getRootRule() {
     throw new UnsupportedOperationException();
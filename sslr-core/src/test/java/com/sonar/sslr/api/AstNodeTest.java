@@ -19,8 +19,13 @@
  */
 package com.sonar.sslr.api;
 
+import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -97,6 +102,18 @@ public class AstNodeTest {
     assertThat(a1.getDescendants(b)).containsExactly(b1, b2, b3);
     assertThat(a1.getDescendants(a, b)).containsExactly(a2, b1, b2, b3);
 
+    List<AstNode> descendants = new ArrayList<>();
+    a1.getDescendants(descendants, a, b);
+    assertThat(descendants).containsExactly(a2, b1, b2, b3);
+    a2.getDescendants(descendants, b);
+    assertThat(descendants).containsExactly(a2, b1, b2, b3, b1);
+
+    assertThat(ImmutableList.copyOf(a1.descendants(mock(AstNodeType.class)))).isEmpty();
+    assertThat(ImmutableList.copyOf(a1.descendants(b))).containsExactly(b1, b2, b3);
+    assertThat(ImmutableList.copyOf(a1.descendants(a, b, c))).containsExactly(a2, b1, b2, c1, b3, c2);
+    assertThat(ImmutableList.copyOf(a2.descendants(b, c))).containsExactly(b1);
+    assertThat(ImmutableList.copyOf(b1.descendants(b))).isEmpty();
+
     assertThat(a1.getNextSibling()).isNull();
     assertThat(c1.getNextSibling()).isNull();
     assertThat(b3.getNextSibling()).isSameAs(c2);
@@ -172,6 +189,16 @@ public class AstNodeTest {
     assertThat(firstEmptyNode.getTokens()).isEmpty();
     assertThat(nonemptyNode.getTokens()).containsExactly(token);
     assertThat(lastEmptyNode.getTokens()).isEmpty();
+
+    List<Token> tokens = new ArrayList<>();
+    rootNode.getTokens(tokens);
+    nonemptyNode.getTokens(tokens);
+    assertThat(tokens).containsExactly(token, token);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void descendants_iterator_should_throw_when_no_more_elements() {
+    new AstNode(mock(AstNodeType.class), "node", null).descendants().iterator().next();
   }
 
   @Test
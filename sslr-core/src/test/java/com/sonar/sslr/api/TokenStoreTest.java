@@ -0,0 +1,139 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.net.URI;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenStoreTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final URI uri = URI.create("tests://unittest");
+
+  @Test
+  public void should_slice_values_from_source() {
+    TokenStore store = new TokenStore(uri, "foo\r\n bar\rbaz\nqux".toCharArray());
+    store.accept(token(GenericTokenType.IDENTIFIER, "foo", 1, 0));
+    store.accept(token(GenericTokenType.LITERAL, "bar", 2, 1));
+    store.accept(token(GenericTokenType.IDENTIFIER, "baz", 3, 0));
+    store.accept(token(GenericTokenType.IDENTIFIER, "qux", 4, 0));
+
+    assertThat(store.size()).isEqualTo(4);
+    assertThat(store.getURI()).isSameAs(uri);
+    assertThat(store.getType(1)).isSameAs(GenericTokenType.LITERAL);
+    assertThat(store.getValue(1)).isEqualTo("bar");
+    assertThat(store.getLine(1)).isEqualTo(2);
+    assertThat(store.getColumn(1)).isEqualTo(1);
+    assertThat(store.getValue(3)).isEqualTo("qux");
+    assertThat(store.valueEquals(2, "baz")).isTrue();
+    assertThat(store.valueEquals(2, "bar")).isFalse();
+    assertThat(store.valueEquals(2, "ba")).isFalse();
+
+    Token token = store.get(1);
+    assertThat(token.getType()).isSameAs(GenericTokenType.LITERAL);
+    assertThat(token.getValue()).isEqualTo("bar");
+    assertThat(token.getOriginalValue()).isEqualTo("bar");
+    assertThat(token.getLine()).isEqualTo(2);
+    assertThat(token.getColumn()).isEqualTo(1);
+    assertThat(token.getURI()).isSameAs(uri);
+    assertThat(store.get(1)).as("token must be created only once").isSameAs(token);
+  }
+
+  @Test
+  public void should_keep_upper_case_values() {
+    TokenStore store = new TokenStore(uri, "Foo".toCharArray());
+    store.accept(Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue("FOO", "Foo")
+        .setURI(uri)
+        .setLine(1)
+        .setColumn(0)
+        .build());
+
+    assertThat(store.getValue(0)).isEqualTo("FOO");
+    assertThat(store.valueEquals(0, "FOO")).isTrue();
+    assertThat(store.valueEquals(0, "Foo")).isFalse();
+    assertThat(store.get(0).getValue()).isEqualTo("FOO");
+    assertThat(store.get(0).getOriginalValue()).isEqualTo("Foo");
+  }
+
+  @Test
+  public void should_keep_tokens_which_are_not_slices_of_source() {
+    TokenStore store = new TokenStore(uri, "foo".toCharArray());
+    Token eof = token(GenericTokenType.EOF, "EOF", 1, 3);
+    Token generated = Token.builder(token(GenericTokenType.IDENTIFIER, "foo", 1, 0)).setGeneratedCode(true).build();
+    Token anotherFile = Token.builder(token(GenericTokenType.IDENTIFIER, "foo", 1, 0)).setURI(URI.create("tests://another")).build();
+    store.accept(eof);
+    store.accept(generated);
+    store.accept(anotherFile);
+
+    assertThat(store.getValue(0)).isEqualTo("EOF");
+    assertThat(store.valueEquals(0, "EOF")).isTrue();
+    assertThat(store.get(0)).isSameAs(eof);
+    assertThat(store.get(1)).isSameAs(generated);
+    assertThat(store.get(2)).isSameAs(anotherFile);
+  }
+
+  @Test
+  public void should_keep_trivia() {
+    TokenStore store = new TokenStore(uri, "/**/foo".toCharArray());
+    Trivia comment = Trivia.createComment(token(GenericTokenType.COMMENT, "/**/", 1, 0));
+    store.accept(Token.builder(token(GenericTokenType.IDENTIFIER, "foo", 1, 4)).addTrivia(comment).build());
+
+    assertThat(store.get(0).getTrivia()).containsOnly(comment);
+  }
+
+  @Test
+  public void should_grow() {
+    TokenStore store = new TokenStore(uri, "a".toCharArray());
+    for (int i = 0; i < 100; i++) {
+      store.accept(token(GenericTokenType.IDENTIFIER, "a", 1, 0));
+    }
+    store.trimToSize();
+    assertThat(store.size()).isEqualTo(100);
+    assertThat(store.get(99).getValue()).isEqualTo("a");
+  }
+
+  @Test
+  public void should_check_index() {
+    TokenStore store = new TokenStore(uri, new char[0]);
+    thrown.expect(IndexOutOfBoundsException.class);
+    thrown.expectMessage("Index: 0, Size: 0");
+    store.getType(0);
+  }
+
+  private Token token(TokenType type, String value, int line, int column) {
+    return Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(uri)
+        .setLine(line)
+        .setColumn(column)
+        .build();
+  }
+
+}
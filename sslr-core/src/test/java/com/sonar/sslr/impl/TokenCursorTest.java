@@ -0,0 +1,149 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenCursorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final Token a = token("a");
+  private final Token b = token("b");
+  private final Token c = token("c");
+  private final List<Trivia> pendingTrivia = new ArrayList<Trivia>();
+  private final TokenCursor cursor = new TokenCursor(Arrays.asList(a, b, c), pendingTrivia);
+
+  @Test
+  public void should_keep_tokens() {
+    assertThat(cursor.remaining()).isEqualTo(3);
+    assertThat(cursor.peek(1)).isSameAs(b);
+    cursor.keep(2);
+    assertThat(cursor.remaining()).isEqualTo(1);
+    assertThat(cursor.peek(0)).isSameAs(c);
+    assertThat(cursor.remainingTokens()).containsExactly(c);
+    cursor.keep(1);
+    assertThat(cursor.remaining()).isEqualTo(0);
+    assertThat(cursor.getOutput()).containsExactly(a, b, c);
+  }
+
+  @Test
+  public void should_consume_and_inject_tokens() {
+    Token d = token("d");
+    Token e = token("e");
+    cursor.consume(2);
+    cursor.inject(Arrays.asList(d, e));
+    cursor.keep(1);
+    assertThat(cursor.getOutput()).containsExactly(d, e, c);
+  }
+
+  @Test
+  public void should_attach_pending_trivia_to_kept_token() {
+    Trivia comment = comment("/* a */");
+    Trivia injected = comment("/* injected */");
+    Trivia own = comment("/* b */");
+    Token consumed = Token.builder(a).addTrivia(comment).build();
+    Token kept = Token.builder(b).addTrivia(own).build();
+    TokenCursor cursor = new TokenCursor(Arrays.asList(consumed, kept), pendingTrivia);
+
+    cursor.consume(1);
+    cursor.injectTrivia(Collections.singletonList(injected));
+    cursor.keep(1);
+
+    assertThat(cursor.getOutput()).hasSize(1);
+    assertThat(cursor.getOutput().get(0).getValue()).isEqualTo("b");
+    assertThat(cursor.getOutput().get(0).getTrivia()).containsExactly(comment, injected, own);
+    assertThat(pendingTrivia).isEmpty();
+  }
+
+  @Test
+  public void should_attach_pending_trivia_to_first_injected_token() {
+    Trivia comment = comment("/* a */");
+    Token consumed = Token.builder(a).addTrivia(comment).build();
+    Token modified = Token.builder(consumed).setValueAndOriginalValue("A").build();
+    TokenCursor cursor = new TokenCursor(Arrays.asList(consumed), pendingTrivia);
+
+    cursor.consume(1);
+    cursor.inject(Arrays.asList(modified, Token.builder(b).addTrivia(comment).build()));
+
+    assertThat(cursor.getOutput().get(0).getValue()).isEqualTo("A");
+    assertThat(cursor.getOutput().get(0).getTrivia()).containsExactly(comment);
+    assertThat(cursor.getOutput().get(1).getTrivia()).isEmpty();
+  }
+
+  @Test
+  public void should_not_rebuild_tokens_without_pending_trivia() {
+    Token kept = Token.builder(a).addTrivia(comment("/* a */")).build();
+    TokenCursor cursor = new TokenCursor(Arrays.asList(kept), pendingTrivia);
+    cursor.keep(1);
+    assertThat(cursor.getOutput().get(0)).isSameAs(kept);
+  }
+
+  @Test
+  public void should_not_keep_more_than_remaining() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("numberOfTokens(4) must be between 0 and number of remaining tokens(3)");
+    cursor.keep(4);
+  }
+
+  @Test
+  public void should_not_consume_more_than_remaining() {
+    cursor.keep(1);
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("numberOfTokens(3) must be between 0 and number of remaining tokens(2)");
+    cursor.consume(3);
+  }
+
+  @Test
+  public void should_not_peek_after_end() {
+    thrown.expect(IndexOutOfBoundsException.class);
+    thrown.expectMessage("Offset: 3, Remaining: 3");
+    cursor.peek(3);
+  }
+
+  private static Trivia comment(String value) {
+    return Trivia.createComment(Token.builder(token(value)).setType(GenericTokenType.COMMENT).build());
+  }
+
+  private static Token token(String value) {
+    return Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value)
+        .setURI(URI.create("tests://unittest"))
+        .setLine(1)
+        .setColumn(0)
+        .build();
+  }
+
+}
@@ -52,6 +52,80 @@ public class ChannelDispatcherTest {
     dispatcher.consume(new CodeReader("two words"), new StringBuilder());
   }
 
+  @Test
+  public void shouldTryAllChannelsByDefault() {
+    LetterChannel letterChannel = new LetterChannel('a');
+    ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().addChannels(letterChannel, new SpaceDeletionChannel()).build();
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader("ab a\u00e9"), output);
+    assertThat(output.toString(), is("<a>b<a>\u00e9"));
+    assertThat(letterChannel.attempts, is(5));
+
+    ChannelDispatcher<StringBuilder> copy = dispatcher.copy();
+    copy.consume(new CodeReader("ab"), output);
+    assertThat(((LetterChannel) copy.getChannels()[0]).attempts, is(2));
+  }
+
+  @Test
+  public void shouldTryOnlyChannelsWhichCanConsumeNextCharacter() {
+    LetterChannel letterChannel = new LetterChannel('a');
+    ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().addChannels(letterChannel, new SpaceDeletionChannel())
+        .dispatchByFirstCharacter()
+        .build();
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader("ab a\u00e9"), output);
+    assertThat(output.toString(), is("<a>b<a>\u00e9"));
+    // tried for both 'a' and for non-ASCII character
+    assertThat(letterChannel.attempts, is(3));
+  }
+
+  @Test
+  public void shouldCopyChannels() {
+    LetterChannel letterChannel = new LetterChannel('a');
+    SpaceDeletionChannel spaceDeletionChannel = new SpaceDeletionChannel();
+    ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().addChannels(letterChannel, spaceDeletionChannel)
+        .dispatchByFirstCharacter()
+        .build();
+    ChannelDispatcher<StringBuilder> copy = dispatcher.copy();
+    assertThat(copy.getChannels()[0] == letterChannel, is(false));
+    assertThat(copy.getChannels()[1] == spaceDeletionChannel, is(true));
+
+    StringBuilder output = new StringBuilder();
+    copy.consume(new CodeReader("ab a"), output);
+    assertThat(output.toString(), is("<a>b<a>"));
+    assertThat(letterChannel.attempts, is(0));
+    assertThat(((LetterChannel) copy.getChannels()[0]).attempts, is(2));
+  }
+
+  private static class LetterChannel extends Channel<StringBuilder> {
+    private final char letter;
+    private int attempts;
+
+    public LetterChannel(char letter) {
+      this.letter = letter;
+    }
+
+    @Override
+    protected boolean canConsume(char firstChar) {
+      return firstChar == letter;
+    }
+
+    @Override
+    public LetterChannel copy() {
+      return new LetterChannel(letter);
+    }
+
+    @Override
+    public boolean consume(CodeReader code, StringBuilder output) {
+      attempts++;
+      if (code.peek() == letter) {
+        output.append('<').append((char) code.pop()).append('>');
+        return true;
+      }
+      return false;
+    }
+  }
+
   private static class SpaceDeletionChannel extends Channel<StringBuilder> {
     @Override
     public boolean consume(CodeReader code, StringBuilder output) {
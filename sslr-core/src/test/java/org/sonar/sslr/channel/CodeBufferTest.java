@@ -30,7 +30,13 @@ import org.sonar.sslr.channel.CodeReader;
 import org.sonar.sslr.channel.CodeReaderConfiguration;
 import org.sonar.sslr.channel.CodeReaderFilter;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -267,6 +273,69 @@ public class CodeBufferTest {
   /**
    * Backward compatibility with a COBOL plugin: filter returns 0 instead of -1, when end of the stream has been reached.
    */
+  @Test
+  public void testReadCodeLargerThanInternalBuffer() {
+    String myCode = Strings.repeat("0123456789", 2000);
+    CodeBuffer code = new CodeBuffer(new StringReader(myCode), defaulConfiguration);
+    assertThat(code.length(), is(myCode.length()));
+    assertEquals('9', code.charAt(myCode.length() - 1));
+  }
+
+  @Test
+  public void testDecodeBytes() {
+    assertDecoded("a\u00e9\u20ac\ud83d\ude00\nb", Charsets.UTF_8);
+    assertDecoded("a\u00e9\u00ff\nb", Charsets.ISO_8859_1);
+    assertDecoded("a\u00e9\u20ac\nb", Charsets.UTF_16);
+    assertDecoded("a\u00e9\u20ac\nb", Charset.forName("windows-1252"));
+    assertDecoded("", Charsets.UTF_8);
+  }
+
+  @Test
+  public void testDecodeMalformedBytes() {
+    byte[] bytes = {'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82};
+    CodeBuffer code = new CodeBuffer(ByteBuffer.wrap(bytes), Charsets.UTF_8, defaulConfiguration);
+    assertThat(code.length(), is(4));
+    assertEquals('a', code.charAt(0));
+    assertEquals('\uFFFD', code.charAt(1));
+    assertEquals('b', code.charAt(2));
+    assertEquals('\uFFFD', code.charAt(3));
+
+    code = new CodeBuffer(ByteBuffer.wrap(bytes), Charsets.US_ASCII, defaulConfiguration);
+    assertThat(code.length(), is(5));
+    assertEquals('a', code.charAt(0));
+    assertEquals('\uFFFD', code.charAt(1));
+    assertEquals('b', code.charAt(2));
+  }
+
+  @Test
+  public void testDecodeBytesWithCodeReaderFilter() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setCodeReaderFilters(new ReplaceNumbersFilter());
+    CodeBuffer code = new CodeBuffer(ByteBuffer.wrap("ab12".getBytes(Charsets.UTF_8)), Charsets.UTF_8, configuration);
+    assertThat(code.length(), is(4));
+    assertEquals('b', code.charAt(1));
+    assertEquals('-', code.charAt(2));
+    assertEquals('-', code.charAt(3));
+  }
+
+  private void assertDecoded(String myCode, Charset charset) {
+    CodeBuffer code = new CodeBuffer(ByteBuffer.wrap(myCode.getBytes(charset)), charset, defaulConfiguration);
+    assertThat(code.length(), is(myCode.length()));
+    for (int i = 0; i < myCode.length(); i++) {
+      assertEquals(myCode.charAt(i), code.charAt(i));
+    }
+    assertThat(code.peek(), is(myCode.isEmpty() ? -1 : (int) myCode.charAt(0)));
+    assertThat(new String(code.getCode()), is(myCode));
+  }
+
+  @Test
+  public void testGetCode() {
+    CodeBuffer code = new CodeBuffer("abc", defaulConfiguration);
+    code.pop();
+    assertThat(new String(code.getCode()), is("abc"));
+    assertThat(code.peek(), is((int) 'b'));
+  }
+
   @Test(timeout = 1000)
   public void testWrongEndOfStreamFilter() {
     CodeReaderConfiguration configuration = new CodeReaderConfiguration();
@@ -23,6 +23,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,6 +49,18 @@ public class CodeReaderTest {
 
   }
 
+  @Test
+  public void testPopLengthWithAppendable() {
+    CodeReader reader = new CodeReader("package org.sonar;");
+    reader.pop();
+
+    StringBuilder sw = new StringBuilder();
+    reader.pop(6, sw);
+    assertEquals("ackage", sw.toString());
+    assertThat(reader.getPreviousCursor().getColumn(), is(1));
+    assertThat(reader.getColumnPosition(), is(7));
+  }
+
   @Test
   public void testPeekACharArray() {
     CodeReader reader = new CodeReader(new StringReader("bar"));
@@ -112,4 +125,54 @@ public class CodeReaderTest {
     assertEquals(3, new CodeReader(new StringReader("123ABC")).popTo(digitMatcher, alphabeticMatcher, token));
     assertEquals("123", token.toString());
   }
+  @Test
+  public void testStreaming() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setLookahead(4);
+    CodeReader reader = CodeReader.streaming(new StringReader("123456789ABC"), configuration);
+    assertThat(reader.length(), is(4));
+    assertThat(reader.charAt(8), is('9'));
+    assertThat(new String(reader.peek(10)), is("123456789A"));
+
+    StringBuilder token = new StringBuilder();
+    assertEquals(4, reader.popTo(Pattern.compile("\\d+").matcher(""), token));
+    assertEquals("1234", token.toString());
+    assertEquals(4, reader.popTo(Pattern.compile("\\d+").matcher(""), token));
+    assertEquals("12345678", token.toString());
+    assertThat(reader.pop(), is((int) '9'));
+    assertThat(reader.length(), is(3));
+    assertThat(reader.pop(), is((int) 'A'));
+    assertThat(reader.pop(), is((int) 'B'));
+    assertThat(reader.pop(), is((int) 'C'));
+    assertThat(reader.pop(), is(-1));
+    assertThat(reader.peek(), is(-1));
+    assertThat(reader.length(), is(0));
+  }
+
+  @Test
+  public void testStreamingWithCodeReaderFilter() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setLookahead(2);
+    configuration.setCodeReaderFilters(new CodeReaderFilter<Object>() {
+      @Override
+      public int read(char[] filteredBuffer, int offset, int length) throws IOException {
+        int read = getReader().read(filteredBuffer, offset, length);
+        for (int i = offset; i < offset + read; i++) {
+          filteredBuffer[i] = Character.toUpperCase(filteredBuffer[i]);
+        }
+        return read;
+      }
+    });
+    CodeReader reader = CodeReader.streaming(new StringReader("abc"), configuration);
+    assertThat(reader.pop(), is((int) 'A'));
+    assertThat(reader.pop(), is((int) 'B'));
+    assertThat(reader.pop(), is((int) 'C'));
+    assertThat(reader.pop(), is(-1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_not_return_code_in_streaming_mode() {
+    CodeReader.streaming(new StringReader("abc"), new CodeReaderConfiguration()).getCode();
+  }
+
 }
@@ -30,6 +30,8 @@ import org.sonar.sslr.channel.RegexChannel;
 
 import org.junit.Test;
 
+import java.util.regex.Pattern;
+
 public class RegexChannelTest {
 
   @Test
@@ -55,6 +57,23 @@ public class RegexChannelTest {
     assertThat(output.toString(), is("<literal>\">" + veryLongLiteral + "<\"</literal>"));
   }
 
+  @Test
+  public void shouldConsumeOnlyCharactersWhichCanStartMatch() {
+    MyLiteralChannel channel = new MyLiteralChannel();
+    assertThat(channel.canConsume('"'), is(true));
+    assertThat(channel.canConsume('a'), is(false));
+  }
+
+  @Test
+  public void canStartMatch() {
+    Pattern pattern = Pattern.compile("/\\*[\\s\\S]*?\\*/");
+    assertThat(Channel.canStartMatch(pattern, '/'), is(true));
+    assertThat(Channel.canStartMatch(pattern, '*'), is(false));
+    // empty match
+    assertThat(Channel.canStartMatch(Pattern.compile("a*"), 'b'), is(true));
+    assertThat(Channel.canStartMatch(Pattern.compile("(?i)a"), 'A'), is(true));
+  }
+
   private static class MyLiteralChannel extends RegexChannel<StringBuilder> {
 
     public MyLiteralChannel() {
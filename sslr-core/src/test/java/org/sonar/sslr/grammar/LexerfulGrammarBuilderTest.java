@@ -124,6 +124,26 @@ public class LexerfulGrammarBuilderTest {
     assertThat(((RuleDefinition) grammar.rule(ruleKey)).shouldMemoize()).isTrue();
   }
 
+  @Test
+  public void should_build_with_memoization_profile() {
+    LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
+    GrammarRuleKey ruleKey1 = mock(GrammarRuleKey.class);
+    GrammarRuleKey ruleKey2 = mock(GrammarRuleKey.class);
+    GrammarRuleKey ruleKey3 = mock(GrammarRuleKey.class);
+    b.rule(ruleKey1).is("foo");
+    b.rule(ruleKey2).is("bar");
+    b.rule(ruleKey3).is("baz");
+    b.rule(ruleKey2).memoize(true);
+    MemoizationProfile profile = new MemoizationProfile();
+    profile.recordMemo(ruleKey1.toString());
+    profile.recordHit(ruleKey1.toString(), 3);
+    profile.recordMemo(ruleKey2.toString());
+    Grammar grammar = b.buildWithMemoizationProfile(profile);
+    assertThat(((RuleDefinition) grammar.rule(ruleKey1)).shouldMemoize()).isTrue();
+    assertThat(((RuleDefinition) grammar.rule(ruleKey2)).shouldMemoize()).isFalse();
+    assertThat(((RuleDefinition) grammar.rule(ruleKey3)).shouldMemoize()).isFalse();
+  }
+
   @Test
   public void should_build_based_on_another_builder() {
     LexerfulGrammarBuilder base = LexerfulGrammarBuilder.create();
@@ -41,6 +41,7 @@ import org.sonar.sslr.internal.vm.StringExpression;
 import org.sonar.sslr.internal.vm.TokenExpression;
 import org.sonar.sslr.internal.vm.TriviaExpression;
 import org.sonar.sslr.internal.vm.ZeroOrMoreExpression;
+import org.sonar.sslr.parser.LexerlessGrammar;
 
 import java.util.regex.PatternSyntaxException;
 
@@ -91,6 +92,7 @@ public class LexerlessGrammarBuilderTest {
     assertThat(b.nothing()).as("singleton").isSameAs(NothingExpression.INSTANCE);
 
     assertThat(b.regexp("")).isInstanceOf(PatternExpression.class);
+    assertThat(b.dfaRegexp("")).isInstanceOf(PatternExpression.class);
 
     assertThat(b.endOfInput()).as("singleton").isSameAs(EndOfInputExpression.INSTANCE);
   }
@@ -130,6 +132,25 @@ public class LexerlessGrammarBuilderTest {
     assertThat(((CompilableGrammarRule) grammar.getRootRule()).getRuleKey()).isSameAs(ruleKey);
   }
 
+  @Test
+  public void should_build_with_memoization_profile() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    GrammarRuleKey ruleKey1 = mock(GrammarRuleKey.class);
+    GrammarRuleKey ruleKey2 = mock(GrammarRuleKey.class);
+    GrammarRuleKey ruleKey3 = mock(GrammarRuleKey.class);
+    b.rule(ruleKey1).is("foo");
+    b.rule(ruleKey2).is("bar");
+    b.rule(ruleKey3).is("baz");
+    MemoizationProfile profile = new MemoizationProfile();
+    profile.recordMemo(ruleKey1.toString());
+    profile.recordHit(ruleKey1.toString(), 3);
+    profile.recordMemo(ruleKey2.toString());
+    LexerlessGrammar grammar = b.buildWithMemoizationProfile(profile);
+    assertThat(((MutableParsingRule) grammar.rule(ruleKey1)).shouldMemoize()).isTrue();
+    assertThat(((MutableParsingRule) grammar.rule(ruleKey2)).shouldMemoize()).isFalse();
+    assertThat(((MutableParsingRule) grammar.rule(ruleKey3)).shouldMemoize()).isTrue();
+  }
+
   @Test
   public void should_build_based_on_another_builder() {
     LexerlessGrammarBuilder base = LexerlessGrammarBuilder.create();
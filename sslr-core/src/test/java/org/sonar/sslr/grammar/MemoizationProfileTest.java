@@ -0,0 +1,96 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.grammar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MemoizationProfileTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_record_statistics() {
+    MemoizationProfile profile = new MemoizationProfile();
+    profile.recordMemo("foo");
+    profile.recordMemo("foo");
+    profile.recordHit("foo", 3);
+    profile.recordHit("foo", 4);
+    profile.recordMemo("bar");
+    assertThat(profile.getMemos("foo")).isEqualTo(2);
+    assertThat(profile.getHits("foo")).isEqualTo(2);
+    assertThat(profile.getReusedLength("foo")).isEqualTo(3 + 4);
+    assertThat(profile.getMemos("bar")).isEqualTo(1);
+    assertThat(profile.getHits("bar")).isEqualTo(0);
+    assertThat(profile.getMemos("baz")).isEqualTo(0);
+
+    profile.recordMismatchHit("bar");
+    assertThat(profile.getMismatchHits("bar")).isEqualTo(1);
+    assertThat(profile.getMismatchHits("foo")).isEqualTo(0);
+  }
+
+  @Test
+  public void should_memoize_only_reused_rules() {
+    MemoizationProfile profile = new MemoizationProfile();
+    profile.recordMemo("foo");
+    profile.recordHit("foo", 1);
+    profile.recordMemo("bar");
+    profile.recordMemo("qux");
+    profile.recordMismatchHit("qux");
+    assertThat(profile.shouldMemoize("foo")).isTrue();
+    assertThat(profile.shouldMemoize("bar")).isFalse();
+    assertThat(profile.shouldMemoize("qux")).isTrue();
+    assertThat(profile.shouldMemoize("baz")).isNull();
+  }
+
+  @Test
+  public void should_save_and_load() throws Exception {
+    MemoizationProfile profile = new MemoizationProfile();
+    profile.recordMemo("foo");
+    profile.recordHit("foo", 3);
+    profile.recordMemo("bar");
+    profile.recordMismatchHit("bar");
+    StringWriter writer = new StringWriter();
+    profile.save(writer);
+    assertThat(writer.toString()).isEqualTo("bar\t1\t0\t0\t1\nfoo\t1\t1\t3\t0\n");
+
+    MemoizationProfile loaded = MemoizationProfile.load(new StringReader(writer.toString() + "\n"));
+    assertThat(loaded.getMemos("foo")).isEqualTo(1);
+    assertThat(loaded.getHits("foo")).isEqualTo(1);
+    assertThat(loaded.getReusedLength("foo")).isEqualTo(3);
+    assertThat(loaded.getMismatchHits("bar")).isEqualTo(1);
+    assertThat(loaded.shouldMemoize("bar")).isTrue();
+  }
+
+  @Test
+  public void should_not_load_incorrect_profile() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Incorrect line in memoization profile: foo\t1\t2");
+    MemoizationProfile.load(new StringReader("foo\t1\t2"));
+  }
+
+}
@@ -111,6 +111,12 @@ public class RuleBuilderTest {
     verify(delegate).skipIfOneChild();
   }
 
+  @Test
+  public void test_memoize() {
+    ruleBuilder.memoize(false);
+    verify(delegate).setMemoization(false);
+  }
+
   @Test
   public void recovery_rule_not_supported() {
     thrown.expect(UnsupportedOperationException.class);
@@ -31,6 +31,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 import org.sonar.sslr.internal.text.LocatedText;
+import org.sonar.sslr.internal.text.PlainText;
 import org.sonar.sslr.internal.vm.TokenExpression;
 import org.sonar.sslr.parser.ParsingResult;
 
@@ -128,6 +129,62 @@ public class AstCreatorTest {
     assertThat(token.getType()).isSameAs(AstCreator.UNDEFINED_TOKEN_TYPE);
   }
 
+  @Test
+  public void should_create_lazy_tokens() {
+    char[] input = "foo\nbar".toCharArray();
+
+    ParseNode firstTerminal = new ParseNode(0, 4, Collections.<ParseNode>emptyList(), null);
+    ParseNode secondTerminal = new ParseNode(4, 7, Collections.<ParseNode>emptyList(), null);
+    MutableParsingRule ruleMatcher = mockRuleMatcher("rule");
+    ParseNode parseTreeRoot = new ParseNode(0, 7, ImmutableList.of(firstTerminal, secondTerminal), ruleMatcher);
+
+    InputBuffer inputBuffer = new ImmutableInputBuffer(input);
+    ParsingResult parsingResult = new ParsingResult(inputBuffer, true, parseTreeRoot, null);
+
+    AstNode astNode = AstCreator.create(parsingResult, new LocatedText(null, input), input, true);
+
+    assertThat(astNode.getTokens()).hasSize(2);
+    Token token = astNode.getTokens().get(1);
+    assertThat(token).isInstanceOf(LazyToken.class);
+    assertThat(token.getValue()).isEqualTo("bar");
+    assertThat(token.getValue()).isSameAs(token.getValue());
+    assertThat(token.getOriginalValue()).isEqualTo("bar");
+    assertThat(token.getLine()).isEqualTo(2);
+    assertThat(token.getColumn()).isEqualTo(0);
+    assertThat(token.getURI()).isSameAs(AstCreator.FAKE_URI);
+    assertThat(token.isGeneratedCode()).isFalse();
+    assertThat(token.isCopyBook()).isFalse();
+    assertThat(token.getCopyBookOriginalLine()).isEqualTo(-1);
+    assertThat(token.getCopyBookOriginalFileName()).isEqualTo("");
+    assertThat(token.getType()).isSameAs(AstCreator.UNDEFINED_TOKEN_TYPE);
+
+    Token copy = Token.builder(token).build();
+    assertThat(copy.getValue()).isEqualTo("bar");
+    assertThat(copy.getLine()).isEqualTo(2);
+    assertThat(copy.getColumn()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_create_lazy_tokens_for_generated_code() {
+    char[] input = "foo".toCharArray();
+
+    ParseNode terminal = new ParseNode(0, 3, Collections.<ParseNode>emptyList(), null);
+    MutableParsingRule ruleMatcher = mockRuleMatcher("rule");
+    ParseNode parseTreeRoot = new ParseNode(0, 3, ImmutableList.of(terminal), ruleMatcher);
+
+    InputBuffer inputBuffer = new ImmutableInputBuffer(input);
+    ParsingResult parsingResult = new ParsingResult(inputBuffer, true, parseTreeRoot, null);
+
+    AstNode astNode = AstCreator.create(parsingResult, new PlainText(input), input, true);
+
+    Token token = astNode.getToken();
+    assertThat(token.getValue()).isEqualTo("foo");
+    assertThat(token.isGeneratedCode()).isTrue();
+    assertThat(token.getLine()).isEqualTo(1);
+    assertThat(token.getColumn()).isEqualTo(0);
+    assertThat(token.getURI()).isSameAs(AstCreator.FAKE_URI);
+  }
+
   @Test
   public void should_skip_nodes() {
     char[] input = "foo".toCharArray();
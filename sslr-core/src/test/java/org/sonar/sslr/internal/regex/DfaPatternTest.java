@@ -0,0 +1,197 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.base.Strings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DfaPatternTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_match_prefix() {
+    DfaPattern pattern = DfaPattern.compile("[0-9]++");
+    assertThat(pattern.match("123abc")).isEqualTo(3);
+    assertThat(pattern.match("123")).isEqualTo(3);
+    assertThat(pattern.match("abc")).isEqualTo(-1);
+    assertThat(pattern.match("")).isEqualTo(-1);
+    assertThat(DfaPattern.compile("[0-9]*+").match("abc")).isEqualTo(0);
+    assertThat(DfaPattern.compile("").match("abc")).isEqualTo(0);
+  }
+
+  @Test
+  public void should_match_same_as_java() {
+    assertSameAsJava("a|ab", "ab", "a", "b");
+    assertSameAsJava("ab|a", "ab", "a", "b");
+    assertSameAsJava("(a|ab)(c|bcd)(d*)", "abcd", "abcdd", "acd");
+    assertSameAsJava("a*ab", "aaab", "ab", "aaa");
+    assertSameAsJava("a*?b", "aaab", "b", "aaa");
+    assertSameAsJava("a{2,3}", "a", "aa", "aaaa");
+    assertSameAsJava("a{2,3}?", "aaaa");
+    assertSameAsJava("a{2}b{1,}", "aab", "aabbb", "abb");
+    assertSameAsJava("(?s)/\\*.*?\\*/", "/* comment */ */", "/* \n */", "/* unclosed");
+    assertSameAsJava("/\\*.*?\\*/", "/* \n */", "/**/");
+    assertSameAsJava("//[^\\n\\r]*+", "// comment\nfoo", "//");
+    assertSameAsJava("\"([^\"\\\\]|\\\\.)*+\"", "\"foo\\\"bar\" baz", "\"unclosed", "\"\\");
+    assertSameAsJava("[0-9]++(\\.[0-9]*+)?+([eE][+-]?+[0-9]++)?+", "12", "1.5e-3", "1.e", "1e+");
+    assertSameAsJava("\\p{javaJavaIdentifierStart}++\\p{javaJavaIdentifierPart}*+", "foo_1 bar", "\u00e9t\u00e9", "1foo");
+    assertSameAsJava("[a-z&&[^aeiou]]+", "bcda", "abc");
+    assertSameAsJava("[]a]+|\\Q*+\\E+", "]a]b", "*++", "*");
+    assertSameAsJava("\\x41\\u0042\\0103\\cD\\t\\.", "ABC\u0004\t.", "ABC\u0004\t!");
+  }
+
+  @Test
+  public void should_support_flags() {
+    assertSameAsJava("(?i)select", "SeLeCt", "select", "selec");
+    assertSameAsJava("(?i)[a-c]+", "aBc", "ABCD");
+    assertSameAsJava("(?i)\u00e9", "\u00c9", "\u00e9");
+    assertSameAsJava("(?iu)\u00e9", "\u00c9", "\u00e9");
+    assertSameAsJava("(?iu)k", "\u212a", "K");
+    assertSameAsJava("(a(?i)b)c", "aBc", "aBC");
+    assertSameAsJava("a(?i:b)c", "aBc", "aBC");
+    assertSameAsJava("a(?i)b|c", "aB", "C");
+    assertSameAsJava("(?s).", "\n", "a");
+    assertSameAsJava(".", "\n", "\r", "\u0085", "\u2028", "a", "\u4e2d");
+    assertSameAsJava("(?d).", "\n", "\r", "\u2028");
+    assertSameAsJava("\\w", "\u00e9", "a");
+    assertSameAsJava("(?U)\\w", "\u00e9", "a");
+  }
+
+  @Test
+  public void should_support_lookahead_of_single_character() {
+    DfaPattern pattern = DfaPattern.compile("[0-9]++(?![a-z])");
+    assertThat(pattern.match("12a")).isEqualTo(-1);
+    assertThat(pattern.match("12 ")).isEqualTo(2);
+    assertThat(pattern.match("12")).isEqualTo(2);
+    assertSameAsJava("[0-9]++(?=[a-z])", "12a", "12 ", "12");
+    assertSameAsJava("(?i)(select|from)(?![a-z])", "select", "FROM ", "selection");
+  }
+
+  @Test
+  public void should_support_possessive_quantifiers_of_characters() {
+    assertSameAsJava("a*+a", "aaa", "a");
+    assertSameAsJava("[0-9]{1,2}+[0-9]", "123", "12");
+    assertSameAsJava("[0-9]++(?![a-z])", "12a", "12");
+  }
+
+  @Test
+  public void should_support_possessive_quantifiers_of_subexpressions_equivalent_to_greedy() {
+    assertSameAsJava("(ab)*+c", "ababc", "abab");
+    assertSameAsJava("(ab|c)*+", "abcab", "aba");
+    assertSameAsJava("(?>a|b)c", "ac", "bc");
+  }
+
+  @Test
+  public void should_not_support_possessive_quantifiers_of_subexpressions_not_equivalent_to_greedy() {
+    assertNotSupported("(ab)*+a", "possessive quantifier");
+    assertNotSupported("(a|ab)*+", "possessive quantifier");
+    assertNotSupported("(a|ab)*+c", "possessive quantifier");
+    assertNotSupported("(?>a|ab)c", "possessive quantifier");
+    assertNotSupported("([ab]*.){2}+", "possessive quantifier");
+  }
+
+  @Test
+  public void should_not_support_constructs_requiring_backtracking() {
+    assertNotSupported("(a)\\1", "escape sequence '\\1'");
+    assertNotSupported("^a", "boundary matcher");
+    assertNotSupported("a$", "boundary matcher");
+    assertNotSupported("a\\b", "escape sequence '\\b'");
+    assertNotSupported("(?<=a)b", "lookbehind");
+    assertNotSupported("a(?=bc)", "lookahead of more than one character");
+    assertNotSupported("(?=a)*", "quantified lookahead");
+    assertNotSupported("(a?)*", "repetition of subexpression, which can match empty input");
+    assertNotSupported("(?x)a", "flag 'x'");
+    assertNotSupported("a(?i){2}", "quantifier after inline flags");
+  }
+
+  @Test
+  public void should_not_support_too_large_automaton() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Regular expression leads to too large automaton: (a|b)*a(a|b){14}");
+    DfaPattern.compile("(a|b)*a(a|b){14}");
+  }
+
+  @Test
+  public void should_not_support_too_large_expression() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Regular expression is too large: (abcdefghij){1000}");
+    DfaPattern.compile("(abcdefghij){1000}");
+  }
+
+  @Test
+  public void should_throw_exception_when_syntax_is_invalid() {
+    thrown.expect(PatternSyntaxException.class);
+    DfaPattern.compile("[");
+  }
+
+  @Test
+  public void should_not_overflow_stack() {
+    String input = Strings.repeat("0123456789abcdef", 10000);
+    assertThat(DfaPattern.compile("([a-fA-F]|\\d)+").match(input)).isEqualTo(input.length());
+    assertThat(DfaPattern.compile("(?s)(a|.)*").match(input)).isEqualTo(input.length());
+  }
+
+  @Test
+  public void can_start_with() {
+    DfaPattern pattern = DfaPattern.compile("[0-9]++|x");
+    assertThat(pattern.canStartWith('5')).isTrue();
+    assertThat(pattern.canStartWith('x')).isTrue();
+    assertThat(pattern.canStartWith('a')).isFalse();
+    assertThat(DfaPattern.compile("[0-9]*+").canStartWith('a')).isTrue();
+  }
+
+  @Test
+  public void test_toString() {
+    DfaPattern pattern = DfaPattern.compile("[0-9]++");
+    assertThat(pattern.pattern()).isEqualTo("[0-9]++");
+    assertThat(pattern.toString()).isEqualTo("[0-9]++");
+  }
+
+  private static void assertSameAsJava(String regex, String... inputs) {
+    DfaPattern pattern = DfaPattern.compile(regex);
+    Matcher matcher = Pattern.compile(regex).matcher("");
+    for (String input : inputs) {
+      matcher.reset(input);
+      int expected = matcher.lookingAt() ? matcher.end() : -1;
+      assertThat(pattern.match(input)).as(regex + " on " + input).isEqualTo(expected);
+    }
+  }
+
+  private void assertNotSupported(String regex, String construct) {
+    try {
+      DfaPattern.compile(regex);
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains(construct).endsWith("regular expression: " + regex);
+      return;
+    }
+    throw new AssertionError("Expected IllegalArgumentException for " + regex);
+  }
+
+}
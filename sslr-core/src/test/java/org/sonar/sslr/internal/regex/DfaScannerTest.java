@@ -0,0 +1,105 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DfaScannerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_match_first_rule_which_matches() {
+    DfaScanner scanner = DfaScanner.compile(ImmutableList.of("[a-z]++", "[a-z0-9]++", "[0-9]++", "\\Q==\\E", "="));
+    assertMatch(scanner, "abc1", 0, 3);
+    assertMatch(scanner, "1abc", 1, 4);
+    assertMatch(scanner, "==", 3, 2);
+    assertMatch(scanner, "=!", 4, 1);
+    assertThat(scanner.match("!")).isEqualTo(-1L);
+    assertThat(scanner.match("")).isEqualTo(-1L);
+  }
+
+  @Test
+  public void should_not_prefer_longest_match() {
+    DfaScanner scanner = DfaScanner.compile(ImmutableList.of("a", "ab"));
+    assertMatch(scanner, "ab", 0, 1);
+  }
+
+  @Test
+  public void should_match_as_java_within_rule() {
+    DfaScanner scanner = DfaScanner.compile(ImmutableList.of("(?s)/\\*.*?\\*/", "/", "\"([^\"\\\\]|\\\\.)*+\"", "[^/]++"));
+    assertMatch(scanner, "/* comment */ */", 0, 13);
+    assertMatch(scanner, "/* unclosed", 1, 1);
+    assertMatch(scanner, "\"foo\\\"\"bar", 2, 7);
+    assertMatch(scanner, "\"unclosed/", 3, 9);
+  }
+
+  @Test
+  public void should_support_lookahead_at_end_of_rule() {
+    DfaScanner scanner = DfaScanner.compile(ImmutableList.of("[0-9]++(?![a-z])", "[0-9a-z]++"));
+    assertMatch(scanner, "12", 0, 2);
+    assertMatch(scanner, "12a", 1, 3);
+  }
+
+  @Test
+  public void can_start_with() {
+    DfaScanner scanner = DfaScanner.compile(ImmutableList.of("a", "b++"));
+    assertThat(scanner.canStartWith('a')).isTrue();
+    assertThat(scanner.canStartWith('b')).isTrue();
+    assertThat(scanner.canStartWith('c')).isFalse();
+    assertThat(scanner.rules()).containsExactly("a", "b++");
+    assertThat(scanner.toString()).isEqualTo("[a, b++]");
+  }
+
+  @Test
+  public void should_not_support_rule_which_matches_empty_input() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported regular expression, which can match empty input: a*");
+    DfaScanner.compile(ImmutableList.of("b", "a*"));
+  }
+
+  @Test
+  public void should_not_support_unsupported_rule() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported construct");
+    DfaScanner.compile(ImmutableList.of("b", "(a)\\1"));
+  }
+
+  @Test
+  public void should_require_rules() {
+    thrown.expect(IllegalArgumentException.class);
+    DfaScanner.compile(Collections.<String>emptyList());
+  }
+
+  private static void assertMatch(DfaScanner scanner, String input, int rule, int length) {
+    long match = scanner.match(input);
+    assertThat(DfaScanner.rule(match)).as("rule").isEqualTo(rule);
+    assertThat(DfaScanner.length(match)).as("length").isEqualTo(length);
+  }
+
+}
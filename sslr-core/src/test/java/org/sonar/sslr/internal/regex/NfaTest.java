@@ -0,0 +1,97 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NfaTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void greedy_repetition_should_prefer_loop() {
+    Nfa nfa = build("a*");
+    int start = nfa.start();
+    assertThat(nfa.type(start)).isEqualTo(Nfa.SPLIT);
+    assertThat(nfa.type(nfa.next(start))).isEqualTo(Nfa.CHARS);
+    assertThat(nfa.type(nfa.alternative(start))).isEqualTo(Nfa.MATCH);
+  }
+
+  @Test
+  public void reluctant_repetition_should_prefer_exit() {
+    Nfa nfa = build("a*?");
+    int start = nfa.start();
+    assertThat(nfa.type(start)).isEqualTo(Nfa.SPLIT);
+    assertThat(nfa.type(nfa.next(start))).isEqualTo(Nfa.MATCH);
+    assertThat(nfa.type(nfa.alternative(start))).isEqualTo(Nfa.CHARS);
+  }
+
+  @Test
+  public void alternation_should_prefer_first_alternative() {
+    Nfa nfa = build("a|b");
+    int start = nfa.start();
+    assertThat(nfa.type(start)).isEqualTo(Nfa.SPLIT);
+    assertThat(nfa.chars(nfa.next(start)).get('a')).isTrue();
+    assertThat(nfa.chars(nfa.alternative(start)).get('b')).isTrue();
+  }
+
+  @Test
+  public void possessive_repetition_of_characters_should_exit_only_before_other_character() {
+    Nfa nfa = build("a*+");
+    int start = nfa.start();
+    assertThat(nfa.type(start)).isEqualTo(Nfa.SPLIT);
+    int exit = nfa.alternative(start);
+    assertThat(nfa.type(exit)).isEqualTo(Nfa.NEGATIVE_LOOKAHEAD);
+    assertThat(nfa.chars(exit).get('a')).isTrue();
+    assertThat(nfa.type(nfa.next(exit))).isEqualTo(Nfa.MATCH);
+  }
+
+  @Test
+  public void possessive_repetition_of_subexpression_followed_by_empty_input() {
+    Nfa nfa = build("(ab|c)*+");
+    assertThat(nfa.size()).isGreaterThan(1);
+  }
+
+  @Test
+  public void possessive_repetition_of_nondeterministic_subexpression() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported construct (possessive quantifier or atomic group, which requires backtracking"
+      + " to be equivalent to greedy quantifier) in regular expression: (a|ab)*+");
+    build("(a|ab)*+");
+  }
+
+  @Test
+  public void possessive_repetition_of_subexpression_followed_by_its_continuation() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported construct (possessive quantifier or atomic group, which requires backtracking"
+      + " to be equivalent to greedy quantifier) in regular expression: (ab)*+a");
+    build("(ab)*+a");
+  }
+
+  private static Nfa build(String regex) {
+    return Nfa.build(regex, RegexParser.parse(regex));
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.internal.regex.RegexNode.Kind;
+import org.sonar.sslr.internal.regex.RegexNode.Quantifier;
+
+import java.util.BitSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class RegexParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_parse_alternation_and_sequence() {
+    RegexNode node = RegexParser.parse("a|bc");
+    assertThat(node.kind).isEqualTo(Kind.ALTERNATION);
+    assertThat(node.children.size()).isEqualTo(2);
+    assertThat(node.children.get(0).kind).isEqualTo(Kind.CHARS);
+    assertThat(node.children.get(1).kind).isEqualTo(Kind.SEQUENCE);
+    assertThat(node.children.get(1).children.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_parse_quantifiers() {
+    RegexNode node = RegexParser.parse("a{2,}?");
+    assertThat(node.kind).isEqualTo(Kind.REPETITION);
+    assertThat(node.min).isEqualTo(2);
+    assertThat(node.max).isEqualTo(RegexNode.UNBOUNDED);
+    assertThat(node.quantifier).isEqualTo(Quantifier.RELUCTANT);
+
+    node = RegexParser.parse("a{1,3}+");
+    assertThat(node.min).isEqualTo(1);
+    assertThat(node.max).isEqualTo(3);
+    assertThat(node.quantifier).isEqualTo(Quantifier.POSSESSIVE);
+
+    node = RegexParser.parse("(?>ab)");
+    assertThat(node.kind).isEqualTo(Kind.REPETITION);
+    assertThat(node.min).isEqualTo(1);
+    assertThat(node.max).isEqualTo(1);
+    assertThat(node.quantifier).isEqualTo(Quantifier.POSSESSIVE);
+  }
+
+  @Test
+  public void should_parse_quotation() {
+    RegexNode node = RegexParser.parse("\\Qa*\\E+");
+    assertThat(node.kind).isEqualTo(Kind.SEQUENCE);
+    assertThat(node.children.get(0).kind).isEqualTo(Kind.CHARS);
+    assertThat(node.children.get(0).chars.get('a')).isTrue();
+    assertThat(node.children.get(1).kind).isEqualTo(Kind.REPETITION);
+    assertThat(node.children.get(1).children.get(0).chars.get('*')).isTrue();
+  }
+
+  @Test
+  public void should_parse_lookahead() {
+    RegexNode node = RegexParser.parse("(?![a-z])");
+    assertThat(node.kind).isEqualTo(Kind.LOOKAHEAD);
+    assertThat(node.negative).isTrue();
+    assertThat(node.chars.cardinality()).isEqualTo(26);
+    assertThat(RegexParser.parse("(?=a)").negative).isFalse();
+  }
+
+  @Test
+  public void should_compute_sets_of_characters() {
+    assertThat(chars("[a-c]").cardinality()).isEqualTo(3);
+    assertThat(chars("[^a]").cardinality()).isEqualTo((int) Character.MAX_VALUE);
+    assertThat(chars("(?i)k").cardinality()).isEqualTo(2);
+    assertThat(chars("(?iu)k").get('\u212a')).isTrue();
+    assertThat(chars("\\p{Lu}").get('\u00c9')).isTrue();
+
+    BitSet dot = chars(".");
+    assertThat(dot.get('a')).isTrue();
+    assertThat(dot.get('\u4e2d')).isTrue();
+    assertThat(dot.get('\n')).isFalse();
+    assertThat(dot.get('\r')).isFalse();
+    assertThat(dot.get('\u0085')).isFalse();
+    assertThat(dot.get('\u2028')).isFalse();
+    assertThat(dot.get('\u2029')).isFalse();
+    assertThat(chars("(?s).").cardinality()).isEqualTo(Character.MAX_VALUE + 1);
+  }
+
+  @Test
+  public void should_scope_flags() {
+    RegexNode node = RegexParser.parse("(a(?i)b)c");
+    assertThat(node.children.get(0).children.get(1).chars.cardinality()).isEqualTo(2);
+    assertThat(node.children.get(1).chars.cardinality()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_report_index_of_unsupported_construct() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported construct (boundary matcher) near index 1 in regular expression: a^");
+    RegexParser.parse("a^");
+  }
+
+  private static BitSet chars(String regex) {
+    RegexNode node = RegexParser.parse(regex);
+    assertThat(node.kind).isEqualTo(Kind.CHARS);
+    return node.chars;
+  }
+
+}
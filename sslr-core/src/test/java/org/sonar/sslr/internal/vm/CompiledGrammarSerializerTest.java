@@ -0,0 +1,206 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.GenericTokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.vm.Instruction.DispatchInstruction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompiledGrammarSerializerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private enum Key implements GrammarRuleKey {
+    ROOT, STATEMENT, IDENTIFIER
+  }
+
+  @Test
+  public void should_write_and_read_lexerless_grammar() throws Exception {
+    CompiledGrammar grammar = MutableGrammarCompiler.compile(lexerlessGrammar("foo"));
+    CompiledGrammar result = CompiledGrammarSerializer.read(lexerlessGrammar("foo"), new ByteArrayInputStream(write(grammar)));
+    assertThat(describe(result)).isEqualTo(describe(grammar));
+    assertThat(result.getRootRuleKey()).isEqualTo(Key.ROOT);
+    assertThat(result.getRootRuleOffset()).isEqualTo(grammar.getRootRuleOffset());
+    assertThat(result.getMatcher(Key.IDENTIFIER)).isNotNull();
+  }
+
+  @Test
+  public void should_write_and_read_lexerful_grammar() throws Exception {
+    CompiledGrammar grammar = MutableGrammarCompiler.compile(lexerfulGrammar());
+    CompiledGrammar result = CompiledGrammarSerializer.read(lexerfulGrammar(), new ByteArrayInputStream(write(grammar)));
+    assertThat(describe(result)).isEqualTo(describe(grammar));
+    assertThat(describe(result)).contains("types [IDENTIFIER, LITERAL]");
+  }
+
+  @Test
+  public void should_not_read_compiled_grammar_of_another_grammar() throws Exception {
+    byte[] bytes = write(MutableGrammarCompiler.compile(lexerlessGrammar("foo")));
+    assertThat(CompiledGrammarSerializer.read(lexerlessGrammar("bar"), new ByteArrayInputStream(bytes))).isNull();
+  }
+
+  @Test
+  public void should_not_read_another_version() throws Exception {
+    byte[] bytes = write(MutableGrammarCompiler.compile(lexerlessGrammar("foo")));
+    bytes[7]++;
+    assertThat(CompiledGrammarSerializer.read(lexerlessGrammar("foo"), new ByteArrayInputStream(bytes))).isNull();
+  }
+
+  @Test
+  public void should_fail_on_malformed_input() throws Exception {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Not a compiled grammar");
+    CompiledGrammarSerializer.read(lexerlessGrammar("foo"), new ByteArrayInputStream(new byte[] {1, 2, 3, 4}));
+  }
+
+  @Test
+  public void should_fail_on_truncated_input() throws Exception {
+    byte[] bytes = write(MutableGrammarCompiler.compile(lexerlessGrammar("foo")));
+    thrown.expect(IOException.class);
+    CompiledGrammarSerializer.read(lexerlessGrammar("foo"), new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+  }
+
+  @Test
+  public void should_fail_on_invalid_number_of_instructions() throws Exception {
+    ByteArrayOutputStream bytes = header();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeInt(-1);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Invalid number of instructions -1");
+    read(bytes.toByteArray());
+  }
+
+  @Test
+  public void should_fail_on_invalid_offset_of_root_rule() throws Exception {
+    ByteArrayOutputStream bytes = header();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(2);
+    out.writeInt(2);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Invalid offset 2 of instruction 0");
+    read(bytes.toByteArray());
+  }
+
+  @Test
+  public void should_fail_on_invalid_offset_of_instruction() throws Exception {
+    ByteArrayOutputStream bytes = header();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeInt(2);
+    out.writeByte(Instruction.Opcode.END);
+    out.writeByte(Instruction.Opcode.JUMP);
+    out.writeInt(-2);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Invalid offset -2 of instruction 1");
+    read(bytes.toByteArray());
+  }
+
+  @Test
+  public void should_fail_on_invalid_return_address_of_call() throws Exception {
+    ByteArrayOutputStream bytes = header();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeInt(1);
+    out.writeByte(Instruction.Opcode.CALL);
+    out.writeInt(0);
+    out.writeInt(0);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Invalid offset 1 of instruction 0");
+    read(bytes.toByteArray());
+  }
+
+  @Test
+  public void should_fail_on_invalid_size() throws Exception {
+    ByteArrayOutputStream bytes = header();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeInt(1);
+    out.writeByte(Instruction.Opcode.STRINGS);
+    out.writeInt(-1);
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Invalid size -1");
+    read(bytes.toByteArray());
+  }
+
+  /**
+   * @return magic number, version and fingerprint, which are valid for grammar used by {@link #read(byte[])}
+   */
+  private static ByteArrayOutputStream header() throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    result.write(write(MutableGrammarCompiler.compile(lexerlessGrammar("foo"))), 0, 16);
+    return result;
+  }
+
+  private static CompiledGrammar read(byte[] bytes) throws IOException {
+    return CompiledGrammarSerializer.read(lexerlessGrammar("foo"), new ByteArrayInputStream(bytes));
+  }
+
+  private static CompilableGrammarRule lexerlessGrammar(String keyword) {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(Key.ROOT).is(b.zeroOrMore(Key.STATEMENT), b.endOfInput());
+    b.rule(Key.STATEMENT).is(b.firstOf(
+        b.sequence(keyword, "(", Key.IDENTIFIER, ")"),
+        b.sequence(Key.IDENTIFIER, "=", b.token(GenericTokenType.LITERAL, b.regexp("[0-9]++")))), ";");
+    b.rule(Key.IDENTIFIER).is(b.nextNot(keyword), b.regexp("[a-z]++"));
+    return (CompilableGrammarRule) b.build().rule(Key.ROOT);
+  }
+
+  private static CompilableGrammarRule lexerfulGrammar() {
+    LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
+    b.rule(Key.ROOT).is(b.zeroOrMore(Key.STATEMENT), GenericTokenType.EOF);
+    b.rule(Key.STATEMENT).is(b.firstOf(
+        b.sequence("foo", Key.IDENTIFIER),
+        b.sequence(b.firstOf(GenericTokenType.IDENTIFIER, GenericTokenType.LITERAL), "=")));
+    b.rule(Key.IDENTIFIER).is(GenericTokenType.IDENTIFIER);
+    return (CompilableGrammarRule) b.build().rule(Key.ROOT);
+  }
+
+  private static byte[] write(CompiledGrammar grammar) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompiledGrammarSerializer.write(grammar, out);
+    return out.toByteArray();
+  }
+
+  private static String describe(CompiledGrammar grammar) {
+    StringBuilder sb = new StringBuilder(PeepholeOptimizer.dump(grammar.getInstructions()));
+    for (Instruction instruction : grammar.getInstructions()) {
+      if (instruction instanceof DispatchInstruction) {
+        DispatchInstruction dispatch = (DispatchInstruction) instruction;
+        sb.append(Arrays.toString(dispatch.getOffsets())).append(Arrays.toString(dispatch.getFirstSets())).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -19,7 +19,15 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import org.junit.Test;
+import org.sonar.sslr.internal.vm.lexerful.TillNewLineExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+
+import java.net.URI;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -47,4 +55,42 @@ public class FirstOfExpressionTest {
     });
   }
 
+  @Test
+  public void should_compile_with_dispatch() {
+    FirstOfExpression expression = new FirstOfExpression(
+        new StringExpression("foo"),
+        new SubExpression(1, 2),
+        new StringExpression("bar"));
+    Instruction[] instructions = expression.compile(new CompilationHandler());
+    assertThat(instructions.length).isEqualTo(9);
+    assertThat(instructions[0]).isInstanceOf(Instruction.DispatchInstruction.class);
+    assertThat(instructions[1]).isInstanceOf(StringExpression.class);
+    assertThat(instructions[2]).isEqualTo(Instruction.commit(7));
+    assertThat(instructions[3]).isInstanceOf(Instruction.DispatchInstruction.class);
+    assertThat(instructions[4]).isEqualTo(SubExpression.mockInstruction(1));
+    assertThat(instructions[5]).isEqualTo(SubExpression.mockInstruction(2));
+    assertThat(instructions[6]).isEqualTo(Instruction.commit(3));
+    assertThat(instructions[7]).isInstanceOf(Instruction.DispatchInstruction.class);
+    assertThat(instructions[8]).isInstanceOf(StringExpression.class);
+  }
+
+  @Test
+  public void should_not_skip_alternative_starting_with_till_new_line() throws Exception {
+    FirstOfExpression expression = new FirstOfExpression(
+        new SequenceExpression(TillNewLineExpression.INSTANCE, new TokenTypeExpression(GenericTokenType.EOF)),
+        new TokenValueExpression("z"));
+    Instruction[] instructions = expression.compile(new CompilationHandler());
+    assertThat(Machine.execute(instructions, token(GenericTokenType.IDENTIFIER, "a"), token(GenericTokenType.EOF, "EOF"))).isTrue();
+  }
+
+  private static Token token(TokenType type, String value) throws Exception {
+    return Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(1)
+        .setColumn(0)
+        .build();
+  }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.GenericTokenType;
+import org.junit.Test;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.vm.lexerful.TillNewLineExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FirstSetAnalyzerTest {
+
+  private FirstSetAnalyzer analyzer = new FirstSetAnalyzer();
+
+  @Test
+  public void string() {
+    assertThat(analyzer.firstSet(new StringExpression("foo")).toString()).isEqualTo("FirstSet chars {102}");
+    assertThat(analyzer.firstSet(new StringExpression(""))).isSameAs(FirstSet.EMPTY);
+  }
+
+  @Test
+  public void pattern() {
+    FirstSet firstSet = analyzer.firstSet(new PatternExpression("[0-9]++|\\.[0-9]"));
+    assertThat(firstSet.isNullable()).isFalse();
+    assertThat(firstSet.toString()).startsWith("FirstSet chars {46, 48, 49, 50, 51, 52, 53, 54, 55, 56, 57, 128, ");
+    assertThat(analyzer.firstSet(new PatternExpression("[a-z]*+")).isNullable()).isTrue();
+  }
+
+  @Test
+  public void sequence() {
+    FirstSet firstSet = analyzer.firstSet(new SequenceExpression(
+        new OptionalExpression(new StringExpression("a")),
+        new ZeroOrMoreExpression(new StringExpression("b")),
+        new NextNotExpression(new StringExpression("x")),
+        new StringExpression("c"),
+        new StringExpression("d")));
+    assertThat(firstSet.toString()).isEqualTo("FirstSet chars {97, 98, 99, 120}");
+    assertThat(firstSet.reportsErrors()).isFalse();
+  }
+
+  @Test
+  public void predicate_should_include_first_set_of_subexpression() {
+    // subexpression of predicate can consume input and call rules, even if sequence doesn't match
+    FirstSet firstSet = analyzer.firstSet(new SequenceExpression(
+        new NextExpression(new StringExpression("a")),
+        new StringExpression("b")));
+    assertThat(firstSet.toString()).isEqualTo("FirstSet chars {97, 98}");
+  }
+
+  @Test
+  public void firstOf() {
+    FirstSet firstSet = analyzer.firstSet(new FirstOfExpression(
+        new OneOrMoreExpression(new StringExpression("a")),
+        new StringExpression("b"),
+        EndOfInputExpression.INSTANCE));
+    assertThat(firstSet.toString()).isEqualTo("FirstSet nullable chars {97, 98}");
+  }
+
+  @Test
+  public void nothing() {
+    assertThat(analyzer.firstSet(NothingExpression.INSTANCE)).isSameAs(FirstSet.NONE);
+  }
+
+  @Test
+  public void unknown() {
+    assertThat(analyzer.firstSet(new SubExpression(1))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void tokens() {
+    FirstSet firstSet = analyzer.firstSet(new FirstOfExpression(
+        new TokenTypeExpression(GenericTokenType.IDENTIFIER),
+        new TokenValueExpression("foo")));
+    assertThat(firstSet.toString()).isEqualTo("FirstSet types [IDENTIFIER] values [foo]");
+  }
+
+  @Test
+  public void till_new_line_consumes_tokens() {
+    assertThat(analyzer.firstSet(TillNewLineExpression.INSTANCE)).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void rule() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.setExpression(new StringExpression("foo"));
+    FirstSet firstSet = analyzer.firstSet(rule);
+    assertThat(firstSet.toString()).isEqualTo("FirstSet chars {102}");
+    assertThat(firstSet.reportsErrors()).isTrue();
+    assertThat(analyzer.firstSet(new NextExpression(rule)).reportsErrors()).isTrue();
+    assertThat(analyzer.firstSet(new NextNotExpression(rule)).reportsErrors()).isFalse();
+    assertThat(analyzer.firstSet(new TokenExpression(GenericTokenType.IDENTIFIER, new StringExpression("foo"))).reportsErrors()).isTrue();
+  }
+
+  @Test
+  public void undefined_rule() {
+    assertThat(analyzer.firstSet(new MutableParsingRule("rule"))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void left_recursion() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.setExpression(new FirstOfExpression(new StringExpression("foo"), new SequenceExpression(rule, new StringExpression("bar"))));
+    assertThat(analyzer.firstSet(rule)).isSameAs(FirstSet.ANY);
+    assertThat(analyzer.firstSet(new NextNotExpression(rule))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void loop_with_empty_match() {
+    assertThat(analyzer.firstSet(new ZeroOrMoreExpression(new OptionalExpression(new StringExpression("a"))))).isSameAs(FirstSet.ANY);
+    assertThat(analyzer.firstSet(new OneOrMoreExpression(new StringExpression("")))).isSameAs(FirstSet.ANY);
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FirstSetTest {
+
+  private Machine machine = mock(Machine.class);
+
+  @Test
+  public void any() {
+    assertThat(FirstSet.ANY.isAny()).isTrue();
+    assertThat(FirstSet.ANY.isNullable()).isTrue();
+    assertThat(FirstSet.ANY.canStartWith(machine)).isTrue();
+    assertThat(FirstSet.ANY.union(chars('a')).isAny()).isTrue();
+    assertThat(FirstSet.EMPTY.then(FirstSet.ANY).isAny()).isTrue();
+    assertThat(FirstSet.ANY.withErrorReports()).isSameAs(FirstSet.ANY);
+    assertThat(FirstSet.ANY.toString()).isEqualTo("Any");
+  }
+
+  @Test
+  public void chars() {
+    FirstSet firstSet = chars('a');
+    assertThat(firstSet.isAny()).isFalse();
+    assertThat(firstSet.isNullable()).isFalse();
+    assertThat(firstSet.toString()).isEqualTo("FirstSet chars {97}");
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('a');
+    assertThat(firstSet.canStartWith(machine)).isTrue();
+    when(machine.charAt(0)).thenReturn('b');
+    assertThat(firstSet.canStartWith(machine)).isFalse();
+    when(machine.length()).thenReturn(0);
+    assertThat(firstSet.canStartWith(machine)).isFalse();
+    assertThat(firstSet.withNullable().canStartWith(machine)).isTrue();
+  }
+
+  @Test
+  public void tokens() {
+    FirstSet firstSet = FirstSet.tokenTypes(ImmutableSet.<TokenType>of(GenericTokenType.IDENTIFIER)).union(FirstSet.tokenValue("foo"));
+    assertThat(firstSet.toString()).isEqualTo("FirstSet types [IDENTIFIER] values [foo]");
+
+    when(machine.length()).thenReturn(1);
+    givenToken(GenericTokenType.IDENTIFIER, "bar");
+    assertThat(firstSet.canStartWith(machine)).isTrue();
+    givenToken(GenericTokenType.LITERAL, "foo");
+    assertThat(firstSet.canStartWith(machine)).isTrue();
+    givenToken(GenericTokenType.LITERAL, "bar");
+    assertThat(firstSet.canStartWith(machine)).isFalse();
+  }
+
+  @Test
+  public void none() {
+    when(machine.length()).thenReturn(1);
+    assertThat(FirstSet.NONE.canStartWith(machine)).isFalse();
+    assertThat(FirstSet.NONE.isNullable()).isFalse();
+  }
+
+  @Test
+  public void union() {
+    FirstSet firstSet = chars('a').union(chars('b').withErrorReports()).union(FirstSet.EMPTY);
+    assertThat(firstSet.isNullable()).isTrue();
+    assertThat(firstSet.reportsErrors()).isTrue();
+    assertThat(firstSet.toString()).isEqualTo("FirstSet nullable chars {97, 98}");
+  }
+
+  @Test
+  public void then() {
+    assertThat(chars('a').then(chars('b')).toString()).isEqualTo("FirstSet chars {97}");
+    assertThat(chars('a').withNullable().then(chars('b')).toString()).isEqualTo("FirstSet chars {97, 98}");
+    assertThat(FirstSet.EMPTY.withErrorReports().then(chars('b')).reportsErrors()).isTrue();
+    assertThat(FirstSet.EMPTY.then(FirstSet.EMPTY).isNullable()).isTrue();
+  }
+
+  @Test
+  public void as_predicate() {
+    FirstSet firstSet = chars('a').withErrorReports().asPredicate(true);
+    assertThat(firstSet.isNullable()).isTrue();
+    assertThat(firstSet.reportsErrors()).isTrue();
+    assertThat(firstSet.toString()).isEqualTo("FirstSet nullable chars {97}");
+    assertThat(chars('a').withErrorReports().asPredicate(false).reportsErrors()).isFalse();
+    assertThat(FirstSet.ANY.asPredicate(false)).isSameAs(FirstSet.ANY);
+  }
+
+  private static FirstSet chars(char c) {
+    BitSet chars = new BitSet();
+    chars.set(c);
+    return FirstSet.chars(chars, false);
+  }
+
+  private void givenToken(TokenType type, String value) {
+    when(machine.tokenTypeAt(0)).thenReturn(type);
+    when(machine.tokenValueAt(0)).thenReturn(value);
+  }
+
+}
@@ -26,21 +26,29 @@ import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
 import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
 import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
 import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.DispatchInstruction;
 import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
 import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.IgnoreErrorsInstruction;
 import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitInstruction;
 import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.StringsInstruction;
+
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -176,6 +184,78 @@ public class InstructionTest {
     instruction.execute(machine);
   }
 
+  @Test
+  public void partialCommit() {
+    Instruction instruction = Instruction.partialCommit(42);
+    assertThat(instruction).isInstanceOf(PartialCommitInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("PartialCommit " + 42);
+    assertThat(instruction.equals(Instruction.partialCommit(42))).isTrue();
+    assertThat(instruction.equals(Instruction.partialCommit(13))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(42);
+
+    MachineStack parent = new MachineStack().getOrCreateChild();
+    MachineStack stack = parent.getOrCreateChild();
+    ParseNode subNode = mock(ParseNode.class);
+    stack.subNodes().add(subNode);
+    when(machine.peek()).thenReturn(stack);
+    when(machine.getIndex()).thenReturn(13);
+    instruction.execute(machine);
+    assertThat(parent.subNodes()).containsOnly(subNode);
+    assertThat(stack.subNodes()).isEmpty();
+    assertThat(stack.index()).isEqualTo(13);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).peek();
+    inOrder.verify(machine, times(2)).getIndex();
+    inOrder.verify(machine).jump(42);
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void partialCommit_should_throw_exception() {
+    Instruction instruction = Instruction.partialCommit(42);
+    MachineStack stack = new MachineStack().getOrCreateChild();
+    stack.setIndex(13);
+    when(machine.peek()).thenReturn(stack);
+    when(machine.getIndex()).thenReturn(13);
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+    instruction.execute(machine);
+  }
+
+  @Test
+  public void strings() {
+    StringExpression foo = new StringExpression("f");
+    StringExpression bar = new StringExpression("b");
+    Instruction instruction = Instruction.strings(new StringExpression[] {foo, bar});
+    assertThat(instruction).isInstanceOf(StringsInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("Strings [String f, String b]");
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('f', 'b');
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).createLeafNode(foo, 1);
+    inOrder.verify(machine).createLeafNode(bar, 1);
+    inOrder.verify(machine).jump(1);
+    verify(machine, never()).backtrack();
+  }
+
+  @Test
+  public void strings_should_backtrack() {
+    StringExpression foo = new StringExpression("f");
+    StringExpression bar = new StringExpression("b");
+    Instruction instruction = Instruction.strings(new StringExpression[] {foo, bar});
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('f', 'x');
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).createLeafNode(foo, 1);
+    inOrder.verify(machine).backtrack();
+    verify(machine, never()).jump(1);
+  }
+
   @Test
   public void ret() {
     Instruction instruction = Instruction.ret();
@@ -279,4 +359,81 @@ public class InstructionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void dispatch() {
+    Instruction instruction = Instruction.dispatch(firstSets(), new int[] {0, 3, 6}, 0);
+    assertThat(instruction).isInstanceOf(DispatchInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("Dispatch 0");
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('a');
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).pushBacktrack(3);
+    inOrder.verify(machine).jump(1);
+    verify(machine, never()).reportMismatch();
+  }
+
+  @Test
+  public void dispatch_should_skip_alternatives() {
+    Instruction instruction = Instruction.dispatch(firstSets(), new int[] {0, 3, 6}, 0);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('c');
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).reportMismatch();
+    inOrder.verify(machine).jump(7);
+    verify(machine, never()).pushBacktrack(Mockito.anyInt());
+  }
+
+  @Test
+  public void dispatch_should_backtrack() {
+    Instruction instruction = Instruction.dispatch(firstSets(), new int[] {0, 3, 6}, 1);
+    assertThat(instruction.toString()).isEqualTo("Dispatch 1");
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).reportMismatch();
+    inOrder.verify(machine).backtrack();
+    verify(machine, never()).jump(Mockito.anyInt());
+  }
+
+  @Test
+  public void opcodes_should_be_distinct() {
+    Instruction[] instructions = {
+      Instruction.jump(1),
+      Instruction.call(1, mock(Matcher.class)),
+      Instruction.choice(1),
+      Instruction.ignoreErrors(),
+      Instruction.predicateChoice(1),
+      Instruction.dispatch(firstSets(), new int[] {0, 3, 6}, 0),
+      Instruction.commit(1),
+      Instruction.commitVerify(1),
+      Instruction.partialCommit(1),
+      Instruction.strings(new StringExpression[0]),
+      Instruction.ret(),
+      Instruction.backtrack(),
+      Instruction.end(),
+      Instruction.failTwice(),
+      Instruction.backCommit(1),
+      new StringExpression("a")
+    };
+    Set<Integer> opcodes = new HashSet<>();
+    for (Instruction instruction : instructions) {
+      opcodes.add(instruction.opcode);
+    }
+    assertThat(opcodes).hasSize(instructions.length);
+    assertThat(new StringExpression("a").opcode).isEqualTo(Instruction.Opcode.NATIVE);
+  }
+
+  private static FirstSet[] firstSets() {
+    FirstSetAnalyzer analyzer = new FirstSetAnalyzer();
+    return new FirstSet[] {
+      analyzer.firstSet(new StringExpression("a")),
+      analyzer.firstSet(new StringExpression("b")).withErrorReports(),
+      analyzer.firstSet(new StringExpression("c"))};
+  }
+
 }
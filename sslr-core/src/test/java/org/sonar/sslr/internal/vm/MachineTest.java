@@ -19,12 +19,18 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+
+import java.net.URI;
+import java.util.regex.Pattern;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -79,6 +85,18 @@ public class MachineTest {
     assertThat(machine.charAt(1)).isEqualTo('a');
   }
 
+  @Test
+  public void should_reuse_pattern_matcher_of_instruction() {
+    Machine machine = new Machine("", new Instruction[2]);
+    Pattern pattern = Pattern.compile("foo");
+    java.util.regex.Matcher patternMatcher = machine.getPatternMatcher(pattern);
+    assertThat(patternMatcher.pattern()).isSameAs(pattern);
+    assertThat(machine.getPatternMatcher(pattern)).isSameAs(patternMatcher);
+    assertThat(new Machine("", new Instruction[2]).getPatternMatcher(pattern)).isNotSameAs(patternMatcher);
+    machine.jump(1);
+    assertThat(machine.getPatternMatcher(pattern)).isNotSameAs(patternMatcher);
+  }
+
   @Test
   public void should_pushReturn() {
     Machine machine = new Machine("foo", new Instruction[3]);
@@ -213,6 +231,72 @@ public class MachineTest {
     assertThat(machine.peek().subNodes()).containsOnly(memo);
   }
 
+  @Test
+  public void should_memoize_several_rules_at_same_index() {
+    Machine machine = new Machine("foo", new Instruction[3], 2);
+    MemoParsingExpression matcher = mock(MemoParsingExpression.class);
+    when(matcher.shouldMemoize()).thenReturn(true);
+    MemoParsingExpression anotherMatcher = mock(MemoParsingExpression.class);
+    when(anotherMatcher.shouldMemoize()).thenReturn(true);
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, matcher, 2);
+    machine.advanceIndex(3);
+    machine.createNode();
+    ParseNode memo = machine.peek().parent().subNodes().get(0);
+    machine.backtrack();
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, anotherMatcher, 2);
+    machine.advanceIndex(2);
+    machine.createNode();
+    machine.backtrack();
+    machine.pushReturn(2, matcher, 1);
+    assertThat(machine.getAddress()).isEqualTo(2);
+    assertThat(machine.getIndex()).isEqualTo(3);
+    assertThat(machine.peek().subNodes()).containsOnly(memo);
+  }
+
+  @Test
+  public void should_keep_single_memo_per_index_by_default() {
+    Machine machine = new Machine("foo", new Instruction[3]);
+    MemoParsingExpression matcher = mock(MemoParsingExpression.class);
+    when(matcher.shouldMemoize()).thenReturn(true);
+    MemoParsingExpression anotherMatcher = mock(MemoParsingExpression.class);
+    when(anotherMatcher.shouldMemoize()).thenReturn(true);
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, matcher, 2);
+    machine.advanceIndex(3);
+    machine.createNode();
+    machine.backtrack();
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, anotherMatcher, 2);
+    machine.advanceIndex(2);
+    machine.createNode();
+    machine.backtrack();
+    machine.pushReturn(2, matcher, 1);
+    assertThat(machine.getAddress()).as("memo evicted, so rule is called").isEqualTo(1);
+    assertThat(machine.getIndex()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_memoize_mismatch() {
+    Machine machine = new Machine("foo", new Instruction[4]);
+    MemoParsingExpression matcher = mock(MemoParsingExpression.class);
+    when(matcher.shouldMemoize()).thenReturn(true);
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, matcher, 2);
+    assertThat(machine.getAddress()).isEqualTo(2);
+    machine.advanceIndex(2);
+    machine.backtrack();
+    assertThat(machine.getIndex()).isEqualTo(0);
+
+    MachineStack previousStack = machine.peek();
+    machine.pushBacktrack(3);
+    machine.pushReturn(1, matcher, 2);
+    assertThat(machine.peek()).isSameAs(previousStack);
+    assertThat(machine.getAddress()).as("backtrack address").isEqualTo(3);
+    assertThat(machine.getIndex()).isEqualTo(0);
+  }
+
   @Test
   public void should_not_memorize() {
     Machine machine = new Machine("foo", new Instruction[3]);
@@ -246,4 +330,22 @@ public class MachineTest {
     assertThat(machine.peek().subNodes()).isEmpty();
   }
 
+  @Test
+  public void should_compare_token_values() throws Exception {
+    Instruction[] instructions = new TokenValueExpression("foo").compile(new CompilationHandler());
+    assertThat(Machine.execute(instructions, token("foo"))).isTrue();
+    assertThat(Machine.execute(instructions, token("bar"))).isFalse();
+    assertThat(Machine.execute(instructions, token("h31"/* same hash code as for "foo" */))).isFalse();
+  }
+
+  private static Token token(String value) throws Exception {
+    return Token.builder()
+        .setType(GenericTokenType.IDENTIFIER)
+        .setValueAndOriginalValue(value)
+        .setURI(new URI("tests://unittest"))
+        .setLine(1)
+        .setColumn(0)
+        .build();
+  }
+
 }
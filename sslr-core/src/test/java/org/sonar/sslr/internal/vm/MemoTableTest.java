@@ -0,0 +1,114 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class MemoTableTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final Matcher matcher1 = mock(Matcher.class);
+  private final Matcher matcher2 = mock(Matcher.class);
+  private final Matcher matcher3 = mock(Matcher.class);
+
+  @Test
+  public void should_not_accept_non_positive_number_of_slots() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Number of slots must be positive: 0");
+    new MemoTable(0);
+  }
+
+  @Test
+  public void should_keep_several_nodes_per_position() {
+    MemoTable table = new MemoTable(2);
+    table.reset(3);
+    ParseNode node1 = new ParseNode(1, 2, matcher1);
+    ParseNode node2 = new ParseNode(1, 3, matcher2);
+    table.put(1, node1);
+    table.put(1, node2);
+    assertThat(table.get(1, matcher1)).isSameAs(node1);
+    assertThat(table.get(1, matcher2)).isSameAs(node2);
+    assertThat(table.get(1, matcher3)).isNull();
+    assertThat(table.get(0, matcher1)).isNull();
+    assertThat(table.get(2, matcher1)).isNull();
+  }
+
+  @Test
+  public void should_evict_least_recently_stored_node() {
+    MemoTable table = new MemoTable(2);
+    table.reset(3);
+    ParseNode node1 = new ParseNode(1, 2, matcher1);
+    ParseNode node2 = new ParseNode(1, 3, matcher2);
+    ParseNode node3 = new ParseNode(1, 1, matcher3);
+    table.put(1, node1);
+    table.put(1, node2);
+    table.put(1, node3);
+    assertThat(table.get(1, matcher1)).isNull();
+    assertThat(table.get(1, matcher2)).isSameAs(node2);
+    assertThat(table.get(1, matcher3)).isSameAs(node3);
+  }
+
+  @Test
+  public void should_replace_node_of_same_matcher() {
+    MemoTable table = new MemoTable(2);
+    table.reset(3);
+    ParseNode node1 = new ParseNode(1, 2, matcher1);
+    ParseNode node2 = new ParseNode(1, 3, matcher2);
+    ParseNode newNode1 = new ParseNode(1, 3, matcher1);
+    table.put(1, node1);
+    table.put(1, node2);
+    table.put(1, newNode1);
+    assertThat(table.get(1, matcher1)).isSameAs(newNode1);
+    assertThat(table.get(1, matcher2)).isSameAs(node2);
+  }
+
+  @Test
+  public void should_clear_on_reset() {
+    MemoTable table = new MemoTable(1);
+    table.reset(3);
+    table.put(3, new ParseNode(3, 3, matcher1));
+    table.reset(5);
+    assertThat(table.get(3, matcher1)).isNull();
+    table.put(5, new ParseNode(5, 5, matcher1));
+    table.reset(1);
+    table.reset(5);
+    assertThat(table.get(5, matcher1)).isNull();
+  }
+
+  @Test
+  public void should_clear() {
+    MemoTable table = new MemoTable(1);
+    table.reset(3);
+    table.put(3, new ParseNode(3, 3, matcher1));
+    table.clear();
+    table.reset(3);
+    assertThat(table.get(3, matcher1)).isNull();
+  }
+
+}
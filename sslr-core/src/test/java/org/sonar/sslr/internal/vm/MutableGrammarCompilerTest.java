@@ -0,0 +1,56 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MutableGrammarCompilerTest {
+
+  private enum Key implements GrammarRuleKey {
+    RULE
+  }
+
+  @Test
+  public void should_optimize() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(Key.RULE).is("a", "b", b.zeroOrMore("c"));
+    CompilableGrammarRule rule = (CompilableGrammarRule) b.build().rule(Key.RULE);
+    assertThat(MutableGrammarCompiler.compile(rule).getInstructions().length).isEqualTo(5);
+    assertThat(MutableGrammarCompiler.dumpOptimization(rule)).isEqualTo("Before optimization (6 instructions):\n"
+      + "0: String a\n"
+      + "1: String b\n"
+      + "2: Choice 3\n"
+      + "3: String c\n"
+      + "4: PartialCommit -1\n"
+      + "5: Ret\n"
+      + "\n"
+      + "After optimization (5 instructions):\n"
+      + "0: Strings [String a, String b]\n"
+      + "1: Choice 3\n"
+      + "2: String c\n"
+      + "3: PartialCommit -1\n"
+      + "4: Ret\n");
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class ParseTreeArenaTest {
+
+  private final ParseTreeArena arena = new ParseTreeArena();
+  private final Matcher leafMatcher = mock(Matcher.class);
+  private final Matcher matcher = mock(Matcher.class);
+
+  @Test
+  public void should_create_leaf_node() {
+    ParseNode node = arena.createLeafNode(1, 3, leafMatcher);
+    assertThat(node.getStartIndex()).isEqualTo(1);
+    assertThat(node.getEndIndex()).isEqualTo(3);
+    assertThat(node.getMatcher()).isSameAs(leafMatcher);
+    assertThat(node.getChildren()).isEmpty();
+
+    int id = arena.getId(node);
+    assertThat(arena.size()).isEqualTo(1);
+    assertThat(arena.getStartIndex(id)).isEqualTo(1);
+    assertThat(arena.getEndIndex(id)).isEqualTo(3);
+    assertThat(arena.getMatcher(id)).isSameAs(leafMatcher);
+    assertThat(arena.getFirstChild(id)).isEqualTo(ParseTreeArena.NONE);
+    assertThat(arena.getNextSibling(id)).isEqualTo(ParseTreeArena.NONE);
+  }
+
+  @Test
+  public void should_link_children() {
+    ParseNode child1 = arena.createLeafNode(0, 1, leafMatcher);
+    ParseNode child2 = arena.createLeafNode(1, 2, leafMatcher);
+    ParseNode node = arena.createNode(0, 2, ImmutableList.of(child1, child2), matcher);
+
+    int id = arena.getId(node);
+    assertThat(arena.getFirstChild(id)).isEqualTo(arena.getId(child1));
+    assertThat(arena.getNextSibling(arena.getId(child1))).isEqualTo(arena.getId(child2));
+    assertThat(arena.getNextSibling(arena.getId(child2))).isEqualTo(ParseTreeArena.NONE);
+
+    assertThat(node.getChildren()).hasSize(2);
+    assertThat(node.getChildren().get(0).getEndIndex()).isEqualTo(1);
+    assertThat(node.getChildren().get(1).getStartIndex()).isEqualTo(1);
+    assertThat(arena.getNode(id).getChildren()).hasSize(2);
+  }
+
+  @Test
+  public void should_copy_reused_node() {
+    ParseNode child = arena.createLeafNode(0, 0, leafMatcher);
+    ParseNode node = arena.createNode(0, 0, ImmutableList.of(child, child), matcher);
+    ParseNode otherNode = arena.createNode(0, 0, ImmutableList.of(child), matcher);
+
+    assertThat(arena.size()).isEqualTo(5);
+    assertThat(node.getChildren()).hasSize(2);
+    assertThat(otherNode.getChildren()).hasSize(1);
+    int firstChild = arena.getFirstChild(arena.getId(node));
+    assertThat(arena.getNextSibling(firstChild)).isNotEqualTo(firstChild);
+  }
+
+  @Test
+  public void should_grow() {
+    ParseNode node = arena.createLeafNode(0, 0, leafMatcher);
+    for (int i = 1; i < 5000; i++) {
+      node = arena.createNode(0, i, Collections.singletonList(node), matcher);
+    }
+    assertThat(arena.size()).isEqualTo(5000);
+    assertThat(node.getEndIndex()).isEqualTo(4999);
+    assertThat(node.getChildren().get(0).getEndIndex()).isEqualTo(4998);
+  }
+
+  @Test
+  public void should_invalidate_nodes_on_reset() {
+    ParseNode node = arena.createLeafNode(0, 1, leafMatcher);
+    arena.reset();
+    assertThat(arena.size()).isEqualTo(0);
+    try {
+      node.getChildren();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("Arena was reset after creation of this node");
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_not_accept_foreign_node() {
+    arena.getId(new ParseNode(0, 1, leafMatcher));
+  }
+
+}
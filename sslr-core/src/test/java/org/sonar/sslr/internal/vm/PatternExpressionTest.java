@@ -19,6 +19,7 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -40,6 +41,11 @@ public class PatternExpressionTest {
   private PatternExpression expression = new PatternExpression("foo|bar");
   private Machine machine = mock(Machine.class);
 
+  @Before
+  public void setUp() {
+    when(machine.getPatternMatcher(expression.getPattern())).thenReturn(expression.getPattern().matcher(""));
+  }
+
   @Test
   public void should_compile() {
     assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
@@ -54,6 +60,7 @@ public class PatternExpressionTest {
     when(machine.charAt(2)).thenReturn('o');
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).getPatternMatcher(expression.getPattern());
     inOrder.verify(machine, atLeast(1)).length();
     inOrder.verify(machine, atLeast(1)).charAt(0);
     inOrder.verify(machine, atLeast(1)).charAt(1);
@@ -65,6 +72,40 @@ public class PatternExpressionTest {
 
   @Test
   public void should_backtrack() {
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('z');
+    expression.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).getPatternMatcher(expression.getPattern());
+    inOrder.verify(machine, atLeast(1)).length();
+    inOrder.verify(machine, atLeast(1)).charAt(0);
+    inOrder.verify(machine).backtrack();
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void should_match_with_dfa() {
+    PatternExpression expression = new PatternExpression("foo|bar", true);
+    when(machine.length()).thenReturn(4);
+    when(machine.charAt(0)).thenReturn('b');
+    when(machine.charAt(1)).thenReturn('a');
+    when(machine.charAt(2)).thenReturn('r');
+    when(machine.charAt(3)).thenReturn('!');
+    expression.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine, atLeast(1)).length();
+    inOrder.verify(machine, atLeast(1)).charAt(0);
+    inOrder.verify(machine, atLeast(1)).charAt(1);
+    inOrder.verify(machine, atLeast(1)).charAt(2);
+    inOrder.verify(machine, atLeast(1)).charAt(3);
+    inOrder.verify(machine).createLeafNode(expression, 3);
+    inOrder.verify(machine).jump(1);
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void should_backtrack_with_dfa() {
+    PatternExpression expression = new PatternExpression("foo|bar", true);
     when(machine.length()).thenReturn(1);
     when(machine.charAt(0)).thenReturn('z');
     expression.execute(machine);
@@ -75,6 +116,13 @@ public class PatternExpressionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void should_not_support_dfa_for_backreference() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unsupported construct");
+    new PatternExpression("(a)\\1", true);
+  }
+
   @Test
   public void should_catch_StackOverflowError() {
     when(machine.length()).thenReturn(1);
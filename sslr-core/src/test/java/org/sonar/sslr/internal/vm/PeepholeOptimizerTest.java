@@ -0,0 +1,84 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PeepholeOptimizerTest {
+
+  @Test
+  public void should_thread_jumps_and_remove_unreachable_instructions() {
+    Instruction[] instructions = {
+      Instruction.choice(3),
+      new StringExpression("a"),
+      Instruction.commit(2),
+      Instruction.jump(2),
+      Instruction.jump(1),
+      Instruction.ret()
+    };
+    PeepholeOptimizer optimizer = new PeepholeOptimizer(instructions, Arrays.asList(0));
+    assertThat(optimizer.optimize()).isEqualTo(new Instruction[] {
+      Instruction.choice(3),
+      instructions[1],
+      Instruction.commit(1),
+      Instruction.ret()
+    });
+    assertThat(optimizer.relocate(0)).isEqualTo(0);
+    assertThat(optimizer.relocate(5)).isEqualTo(3);
+  }
+
+  @Test
+  public void should_fuse_strings() {
+    StringExpression a = new StringExpression("a");
+    StringExpression b = new StringExpression("b");
+    Instruction[] instructions = {
+      a,
+      b,
+      Instruction.ret()
+    };
+    Instruction[] result = new PeepholeOptimizer(instructions, Arrays.asList(0)).optimize();
+    assertThat(result.length).isEqualTo(2);
+    assertThat(result[0].toString()).isEqualTo("Strings [String a, String b]");
+    assertThat(result[1]).isSameAs(instructions[2]);
+  }
+
+  @Test
+  public void should_not_fuse_strings_with_target() {
+    Instruction[] instructions = {
+      new StringExpression("a"),
+      new StringExpression("b"),
+      Instruction.ret()
+    };
+    PeepholeOptimizer optimizer = new PeepholeOptimizer(instructions, Arrays.asList(0, 1));
+    assertThat(optimizer.optimize()).isEqualTo(instructions);
+    assertThat(optimizer.relocate(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void should_dump() {
+    assertThat(PeepholeOptimizer.dump(new Instruction[] {Instruction.jump(1), Instruction.ret()}))
+        .isEqualTo("0: Jump 1\n1: Ret\n");
+  }
+
+}
@@ -33,7 +33,7 @@ public class ZeroOrMoreExpressionTest {
       Instruction.choice(4),
       SubExpression.mockInstruction(1),
       SubExpression.mockInstruction(2),
-      Instruction.commitVerify(-3)
+      Instruction.partialCommit(-2)
     });
   }
 
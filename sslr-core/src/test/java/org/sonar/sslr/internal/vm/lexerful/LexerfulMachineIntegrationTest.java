@@ -24,6 +24,7 @@ import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Test;
 import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.FirstOfExpression;
 import org.sonar.sslr.internal.vm.Instruction;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.SequenceExpression;
@@ -100,6 +101,17 @@ public class LexerfulMachineIntegrationTest {
     assertThat(Machine.execute(instructions, tokens)).isFalse();
   }
 
+  @Test
+  public void firstOf() {
+    Instruction[] instructions =
+        new FirstOfExpression(
+            new TokenValueExpression("foo"),
+            new TokenTypeExpression(GenericTokenType.IDENTIFIER)).compile(new CompilationHandler());
+    assertThat(Machine.execute(instructions, token("foo"))).isTrue();
+    assertThat(Machine.execute(instructions, token(GenericTokenType.IDENTIFIER))).isTrue();
+    assertThat(Machine.execute(instructions, token("bar"))).isFalse();
+  }
+
   private static Token token(TokenType type) {
     return when(mock(Token.class).getType()).thenReturn(type).getMock();
   }
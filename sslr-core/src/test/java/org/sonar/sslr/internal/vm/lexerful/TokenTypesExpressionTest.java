@@ -20,7 +20,6 @@
 package org.sonar.sslr.internal.vm.lexerful;
 
 import com.google.common.collect.ImmutableSet;
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -53,14 +52,12 @@ public class TokenTypesExpressionTest {
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(type1);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenTypeAt(0)).thenReturn(type1);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeAt(0);
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -78,14 +75,13 @@ public class TokenTypesExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(mock(TokenType.class));
+    TokenType anotherType = mock(TokenType.class);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenTypeAt(0)).thenReturn(anotherType);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -49,14 +48,12 @@ public class TokenValueExpressionTest {
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("foo");
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenValueEquals(0, "foo")).thenReturn(true);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenValueEquals(0, "foo");
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -74,28 +71,12 @@ public class TokenValueExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("bar");
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
+    when(machine.tokenValueEquals(0, "foo")).thenReturn(false);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
-    inOrder.verify(machine).backtrack();
-    verifyNoMoreInteractions(machine);
-  }
-
-  @Test
-  public void should_backtrack3() {
-    Token token = mock(Token.class);
-    when(token.getValue()).thenReturn("h31"/* same hash code as for "foo" */);
-    when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
-    expression.execute(machine);
-    InOrder inOrder = Mockito.inOrder(machine);
-    inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenValueEquals(0, "foo");
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -55,24 +54,19 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_match() {
     when(machine.length()).thenReturn(5);
-    Token token1 = token(fromType);
-    Token token2 = token(fromType);
-    Token token3 = token(anotherType);
-    Token token4 = token(toType);
-    Token token5 = token(toType);
-    when(machine.tokenAt(0)).thenReturn(token1);
-    when(machine.tokenAt(1)).thenReturn(token2);
-    when(machine.tokenAt(2)).thenReturn(token3);
-    when(machine.tokenAt(3)).thenReturn(token4);
-    when(machine.tokenAt(4)).thenReturn(token5);
+    when(machine.tokenTypeAt(0)).thenReturn(fromType);
+    when(machine.tokenTypeAt(1)).thenReturn(fromType);
+    when(machine.tokenTypeAt(2)).thenReturn(anotherType);
+    when(machine.tokenTypeAt(3)).thenReturn(toType);
+    when(machine.tokenTypeAt(4)).thenReturn(toType);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
-    inOrder.verify(machine).tokenAt(1);
-    inOrder.verify(machine).tokenAt(2);
-    inOrder.verify(machine).tokenAt(3);
-    inOrder.verify(machine).tokenAt(4);
+    inOrder.verify(machine).tokenTypeAt(0);
+    inOrder.verify(machine).tokenTypeAt(1);
+    inOrder.verify(machine).tokenTypeAt(2);
+    inOrder.verify(machine).tokenTypeAt(3);
+    inOrder.verify(machine).tokenTypeAt(4);
     // Number of created nodes must be equal to the number of consumed tokens (5):
     inOrder.verify(machine, times(5)).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
@@ -92,12 +86,11 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_backtrack2() {
     when(machine.length()).thenReturn(2);
-    Token token1 = token(anotherType);
-    when(machine.tokenAt(0)).thenReturn(token1);
+    when(machine.tokenTypeAt(0)).thenReturn(anotherType);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -105,23 +98,15 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_backtrack3() {
     when(machine.length()).thenReturn(2);
-    Token token1 = token(fromType);
-    Token token2 = token(fromType);
-    when(machine.tokenAt(0)).thenReturn(token1);
-    when(machine.tokenAt(1)).thenReturn(token2);
+    when(machine.tokenTypeAt(0)).thenReturn(fromType);
+    when(machine.tokenTypeAt(1)).thenReturn(fromType);
     expression.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
-    inOrder.verify(machine).tokenAt(1);
+    inOrder.verify(machine).tokenTypeAt(0);
+    inOrder.verify(machine).tokenTypeAt(1);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
 
-  private static Token token(TokenType tokenType) {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(tokenType);
-    return token;
-  }
-
 }
@@ -19,12 +19,22 @@
  */
 package org.sonar.sslr.parser;
 
+import com.google.common.base.Strings;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class ParseRunnerTest {
@@ -133,4 +143,88 @@ public class ParseRunnerTest {
     assertThat(parseError.getErrorIndex()).isEqualTo(0);
   }
 
+  @Test
+  public void should_report_error_of_memoized_mismatch() {
+    Rule subRule = new MutableParsingRule("subRule").is("foo", "bar");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(
+        GrammarOperators.sequence(subRule, "a"),
+        GrammarOperators.sequence(subRule, "b")));
+    ParseRunner runner = new ParseRunner(rule);
+    ParsingResult result = runner.parse("foobaz".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    ParseError parseError = result.getParseError();
+    System.out.println(new ParseErrorFormatter().format(parseError));
+    assertThat(parseError.getErrorIndex()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_report_error_of_skipped_alternative() {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.optional("a", GrammarOperators.firstOf(subRule, "bar")),
+        "baz");
+    ParseRunner runner = new ParseRunner(rule);
+    ParsingResult result = runner.parse("aqux".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    ParseError parseError = result.getParseError();
+    System.out.println(new ParseErrorFormatter().format(parseError));
+    assertThat(parseError.getErrorIndex()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_load_compiled_grammar() throws Exception {
+    ByteArrayOutputStream compiledGrammar = new ByteArrayOutputStream();
+    new ParseRunner(createRule("foo")).writeCompiledGrammar(compiledGrammar);
+
+    ParseRunner runner = new ParseRunner(createRule("foo"), new ByteArrayInputStream(compiledGrammar.toByteArray()));
+    assertThat(runner.parse("foo;foo;".toCharArray()).isMatched()).isTrue();
+    ParsingResult result = runner.parse("foo;bar;".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(4);
+  }
+
+  @Test
+  public void should_compile_grammar_if_compiled_for_another_grammar() throws Exception {
+    ByteArrayOutputStream compiledGrammar = new ByteArrayOutputStream();
+    new ParseRunner(createRule("foo")).writeCompiledGrammar(compiledGrammar);
+
+    ParseRunner runner = new ParseRunner(createRule("bar"), new ByteArrayInputStream(compiledGrammar.toByteArray()));
+    assertThat(runner.parse("bar;".toCharArray()).isMatched()).isTrue();
+    assertThat(runner.parse("foo;".toCharArray()).isMatched()).isFalse();
+  }
+
+  private static Rule createRule(String keyword) {
+    Rule statement = new MutableParsingRule("statement").is(GrammarOperators.firstOf(keyword, "baz"), ";");
+    return new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore(statement), GrammarOperators.endOfInput());
+  }
+
+  @Test
+  public void should_be_shareable_between_threads() throws Exception {
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.zeroOrMore(GrammarOperators.regexp("[a-z]++"), GrammarOperators.regexp(" ++")),
+        GrammarOperators.endOfInput());
+    final ParseRunner runner = new ParseRunner(rule);
+    final char[] matching = Strings.repeat("foo ", 1000).toCharArray();
+    final char[] notMatching = (Strings.repeat("foo ", 1000) + "42").toCharArray();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final boolean expected = i % 2 == 0;
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return runner.parse(expected ? matching : notMatching).isMatched() == expected;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.sonar.sslr.api.Rule;
+import org.junit.Test;
+import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.grammar.MemoizationProfile;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.ParseNode;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ParseSessionTest {
+
+  @Test
+  public void should_be_reusable() {
+    Rule word = new MutableParsingRule("word").is(GrammarOperators.regexp("[a-z]++"));
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore(GrammarOperators.firstOf(word, " ")), GrammarOperators.endOfInput());
+    ParseSession session = new ParseRunner(rule).newSession();
+
+    ParsingResult result = session.parse("foo bar baz".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getParseTreeRoot().getEndIndex()).isEqualTo(11);
+
+    result = session.parse("foo 42".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(4);
+
+    result = session.parse("qux".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getParseTreeRoot().getEndIndex()).isEqualTo(3);
+    assertThat(result.getParseTreeRoot().getChildren()).hasSize(1);
+
+    result = session.parse("foo bar baz qux".toCharArray());
+    assertThat(result.isMatched()).isTrue();
+    assertThat(result.getParseTreeRoot().getEndIndex()).isEqualTo(15);
+  }
+
+  @Test
+  public void should_keep_several_memos_per_position() {
+    Rule word = new MutableParsingRule("word").is(GrammarOperators.regexp("[a-z]++"));
+    Rule outer = new MutableParsingRule("outer").is(word, ",");
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.firstOf(GrammarOperators.sequence(outer, "!"), GrammarOperators.sequence(word, ",?")),
+        GrammarOperators.endOfInput());
+    ParseRunner runner = new ParseRunner(rule);
+
+    MemoizationProfile profile = new MemoizationProfile();
+    assertThat(runner.newSession(1, profile).parse("foo,?".toCharArray()).isMatched()).isTrue();
+    assertThat(profile.getHits("word")).as("evicted by outer").isEqualTo(0);
+
+    profile = new MemoizationProfile();
+    assertThat(runner.newSession(2, profile).parse("foo,?".toCharArray()).isMatched()).isTrue();
+    assertThat(profile.getHits("word")).isEqualTo(1);
+
+    assertThat(runner.newSession(2).parse("foo,?".toCharArray()).isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_record_memoization_profile() {
+    MutableParsingRule word = new MutableParsingRule("word");
+    word.is(GrammarOperators.regexp("[a-z]++"));
+    word.setMemoization(false);
+    Rule spacing = new MutableParsingRule("spacing").is(GrammarOperators.regexp(" *+"));
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.firstOf(GrammarOperators.sequence(word, "!"), GrammarOperators.sequence(word, spacing)),
+        GrammarOperators.endOfInput());
+    MemoizationProfile profile = new MemoizationProfile();
+    ParseSession session = new ParseRunner(rule).newSession(profile);
+
+    assertThat(session.parse("foo ".toCharArray()).isMatched()).isTrue();
+    assertThat(profile.getMemos("word")).isEqualTo(1);
+    assertThat(profile.getHits("word")).isEqualTo(1);
+    assertThat(profile.getReusedLength("word")).isEqualTo(3);
+    assertThat(profile.getMemos("spacing")).isEqualTo(1);
+    assertThat(profile.getHits("spacing")).isEqualTo(0);
+    assertThat(profile.shouldMemoize("word")).isTrue();
+    assertThat(profile.shouldMemoize("spacing")).isFalse();
+  }
+
+  @Test
+  public void should_record_reused_mismatches_in_memoization_profile() {
+    Rule number = new MutableParsingRule("number").is(GrammarOperators.regexp("[0-9]++"));
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.firstOf(GrammarOperators.sequence("a", number, "!"), GrammarOperators.sequence("a", number, "?"), "afoo"),
+        GrammarOperators.endOfInput());
+    MemoizationProfile profile = new MemoizationProfile();
+    ParseSession session = new ParseRunner(rule).newSession(profile);
+
+    assertThat(session.parse("afoo".toCharArray()).isMatched()).isTrue();
+    assertThat(profile.getHits("number")).isEqualTo(0);
+    assertThat(profile.getMismatchHits("number")).isEqualTo(1);
+    assertThat(profile.shouldMemoize("number")).isTrue();
+  }
+
+  @Test
+  public void should_be_reusable_after_exception() {
+    MutableParsingRule leftRecursive = new MutableParsingRule("leftRecursive");
+    leftRecursive.is(GrammarOperators.firstOf("foo", GrammarOperators.sequence(leftRecursive, "bar")));
+    Rule rule = new MutableParsingRule("rule").is(leftRecursive, GrammarOperators.endOfInput());
+    ParseSession session = new ParseRunner(rule).newSession();
+
+    assertThat(session.parse("foo".toCharArray()).isMatched()).isTrue();
+    try {
+      session.parse("baz".toCharArray());
+      fail();
+    } catch (GrammarException e) {
+      // expected
+    }
+    assertThat(session.parse("foo".toCharArray()).isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_build_compact_parse_tree() {
+    MutableParsingRule word = new MutableParsingRule("word");
+    word.is(GrammarOperators.regexp("[a-z]++"));
+    Rule rule = new MutableParsingRule("rule").is(
+        GrammarOperators.zeroOrMore(GrammarOperators.firstOf(GrammarOperators.sequence(word, "!"), GrammarOperators.sequence(word, " "), word)),
+        GrammarOperators.endOfInput());
+    ParseRunner runner = new ParseRunner(rule);
+    ParseSession session = runner.newCompactSession();
+    char[] input = "foo bar!baz".toCharArray();
+
+    ParsingResult result = session.parse(input);
+    assertThat(result.isMatched()).isTrue();
+    assertSameTree(result.getParseTreeRoot(), runner.parse(input).getParseTreeRoot());
+
+    assertThat(session.parse("foo 42".toCharArray()).isMatched()).isFalse();
+    try {
+      result.getParseTreeRoot().getChildren();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private static void assertSameTree(ParseNode actual, ParseNode expected) {
+    assertThat(actual.getStartIndex()).isEqualTo(expected.getStartIndex());
+    assertThat(actual.getEndIndex()).isEqualTo(expected.getEndIndex());
+    assertThat(actual.getMatcher()).isSameAs(expected.getMatcher());
+    assertThat(actual.getChildren().size()).isEqualTo(expected.getChildren().size());
+    for (int i = 0; i < expected.getChildren().size(); i++) {
+      assertSameTree(actual.getChildren().get(i), expected.getChildren().get(i));
+    }
+  }
+
+}
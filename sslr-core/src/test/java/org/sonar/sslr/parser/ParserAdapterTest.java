@@ -65,6 +65,46 @@ public class ParserAdapterTest {
     parser.parse("1+1");
   }
 
+  @Test
+  public void should_create_lazy_tokens() {
+    String source = "1 +\n (a * 2)";
+    List<Token> expected = parser.parse(source).getTokens();
+    parser.setLazyTokens(true);
+    List<Token> actual = parser.parse(source).getTokens();
+
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameToken(actual.get(i), expected.get(i));
+      assertThat(actual.get(i).getTrivia()).hasSize(expected.get(i).getTrivia().size());
+      for (int j = 0; j < expected.get(i).getTrivia().size(); j++) {
+        assertSameToken(actual.get(i).getTrivia().get(j).getToken(), expected.get(i).getTrivia().get(j).getToken());
+      }
+    }
+  }
+
+  private static void assertSameToken(Token actual, Token expected) {
+    assertThat(actual.getType()).isSameAs(expected.getType());
+    assertThat(actual.getValue()).isEqualTo(expected.getValue());
+    assertThat(actual.getOriginalValue()).isEqualTo(expected.getOriginalValue());
+    assertThat(actual.getLine()).isEqualTo(expected.getLine());
+    assertThat(actual.getColumn()).isEqualTo(expected.getColumn());
+    assertThat(actual.getURI()).isEqualTo(expected.getURI());
+    assertThat(actual.isGeneratedCode()).isEqualTo(expected.isGeneratedCode());
+    assertThat(actual.isCopyBook()).isEqualTo(expected.isCopyBook());
+  }
+
+  @Test
+  public void should_parse_with_several_memo_slots() {
+    parser.setMemoSlots(2);
+    assertThat(parser.parse("1+(2*3)").getTokens()).hasSize(7);
+  }
+
+  @Test
+  public void should_not_accept_non_positive_number_of_memo_slots() {
+    thrown.expect(IllegalArgumentException.class);
+    parser.setMemoSlots(0);
+  }
+
   @Test
   public void should_not_parse_invalid_string() {
     thrown.expect(RecognitionException.class);
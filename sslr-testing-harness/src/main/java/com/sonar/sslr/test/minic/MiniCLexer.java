@@ -22,6 +22,7 @@ package com.sonar.sslr.test.minic;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerDefinition;
 import com.sonar.sslr.impl.channel.BlackHoleChannel;
 import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
@@ -128,14 +129,24 @@ public final class MiniCLexer {
   }
 
   public static Lexer create() {
+    return builder().build();
+  }
+
+  /**
+   * @since 1.21
+   */
+  public static LexerDefinition createDefinition() {
+    return builder().buildDefinition();
+  }
+
+  private static Lexer.Builder builder() {
     return Lexer.builder()
         .withFailIfNoChannelToConsumeOneCharacter(true)
         .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]([a-zA-Z0-9_]*[a-zA-Z0-9])?+", true, Keywords.values()))
         .withChannel(regexp(Literals.INTEGER, "[0-9]+"))
         .withChannel(commentRegexp("(?s)/\\*.*?\\*/"))
         .withChannel(new PunctuatorChannel(Punctuators.values()))
-        .withChannel(new BlackHoleChannel("[ \t\r\n]+"))
-        .build();
+        .withChannel(new BlackHoleChannel("[ \t\r\n]+"));
   }
 
 }
@@ -0,0 +1,365 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.CursorPreprocessor;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.PreprocessorCursor;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenSink;
+import com.sonar.sslr.api.TokenStore;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import org.junit.Test;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.sonar.sslr.api.GenericTokenType.EOF;
+import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LexerTest {
+
+  private final Lexer lexer = MiniCLexer.create();
+
+  @Test
+  public void should_lex_in_streaming_mode() {
+    String code = "int a = 42; /* comment */\nvoid f() {\n  return a;\n}";
+    List<Token> expected = lexer.lex(code);
+
+    List<Token> actual = new ArrayList<Token>();
+    lexer.lex(new StringReader(code), new ListTokenSink(actual));
+
+    assertSameTokens(actual, expected);
+    assertThat(lexer.getTokens()).isEmpty();
+  }
+
+  @Test
+  public void should_lex_file_in_streaming_mode() {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    List<Token> expected = lexer.lex(file);
+
+    List<Token> actual = new ArrayList<Token>();
+    lexer.lex(file, new ListTokenSink(actual));
+
+    assertSameTokens(actual, expected);
+    assertThat(actual.get(0).getURI()).isEqualTo(file.toURI());
+  }
+
+  @Test
+  public void should_see_at_most_lookahead_characters_in_streaming_mode() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-z]++", true))
+        .withLookahead(3)
+        .build();
+
+    List<Token> tokens = new ArrayList<Token>();
+    lexer.lex(new StringReader("abcdef"), new ListTokenSink(tokens));
+
+    assertThat(tokens).hasSize(3);
+    assertThat(tokens.get(0).getValue()).isEqualTo("abc");
+    assertThat(tokens.get(0).getType()).isSameAs(IDENTIFIER);
+    assertThat(tokens.get(1).getValue()).isEqualTo("def");
+    assertThat(tokens.get(2).getType()).isSameAs(EOF);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_not_allow_preprocessors_in_streaming_mode() {
+    Lexer lexer = Lexer.builder()
+        .withPreprocessor(new Preprocessor() {
+          @Override
+          public PreprocessorAction process(List<Token> tokens) {
+            return PreprocessorAction.NO_OPERATION;
+          }
+        })
+        .build();
+    lexer.lex(new StringReader(""), new ListTokenSink(new ArrayList<Token>()));
+  }
+
+  @Test
+  public void should_lex_memory_mapped_file() {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    Lexer.Builder builder = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]++", true))
+        .withChannel(new BlackHoleChannel("[^a-zA-Z]++"));
+    List<Token> expected = builder.build().lex(file);
+
+    List<Token> actual = builder.withMemoryMappingThreshold(0).build().lex(file);
+
+    assertSameTokens(actual, expected);
+    assertThat(actual.get(0).getURI()).isEqualTo(file.toURI());
+  }
+
+  @Test
+  public void should_lex_with_dispatch_by_first_character() {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    Lexer.Builder builder = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]++", true))
+        .withChannel(new BlackHoleChannel("[^a-zA-Z]++"));
+    List<Token> expected = builder.build().lex(file);
+
+    List<Token> actual = builder.withDispatchByFirstCharacter(true).build().lex(file);
+
+    assertSameTokens(actual, expected);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_not_allow_negative_memory_mapping_threshold() {
+    Lexer.builder().withMemoryMappingThreshold(-1);
+  }
+
+  @Test
+  public void should_lex_with_definition() {
+    LexerDefinition definition = MiniCLexer.createDefinition();
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+
+    assertSameTokens(definition.lex(file), lexer.lex(file));
+    assertThat(definition.newLexer()).isNotSameAs(definition.newLexer());
+  }
+
+  @Test
+  public void should_lex_files_concurrently() {
+    LexerDefinition definition = MiniCLexer.createDefinition();
+    List<File> files = new ArrayList<File>();
+    for (int example = 1; example <= 4; example++) {
+      files.add(new File("src/test/resources/MiniCIntegration/example" + example + ".mc"));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Map<File, List<Token>> result = definition.lexAll(files, executor);
+      assertThat(new ArrayList<File>(result.keySet())).isEqualTo(files);
+      for (Map.Entry<File, List<Token>> entry : result.entrySet()) {
+        assertSameTokens(entry.getValue(), lexer.lex(entry.getKey()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_rethrow_exception_of_concurrent_lexing() {
+    Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        command.run();
+      }
+    };
+    MiniCLexer.createDefinition().lexAll(Arrays.asList(new File("src/test/resources/MiniCIntegration/example1.mc"), new File("unknown.mc")), executor);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_not_allow_preprocessors_in_definition() {
+    Lexer.builder()
+        .withPreprocessor(new Preprocessor() {
+          @Override
+          public PreprocessorAction process(List<Token> tokens) {
+            return PreprocessorAction.NO_OPERATION;
+          }
+        })
+        .buildDefinition();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_not_allow_channel_without_copy_in_definition() {
+    Lexer.builder()
+        .withChannel(new Channel<Lexer>() {
+          @Override
+          public boolean consume(CodeReader code, Lexer lexer) {
+            return false;
+          }
+        })
+        .buildDefinition();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_not_allow_subclass_of_channel_without_copy_in_definition() {
+    Lexer.builder()
+        .withChannel(new BlackHoleChannel("\\s++") {
+          @Override
+          public boolean consume(CodeReader code, Lexer lexer) {
+            return super.consume(code, lexer);
+          }
+        })
+        .buildDefinition();
+  }
+
+  @Test
+  public void should_preprocess_with_cursor() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-z]++", true))
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withPreprocessor(new CursorPreprocessor() {
+          @Override
+          public void process(PreprocessorCursor cursor) {
+            int n = 0;
+            while (n < cursor.remaining() && !"m".equals(cursor.peek(n).getValue())) {
+              n++;
+            }
+            if (n > 0) {
+              cursor.keep(n);
+            } else {
+              Token macro = cursor.peek(0);
+              cursor.consume(1);
+              cursor.inject(Arrays.asList(
+                  Token.builder(macro).setValueAndOriginalValue("x").setGeneratedCode(true).build(),
+                  Token.builder(macro).setValueAndOriginalValue("y").setGeneratedCode(true).build()));
+            }
+          }
+        })
+        .withPreprocessor(new Preprocessor() {
+          @Override
+          public PreprocessorAction process(List<Token> tokens) {
+            return "x".equals(tokens.get(0).getValue()) ? new PreprocessorAction(1, Collections.<Trivia>emptyList(), Collections.<Token>emptyList())
+                : PreprocessorAction.NO_OPERATION;
+          }
+        })
+        .build();
+
+    List<Token> tokens = lexer.lex("a m b m");
+
+    assertThat(tokens).hasSize(5);
+    assertThat(tokens.get(0).getValue()).isEqualTo("a");
+    assertThat(tokens.get(1).getValue()).isEqualTo("y");
+    assertThat(tokens.get(1).isGeneratedCode()).isTrue();
+    assertThat(tokens.get(2).getValue()).isEqualTo("b");
+    assertThat(tokens.get(3).getValue()).isEqualTo("y");
+    assertThat(tokens.get(4).getType()).isSameAs(EOF);
+  }
+
+  @Test(expected = LexerException.class)
+  public void should_fail_when_preprocessor_does_not_move_cursor() {
+    Lexer lexer = Lexer.builder()
+        .withPreprocessor(new CursorPreprocessor() {
+          @Override
+          public void process(PreprocessorCursor cursor) {
+            // does nothing
+          }
+        })
+        .build();
+    lexer.lex("");
+  }
+
+  @Test
+  public void should_lex_to_store() {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    TokenStore store = lexer.lexToStore(file);
+
+    assertSameTokens(store, lexer.lex(file));
+    assertThat(store.getURI()).isEqualTo(file.toURI());
+    assertThat(store.get(0).getURI()).isEqualTo(file.toURI());
+  }
+
+  @Test
+  public void should_keep_memory_mapping_threshold_in_definition() {
+    Lexer.Builder builder = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]++", true))
+        .withChannel(new BlackHoleChannel("[^a-zA-Z]++"));
+    assertThat(builder.buildDefinition().newLexer().getMemoryMappingThreshold()).isEqualTo(Long.MAX_VALUE);
+
+    LexerDefinition definition = builder.withMemoryMappingThreshold(0).buildDefinition();
+    assertThat(definition.newLexer().getMemoryMappingThreshold()).isEqualTo(0);
+
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    assertSameTokens(definition.lex(file), builder.build().lex(file));
+  }
+
+  @Test
+  public void should_lex_memory_mapped_file_to_store() {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    Lexer.Builder builder = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z]++", true))
+        .withChannel(new BlackHoleChannel("[^a-zA-Z]++"));
+    TokenStore expected = builder.build().lexToStore(file);
+
+    TokenStore actual = builder.withMemoryMappingThreshold(0).build().lexToStore(file);
+
+    assertSameTokens(actual, expected);
+    assertThat(actual.getValue(0)).isEqualTo(expected.getValue(0));
+  }
+
+  @Test
+  public void should_lex_to_store_with_preprocessors() {
+    Lexer lexer = Lexer.builder()
+        .withChannel(new IdentifierAndKeywordChannel("[a-z]++", true))
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withPreprocessor(new Preprocessor() {
+          @Override
+          public PreprocessorAction process(List<Token> tokens) {
+            Token token = tokens.get(0);
+            if (!"a".equals(token.getValue())) {
+              return PreprocessorAction.NO_OPERATION;
+            }
+            Token generated = Token.builder(token).setValueAndOriginalValue("b").setGeneratedCode(true).build();
+            return new PreprocessorAction(1, Collections.<Trivia>emptyList(), Arrays.asList(generated));
+          }
+        })
+        .build();
+
+    TokenStore store = lexer.lexToStore("a c");
+
+    assertThat(store).hasSize(3);
+    assertThat(store.getValue(0)).isEqualTo("b");
+    assertThat(store.get(0).isGeneratedCode()).isTrue();
+    assertThat(store.getValue(1)).isEqualTo("c");
+    assertThat(store.getType(2)).isSameAs(EOF);
+  }
+
+  private static void assertSameTokens(List<Token> actual, List<Token> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).getValue()).isEqualTo(expected.get(i).getValue());
+      assertThat(actual.get(i).getType()).isSameAs(expected.get(i).getType());
+      assertThat(actual.get(i).getLine()).isEqualTo(expected.get(i).getLine());
+      assertThat(actual.get(i).getColumn()).isEqualTo(expected.get(i).getColumn());
+      assertThat(actual.get(i).getTrivia()).hasSize(expected.get(i).getTrivia().size());
+    }
+  }
+
+  private static class ListTokenSink implements TokenSink {
+
+    private final List<Token> tokens;
+
+    public ListTokenSink(List<Token> tokens) {
+      this.tokens = tokens;
+    }
+
+    @Override
+    public void accept(Token token) {
+      tokens.add(token);
+    }
+
+  }
+
+}
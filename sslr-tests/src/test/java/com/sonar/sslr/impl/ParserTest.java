@@ -20,8 +20,23 @@
 package com.sonar.sslr.impl;
 
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import com.sonar.sslr.test.minic.MiniCGrammar;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import com.sonar.sslr.test.minic.MiniCParser;
 import org.junit.Test;
+import org.sonar.sslr.grammar.MemoizationProfile;
+import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 import static com.sonar.sslr.test.minic.MiniCParser.parseFile;
@@ -57,4 +72,95 @@ public class ParserTest {
     assertThat(compilationUnit.getFirstChild().is(EOF)).isTrue();
   }
 
+  @Test
+  public void should_recompile_grammar_when_root_rule_changed() {
+    Parser<Grammar> parser = MiniCParser.create();
+    assertThat(parser.parse("int a;").getType()).isSameAs(MiniCGrammar.COMPILATION_UNIT);
+
+    parser.setRootRule(parser.getGrammar().rule(MiniCGrammar.BIN_TYPE));
+    assertThat(parser.parse("int").getType()).isSameAs(MiniCGrammar.BIN_TYPE);
+  }
+
+  @Test
+  public void should_recompile_grammar_when_rule_overridden() {
+    Parser<Grammar> parser = MiniCParser.create();
+    parser.setRootRule(parser.getGrammar().rule(MiniCGrammar.BIN_TYPE));
+    assertThat(parser.parse("int").getType()).isSameAs(MiniCGrammar.BIN_TYPE);
+
+    parser.getGrammar().rule(MiniCGrammar.BIN_TYPE).override(MiniCLexer.Keywords.VOID);
+    assertThat(parser.parse("void").getType()).isSameAs(MiniCGrammar.BIN_TYPE);
+    try {
+      parser.parse("int");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void should_parse_from_token_store() {
+    Parser<Grammar> parser = MiniCParser.create();
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    String expected = AstXmlPrinter.print(parser.parse(file));
+
+    assertThat(AstXmlPrinter.print(parser.parse(MiniCLexer.create().lexToStore(file)))).isEqualTo(expected);
+  }
+
+  @Test(expected = RecognitionException.class)
+  public void should_report_error_when_parsing_from_token_store() {
+    MiniCParser.create().parse(MiniCLexer.create().lexToStore("int a"));
+  }
+
+  @Test
+  public void should_parse_with_loaded_compiled_grammar() throws Exception {
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    Parser<Grammar> parser = MiniCParser.create();
+    String expected = AstXmlPrinter.print(parser.parse(file));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    parser.writeCompiledGrammar(out);
+
+    parser = MiniCParser.create();
+    parser.loadCompiledGrammar(new ByteArrayInputStream(out.toByteArray()));
+    assertThat(AstXmlPrinter.print(parser.parse(file))).isEqualTo(expected);
+
+    // compiled grammar of another root rule is ignored
+    parser.setRootRule(parser.getGrammar().rule(MiniCGrammar.BIN_TYPE));
+    parser.loadCompiledGrammar(new ByteArrayInputStream(out.toByteArray()));
+    assertThat(parser.parse("int").getType()).isSameAs(MiniCGrammar.BIN_TYPE);
+  }
+
+  @Test
+  public void should_build_same_ast_as_from_parse_tree() {
+    Parser<Grammar> parser = MiniCParser.create();
+    List<Token> tokens = MiniCLexer.create().lex(new File("src/test/resources/MiniCIntegration/example4.mc"));
+    String expected = AstXmlPrinter.print(LexerfulAstCreator.create(Machine.parse(tokens, MutableGrammarCompiler.compile(parser.getRootRule())), tokens));
+
+    assertThat(AstXmlPrinter.print(parser.parse(tokens))).isEqualTo(expected);
+
+    // results of all rules are memoized, so nodes are reused by machine
+    parser.setMemoizationProfile(new MemoizationProfile());
+    AstNode astNode = parser.parse(tokens);
+    assertThat(AstXmlPrinter.print(astNode)).isEqualTo(expected);
+    assertParentsAreConsistent(astNode);
+  }
+
+  @Test
+  public void should_parse_with_several_memo_slots() {
+    Parser<Grammar> parser = MiniCParser.create();
+    File file = new File("src/test/resources/MiniCIntegration/example4.mc");
+    String expected = AstXmlPrinter.print(parser.parse(file));
+
+    parser.setMemoSlots(4);
+    AstNode astNode = parser.parse(file);
+    assertThat(AstXmlPrinter.print(astNode)).isEqualTo(expected);
+    assertParentsAreConsistent(astNode);
+  }
+
+  private static void assertParentsAreConsistent(AstNode astNode) {
+    for (AstNode child : astNode.getChildren()) {
+      assertThat(child.getParent()).isSameAs(astNode);
+      assertParentsAreConsistent(child);
+    }
+  }
+
 }
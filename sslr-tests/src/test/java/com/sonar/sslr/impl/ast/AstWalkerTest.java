@@ -27,8 +27,11 @@ import org.mockito.InOrder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.sonar.sslr.test.lexer.MockHelper.mockToken;
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class AstWalkerTest {
@@ -122,4 +125,157 @@ public class AstWalkerTest {
     walker.addVisitor(visitor2);
   }
 
+  @Test
+  public void should_walk_concurrently() {
+    List<String> events = new ArrayList<String>();
+    AstVisitor first = new RecordingVisitor("first", events);
+    AstVisitor second = new RecordingVisitor("second", events);
+    List<CountingVisitor> counters = new ArrayList<CountingVisitor>();
+    walker.addVisitor(first);
+    for (int i = 0; i < 5; i++) {
+      CountingVisitor counter = new CountingVisitor();
+      counters.add(counter);
+      walker.addVisitor(counter);
+    }
+    walker.addVisitor(second);
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      walker.walkAndVisit(ast1, pool);
+      walker.walkAndVisit(ast12, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    for (CountingVisitor counter : counters) {
+      assertThat(counter.files).isEqualTo(2);
+      assertThat(counter.nodes).isEqualTo(3 + 2);
+      assertThat(counter.thread).isNotNull();
+    }
+    assertThat(events).containsExactly(
+        "first visitFile 1", "second visitFile 1",
+        "first visitNode 13", "second visitNode 13", "second leaveNode 13", "first leaveNode 13",
+        "second leaveFile 1", "first leaveFile 1",
+        "first visitFile 12", "second visitFile 12", "second leaveFile 12", "first leaveFile 12");
+  }
+
+  @Test
+  public void should_walk_sequentially_without_thread_safe_visitors() {
+    when(astVisitor.getAstNodeTypesToVisit()).thenReturn(Arrays.asList(animal));
+    walker.addVisitor(astVisitor);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      walker.walkAndVisit(ast1, pool);
+    } finally {
+      pool.shutdown();
+    }
+    InOrder inOrder = inOrder(astVisitor);
+    inOrder.verify(astVisitor).visitFile(ast1);
+    inOrder.verify(astVisitor).visitNode(ast1);
+    inOrder.verify(astVisitor).visitNode(ast12);
+    inOrder.verify(astVisitor).visitNode(ast121);
+    inOrder.verify(astVisitor).leaveFile(ast1);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_propagate_exception_from_concurrent_walk() {
+    walker.addVisitor(new CountingVisitor());
+    walker.addVisitor(new FailingVisitor());
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      walker.walkAndVisit(ast1, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private class RecordingVisitor extends VisitorAdapter {
+    private final String name;
+    private final List<String> events;
+
+    RecordingVisitor(String name, List<String> events) {
+      this.name = name;
+      this.events = events;
+    }
+
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return Arrays.<AstNodeType>asList(cat);
+    }
+
+    @Override
+    public void visitFile(AstNode ast) {
+      events.add(name + " visitFile " + ast.getName());
+    }
+
+    @Override
+    public void leaveFile(AstNode ast) {
+      events.add(name + " leaveFile " + ast.getName());
+    }
+
+    @Override
+    public void visitNode(AstNode ast) {
+      events.add(name + " visitNode " + ast.getName());
+    }
+
+    @Override
+    public void leaveNode(AstNode ast) {
+      events.add(name + " leaveNode " + ast.getName());
+    }
+  }
+
+  @ThreadSafeVisitor
+  private class CountingVisitor extends VisitorAdapter {
+    private int files;
+    private int nodes;
+    private Thread thread;
+
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return Arrays.asList(animal);
+    }
+
+    @Override
+    public void visitFile(AstNode ast) {
+      files++;
+      thread = Thread.currentThread();
+    }
+
+    @Override
+    public void visitNode(AstNode ast) {
+      nodes++;
+    }
+  }
+
+  @ThreadSafeVisitor
+  private class FailingVisitor extends VisitorAdapter {
+    @Override
+    public void visitFile(AstNode ast) {
+      throw new IllegalStateException();
+    }
+  }
+
+  private abstract static class VisitorAdapter implements AstVisitor {
+    @Override
+    public List<AstNodeType> getAstNodeTypesToVisit() {
+      return new ArrayList<AstNodeType>();
+    }
+
+    @Override
+    public void visitFile(AstNode ast) {
+    }
+
+    @Override
+    public void leaveFile(AstNode ast) {
+    }
+
+    @Override
+    public void visitNode(AstNode ast) {
+    }
+
+    @Override
+    public void leaveNode(AstNode ast) {
+    }
+  }
+
 }
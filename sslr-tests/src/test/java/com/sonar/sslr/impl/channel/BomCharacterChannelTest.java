@@ -36,6 +36,12 @@ public class BomCharacterChannelTest {
     assertThat(lexer.getTokens().size()).isEqualTo(0);
   }
 
+  @Test
+  public void shouldConsumeOnlyBomCharacter() {
+    assertThat(channel.canConsume('\uFEFF')).isTrue();
+    assertThat(channel.canConsume(' ')).isFalse();
+  }
+
   @Test
   public void shouldNotConsumeOtherCharacters() {
     assertThat(channel.consume(new CodeReader(" "), lexer)).isFalse();
@@ -0,0 +1,147 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.google.common.base.CharMatcher;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import org.junit.Test;
+import org.sonar.sslr.channel.CodeReader;
+
+import static com.sonar.sslr.test.lexer.LexerMatchers.hasOriginalToken;
+import static com.sonar.sslr.test.lexer.LexerMatchers.hasToken;
+import static com.sonar.sslr.test.lexer.MockHelper.mockLexer;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.sonar.sslr.test.channel.ChannelMatchers.consume;
+
+public class CharMatcherIdentifierAndKeywordChannelTest {
+
+  private static final CharMatcher IDENTIFIER_START = CharMatcher.JAVA_LETTER.or(CharMatcher.is('_'));
+  private static final CharMatcher IDENTIFIER_PART = CharMatcher.JAVA_LETTER_OR_DIGIT.or(CharMatcher.is('_'));
+
+  private CharMatcherIdentifierAndKeywordChannel channel;
+  private final Lexer lexer = mockLexer();
+
+  @Test
+  public void testConsumeWord() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, true, MyKeywords.values());
+    assertThat(channel, consume("word", lexer));
+    assertThat(lexer.getTokens(), hasToken("word", GenericTokenType.IDENTIFIER));
+  }
+
+  @Test
+  public void testConsumeCaseSensitiveKeywords() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, true, MyKeywords.values());
+    assertThat(channel, consume("KEYWORD1", lexer));
+    assertThat(lexer.getTokens(), hasToken("KEYWORD1", MyKeywords.KEYWORD1));
+
+    assertThat(channel, consume("KeyWord2", lexer));
+    assertThat(lexer.getTokens(), hasToken("KeyWord2", MyKeywords.KeyWord2));
+
+    assertThat(channel, consume("KEYWORD2", lexer));
+    assertThat(lexer.getTokens(), hasToken("KEYWORD2", GenericTokenType.IDENTIFIER));
+  }
+
+  @Test
+  public void testConsumeNotCaseSensitiveKeywords() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, false, MyKeywords.values());
+    assertThat(channel, consume("keyword1", lexer));
+    assertThat(lexer.getTokens(), hasToken("KEYWORD1", MyKeywords.KEYWORD1));
+    assertThat(lexer.getTokens(), hasToken("KEYWORD1"));
+    assertThat(lexer.getTokens(), hasOriginalToken("keyword1"));
+
+    assertThat(channel, consume("keyword2", lexer));
+    assertThat(lexer.getTokens(), hasToken("KEYWORD2", MyKeywords.KeyWord2));
+
+    assertThat(channel, consume("\u00e9t\u00e9", lexer));
+    assertThat(lexer.getTokens(), hasToken("\u00c9T\u00c9", GenericTokenType.IDENTIFIER));
+    assertThat(lexer.getTokens(), hasOriginalToken("\u00e9t\u00e9"));
+  }
+
+  @Test
+  public void testConsumeUntilCharacterNotMatchingIdentifierPart() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, true, MyKeywords.values());
+    CodeReader reader = new CodeReader("word1+word2");
+    assertThat(channel, consume(reader, lexer));
+    assertThat(lexer.getTokens(), hasToken("word1", GenericTokenType.IDENTIFIER));
+    assertThat((char) reader.peek(), is('+'));
+  }
+
+  @Test
+  public void testReuseValuesOfIdentifiers() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, false, MyKeywords.values());
+    assertThat(channel, consume("word", lexer));
+    assertThat(channel, consume("word", lexer));
+    Token first = lexer.getTokens().get(0);
+    Token second = lexer.getTokens().get(1);
+    assertThat(second.getValue(), sameInstance(first.getValue()));
+    assertThat(second.getOriginalValue(), sameInstance(first.getOriginalValue()));
+  }
+
+  @Test
+  public void testColumnAndLineNumbers() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, false, MyKeywords.values());
+    CodeReader reader = new CodeReader("\n\n  keyword1");
+    reader.pop();
+    reader.pop();
+    reader.pop();
+    reader.pop();
+    assertThat(channel, consume(reader, lexer));
+    Token keyword = lexer.getTokens().get(0);
+    assertThat(keyword.getColumn(), is(2));
+    assertThat(keyword.getLine(), is(3));
+  }
+
+  @Test
+  public void testNotConsumeNumber() {
+    channel = new CharMatcherIdentifierAndKeywordChannel(IDENTIFIER_START, IDENTIFIER_PART, true, MyKeywords.values());
+    assertThat(channel, not(consume("1234", lexer)));
+    assertThat(channel, not(consume("", lexer)));
+    assertThat(channel.canConsume('1'), is(false));
+    assertThat(channel.canConsume('_'), is(true));
+  }
+
+  private enum MyKeywords implements TokenType {
+    KEYWORD1, KeyWord2;
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public String getValue() {
+      return name();
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+
+  }
+
+}
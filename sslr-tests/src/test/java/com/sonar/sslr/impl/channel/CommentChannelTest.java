@@ -45,4 +45,13 @@ public class CommentChannelTest {
     assertThat(lexer.getTokens(), hasOriginalComment("//My Comment"));
   }
 
+  @Test
+  public void testDfaCommentRegexp() {
+    channel = RegexpChannelBuilder.dfaCommentRegexp("//[^\\n\\r]*+");
+    assertThat(channel, not(consume("This is not a comment", lexer)));
+    assertThat(channel, consume("//My Comment\n second line", lexer));
+    lexer.addToken(mockToken(EOF, "EOF"));
+    assertThat(lexer.getTokens(), hasComment("//My Comment"));
+  }
+
 }
@@ -0,0 +1,211 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import org.junit.Test;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FusedChannelTest {
+
+  private static final String CODE = "int a = 0x1F; /* comment\n */ if (a >= 42) { // comment\n  Return \"foo \\\" bar\" ? ;\n} @";
+
+  @Test
+  public void should_fuse_consecutive_channels() {
+    Channel<Lexer> unknownCharacterChannel = new UnknownCharacterChannel();
+    Channel<Lexer> unsupportedChannel = regexp(GenericTokenType.LITERAL, "(['\"]).*?\\1");
+    List<Channel<Lexer>> channels = FusedChannel.fuse(ImmutableList.of(
+      new BlackHoleChannel("\\s++"),
+      commentRegexp("//[^\\n\\r]*+"),
+      unsupportedChannel,
+      new PunctuatorChannel(MyPunctuator.values()),
+      regexp(GenericTokenType.CONSTANT, "[0-9]++"),
+      unknownCharacterChannel));
+
+    assertThat(channels).hasSize(4);
+    assertThat(channels.get(0)).isInstanceOf(FusedChannel.class);
+    assertThat(channels.get(1)).isSameAs(unsupportedChannel);
+    assertThat(channels.get(2)).isInstanceOf(FusedChannel.class);
+    assertThat(channels.get(3)).isSameAs(unknownCharacterChannel);
+  }
+
+  @Test
+  public void should_not_fuse_channel_which_can_consume_nothing() {
+    Channel<Lexer> channel = regexp(GenericTokenType.CONSTANT, "[0-9]*+");
+    assertThat(FusedChannel.fuse(ImmutableList.of(channel))).containsExactly(channel);
+  }
+
+  @Test
+  public void should_not_fuse_subclasses_of_channels() {
+    Channel<Lexer> subclass = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++") {
+      @Override
+      public boolean consume(CodeReader code, Lexer lexer) {
+        if (super.consume(code, lexer)) {
+          lexer.addToken(Token.builder()
+            .setType(GenericTokenType.LITERAL)
+            .setValueAndOriginalValue("!")
+            .setURI(lexer.getURI())
+            .setLine(code.getLinePosition())
+            .setColumn(code.getColumnPosition())
+            .build());
+          return true;
+        }
+        return false;
+      }
+    };
+    Channel<Lexer> blackHole = new BlackHoleChannel("\\s++");
+    List<Channel<Lexer>> channels = FusedChannel.fuse(ImmutableList.of(blackHole, subclass));
+    assertThat(channels).hasSize(2);
+    assertThat(channels.get(1)).isSameAs(subclass);
+
+    List<Token> tokens = Lexer.builder()
+      .withChannel(blackHole)
+      .withChannel(subclass)
+      .withFusedChannels(true)
+      .build()
+      .lex("42");
+    assertThat(tokens).hasSize(3);
+    assertThat(tokens.get(1).getValue()).isEqualTo("!");
+  }
+
+  @Test
+  public void should_produce_same_tokens_as_channels() {
+    assertSameTokens(Lexer.builder()
+      .withChannel(new BlackHoleChannel("\\s++"))
+      .withChannel(commentRegexp("//[^\\n\\r]*+"))
+      .withChannel(commentRegexp("/\\*[\\s\\S]*?\\*/"))
+      .withChannel(regexp(GenericTokenType.LITERAL, "\"([^\"\\\\]|\\\\.)*+\""))
+      .withChannel(regexp(GenericTokenType.CONSTANT, "0x[0-9a-fA-F]++|[0-9]++"))
+      .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z_][a-zA-Z_0-9]*+", false, MyKeyword.values()))
+      .withChannel(new PunctuatorChannel(MyPunctuator.values()))
+      .withChannel(new UnknownCharacterChannel()));
+  }
+
+  @Test
+  public void should_produce_same_tokens_as_channels_based_on_char_matchers() {
+    assertSameTokens(Lexer.builder()
+      .withChannel(new BlackHoleChannel("\\s++"))
+      .withChannel(new CharMatcherIdentifierAndKeywordChannel(
+        CharMatcher.inRange('a', 'z').or(CharMatcher.inRange('A', 'Z')),
+        CharMatcher.inRange('a', 'z').or(CharMatcher.inRange('A', 'Z')).or(CharMatcher.inRange('0', '9')),
+        true,
+        MyKeyword.values()))
+      .withChannel(regexp(GenericTokenType.CONSTANT, "[0-9]++"))
+      .withChannel(new PunctuatorChannel(MyPunctuator.values()))
+      .withChannel(new UnknownCharacterChannel()));
+  }
+
+  @Test
+  public void should_preserve_priority_of_channels() {
+    // first channel wins even if next one could consume more characters
+    assertSameTokens(Lexer.builder()
+      .withChannel(regexp(GenericTokenType.CONSTANT, "[0-9]"))
+      .withChannel(regexp(GenericTokenType.LITERAL, "[0-9a-z]++"))
+      .withChannel(new PunctuatorChannel(MyPunctuator.values()))
+      .withChannel(regexp(GenericTokenType.LITERAL, "[=>]++"))
+      .withChannel(new BlackHoleChannel("[\\s\\S]")));
+  }
+
+  private static void assertSameTokens(Lexer.Builder builder) {
+    List<Token> expected = builder.build().lex(CODE);
+    // lexers created from definition use copies of channels
+    assertSameTokens(builder.buildDefinition().newLexer().lex(CODE), expected);
+    assertSameTokens(builder.withFusedChannels(true).build().lex(CODE), expected);
+    assertSameTokens(builder.buildDefinition().newLexer().lex(CODE), expected);
+  }
+
+  private static void assertSameTokens(List<Token> actual, List<Token> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).getType()).isEqualTo(expected.get(i).getType());
+      assertThat(actual.get(i).getValue()).isEqualTo(expected.get(i).getValue());
+      assertThat(actual.get(i).getOriginalValue()).isEqualTo(expected.get(i).getOriginalValue());
+      assertThat(actual.get(i).getLine()).isEqualTo(expected.get(i).getLine());
+      assertThat(actual.get(i).getColumn()).isEqualTo(expected.get(i).getColumn());
+      assertThat(actual.get(i).getTrivia()).hasSize(expected.get(i).getTrivia().size());
+    }
+  }
+
+  private enum MyKeyword implements TokenType {
+    INT("int"), IF("if"), RETURN("return");
+
+    private final String value;
+
+    private MyKeyword(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+
+  }
+
+  private enum MyPunctuator implements TokenType {
+    EQUAL("="), GE(">="), GT(">"), SEMICOLON(";"), LPAREN("("), RPAREN(")"), LCURLY("{"), RCURLY("}"), QUERY("?"), GE2(">=");
+
+    private final String value;
+
+    private MyPunctuator(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import com.google.common.collect.ImmutableMap;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class KeywordTableTest {
+
+  @Test
+  public void should_find_keywords() {
+    KeywordTable table = new KeywordTable(ImmutableMap.<String, TokenType>of(
+        "if", GenericTokenType.IDENTIFIER,
+        "else", GenericTokenType.LITERAL,
+        "while", GenericTokenType.CONSTANT));
+
+    int index = indexOf(table, "else");
+    assertThat(table.getKey(index)).isEqualTo("else");
+    assertThat(table.getType(index)).isSameAs(GenericTokenType.LITERAL);
+
+    assertThat(table.getType(indexOf(table, "if"))).isSameAs(GenericTokenType.IDENTIFIER);
+    assertThat(table.getType(indexOf(table, "while"))).isSameAs(GenericTokenType.CONSTANT);
+    assertThat(indexOf(table, "whilst")).isEqualTo(-1);
+    assertThat(indexOf(table, "")).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_find_keywords_with_same_hash() {
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+    KeywordTable table = new KeywordTable(ImmutableMap.<String, TokenType>of(
+        "Aa", GenericTokenType.IDENTIFIER,
+        "BB", GenericTokenType.LITERAL));
+
+    assertThat(table.getType(indexOf(table, "Aa"))).isSameAs(GenericTokenType.IDENTIFIER);
+    assertThat(table.getType(indexOf(table, "BB"))).isSameAs(GenericTokenType.LITERAL);
+    assertThat(indexOf(table, "C#")).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_support_empty_table() {
+    KeywordTable table = new KeywordTable(ImmutableMap.<String, TokenType>of());
+    assertThat(indexOf(table, "if")).isEqualTo(-1);
+  }
+
+  private static int indexOf(KeywordTable table, String s) {
+    return table.indexOf(s.toCharArray(), s.length(), s.hashCode());
+  }
+
+}
@@ -61,6 +61,21 @@ public class PunctuatorChannelTest {
     assertThat(channel.consume(new CodeReader("word"), lexer)).isFalse();
   }
 
+  @Test
+  public void testCanConsume() {
+    assertThat(channel.canConsume('*')).isTrue();
+    assertThat(channel.canConsume('!')).isTrue();
+    assertThat(channel.canConsume('w')).isFalse();
+  }
+
+  @Test
+  public void testCopy() {
+    PunctuatorChannel copy = channel.copy();
+    assertThat(copy).isNotSameAs(channel);
+    assertThat(copy, consume("*=,", lexer));
+    assertThat(lexer.getTokens(), hasToken("*=", MyPunctuatorAndOperator.MUL_ASSIGN));
+  }
+
   private enum MyPunctuatorAndOperator implements TokenType {
     STAR("*"), COLON(","), EQUAL("="), EQUAL_OP("=="), MUL_ASSIGN("*="), NOT_EQUAL("!=");
 
@@ -25,6 +25,8 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.sonar.sslr.api.GenericTokenType;
+
 public class RegexpChannelBuilderTest {
 
   @Test
@@ -53,6 +55,11 @@ public class RegexpChannelBuilderTest {
     assertThat(or("L", "l", "U", "u"), equalTo("(L|l|U|u)"));
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testDfaRegexpNotSupported() {
+    dfaRegexp(GenericTokenType.CONSTANT, "(a)\\1");
+  }
+
   @Test
   public void testAnyButNot() {
     assertThat(anyButNot("L", "l"), equalTo("[^Ll]"));
@@ -50,4 +50,31 @@ public class RegexpChannelTest {
     assertThat(channel, consume("56;", lexer));
     assertThat(lexer.getTokens().get(0).getColumn(), is(0));
   }
+
+  @Test
+  public void testDfaRegexp() {
+    channel = RegexpChannelBuilder.dfaRegexp(GenericTokenType.CONSTANT, "[0-9]++");
+    assertThat(channel, not(consume("Not a number", lexer)));
+    assertThat(channel, consume(new CodeReader("56;"), lexer));
+    assertThat(lexer.getTokens(), hasToken("56", GenericTokenType.CONSTANT));
+    assertThat(lexer.getTokens().get(0).getColumn(), is(0));
+    assertThat(channel.canConsume('5'), is(true));
+    assertThat(channel.canConsume('N'), is(false));
+  }
+
+  @Test
+  public void testCanConsume() {
+    channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++");
+    assertThat(channel.canConsume('5'), is(true));
+    assertThat(channel.canConsume('N'), is(false));
+  }
+
+  @Test
+  public void testCopy() {
+    channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++");
+    RegexpChannel copy = channel.copy();
+    assertThat(copy, not(sameInstance(channel)));
+    assertThat(copy, consume("56;", lexer));
+    assertThat(lexer.getTokens(), hasToken("56", GenericTokenType.CONSTANT));
+  }
 }
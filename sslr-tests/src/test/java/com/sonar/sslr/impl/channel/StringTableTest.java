@@ -0,0 +1,59 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StringTableTest {
+
+  private final StringTable table = new StringTable();
+
+  @Test
+  public void should_reuse_strings() {
+    String first = get("word");
+    assertThat(first).isEqualTo("word");
+    assertThat(get("word")).isSameAs(first);
+    assertThat(get("wor")).isEqualTo("wor");
+    assertThat(get("Aa")).isEqualTo("Aa");
+    assertThat(get("BB")).isEqualTo("BB");
+    assertThat(get("Aa")).isSameAs(get("Aa"));
+  }
+
+  @Test
+  public void should_grow_and_clear() {
+    String first = get("0");
+    for (int i = 1; i < 1 << 16; i++) {
+      get(Integer.toString(i));
+    }
+    assertThat(get("0")).isSameAs(first);
+    assertThat(get("1")).isEqualTo("1");
+
+    // table was full, so it was cleared
+    get("new");
+    assertThat(get("0")).isNotSameAs(first);
+  }
+
+  private String get(String s) {
+    return table.get(s.toCharArray(), s.length(), s.hashCode());
+  }
+
+}